@@ -0,0 +1,81 @@
+package software.amazon.payloadoffloading;
+
+import software.amazon.awssdk.annotations.ThreadSafe;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of byte arrays in power-of-two size classes, used to reuse download buffers across payloads
+ * instead of allocating a new one per object.
+ */
+@ThreadSafe
+class ByteArrayPool {
+    static final int MIN_POOLED_SIZE = 64 * 1024;
+    static final int MAX_POOLED_SIZE = 16 * 1024 * 1024;
+    private static final long DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024;
+
+    private static final ByteArrayPool SHARED = new ByteArrayPool(DEFAULT_MAX_POOLED_BYTES);
+
+    private final ConcurrentLinkedQueue<byte[]>[] sizeClasses;
+    private final long maxPooledBytes;
+    private final AtomicLong pooledBytes = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    ByteArrayPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        int classCount = sizeClass(MAX_POOLED_SIZE) + 1;
+        this.sizeClasses = new ConcurrentLinkedQueue[classCount];
+        for (int i = 0; i < classCount; i++) {
+            sizeClasses[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    static ByteArrayPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Gets an array of at least the given size. Arrays above {@link #MAX_POOLED_SIZE} are allocated exactly
+     * and never pooled.
+     */
+    byte[] acquire(int minimumSize) {
+        if (minimumSize > MAX_POOLED_SIZE) {
+            return new byte[minimumSize];
+        }
+        int sizeClass = sizeClass(minimumSize);
+        byte[] array = sizeClasses[sizeClass].poll();
+        if (array != null) {
+            pooledBytes.addAndGet(-array.length);
+            return array;
+        }
+        return new byte[MIN_POOLED_SIZE << sizeClass];
+    }
+
+    /**
+     * Returns an array to the pool. Arrays that were not acquired from a pool, or that do not fit within the
+     * pool's byte limit, are left to the garbage collector.
+     */
+    void release(byte[] array) {
+        if (array == null || array.length > MAX_POOLED_SIZE || array.length < MIN_POOLED_SIZE
+                || Integer.bitCount(array.length) != 1) {
+            return;
+        }
+        if (pooledBytes.addAndGet(array.length) > maxPooledBytes) {
+            pooledBytes.addAndGet(-array.length);
+            return;
+        }
+        sizeClasses[sizeClass(array.length)].offer(array);
+    }
+
+    long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    private static int sizeClass(int size) {
+        if (size <= MIN_POOLED_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_POOLED_SIZE);
+    }
+}
@@ -0,0 +1,100 @@
+package software.amazon.payloadoffloading;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Writes the content of a ranged GetObject response into a slice of a shared array, so that the parts of a
+ * payload downloaded in parallel are assembled without further copies.
+ */
+class ByteRangeAsyncResponseTransformer implements AsyncResponseTransformer<GetObjectResponse, Void> {
+    private final byte[] target;
+    private final int offset;
+    private final int length;
+    private volatile CompletableFuture<Void> future;
+    private volatile Subscription subscription;
+    private int position;
+
+    ByteRangeAsyncResponseTransformer(byte[] target, int offset, int length) {
+        this.target = target;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public CompletableFuture<Void> prepare() {
+        position = 0;
+        CompletableFuture<Void> attempt = new CompletableFuture<>();
+        attempt.whenComplete((v, t) -> {
+            // Stop receiving content once the part is cancelled.
+            Subscription current = subscription;
+            if (t != null && current != null) {
+                current.cancel();
+            }
+        });
+        future = attempt;
+        return attempt;
+    }
+
+    @Override
+    public void onResponse(GetObjectResponse response) {
+    }
+
+    @Override
+    public void onStream(SdkPublisher<ByteBuffer> publisher) {
+        publisher.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                if (future.isDone()) {
+                    s.cancel();
+                    return;
+                }
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer byteBuffer) {
+                if (future.isDone()) {
+                    return;
+                }
+                int remaining = byteBuffer.remaining();
+                if (position + remaining > length) {
+                    subscription.cancel();
+                    exceptionOccurred(SdkClientException.create(
+                            "Received more bytes than requested for range starting at " + offset + "."));
+                    return;
+                }
+                byteBuffer.get(target, offset + position, remaining);
+                position += remaining;
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                exceptionOccurred(t);
+            }
+
+            @Override
+            public void onComplete() {
+                if (position != length) {
+                    exceptionOccurred(SdkClientException.create("Received " + position + " bytes instead of " + length
+                            + " for range starting at " + offset + "."));
+                    return;
+                }
+                future.complete(null);
+            }
+        });
+    }
+
+    @Override
+    public void exceptionOccurred(Throwable error) {
+        future.completeExceptionally(error);
+    }
+}
@@ -0,0 +1,121 @@
+package software.amazon.payloadoffloading;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Reassembles a payload stored in chunks into a stream. Chunks are downloaded ahead of the reader in parallel on
+ * the given executor, and returned strictly in order, so that at most the given number of chunks are
+ * downloading or waiting to be read besides the one being read.
+ *
+ * <p>A chunk that fails to download fails the read that reaches it with an IOException, whose cause is the
+ * exception thrown by the chunk fetcher. Closing the stream cancels the downloads in flight.</p>
+ */
+class ChunkedPayloadInputStream extends InputStream {
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private final int chunkCount;
+    private final IntFunction<byte[]> chunkFetcher;
+    private final ExecutorService executor;
+    private final Deque<Future<byte[]>> pendingChunks = new ArrayDeque<>();
+    private int nextChunk;
+    private byte[] chunk = NO_BYTES;
+    private int position;
+    private boolean closed;
+
+    /**
+     * @param chunkCount   number of chunks.
+     * @param parallelism  maximum number of chunks downloaded ahead of the reader.
+     * @param chunkFetcher function that downloads the chunk of an index.
+     * @param executor     executor running the downloads, shared with other streams and not shut down.
+     */
+    ChunkedPayloadInputStream(int chunkCount, int parallelism, IntFunction<byte[]> chunkFetcher,
+                              ExecutorService executor) {
+        this.chunkCount = chunkCount;
+        this.chunkFetcher = chunkFetcher;
+        this.executor = executor;
+        for (int i = 0; i < parallelism; i++) {
+            fetchNextChunk();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextByteAvailable()) {
+            return -1;
+        }
+        return chunk[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextByteAvailable()) {
+            return -1;
+        }
+        int read = Math.min(len, chunk.length - position);
+        System.arraycopy(chunk, position, b, off, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return chunk.length - position;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Future<byte[]> pendingChunk : pendingChunks) {
+            pendingChunk.cancel(true);
+        }
+        pendingChunks.clear();
+        chunk = NO_BYTES;
+    }
+
+    private void fetchNextChunk() {
+        if (nextChunk < chunkCount) {
+            int index = nextChunk++;
+            pendingChunks.add(executor.submit(() -> chunkFetcher.apply(index)));
+        }
+    }
+
+    private boolean nextByteAvailable() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+        while (position == chunk.length) {
+            Future<byte[]> pendingChunk = pendingChunks.poll();
+            if (pendingChunk == null) {
+                return false;
+            }
+            // Keeps the downloads ahead of the reader while it waits for this chunk.
+            fetchNextChunk();
+            try {
+                chunk = pendingChunk.get();
+            } catch (ExecutionException e) {
+                close();
+                throw new IOException("Failed to get a chunk of the payload.", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new InterruptedIOException("Interrupted while waiting for a chunk of the payload.");
+            }
+            position = 0;
+        }
+        return true;
+    }
+}
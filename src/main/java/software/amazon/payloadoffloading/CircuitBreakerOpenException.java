@@ -0,0 +1,31 @@
+package software.amazon.payloadoffloading;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+/**
+ * Thrown instead of sending a request to S3 while the circuit of its bucket and operation is open, because
+ * recent requests failed or were too slow.
+ *
+ * @see S3CircuitBreaker
+ */
+public class CircuitBreakerOpenException extends SdkClientException {
+    private static final long serialVersionUID = 1L;
+
+    private final String s3BucketName;
+    private final S3CircuitBreaker.Operation operation;
+
+    CircuitBreakerOpenException(String s3BucketName, S3CircuitBreaker.Operation operation) {
+        super(SdkClientException.builder().message("Circuit breaker is open for " + operation
+                + " requests to S3, Bucket name: " + s3BucketName + "."));
+        this.s3BucketName = s3BucketName;
+        this.operation = operation;
+    }
+
+    public String getS3BucketName() {
+        return s3BucketName;
+    }
+
+    public S3CircuitBreaker.Operation getOperation() {
+        return operation;
+    }
+}
@@ -0,0 +1,132 @@
+package software.amazon.payloadoffloading;
+
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time by which an operation on a payload must finish, shared by all of its requests.
+ */
+final class Deadline {
+    static final Deadline NONE = new Deadline(null, Long.MAX_VALUE);
+
+    private final Duration timeout;
+    private final long deadlineNanos;
+
+    private Deadline(Duration timeout, long deadlineNanos) {
+        this.timeout = timeout;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @param timeout timeout of the operation, or null for none.
+     */
+    static Deadline after(Duration timeout) {
+        if (timeout == null) {
+            return NONE;
+        }
+        return new Deadline(timeout, System.nanoTime() + timeout.toNanos());
+    }
+
+    long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    boolean isExpired() {
+        return this != NONE && remainingNanos() <= 0;
+    }
+
+    /**
+     * @return the remaining time to pass on as the timeout of a part of the operation, or null without a deadline.
+     */
+    Duration remaining() {
+        if (this == NONE) {
+            return null;
+        }
+        return Duration.ofNanos(Math.max(remainingNanos(), TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
+    /**
+     * @return whether the deadline leaves more than the given time, always true without a deadline.
+     */
+    boolean hasRemaining(Duration duration) {
+        return this == NONE || remainingNanos() > duration.toNanos();
+    }
+
+    /**
+     * Limits a request, including its retries, to the remaining time with the API call timeout of the client.
+     */
+    <B extends AwsRequest.Builder> B apply(B requestBuilder) {
+        if (this != NONE) {
+            Duration remaining = remaining();
+            requestBuilder.overrideConfiguration(o -> o.apiCallTimeout(remaining));
+        }
+        return requestBuilder;
+    }
+
+    /**
+     * @return whether the failure is caused by this deadline, either directly or through the API call timeout
+     * of a request.
+     */
+    boolean isTimeout(Throwable t) {
+        return this != NONE && (t instanceof PayloadTimeoutException
+                || t instanceof ApiCallTimeoutException
+                || (t != null && t.getCause() instanceof ApiCallTimeoutException));
+    }
+
+    PayloadTimeoutException timeoutException(String operation, Throwable cause) {
+        return new PayloadTimeoutException(operation + " did not finish within its timeout of "
+                + timeout.toMillis() + " ms.", timeout, cause);
+    }
+
+    /**
+     * Runs the action when the deadline passes.
+     *
+     * @return the scheduled action, to be cancelled once the operation finished, or null without a deadline.
+     */
+    ScheduledFuture<?> onExpiry(Runnable action) {
+        if (this == NONE) {
+            return null;
+        }
+        return Timer.SCHEDULER.schedule(action, remainingNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs the action after the delay on the shared timer thread, which the action must not block.
+     */
+    static ScheduledFuture<?> schedule(Runnable action, Duration delay) {
+        return Timer.SCHEDULER.schedule(action, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Fails the future of an operation with a {@link PayloadTimeoutException} when the deadline passes, which
+     * also cancels the requests it was derived from.
+     */
+    <T> CompletableFuture<T> enforce(CompletableFuture<T> future, String operation) {
+        ScheduledFuture<?> expiry = onExpiry(() -> future.completeExceptionally(timeoutException(operation, null)));
+        if (expiry != null) {
+            future.whenComplete((v, t) -> expiry.cancel(false));
+        }
+        return future;
+    }
+
+    private static final class Timer {
+        static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+        private static ScheduledExecutorService createScheduler() {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "payload-offloading-deadline");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package software.amazon.payloadoffloading;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.annotations.ThreadSafe;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A persistent, size bounded cache of payloads read from Amazon S3, kept as one file per object
+ * in a local directory.
+ *
+ * <p>Entries are evicted in least-recently-used order once the total size of the cached files
+ * exceeds the configured limit. Hits are served through a memory-mapped read of the cached file.
+ * The index is rebuilt from the directory contents on construction, using file modification
+ * times as the access order, so the cache survives process restarts.</p>
+ *
+ * <p>A cache is attached to {@link S3Dao#withPayloadCache(DiskPayloadCache)} or
+ * {@link S3AsyncDao#withPayloadCache(DiskPayloadCache)}, which invalidate the cached entry of an
+ * object whenever they store or delete it. Readers take the invalidation generation of an object
+ * before reading it from S3 and pass it to {@link #put(String, String, String, long)}, so that a read
+ * racing with a store or delete does not cache the content it replaced.</p>
+ */
+@ThreadSafe
+public class DiskPayloadCache {
+    private static final Logger LOG = LoggerFactory.getLogger(DiskPayloadCache.class);
+    private static final String ENTRY_SUFFIX = ".payload";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int GENERATION_STRIPES = 4096;
+
+    private final Path directory;
+    private final long maxSizeInBytes;
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeInBytes;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    // Invalidation generations of the entries, shared by the entries hashing to the same stripe. Changed under
+    // the lock.
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    /**
+     * @param directory      Directory the cached payloads are written to. It is created if it does not exist,
+     *                       and must not be shared with anything other than a single cache instance.
+     * @param maxSizeInBytes Upper bound on the total size of the cached payloads.
+     */
+    public DiskPayloadCache(Path directory, long maxSizeInBytes) {
+        if (directory == null || maxSizeInBytes <= 0) {
+            String errorMessage = "Cache directory cannot be null and maximum cache size must be positive.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        this.directory = directory;
+        this.maxSizeInBytes = maxSizeInBytes;
+        rebuildIndex();
+    }
+
+    /**
+     * Gets a cached payload.
+     *
+     * @return the cached payload, or null if the object is not cached.
+     */
+    public String get(String s3BucketName, String s3Key) {
+        String entryName = entryName(s3BucketName, s3Key);
+        synchronized (this) {
+            if (index.get(entryName) == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+        }
+
+        Path entryPath = directory.resolve(entryName);
+        try (FileChannel channel = FileChannel.open(entryPath, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            String payload = StandardCharsets.UTF_8.decode(mapped).toString();
+            touch(entryPath);
+            hitCount.incrementAndGet();
+            return payload;
+        } catch (NoSuchFileException e) {
+            // Evicted by a concurrent writer between the index lookup and the read, and maybe cached again since.
+            synchronized (this) {
+                if (!Files.exists(entryPath)) {
+                    remove(entryName);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to read cached payload, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".", e);
+            invalidate(s3BucketName, s3Key);
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Gets the invalidation generation of an object, to take before reading the object from S3 and pass to
+     * {@link #put(String, String, String, long)} with the content read. Objects may share a generation, in which
+     * case invalidating one of them also drops reads of the others.
+     */
+    public long getGeneration(String s3BucketName, String s3Key) {
+        return generations.get(stripe(entryName(s3BucketName, s3Key)));
+    }
+
+    /**
+     * Adds a payload to the cache, evicting least recently used entries as needed. Payloads larger than
+     * the cache itself are not cached. Failures are logged and otherwise ignored.
+     */
+    public void put(String s3BucketName, String s3Key, String payload) {
+        put(s3BucketName, s3Key, payload, -1);
+    }
+
+    /**
+     * Adds a payload read from S3 to the cache, unless the object was invalidated since the given generation
+     * was taken, since the payload may then be older than the object.
+     *
+     * @param generation generation from {@link #getGeneration(String, String)} taken before the read, or -1 to
+     *                   add the payload in any case.
+     */
+    public void put(String s3BucketName, String s3Key, String payload, long generation) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxSizeInBytes) {
+            return;
+        }
+
+        String entryName = entryName(s3BucketName, s3Key);
+        Path tempPath = directory.resolve(UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            Files.write(tempPath, bytes);
+        } catch (IOException e) {
+            LOG.warn("Failed to cache payload, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".", e);
+            deleteQuietly(tempPath);
+            return;
+        }
+
+        // The entry files change only under the lock, together with the index and the generations.
+        synchronized (this) {
+            if (generation >= 0 && generations.get(stripe(entryName)) != generation) {
+                deleteQuietly(tempPath);
+                return;
+            }
+            try {
+                Files.move(tempPath, directory.resolve(entryName),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                LOG.warn("Failed to cache payload, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".",
+                        e);
+                deleteQuietly(tempPath);
+                return;
+            }
+            Long previous = index.put(entryName, (long) bytes.length);
+            sizeInBytes += bytes.length - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+            while (sizeInBytes > maxSizeInBytes && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                if (eldest.getKey().equals(entryName)) {
+                    continue;
+                }
+                sizeInBytes -= eldest.getValue();
+                deleteQuietly(directory.resolve(eldest.getKey()));
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes a payload from the cache, if present.
+     */
+    public synchronized void invalidate(String s3BucketName, String s3Key) {
+        String entryName = entryName(s3BucketName, s3Key);
+        generations.incrementAndGet(stripe(entryName));
+        if (remove(entryName)) {
+            deleteQuietly(directory.resolve(entryName));
+        }
+    }
+
+    /**
+     * @return the total size of the cached payloads.
+     */
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * @return the number of cached payloads.
+     */
+    public synchronized int getEntryCount() {
+        return index.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private synchronized boolean remove(String entryName) {
+        Long size = index.remove(entryName);
+        if (size == null) {
+            return false;
+        }
+        sizeInBytes -= size;
+        return true;
+    }
+
+    private void rebuildIndex() {
+        List<Path> entries = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    String fileName = path.getFileName().toString();
+                    if (fileName.endsWith(TEMP_SUFFIX)) {
+                        // Left behind by a write interrupted by a crash.
+                        deleteQuietly(path);
+                    } else if (fileName.endsWith(ENTRY_SUFFIX)) {
+                        entries.add(path);
+                    }
+                }
+            }
+            entries.sort(Comparator.comparing(DiskPayloadCache::lastModified));
+            for (Path path : entries) {
+                long size = Files.size(path);
+                index.put(path.getFileName().toString(), size);
+                sizeInBytes += size;
+            }
+        } catch (IOException e) {
+            String errorMessage = "Failed to initialize the payload cache directory " + directory + ".";
+            LOG.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        }
+
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (sizeInBytes > maxSizeInBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            sizeInBytes -= eldest.getValue();
+            deleteQuietly(directory.resolve(eldest.getKey()));
+            it.remove();
+        }
+        LOG.info("Payload cache loaded, Directory: " + directory + ", Entries: " + index.size()
+                + ", Size in bytes: " + sizeInBytes + ".");
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void touch(Path path) {
+        try {
+            // Persists the access order so that it can be recovered on restart.
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            LOG.debug("Failed to update access time of cached payload " + path + ".", e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete cached payload file " + path + ".", e);
+        }
+    }
+
+    private static int stripe(String entryName) {
+        return (entryName.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    private static String entryName(String s3BucketName, String s3Key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((s3BucketName + "/" + s3Key).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2 + ENTRY_SUFFIX.length());
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.append(ENTRY_SUFFIX).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package software.amazon.payloadoffloading;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the content of a GetObject response into a region of a shared file with positional writes, so that
+ * the chunks of a payload downloaded in parallel are assembled in one file without being buffered, and verifies
+ * the size and checksum of the region as it is written. Writes land in the page cache, so they do not hold up the
+ * thread receiving the content for long.
+ */
+class FileRangeAsyncResponseTransformer implements AsyncResponseTransformer<GetObjectResponse, Void> {
+    private final FileChannel channel;
+    private final long offset;
+    private final long length;
+    private final String checksum;
+    private final CRC32 crc32 = new CRC32();
+    private volatile CompletableFuture<Void> future;
+    private volatile Subscription subscription;
+    private long position;
+
+    /**
+     * @param length   length of the region in bytes, or -1 if unknown.
+     * @param checksum checksum to verify the region against, or null to skip verification.
+     */
+    FileRangeAsyncResponseTransformer(FileChannel channel, long offset, long length, String checksum) {
+        this.channel = channel;
+        this.offset = offset;
+        this.length = length;
+        this.checksum = checksum;
+    }
+
+    @Override
+    public CompletableFuture<Void> prepare() {
+        position = 0;
+        crc32.reset();
+        CompletableFuture<Void> attempt = new CompletableFuture<>();
+        attempt.whenComplete((v, t) -> {
+            // Stop receiving content once the region is cancelled.
+            Subscription current = subscription;
+            if (t != null && current != null) {
+                current.cancel();
+            }
+        });
+        future = attempt;
+        return attempt;
+    }
+
+    @Override
+    public void onResponse(GetObjectResponse response) {
+    }
+
+    @Override
+    public void onStream(SdkPublisher<ByteBuffer> publisher) {
+        publisher.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                if (future.isDone()) {
+                    s.cancel();
+                    return;
+                }
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer byteBuffer) {
+                if (future.isDone()) {
+                    return;
+                }
+                int remaining = byteBuffer.remaining();
+                if (length >= 0 && position + remaining > length) {
+                    subscription.cancel();
+                    exceptionOccurred(SdkClientException.create("S3 object is longer than the expected " + length
+                            + " bytes."));
+                    return;
+                }
+                crc32.update(byteBuffer.duplicate());
+                try {
+                    while (byteBuffer.hasRemaining()) {
+                        position += channel.write(byteBuffer, offset + position);
+                    }
+                } catch (IOException e) {
+                    subscription.cancel();
+                    exceptionOccurred(SdkClientException.create("Failed to write the payload to a file.", e));
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                exceptionOccurred(t);
+            }
+
+            @Override
+            public void onComplete() {
+                if (length >= 0 && position != length) {
+                    exceptionOccurred(SdkClientException.create("S3 object has " + position
+                            + " bytes instead of the expected " + length + " bytes."));
+                    return;
+                }
+                try {
+                    Util.verifyChecksum(checksum, crc32);
+                } catch (RuntimeException e) {
+                    exceptionOccurred(e);
+                    return;
+                }
+                future.complete(null);
+            }
+        });
+    }
+
+    @Override
+    public void exceptionOccurred(Throwable error) {
+        future.completeExceptionally(error);
+    }
+}
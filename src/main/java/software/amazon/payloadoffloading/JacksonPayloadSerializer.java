@@ -0,0 +1,57 @@
+package software.amazon.payloadoffloading;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import software.amazon.awssdk.annotations.ThreadSafe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Serializes payload objects to UTF-8 JSON and back with a Jackson {@link ObjectMapper}, writing straight into
+ * the content stored in S3 and reading straight from the content read from S3.
+ *
+ * <p>The reader and writer for the payload type are resolved once, when the serializer is created, so that an
+ * instance is best created once per payload type and shared. Stored payloads remain plain JSON text, which can
+ * also be read with {@link PayloadStore#getOriginalPayload(String)}.</p>
+ *
+ * @param <T> type of the payload.
+ */
+@ThreadSafe
+public class JacksonPayloadSerializer<T> implements PayloadSerializer<T>, PayloadDeserializer<T> {
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+
+    public JacksonPayloadSerializer(ObjectMapper objectMapper, Class<T> payloadType) {
+        this(objectMapper, objectMapper.constructType(payloadType));
+    }
+
+    /**
+     * @param payloadType type of the payload, for generic types such as {@code List<Order>}.
+     */
+    public JacksonPayloadSerializer(ObjectMapper objectMapper, TypeReference<T> payloadType) {
+        this(objectMapper, objectMapper.constructType(payloadType));
+    }
+
+    private JacksonPayloadSerializer(ObjectMapper objectMapper, JavaType payloadType) {
+        // The streams belong to the store, which closes them itself.
+        this.writer = objectMapper.writerFor(payloadType).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.reader = objectMapper.readerFor(payloadType).without(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+
+    @Override
+    public void serialize(T payload, OutputStream out) throws IOException {
+        writer.writeValue(out, payload);
+    }
+
+    @Override
+    public T deserialize(InputStream in) throws IOException {
+        return reader.readValue(in);
+    }
+}
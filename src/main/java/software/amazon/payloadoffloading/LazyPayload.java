@@ -0,0 +1,150 @@
+package software.amazon.payloadoffloading;
+
+import software.amazon.awssdk.annotations.ThreadSafe;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * A handle to an offloaded payload that is only fetched from the store when it is first accessed.
+ *
+ * <p>Messages that are dropped or filtered before their body is read never cost a GET request. The handle
+ * can be passed between threads; concurrent accesses share a single fetch, and a failed fetch is retried on
+ * the next access. Every access gets a future of its own, so that cancelling it, for example on a timeout, does
+ * not affect the other accesses. {@link #prefetch(Executor)} starts the fetch in the background ahead of the first access.</p>
+ *
+ * @see PayloadStore#getLazyPayload(String)
+ * @see PayloadStoreAsync#getLazyPayload(String)
+ */
+@ThreadSafe
+public class LazyPayload {
+    private final String payloadPointer;
+    private final Function<String, CompletableFuture<String>> fetcher;
+    private final AtomicReference<CompletableFuture<String>> fetch = new AtomicReference<>();
+
+    /**
+     * @param payloadPointer pointer to the payload.
+     * @param fetcher        function that starts fetching the payload for a pointer.
+     */
+    public LazyPayload(String payloadPointer, Function<String, CompletableFuture<String>> fetcher) {
+        this.payloadPointer = payloadPointer;
+        this.fetcher = fetcher;
+    }
+
+    static LazyPayload of(String payloadPointer, PayloadStore payloadStore) {
+        return new LazyPayload(payloadPointer, pointer -> {
+            CompletableFuture<String> result = new CompletableFuture<>();
+            try {
+                result.complete(payloadStore.getOriginalPayload(pointer));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        });
+    }
+
+    public String getPayloadPointer() {
+        return payloadPointer;
+    }
+
+    /**
+     * Gets the payload, fetching it on the calling thread if it was not fetched yet.
+     *
+     * @return the original payload.
+     * @throws software.amazon.awssdk.core.exception.SdkException as thrown by the store when the fetch fails.
+     */
+    public String get() {
+        try {
+            return getAsync().join();
+        } catch (CompletionException e) {
+            Throwable t = Util.unwrapFutureException(e);
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the payload asynchronously, starting the fetch if it was not started yet.
+     *
+     * @return future value of the original payload, which may be cancelled without cancelling the fetch.
+     */
+    public CompletableFuture<String> getAsync() {
+        CompletableFuture<String> shared = start(Runnable::run);
+        CompletableFuture<String> copy = new CompletableFuture<>();
+        shared.whenComplete((payload, t) -> {
+            if (t != null) {
+                copy.completeExceptionally(t);
+            } else {
+                copy.complete(payload);
+            }
+        });
+        return copy;
+    }
+
+    /**
+     * Starts fetching the payload on the given executor, if it was not started yet. If the executor rejects the
+     * fetch, the payload is fetched on the next access instead.
+     *
+     * @return this LazyPayload.
+     */
+    public LazyPayload prefetch(Executor executor) {
+        start(executor);
+        return this;
+    }
+
+    /**
+     * @return true if the payload was fetched successfully, so that {@link #get()} returns without blocking.
+     */
+    public boolean isFetched() {
+        CompletableFuture<String> current = fetch.get();
+        return current != null && current.isDone() && !current.isCompletedExceptionally();
+    }
+
+    private CompletableFuture<String> start(Executor executor) {
+        while (true) {
+            CompletableFuture<String> current = fetch.get();
+            if (current != null) {
+                return current;
+            }
+            CompletableFuture<String> created = new CompletableFuture<>();
+            if (fetch.compareAndSet(null, created)) {
+                // Let the next access retry a fetch that failed or was cancelled.
+                created.whenComplete((payload, t) -> {
+                    if (t != null) {
+                        fetch.compareAndSet(created, null);
+                    }
+                });
+                try {
+                    executor.execute(() -> run(created));
+                } catch (RejectedExecutionException e) {
+                    // Saturated or shut down, the next access retries.
+                    created.completeExceptionally(e);
+                }
+                return created;
+            }
+        }
+    }
+
+    private void run(CompletableFuture<String> created) {
+        CompletableFuture<String> source;
+        try {
+            source = fetcher.apply(payloadPointer);
+        } catch (RuntimeException e) {
+            source = new CompletableFuture<>();
+            source.completeExceptionally(e);
+        }
+        source.whenComplete((payload, t) -> {
+            if (t != null) {
+                created.completeExceptionally(Util.unwrapFutureException(t));
+            } else {
+                created.complete(payload);
+            }
+        });
+    }
+}
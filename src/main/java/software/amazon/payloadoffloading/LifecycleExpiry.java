@@ -0,0 +1,205 @@
+package software.amazon.payloadoffloading;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.AbortIncompleteMultipartUpload;
+import software.amazon.awssdk.services.s3.model.BucketLifecycleConfiguration;
+import software.amazon.awssdk.services.s3.model.ExpirationStatus;
+import software.amazon.awssdk.services.s3.model.LifecycleExpiration;
+import software.amazon.awssdk.services.s3.model.LifecycleRule;
+import software.amazon.awssdk.services.s3.model.LifecycleRuleFilter;
+import software.amazon.awssdk.services.s3.model.Tag;
+import software.amazon.awssdk.utils.http.SdkHttpUtils;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Expiry of stored payloads by an S3 lifecycle rule instead of per-payload DeleteObject requests.
+ *
+ * <p>Payloads are marked for the rule either with an object tag ({@link #byTag(int)}) or by being stored under
+ * a prefix with one sub-prefix per day ({@link #byPrefix(int)}). Once a store uses lifecycle expiry, deleting a
+ * payload the rule expires does not send any request to S3; the object is reclaimed by S3 after the configured
+ * number of days. With prefix expiry, payloads stored outside of the prefix, for example before it was turned on,
+ * are still deleted.
+ * The matching rule is generated by {@link #toLifecycleConfiguration()} and must be applied to the bucket, for
+ * example:</p>
+ *
+ * <pre>
+ *     s3.putBucketLifecycleConfiguration(r -&gt; r.bucket(bucketName)
+ *             .lifecycleConfiguration(lifecycleExpiry.toLifecycleConfiguration()));
+ * </pre>
+ *
+ * <p>Tagging objects requires the s3:PutObjectTagging permission in addition to s3:PutObject.</p>
+ */
+public class LifecycleExpiry {
+    private static final Logger LOG = LoggerFactory.getLogger(LifecycleExpiry.class);
+    static final String DEFAULT_TAG_KEY = "payload-offloading-expiry";
+    static final String DEFAULT_PREFIX = "payload-offloading-expiry/";
+    private static final DateTimeFormatter DAY_PREFIX_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy/MM/dd/").withZone(ZoneOffset.UTC);
+
+    /**
+     * How stored payloads are marked for the lifecycle rule.
+     */
+    public enum Mode {
+        TAG,
+        PREFIX
+    }
+
+    private final Mode mode;
+    private final int expirationDays;
+    private final String tagKey;
+    private final String prefix;
+
+    private LifecycleExpiry(Mode mode, int expirationDays, String tagKey, String prefix) {
+        if (expirationDays < 1) {
+            String errorMessage = "Lifecycle expiration days must be at least 1.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        this.mode = mode;
+        this.expirationDays = expirationDays;
+        this.tagKey = tagKey;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Tags stored payloads with {@value #DEFAULT_TAG_KEY}.
+     *
+     * @param expirationDays days after which S3 expires the payloads.
+     */
+    public static LifecycleExpiry byTag(int expirationDays) {
+        return byTag(DEFAULT_TAG_KEY, expirationDays);
+    }
+
+    /**
+     * Tags stored payloads with the given tag key, whose value is the number of days until expiry.
+     *
+     * @param tagKey         key of the object tag.
+     * @param expirationDays days after which S3 expires the payloads.
+     */
+    public static LifecycleExpiry byTag(String tagKey, int expirationDays) {
+        return new LifecycleExpiry(Mode.TAG, expirationDays, tagKey, null);
+    }
+
+    /**
+     * Stores payloads under {@value #DEFAULT_PREFIX}.
+     *
+     * @param expirationDays days after which S3 expires the payloads.
+     */
+    public static LifecycleExpiry byPrefix(int expirationDays) {
+        return byPrefix(DEFAULT_PREFIX, expirationDays);
+    }
+
+    /**
+     * Stores payloads under the given prefix, followed by the UTC day they were stored on, for example
+     * {@code prefix/2024/01/31/key}.
+     *
+     * @param prefix         key prefix matched by the lifecycle rule.
+     * @param expirationDays days after which S3 expires the payloads.
+     */
+    public static LifecycleExpiry byPrefix(String prefix, int expirationDays) {
+        return new LifecycleExpiry(Mode.PREFIX, expirationDays, null, prefix);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getExpirationDays() {
+        return expirationDays;
+    }
+
+    /**
+     * @return the object tag key, or null when payloads are marked by prefix.
+     */
+    public String getTagKey() {
+        return tagKey;
+    }
+
+    /**
+     * @return the key prefix, or null when payloads are marked by tag.
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the URL encoded tagging to store payloads with, or null when payloads are marked by prefix.
+     */
+    public String getObjectTagging() {
+        if (mode != Mode.TAG) {
+            return null;
+        }
+        return SdkHttpUtils.urlEncode(tagKey) + "=" + SdkHttpUtils.urlEncode(tagValue());
+    }
+
+    /**
+     * @param s3Key key the payload would be stored under without lifecycle expiry.
+     * @return the key to store the payload under.
+     */
+    public String getObjectKey(String s3Key) {
+        return getObjectKey(s3Key, Instant.now());
+    }
+
+    String getObjectKey(String s3Key, Instant now) {
+        if (mode != Mode.PREFIX) {
+            return s3Key;
+        }
+        return prefix + DAY_PREFIX_FORMAT.format(now) + s3Key;
+    }
+
+    /**
+     * @param s3Key key of a stored payload.
+     * @return whether the lifecycle rule expires the payload: always when payloads are marked by tag, and only under
+     * the prefix when payloads are marked by prefix.
+     */
+    public boolean expires(String s3Key) {
+        return mode != Mode.PREFIX || s3Key.startsWith(prefix);
+    }
+
+    /**
+     * @return the lifecycle rule that expires the payloads marked by this policy. Rules filtering by prefix also
+     * abort incomplete multipart uploads after a day, which S3 does not allow for rules filtering by tag.
+     */
+    public LifecycleRule toLifecycleRule() {
+        LifecycleRuleFilter.Builder filter = LifecycleRuleFilter.builder();
+        String ruleId;
+        if (mode == Mode.TAG) {
+            filter.tag(Tag.builder().key(tagKey).value(tagValue()).build());
+            ruleId = "expire-" + tagKey + "-" + tagValue();
+        } else {
+            filter.prefix(prefix);
+            ruleId = "expire-" + prefix;
+        }
+        LifecycleRule.Builder rule = LifecycleRule.builder()
+                .id(ruleId)
+                .status(ExpirationStatus.ENABLED)
+                .filter(filter.build())
+                .expiration(LifecycleExpiration.builder().days(expirationDays).build());
+        if (mode == Mode.PREFIX) {
+            rule.abortIncompleteMultipartUpload(AbortIncompleteMultipartUpload.builder()
+                    .daysAfterInitiation(1)
+                    .build());
+        }
+        return rule.build();
+    }
+
+    /**
+     * Generates a bucket lifecycle configuration holding only {@link #toLifecycleRule()}. When the bucket
+     * already has lifecycle rules, add the rule to them instead, since putting a configuration replaces all
+     * existing rules.
+     */
+    public BucketLifecycleConfiguration toLifecycleConfiguration() {
+        return BucketLifecycleConfiguration.builder()
+                .rules(toLifecycleRule())
+                .build();
+    }
+
+    private String tagValue() {
+        return expirationDays + "d";
+    }
+}
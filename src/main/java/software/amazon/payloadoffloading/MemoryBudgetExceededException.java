@@ -0,0 +1,28 @@
+package software.amazon.payloadoffloading;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+/**
+ * Thrown instead of storing or getting a payload whose bytes do not fit in the memory budget, either because
+ * the payload is larger than the whole budget, or because not enough of the budget was released within the
+ * maximum wait.
+ *
+ * @see PayloadMemoryBudget
+ */
+public class MemoryBudgetExceededException extends SdkClientException {
+    private static final long serialVersionUID = 1L;
+
+    private final long requestedBytes;
+
+    MemoryBudgetExceededException(String message, long requestedBytes) {
+        super(SdkClientException.builder().message(message));
+        this.requestedBytes = requestedBytes;
+    }
+
+    /**
+     * @return the number of payload bytes that could not be reserved.
+     */
+    public long getRequestedBytes() {
+        return requestedBytes;
+    }
+}
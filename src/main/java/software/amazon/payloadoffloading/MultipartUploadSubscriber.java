@@ -0,0 +1,321 @@
+package software.amazon.payloadoffloading;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Stores content of unknown length, published as byte buffers, in S3 with a multipart upload while it is
+ * produced.
+ *
+ * <p>Content is collected into parts of the part size, which are uploaded as soon as they are full and fewer
+ * than the maximum number of parts are in flight. A buffer holding several parts is copied only as far as there
+ * is room, and the rest of it is copied as parts finish. The publisher is only asked for more content once the
+ * previous buffer was copied, and the buffers of uploaded parts are reused, so that memory stays bounded by that
+ * number of parts plus one whatever the size of the content. Content that ends before the first part is full is
+ * stored with a single PUT.</p>
+ *
+ * <p>When the future returned by {@link #future()} fails, including when it is cancelled or times out, the
+ * subscription is cancelled and the multipart upload is aborted once its parts in flight finished.</p>
+ */
+final class MultipartUploadSubscriber implements Subscriber<ByteBuffer> {
+    private static final Logger LOG = LoggerFactory.getLogger(MultipartUploadSubscriber.class);
+
+    private final S3AsyncClient s3Client;
+    private final PutObjectRequest putObjectRequest;
+    private final Deadline deadline;
+    private final int partSize;
+    private final int maxPartsInFlight;
+    private final CompletableFuture<PayloadS3Pointer> result = new CompletableFuture<>();
+    private final AtomicInteger requestsToCheck = new AtomicInteger();
+    private final Object lock = new Object();
+
+    // Guarded by lock.
+    private final CRC32 crc32 = new CRC32();
+    private final Deque<byte[]> freeBuffers = new ArrayDeque<>();
+    private final List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+    private Subscription subscription;
+    private ByteBuffer pending;
+    private CompletableFuture<String> uploadId;
+    private byte[] part;
+    private int partLength;
+    private long payloadSize;
+    private int partsInFlight;
+    private boolean demandPending;
+    private boolean publisherComplete;
+    private boolean ended;
+
+    /**
+     * @param putObjectRequest request to store small content with, from which the multipart upload of larger
+     *                         content takes its bucket, key, encryption and other settings.
+     */
+    MultipartUploadSubscriber(S3AsyncClient s3Client, PutObjectRequest putObjectRequest, Deadline deadline,
+                              int partSize, int maxPartsInFlight) {
+        this.s3Client = s3Client;
+        this.putObjectRequest = putObjectRequest;
+        this.deadline = deadline;
+        this.partSize = partSize;
+        this.maxPartsInFlight = maxPartsInFlight;
+        result.whenComplete((v, t) -> {
+            if (t != null) {
+                cleanUp();
+            }
+        });
+    }
+
+    /**
+     * @return future value of a pointer to the stored content, carrying its size and checksum.
+     */
+    CompletableFuture<PayloadS3Pointer> future() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        synchronized (lock) {
+            if (subscription != null || ended) {
+                s.cancel();
+                return;
+            }
+            subscription = s;
+        }
+        requestMore();
+    }
+
+    @Override
+    public void onNext(ByteBuffer buffer) {
+        synchronized (lock) {
+            demandPending = false;
+            if (ended) {
+                return;
+            }
+            pending = buffer;
+        }
+        resume();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        synchronized (lock) {
+            ended = true;
+            pending = null;
+        }
+        result.completeExceptionally(t);
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (lock) {
+            if (ended) {
+                return;
+            }
+            publisherComplete = true;
+        }
+        resume();
+    }
+
+    /**
+     * Copies what is left of the last published buffer into parts while there is room for them, then either
+     * finishes the upload if the publisher completed or asks it for more content.
+     */
+    private void resume() {
+        CompletableFuture<?> stored = null;
+        synchronized (lock) {
+            copyPending();
+            boolean copied = pending == null && partLength < partSize;
+            if (publisherComplete && !ended && copied
+                    && (uploadId == null || partLength == 0 || partsInFlight < maxPartsInFlight)) {
+                stored = finish();
+            }
+        }
+        if (stored == null) {
+            requestMore();
+            return;
+        }
+        stored.whenComplete((v, t) -> {
+            if (t != null) {
+                result.completeExceptionally(Util.unwrapFutureException(t));
+                return;
+            }
+            synchronized (lock) {
+                result.complete(new PayloadS3Pointer(putObjectRequest.bucket(), putObjectRequest.key(), payloadSize,
+                        null, Util.checksum(crc32)));
+            }
+        });
+    }
+
+    /**
+     * Copies the pending buffer into parts, uploading every full part, until the buffer is copied or the maximum
+     * number of parts is in flight, in which case a full part is held until one of them finishes.
+     */
+    private void copyPending() {
+        // A failed part upload may end the upload while the buffer is copied.
+        while (!ended) {
+            if (partLength == partSize) {
+                if (partsInFlight >= maxPartsInFlight) {
+                    return;
+                }
+                uploadPart();
+            }
+            if (pending == null || !pending.hasRemaining()) {
+                pending = null;
+                return;
+            }
+            if (part == null) {
+                part = freeBuffers.isEmpty() ? new byte[partSize] : freeBuffers.pop();
+            }
+            int length = Math.min(pending.remaining(), partSize - partLength);
+            pending.get(part, partLength, length);
+            crc32.update(part, partLength, length);
+            partLength += length;
+            payloadSize += length;
+        }
+    }
+
+    private CompletableFuture<?> finish() {
+        ended = true;
+        if (uploadId == null) {
+            byte[] content = part != null ? Arrays.copyOf(part, partLength) : new byte[0];
+            return s3Client.putObject(deadline.apply(putObjectRequest.toBuilder()).build(),
+                    AsyncRequestBody.fromBytesUnsafe(content));
+        }
+        if (partLength > 0) {
+            uploadPart();
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]))
+                .thenCompose(v -> completeUpload());
+    }
+
+    private void uploadPart() {
+        if (uploadId == null) {
+            uploadId = s3Client.createMultipartUpload(
+                    deadline.apply(Util.createMultipartUploadRequest(putObjectRequest)).build())
+                    .thenApply(CreateMultipartUploadResponse::uploadId);
+        }
+        int partNumber = parts.size() + 1;
+        byte[] buffer = part;
+        byte[] content = partLength == buffer.length ? buffer : Arrays.copyOf(buffer, partLength);
+        part = null;
+        partLength = 0;
+        partsInFlight++;
+
+        CompletableFuture<CompletedPart> uploaded = uploadId
+            .thenCompose(id -> s3Client.uploadPart(deadline.apply(UploadPartRequest.builder()
+                    .bucket(putObjectRequest.bucket())
+                    .key(putObjectRequest.key())
+                    .uploadId(id)
+                    .partNumber(partNumber))
+                    .build(), AsyncRequestBody.fromBytesUnsafe(content)))
+            .thenApply(response -> CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+        parts.add(uploaded);
+        uploaded.whenComplete((completedPart, t) -> {
+            if (t != null) {
+                result.completeExceptionally(Util.unwrapFutureException(t));
+                return;
+            }
+            synchronized (lock) {
+                partsInFlight--;
+                if (content == buffer && !ended) {
+                    freeBuffers.push(buffer);
+                }
+            }
+            resume();
+        });
+    }
+
+    private CompletableFuture<?> completeUpload() {
+        List<CompletedPart> completedParts = new ArrayList<>();
+        synchronized (lock) {
+            for (CompletableFuture<CompletedPart> uploaded : parts) {
+                completedParts.add(uploaded.join());
+            }
+        }
+        return uploadId.thenCompose(id -> s3Client.completeMultipartUpload(
+                deadline.apply(CompleteMultipartUploadRequest.builder()
+                        .bucket(putObjectRequest.bucket())
+                        .key(putObjectRequest.key())
+                        .uploadId(id)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build()))
+                        .build()));
+    }
+
+    /**
+     * Requests the next buffer if there is room for it. Requesting may deliver buffers synchronously, which call
+     * back into this method, so calls are serialized and repeated instead of recursing.
+     */
+    private void requestMore() {
+        if (requestsToCheck.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            Subscription toRequest = null;
+            synchronized (lock) {
+                if (subscription != null && !ended && !publisherComplete && !demandPending && pending == null
+                        && partLength < partSize && partsInFlight < maxPartsInFlight) {
+                    demandPending = true;
+                    toRequest = subscription;
+                }
+            }
+            if (toRequest != null) {
+                toRequest.request(1);
+            }
+        } while (requestsToCheck.decrementAndGet() != 0);
+    }
+
+    private void cleanUp() {
+        Subscription toCancel;
+        CompletableFuture<String> toAbort;
+        CompletableFuture<?>[] inFlight;
+        synchronized (lock) {
+            toCancel = ended ? null : subscription;
+            ended = true;
+            toAbort = uploadId;
+            inFlight = parts.toArray(new CompletableFuture<?>[0]);
+            pending = null;
+            part = null;
+            freeBuffers.clear();
+        }
+        if (toCancel != null) {
+            toCancel.cancel();
+        }
+        if (toAbort == null) {
+            return;
+        }
+        // Parts still uploading when the upload is aborted could be stored anyway, so they are waited for.
+        CompletableFuture.allOf(inFlight)
+            .handle((v, t) -> null)
+            .thenCompose(v -> toAbort)
+            .thenCompose(id -> s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(putObjectRequest.bucket())
+                    .key(putObjectRequest.key())
+                    .uploadId(id)
+                    .build()))
+            .whenComplete((v, t) -> {
+                if (t != null && toAbort.isDone() && !toAbort.isCompletedExceptionally()) {
+                    LOG.warn("Failed to abort the multipart upload of a payload that could not be stored, Bucket "
+                            + "name: " + putObjectRequest.bucket() + ", Object key: " + putObjectRequest.key()
+                            + ".", Util.unwrapFutureException(t));
+                }
+            });
+    }
+}
@@ -0,0 +1,88 @@
+package software.amazon.payloadoffloading;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.time.Duration;
+
+/**
+ * Timeout of the operations of a payload store, either fixed or derived from the payload size.
+ *
+ * <p>The timeout of an operation covers all of its requests to S3, including retries and the parts of payloads
+ * downloaded with parallel ranged GETs. Operations that exceed it fail with a {@link PayloadTimeoutException}.
+ * Unlike the API call timeout of the S3 client, a size based timeout fits both small and very large payloads:</p>
+ *
+ * <pre>
+ *     // 1 second, plus 1 second for every 10MB, and never more than 2 minutes.
+ *     OperationTimeout.sizeBased(Duration.ofSeconds(1), 10 * 1024 * 1024, Duration.ofMinutes(2));
+ * </pre>
+ */
+public class OperationTimeout {
+    private static final Logger LOG = LoggerFactory.getLogger(OperationTimeout.class);
+
+    private final Duration base;
+    private final long minBytesPerSecond;
+    private final Duration maximum;
+
+    private OperationTimeout(Duration base, long minBytesPerSecond, Duration maximum) {
+        if (base.isNegative() || base.isZero() || minBytesPerSecond < 1 || maximum.compareTo(base) < 0) {
+            String errorMessage = "Operation timeout must be positive, with a positive transfer rate and a maximum"
+                    + " of at least the base timeout.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        this.base = base;
+        this.minBytesPerSecond = minBytesPerSecond;
+        this.maximum = maximum;
+    }
+
+    /**
+     * Applies the same timeout to all operations, regardless of the payload size.
+     */
+    public static OperationTimeout fixed(Duration timeout) {
+        return new OperationTimeout(timeout, Long.MAX_VALUE, timeout);
+    }
+
+    /**
+     * Allows each operation the base timeout plus the time to transfer the payload at the minimum rate, up to
+     * the maximum. Operations on payloads of unknown size, such as reads through pointers without a size, are
+     * allowed the maximum.
+     *
+     * @param base              timeout of operations on empty payloads, covering the request round trips.
+     * @param minBytesPerSecond slowest acceptable transfer rate.
+     * @param maximum           timeout of operations on the largest payloads.
+     */
+    public static OperationTimeout sizeBased(Duration base, long minBytesPerSecond, Duration maximum) {
+        return new OperationTimeout(base, minBytesPerSecond, maximum);
+    }
+
+    /**
+     * @param payloadSize size of the payload in bytes, or -1 if unknown.
+     * @return the timeout of an operation on a payload of the given size.
+     */
+    public Duration forPayloadSize(long payloadSize) {
+        if (payloadSize < 0 || base.equals(maximum)) {
+            return maximum;
+        }
+        if (payloadSize / minBytesPerSecond >= maximum.getSeconds()) {
+            return maximum;
+        }
+        long transferMillis = payloadSize / minBytesPerSecond * 1000
+                + payloadSize % minBytesPerSecond * 1000 / minBytesPerSecond;
+        Duration timeout = base.plusMillis(transferMillis);
+        return timeout.compareTo(maximum) < 0 ? timeout : maximum;
+    }
+
+    public Duration getBase() {
+        return base;
+    }
+
+    public long getMinBytesPerSecond() {
+        return minBytesPerSecond;
+    }
+
+    public Duration getMaximum() {
+        return maximum;
+    }
+}
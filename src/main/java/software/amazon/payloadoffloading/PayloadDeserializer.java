@@ -0,0 +1,21 @@
+package software.amazon.payloadoffloading;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a payload object straight from the content read from S3, without first decoding it to a String.
+ *
+ * @param <T> type of the payload.
+ * @see S3BackedPayloadStore#getOriginalPayload(String, PayloadDeserializer)
+ * @see S3BackedPayloadStoreAsync#getOriginalPayload(String, PayloadDeserializer)
+ * @see JacksonPayloadSerializer
+ */
+@FunctionalInterface
+public interface PayloadDeserializer<T> {
+    /**
+     * Reads the payload from the stream. The stream is only valid until this method returns, and is closed by
+     * the caller.
+     */
+    T deserialize(InputStream in) throws IOException;
+}
@@ -0,0 +1,188 @@
+package software.amazon.payloadoffloading;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A payload read from S3 for random access, for example zip content, held either in memory or, above the spill
+ * threshold of the store that read it, in a temporary file that is memory-mapped so that its content stays off
+ * the heap whatever its size.
+ *
+ * <p>The handle must be closed, which deletes its file. Buffers obtained from the handle must not be used after
+ * it is closed: a mapping is only released once its buffers are garbage collected, so on platforms that do not
+ * delete mapped files the file is deleted on exit instead.</p>
+ *
+ * @see S3BackedPayloadStore#withSpillToDisk(long, Path)
+ * @see S3BackedPayloadStoreAsync#withSpillToDisk(long, Path)
+ */
+public final class PayloadHandle implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(PayloadHandle.class);
+    private static final long MAX_BUFFER_SIZE = Integer.MAX_VALUE;
+
+    private final long size;
+    private final byte[] content;
+    private final Path file;
+    private final FileChannel channel;
+    private MappedByteBuffer mapped;
+    private boolean closed;
+
+    private PayloadHandle(long size, byte[] content, Path file, FileChannel channel) {
+        this.size = size;
+        this.content = content;
+        this.file = file;
+        this.channel = channel;
+    }
+
+    static PayloadHandle inMemory(byte[] content) {
+        return new PayloadHandle(content.length, content, null, null);
+    }
+
+    /**
+     * @param file spill file the payload was written to, which the handle deletes on close.
+     */
+    static PayloadHandle spilled(Path file) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            return new PayloadHandle(channel.size(), null, file, channel);
+        } catch (IOException e) {
+            String errorMessage = "Failed to open the file the payload was written to.";
+            LOG.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        }
+    }
+
+    /**
+     * @return size of the payload in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return whether the payload was written to a temporary file instead of being held in memory.
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * @return the temporary file the payload was written to, for readers that need a file, or null if the
+     * payload is held in memory.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the whole payload as a read-only buffer, mapped from the file of a spilled payload on first use.
+     *
+     * @throws SdkClientException If the payload is larger than 2GB, in which case it can be read in regions
+     *                            with {@link #getContent(long, int)}.
+     */
+    public synchronized ByteBuffer getContent() {
+        checkOpen();
+        if (content != null) {
+            return ByteBuffer.wrap(content).asReadOnlyBuffer();
+        }
+        if (size > MAX_BUFFER_SIZE) {
+            String errorMessage = "Payload of " + size + " bytes is too large for a single buffer, read it in "
+                    + "regions instead.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        if (mapped == null) {
+            mapped = map(0, size);
+        }
+        return mapped.duplicate();
+    }
+
+    /**
+     * Gets a region of the payload as a read-only buffer, mapped from the file of a spilled payload.
+     *
+     * @param position offset of the region in the payload.
+     * @param length   length of the region in bytes.
+     */
+    public synchronized ByteBuffer getContent(long position, int length) {
+        checkOpen();
+        if (position < 0 || length < 0 || position + length > size) {
+            throw new IndexOutOfBoundsException("Region of " + length + " bytes at " + position
+                    + " is outside of the payload of " + size + " bytes.");
+        }
+        if (content != null) {
+            return ByteBuffer.wrap(content, (int) position, length).slice().asReadOnlyBuffer();
+        }
+        if (mapped != null) {
+            ByteBuffer region = mapped.duplicate();
+            region.position((int) position).limit((int) position + length);
+            return region.slice();
+        }
+        return map(position, length);
+    }
+
+    /**
+     * Opens a stream reading the payload from the start, independently of other streams and buffers. The stream
+     * must be closed before the handle.
+     */
+    public synchronized InputStream openStream() {
+        checkOpen();
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
+        try {
+            return Files.newInputStream(file);
+        } catch (IOException e) {
+            String errorMessage = "Failed to read the file the payload was written to.";
+            LOG.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        }
+    }
+
+    /**
+     * Releases the payload and deletes its file. Closing a handle again has no effect.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        mapped = null;
+        if (file == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close the file the payload was written to.", e);
+        }
+        Util.deleteSpillFile(file);
+    }
+
+    private MappedByteBuffer map(long position, long length) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        } catch (IOException e) {
+            String errorMessage = "Failed to map the file the payload was written to.";
+            LOG.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Payload handle is closed.");
+        }
+    }
+}
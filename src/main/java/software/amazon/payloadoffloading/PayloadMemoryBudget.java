@@ -0,0 +1,297 @@
+package software.amazon.payloadoffloading;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.annotations.ThreadSafe;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of payload bytes buffered in memory at once by the stores it is attached to, so that a
+ * burst of large payloads waits or fails instead of exhausting the heap.
+ *
+ * <p>Stores reserve the bytes of a payload before buffering it, and release them once the payload was stored or
+ * read. Payloads being stored are reserved by their size, in UTF-8 bytes for text, before they are encoded.
+ * Payloads being read are reserved by the size recorded in their pointer, and text payloads behind pointers
+ * without a size by the Content-Length of their object, before their content is buffered. Payloads streamed with
+ * bounded buffers are not reserved. Reservations that do not fit wait, in the order
+ * they were made, until enough bytes were released, for at most the maximum wait. A reservation larger than
+ * the whole budget fails right away. Failed reservations throw a {@link MemoryBudgetExceededException}.</p>
+ *
+ * <p>To bound the memory of all stores in the JVM, attach the same budget to each of them:</p>
+ *
+ * <pre>
+ *     PayloadMemoryBudget memoryBudget = new PayloadMemoryBudget(512L * 1024 * 1024)
+ *             .withMaxWait(Duration.ofSeconds(5));
+ *     PayloadStoreAsync payloadStore = new S3BackedPayloadStoreAsync(s3AsyncDao, s3BucketName)
+ *             .withMemoryBudget(memoryBudget);
+ * </pre>
+ *
+ * <p>{@link #getUsedBytes()} and {@link #getWaitingCount()} are meant to be exported as gauges.</p>
+ */
+@ThreadSafe
+public class PayloadMemoryBudget {
+    private static final Logger LOG = LoggerFactory.getLogger(PayloadMemoryBudget.class);
+
+    private final long maxBytes;
+    private final Object lock = new Object();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private volatile Duration maxWait;
+
+    // Guarded by lock.
+    private final Deque<Reservation> waiting = new ArrayDeque<>();
+    private long usedBytes;
+
+    /**
+     * @param maxBytes maximum number of payload bytes buffered at once.
+     */
+    public PayloadMemoryBudget(long maxBytes) {
+        if (maxBytes <= 0) {
+            String errorMessage = "Memory budget must be positive.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param maxWait maximum time a reservation waits for bytes to be released, {@link Duration#ZERO} to fail
+     *                fast when the budget is exhausted, or null to wait without limit. Default: null
+     */
+    public PayloadMemoryBudget withMaxWait(Duration maxWait) {
+        if (maxWait != null && maxWait.isNegative()) {
+            String errorMessage = "Maximum wait for the memory budget must not be negative.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        this.maxWait = maxWait;
+        return this;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the number of payload bytes currently reserved.
+     */
+    public long getUsedBytes() {
+        synchronized (lock) {
+            return usedBytes;
+        }
+    }
+
+    /**
+     * @return the number of reservations currently waiting for bytes to be released.
+     */
+    public int getWaitingCount() {
+        synchronized (lock) {
+            return waiting.size();
+        }
+    }
+
+    /**
+     * @return the number of reservations that failed, because they were too large or waited too long.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Runs the operation with the given number of bytes reserved, waiting for them on the calling thread.
+     *
+     * @throws MemoryBudgetExceededException If the bytes could not be reserved.
+     */
+    <T> T call(long bytes, Supplier<T> operation) {
+        acquire(bytes);
+        try {
+            return operation.get();
+        } finally {
+            release(bytes);
+        }
+    }
+
+    /**
+     * Reserves the given number of bytes, waiting for them on the calling thread. Release them with
+     * {@link #release(long)}.
+     *
+     * @throws MemoryBudgetExceededException If the bytes could not be reserved.
+     */
+    void acquire(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        CompletableFuture<Void> reserved = reserve(bytes);
+        try {
+            reserved.get();
+        } catch (InterruptedException e) {
+            if (!reserved.cancel(false) && !reserved.isCompletedExceptionally()) {
+                release(bytes);
+            }
+            Thread.currentThread().interrupt();
+            throw SdkClientException.create("Interrupted while waiting for the memory budget.", e);
+        } catch (ExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    /**
+     * Starts the operation once the given number of bytes were reserved, and releases them when it completes.
+     * Cancelling the returned future withdraws a waiting reservation, or cancels the operation.
+     *
+     * @return future value of the operation, failing with a {@link MemoryBudgetExceededException} if the bytes
+     * could not be reserved.
+     */
+    <T> CompletableFuture<T> callAsync(long bytes, Supplier<CompletableFuture<T>> operation) {
+        if (bytes <= 0) {
+            return operation.get();
+        }
+        CompletableFuture<Void> reserved = reserve(bytes);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        reserved.whenComplete((v, t) -> {
+            if (t != null) {
+                result.completeExceptionally(t);
+                return;
+            }
+            if (result.isDone()) {
+                release(bytes);
+                return;
+            }
+            CompletableFuture<T> started;
+            try {
+                started = operation.get();
+            } catch (RuntimeException | Error e) {
+                release(bytes);
+                result.completeExceptionally(e);
+                return;
+            }
+            started.whenComplete((value, tOperation) -> {
+                release(bytes);
+                if (tOperation != null) {
+                    result.completeExceptionally(Util.unwrapFutureException(tOperation));
+                } else {
+                    result.complete(value);
+                }
+            });
+            Util.propagateCancellation(result, started);
+        });
+        return Util.propagateCancellation(result, reserved);
+    }
+
+    /**
+     * Reserves the given number of bytes without blocking. Cancelling the returned future withdraws a waiting
+     * reservation; once it completed, release the bytes with {@link #release(long)}.
+     *
+     * @return future completing once the bytes were reserved, failing with a {@link MemoryBudgetExceededException}
+     * if they could not be reserved.
+     */
+    CompletableFuture<Void> reserve(long bytes) {
+        if (bytes <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (bytes > maxBytes) {
+            return rejected(bytes, "Payload of " + bytes + " bytes is larger than the memory budget of " + maxBytes
+                    + " bytes.");
+        }
+        Duration wait = maxWait;
+        boolean failFast = wait != null && wait.isZero();
+        Reservation reservation = new Reservation(bytes);
+        synchronized (lock) {
+            // Earlier reservations go first, so that large payloads are not starved by smaller ones.
+            if (waiting.isEmpty() && usedBytes + bytes <= maxBytes) {
+                usedBytes += bytes;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (!failFast) {
+                waiting.add(reservation);
+            }
+        }
+        if (failFast) {
+            return rejected(bytes, "Memory budget of " + maxBytes + " bytes is exhausted, " + bytes
+                    + " payload bytes cannot be reserved.");
+        }
+
+        ScheduledFuture<?> expiry = Deadline.after(wait).onExpiry(() -> {
+            // Withdrawn and counted first, so that the metrics are up to date once the caller sees the failure.
+            synchronized (lock) {
+                if (!waiting.remove(reservation)) {
+                    return;
+                }
+            }
+            rejectedCount.incrementAndGet();
+            reservation.completeExceptionally(new MemoryBudgetExceededException("Memory budget of " + maxBytes
+                    + " bytes was not released within " + wait.toMillis() + " ms, " + bytes
+                    + " payload bytes cannot be reserved.", bytes));
+            grantWaiting();
+        });
+        reservation.whenComplete((v, t) -> {
+            if (expiry != null) {
+                expiry.cancel(false);
+            }
+            if (t != null) {
+                boolean withdrawn;
+                synchronized (lock) {
+                    withdrawn = waiting.remove(reservation);
+                }
+                if (withdrawn) {
+                    // A withdrawn reservation at the head of the queue may have held back the next ones.
+                    grantWaiting();
+                }
+            }
+        });
+        return reservation;
+    }
+
+    void release(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        synchronized (lock) {
+            usedBytes -= bytes;
+        }
+        grantWaiting();
+    }
+
+    private void grantWaiting() {
+        List<Reservation> granted = new ArrayList<>();
+        synchronized (lock) {
+            while (!waiting.isEmpty() && usedBytes + waiting.peek().bytes <= maxBytes) {
+                Reservation reservation = waiting.poll();
+                usedBytes += reservation.bytes;
+                granted.add(reservation);
+            }
+        }
+        // Completed outside the lock, since completing starts the operations that waited.
+        for (Reservation reservation : granted) {
+            if (!reservation.complete(null)) {
+                release(reservation.bytes);
+            }
+        }
+    }
+
+    private CompletableFuture<Void> rejected(long bytes, String message) {
+        rejectedCount.incrementAndGet();
+        LOG.debug(message);
+        CompletableFuture<Void> futureEx = new CompletableFuture<>();
+        futureEx.completeExceptionally(new MemoryBudgetExceededException(message, bytes));
+        return futureEx;
+    }
+
+    private static final class Reservation extends CompletableFuture<Void> {
+        private final long bytes;
+
+        Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
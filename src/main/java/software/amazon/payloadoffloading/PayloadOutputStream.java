@@ -0,0 +1,28 @@
+package software.amazon.payloadoffloading;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+/**
+ * Collects a serialized payload, whose buffer is then uploaded as is instead of being copied into an exactly
+ * sized array as with {@link #toByteArray()}.
+ */
+class PayloadOutputStream extends ByteArrayOutputStream {
+    private static final int INITIAL_SIZE = 8 * 1024;
+
+    PayloadOutputStream() {
+        super(INITIAL_SIZE);
+    }
+
+    /**
+     * @return the buffer holding the payload in its first {@link #size()} bytes.
+     */
+    byte[] buffer() {
+        return buf;
+    }
+
+    InputStream toInputStream() {
+        return new ByteArrayInputStream(buf, 0, count);
+    }
+}
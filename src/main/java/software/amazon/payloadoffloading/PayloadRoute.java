@@ -0,0 +1,87 @@
+package software.amazon.payloadoffloading;
+
+import software.amazon.awssdk.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A route of a routing store, taking payloads up to its maximum size to its store, with the metrics of the
+ * operations sent through it.
+ *
+ * @see RoutingPayloadStore
+ * @see RoutingPayloadStoreAsync
+ */
+@ThreadSafe
+public final class PayloadRoute {
+    private final String name;
+    private final long maxPayloadSize;
+    private final AtomicLong storedCount = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong readCount = new AtomicLong();
+    private final AtomicLong deletedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    PayloadRoute(String name, long maxPayloadSize) {
+        this.name = name;
+        this.maxPayloadSize = maxPayloadSize;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the UTF-8 size in bytes of the largest payloads stored through this route.
+     */
+    public long getMaxPayloadSize() {
+        return maxPayloadSize;
+    }
+
+    public long getStoredCount() {
+        return storedCount.get();
+    }
+
+    /**
+     * @return the total UTF-8 size in bytes of the payloads stored through this route.
+     */
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+
+    public long getReadCount() {
+        return readCount.get();
+    }
+
+    public long getDeletedCount() {
+        return deletedCount.get();
+    }
+
+    /**
+     * @return the number of store, read and delete operations of this route that failed.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    void recordStored(long payloadSize) {
+        storedCount.incrementAndGet();
+        storedBytes.addAndGet(payloadSize);
+    }
+
+    void recordRead() {
+        readCount.incrementAndGet();
+    }
+
+    void recordDeleted() {
+        deletedCount.incrementAndGet();
+    }
+
+    void recordFailed() {
+        failedCount.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "PayloadRoute{name=" + name + ", maxPayloadSize=" + maxPayloadSize + "}";
+    }
+}
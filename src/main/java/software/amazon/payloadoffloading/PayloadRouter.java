@@ -0,0 +1,91 @@
+package software.amazon.payloadoffloading;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes of a routing store in ascending order of their maximum payload size, with the store of each route.
+ *
+ * @param <S> type of the stores routed to.
+ */
+final class PayloadRouter<S> {
+    private static final Logger LOG = LoggerFactory.getLogger(PayloadRouter.class);
+
+    private final List<PayloadRoute> routes = new ArrayList<>();
+    private final Map<String, PayloadRoute> routesByName = new HashMap<>();
+    private final Map<String, S> stores = new HashMap<>();
+
+    void addRoute(String name, long maxPayloadSize, S store) {
+        if (name == null || store == null || maxPayloadSize < 0 || routesByName.containsKey(name)) {
+            String errorMessage = "Route name must be unique, its store not null and its maximum payload size at "
+                    + "least 0 bytes.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        PayloadRoute route = new PayloadRoute(name, maxPayloadSize);
+        routes.add(route);
+        routes.sort(Comparator.comparingLong(PayloadRoute::getMaxPayloadSize));
+        routesByName.put(name, route);
+        stores.put(name, store);
+    }
+
+    List<PayloadRoute> getRoutes() {
+        return Collections.unmodifiableList(routes);
+    }
+
+    PayloadRoute getRoute(String name) {
+        return routesByName.get(name);
+    }
+
+    S storeOf(PayloadRoute route) {
+        return stores.get(route.getName());
+    }
+
+    /**
+     * @return the route with the smallest maximum payload size the payload fits in.
+     * @throws SdkClientException If the payload is larger than the maximum payload size of all routes.
+     */
+    PayloadRoute forPayloadSize(long payloadSize) {
+        for (PayloadRoute route : routes) {
+            if (payloadSize <= route.getMaxPayloadSize()) {
+                return route;
+            }
+        }
+        String errorMessage = "No route takes payloads of " + payloadSize + " bytes.";
+        LOG.error(errorMessage);
+        throw SdkClientException.create(errorMessage);
+    }
+
+    /**
+     * Gets the route named by a pointer. Pointers that do not name a route, issued before payloads were routed,
+     * are read through the route of the largest payloads, which is typically the store they were stored in.
+     *
+     * @throws SdkClientException If the pointer names an unknown route, or no route is configured.
+     */
+    PayloadRoute forPointer(PayloadS3Pointer s3Pointer) {
+        String name = s3Pointer.getRoute();
+        PayloadRoute route = name != null ? routesByName.get(name)
+                : routes.isEmpty() ? null : routes.get(routes.size() - 1);
+        if (route == null) {
+            String errorMessage = "No route configured for the payload pointer, Route name: " + name + ".";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        return route;
+    }
+
+    /**
+     * @return the pointer issued by the store of the route, in the compact format naming the route.
+     */
+    static String routedPointer(String payloadPointer, PayloadRoute route) {
+        return PayloadS3Pointer.fromJson(payloadPointer).withRoute(route.getName()).toCompactJson();
+    }
+}
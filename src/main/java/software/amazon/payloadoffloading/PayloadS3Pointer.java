@@ -1,18 +1,59 @@
 package software.amazon.payloadoffloading;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.core.exception.SdkClientException;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * This class is used for carrying pointer to Amazon S3 objects which contain payloads.
+ *
+ * <p>A pointer is serialized in one of two formats, both of which are accepted by {@link #fromJson(String)}:</p>
+ * <ul>
+ *     <li>v1, produced by {@link #toJson()}: Jackson default-typed JSON carrying the bucket name and key,
+ *     for example {@code ["software.amazon.payloadoffloading.PayloadS3Pointer",{"s3BucketName":"b","s3Key":"k"}]}.</li>
+ *     <li>v2, produced by {@link #toCompactJson()}: a compact JSON object that also carries the payload size in
+ *     bytes, its content encoding and checksum when known, for example
+ *     {@code {"v":2,"b":"b","k":"k","l":1024,"c":"crc32:1c291ca3"}}.</li>
+ * </ul>
+ *
+ * <p>A v2 pointer may also be the manifest of a payload stored in chunks, one S3 object per chunk. It then
+ * carries the chunk size and the checksums of all chunks in order, for example
+ * {@code {"v":2,"b":"b","k":"k","l":2500,"n":1000,"p":["crc32:..","crc32:..","crc32:.."]}}. Chunk i is stored
+ * under the key {@code k/i}. Manifests are only understood by versions of this library that read chunked
+ * payloads.</p>
+ *
+ * <p>A v2 pointer issued by a routing store also names the route of the store the payload was stored in, for
+ * example {@code {"v":2,"r":"hot","b":"b","k":"k","l":1024}}. Versions of this library that do not route
+ * ignore it.</p>
+ *
+ * <p>Both formats are read and written with the Jackson streaming API only, without databind or reflection, so
+ * that the library works in GraalVM native images without reachability metadata.</p>
  */
 public class PayloadS3Pointer {
     private static final Logger LOG = LoggerFactory.getLogger(PayloadS3Pointer.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int COMPACT_FORMAT_VERSION = 2;
+    private static final String TYPE_ID = PayloadS3Pointer.class.getName();
+
     private String s3BucketName;
     private String s3Key;
+    private long payloadSize = -1;
+    private String contentEncoding;
+    private String checksum;
+    private long chunkSize = -1;
+    private List<String> chunkChecksums;
+    private String route;
 
-    // Needed for Jackson
     private PayloadS3Pointer() {
     }
 
@@ -21,6 +62,33 @@ public class PayloadS3Pointer {
         this.s3Key = s3Key;
     }
 
+    /**
+     * @param payloadSize     Size of the stored payload in bytes.
+     * @param contentEncoding Content encoding of the stored object, or null if it is stored as is.
+     * @param checksum        Checksum of the stored object, as produced by {@link Util#checksum(byte[], int, int)}.
+     */
+    public PayloadS3Pointer(String s3BucketName, String s3Key, long payloadSize, String contentEncoding,
+                            String checksum) {
+        this(s3BucketName, s3Key);
+        this.payloadSize = payloadSize;
+        this.contentEncoding = contentEncoding;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Creates the manifest of a payload stored in chunks.
+     *
+     * @param payloadSize    Size of the stored payload in bytes.
+     * @param chunkSize      Size of every chunk but the last in bytes.
+     * @param chunkChecksums Checksums of the chunks in order, as produced by {@link Util#checksum(byte[], int, int)}.
+     */
+    public PayloadS3Pointer(String s3BucketName, String s3Key, long payloadSize, long chunkSize,
+                            List<String> chunkChecksums) {
+        this(s3BucketName, s3Key, payloadSize, null, null);
+        this.chunkSize = chunkSize;
+        this.chunkChecksums = Collections.unmodifiableList(new ArrayList<>(chunkChecksums));
+    }
+
     public String getS3BucketName() {
         return s3BucketName;
     }
@@ -29,25 +97,187 @@ public class PayloadS3Pointer {
         return s3Key;
     }
 
+    /**
+     * @return the size of the stored payload in bytes, or -1 if the pointer does not carry it.
+     */
+    public long getPayloadSize() {
+        return payloadSize;
+    }
+
+    /**
+     * @return the content encoding of the stored object, or null if it is stored as is.
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * @return the checksum of the stored object, or null if the pointer does not carry it.
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return whether the pointer is the manifest of a payload stored in chunks.
+     */
+    public boolean isChunked() {
+        return chunkChecksums != null;
+    }
+
+    /**
+     * @return the size of every chunk but the last in bytes, or -1 if the payload is not stored in chunks.
+     */
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return the number of chunks, or 0 if the payload is not stored in chunks.
+     */
+    public int getChunkCount() {
+        return chunkChecksums != null ? chunkChecksums.size() : 0;
+    }
+
+    /**
+     * @return the checksums of the chunks in order, or null if the payload is not stored in chunks.
+     */
+    public List<String> getChunkChecksums() {
+        return chunkChecksums;
+    }
+
+    /**
+     * @return the key of the S3 object holding the chunk.
+     */
+    public String getChunkKey(int index) {
+        return chunkKey(s3Key, index);
+    }
+
+    /**
+     * @return the keys of the S3 objects holding all chunks, in order.
+     */
+    public List<String> getChunkKeys() {
+        List<String> chunkKeys = new ArrayList<>(getChunkCount());
+        for (int i = 0; i < getChunkCount(); i++) {
+            chunkKeys.add(getChunkKey(i));
+        }
+        return chunkKeys;
+    }
+
+    /**
+     * @return the size of the chunk in bytes.
+     */
+    public long getChunkLength(int index) {
+        return Math.min(chunkSize, payloadSize - index * chunkSize);
+    }
+
+    /**
+     * @return the name of the route the payload was stored through, or null if it was not stored by a routing
+     * store.
+     */
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * @return a copy of this pointer naming the given route, which only the compact format can carry.
+     */
+    public PayloadS3Pointer withRoute(String route) {
+        PayloadS3Pointer routed = new PayloadS3Pointer();
+        routed.s3BucketName = s3BucketName;
+        routed.s3Key = s3Key;
+        routed.payloadSize = payloadSize;
+        routed.contentEncoding = contentEncoding;
+        routed.checksum = checksum;
+        routed.chunkSize = chunkSize;
+        routed.chunkChecksums = chunkChecksums;
+        routed.route = route;
+        return routed;
+    }
+
+    static String chunkKey(String s3Key, int index) {
+        return s3Key + "/" + index;
+    }
+
+    /**
+     * Converts this pointer to the v1 format, which carries only the bucket name and key.
+     *
+     * @throws SdkClientException If the pointer is a chunk manifest or names a route, which only the compact
+     *                            format can carry.
+     */
     public String toJson() {
-        String s3PointerStr = null;
-        try {
-            JsonDataConverter jsonDataConverter = new JsonDataConverter();
-            s3PointerStr = jsonDataConverter.serializeToJson(this);
+        if (isChunked() || route != null) {
+            String errorMessage = "Chunk manifests and routed pointers can only be converted to compact S3 object "
+                    + "pointers.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        StringWriter writer = new StringWriter(96);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            // Same layout as Jackson databind with default typing, which produced this format originally.
+            generator.writeStartArray();
+            generator.writeString(TYPE_ID);
+            generator.writeStartObject();
+            generator.writeStringField("s3BucketName", s3BucketName);
+            generator.writeStringField("s3Key", s3Key);
+            generator.writeEndObject();
+            generator.writeEndArray();
+        } catch (IOException e) {
+            String errorMessage = "Failed to convert S3 object pointer to text.";
+            LOG.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        }
+        return writer.toString();
+    }
 
-        } catch (Exception e) {
+    /**
+     * Converts this pointer to the compact v2 format. Fields that are not known are omitted.
+     *
+     * @return the pointer as compact JSON.
+     */
+    public String toCompactJson() {
+        StringWriter writer = new StringWriter(64 + s3BucketName.length() + s3Key.length());
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeNumberField("v", COMPACT_FORMAT_VERSION);
+            if (route != null) {
+                generator.writeStringField("r", route);
+            }
+            generator.writeStringField("b", s3BucketName);
+            generator.writeStringField("k", s3Key);
+            if (payloadSize >= 0) {
+                generator.writeNumberField("l", payloadSize);
+            }
+            if (contentEncoding != null) {
+                generator.writeStringField("e", contentEncoding);
+            }
+            if (checksum != null) {
+                generator.writeStringField("c", checksum);
+            }
+            if (chunkChecksums != null) {
+                generator.writeNumberField("n", chunkSize);
+                generator.writeArrayFieldStart("p");
+                for (String chunkChecksum : chunkChecksums) {
+                    generator.writeString(chunkChecksum);
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
             String errorMessage = "Failed to convert S3 object pointer to text.";
             LOG.error(errorMessage, e);
             throw SdkClientException.create(errorMessage, e);
         }
-        return s3PointerStr;
+        return writer.toString();
     }
 
+    /**
+     * Reads a pointer in either the v1 or the compact v2 format.
+     */
     public static PayloadS3Pointer fromJson(String s3PointerJson) {
         PayloadS3Pointer s3Pointer = null;
         try {
-            JsonDataConverter jsonDataConverter = new JsonDataConverter();
-            s3Pointer = jsonDataConverter.deserializeFromJson(s3PointerJson, PayloadS3Pointer.class);
+            s3Pointer = parse(s3PointerJson);
 
         } catch (Exception e) {
             String errorMessage = "Failed to read the S3 object pointer from given string.";
@@ -56,4 +286,208 @@ public class PayloadS3Pointer {
         }
         return s3Pointer;
     }
+
+    /**
+     * Tells whether a message body is a pointer written by this library, rather than an inline payload.
+     *
+     * <p>Text that does not start like a pointer is rejected by looking at its first few characters, without
+     * exceptions or allocation, however large it is. Only text that does is parsed in full.</p>
+     */
+    public static boolean isPointer(CharSequence text) {
+        return tryParse(text) != null;
+    }
+
+    /**
+     * Reads a pointer in either the v1 or the compact v2 format, like {@link #fromJson(String)}, but returns null
+     * instead of failing when the text is not a pointer written by this library. Text that does not start like a
+     * pointer is rejected without exceptions or allocation.
+     *
+     * @return the pointer, or null if the text is not a pointer.
+     */
+    public static PayloadS3Pointer tryParse(CharSequence text) {
+        if (text == null || !startsLikePointer(text)) {
+            return null;
+        }
+        try {
+            return parse(text.toString());
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Text starting like an S3 object pointer is not one.", e);
+            return null;
+        }
+    }
+
+    private static PayloadS3Pointer parse(String s3PointerJson) throws IOException {
+        if (isCompactJson(s3PointerJson)) {
+            return fromCompactJson(s3PointerJson);
+        }
+        return fromV1Json(s3PointerJson);
+    }
+
+    /**
+     * Checks the start of the text against both formats as written by {@link #toJson()} and
+     * {@link #toCompactJson()}, allowing whitespace between tokens: {@code ["<type id>",} for v1, or
+     * {@code {"v":<digit>} for v2, which always writes the version first.
+     */
+    private static boolean startsLikePointer(CharSequence text) {
+        int i = skipWhitespace(text, 0);
+        if (i >= text.length()) {
+            return false;
+        }
+        if (text.charAt(i) == '{') {
+            i = skipWhitespace(text, i + 1);
+            i = skipWhitespace(text, matchQuoted(text, i, "v"));
+            if (i < 0 || i >= text.length() || text.charAt(i) != ':') {
+                return false;
+            }
+            i = skipWhitespace(text, i + 1);
+            return i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9';
+        }
+        if (text.charAt(i) == '[') {
+            i = skipWhitespace(text, i + 1);
+            i = skipWhitespace(text, matchQuoted(text, i, TYPE_ID));
+            return i >= 0 && i < text.length() && text.charAt(i) == ',';
+        }
+        return false;
+    }
+
+    /**
+     * @return the index after the quoted string at the given index, or -1 if it is not there.
+     */
+    private static int matchQuoted(CharSequence text, int index, String expected) {
+        if (index < 0 || index + expected.length() + 2 > text.length() || text.charAt(index) != '"') {
+            return -1;
+        }
+        for (int j = 0; j < expected.length(); j++) {
+            if (text.charAt(index + 1 + j) != expected.charAt(j)) {
+                return -1;
+            }
+        }
+        int end = index + 1 + expected.length();
+        return text.charAt(end) == '"' ? end + 1 : -1;
+    }
+
+    private static int skipWhitespace(CharSequence text, int index) {
+        if (index < 0) {
+            return index;
+        }
+        while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isCompactJson(String s3PointerJson) {
+        for (int i = 0; i < s3PointerJson.length(); i++) {
+            char c = s3PointerJson.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '{';
+            }
+        }
+        return false;
+    }
+
+    private static PayloadS3Pointer fromV1Json(String s3PointerJson) throws IOException {
+        PayloadS3Pointer s3Pointer = new PayloadS3Pointer();
+        try (JsonParser parser = JSON_FACTORY.createParser(s3PointerJson)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY
+                    || parser.nextToken() != JsonToken.VALUE_STRING || !TYPE_ID.equals(parser.getText())
+                    || parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected an array of the pointer type id and a JSON object.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "s3BucketName":
+                        s3Pointer.s3BucketName = parser.getValueAsString();
+                        break;
+                    case "s3Key":
+                        s3Pointer.s3Key = parser.getValueAsString();
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT || parser.nextToken() != JsonToken.END_ARRAY) {
+                throw new IOException("Unterminated S3 object pointer.");
+            }
+        }
+        return s3Pointer;
+    }
+
+    private static PayloadS3Pointer fromCompactJson(String s3PointerJson) throws IOException {
+        PayloadS3Pointer s3Pointer = new PayloadS3Pointer();
+        int version = -1;
+        try (JsonParser parser = JSON_FACTORY.createParser(s3PointerJson)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "v":
+                        version = parser.getIntValue();
+                        break;
+                    case "b":
+                        s3Pointer.s3BucketName = parser.getText();
+                        break;
+                    case "k":
+                        s3Pointer.s3Key = parser.getText();
+                        break;
+                    case "l":
+                        s3Pointer.payloadSize = parser.getLongValue();
+                        break;
+                    case "e":
+                        s3Pointer.contentEncoding = parser.getText();
+                        break;
+                    case "c":
+                        s3Pointer.checksum = parser.getText();
+                        break;
+                    case "n":
+                        s3Pointer.chunkSize = parser.getLongValue();
+                        break;
+                    case "p":
+                        s3Pointer.chunkChecksums = readChunkChecksums(parser);
+                        break;
+                    case "r":
+                        s3Pointer.route = parser.getText();
+                        break;
+                    default:
+                        // Fields added by later versions are ignored.
+                        parser.skipChildren();
+                }
+            }
+        }
+        if (version < COMPACT_FORMAT_VERSION || s3Pointer.s3BucketName == null || s3Pointer.s3Key == null) {
+            throw new IOException("Missing version, bucket name or key in compact S3 object pointer.");
+        }
+        if (s3Pointer.chunkChecksums != null && !hasValidChunks(s3Pointer)) {
+            throw new IOException("Chunk count, chunk size and payload size of the chunk manifest do not match.");
+        }
+        return s3Pointer;
+    }
+
+    private static List<String> readChunkChecksums(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected an array of chunk checksums.");
+        }
+        List<String> chunkChecksums = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.VALUE_STRING) {
+            chunkChecksums.add(parser.getText());
+        }
+        if (parser.currentToken() != JsonToken.END_ARRAY) {
+            throw new IOException("Expected an array of chunk checksums.");
+        }
+        return Collections.unmodifiableList(chunkChecksums);
+    }
+
+    private static boolean hasValidChunks(PayloadS3Pointer s3Pointer) {
+        if (s3Pointer.chunkSize <= 0 || s3Pointer.payloadSize < 0) {
+            return false;
+        }
+        // An empty payload is stored as a single empty chunk.
+        long expectedCount = Math.max(1, (s3Pointer.payloadSize + s3Pointer.chunkSize - 1) / s3Pointer.chunkSize);
+        return s3Pointer.chunkChecksums.size() == expectedCount;
+    }
 }
@@ -0,0 +1,120 @@
+package software.amazon.payloadoffloading;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.annotations.ThreadSafe;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size bounded in-memory cache of parsed pointers, so that the same pointer read several times, typically
+ * once to get and once to delete its payload and again on redelivery, is parsed only once.
+ *
+ * <p>Pointers are immutable, so cached pointers are shared and never need to be invalidated. Entries are
+ * evicted in least-recently-used order, per segment of the cache, which keeps lookups from different threads
+ * from contending on a single lock. A cache is attached to
+ * {@link S3BackedPayloadStore#withPointerCache(PayloadS3PointerCache)} or
+ * {@link S3BackedPayloadStoreAsync#withPointerCache(PayloadS3PointerCache)}, and may be shared between
+ * stores.</p>
+ */
+@ThreadSafe
+public class PayloadS3PointerCache {
+    private static final Logger LOG = LoggerFactory.getLogger(PayloadS3PointerCache.class);
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param maxSize Upper bound on the number of cached pointers.
+     */
+    public PayloadS3PointerCache(int maxSize) {
+        if (maxSize <= 0) {
+            String errorMessage = "Maximum pointer cache size must be positive.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        segments = new Segment[Math.min(MAX_SEGMENTS, maxSize)];
+        for (int i = 0; i < segments.length; i++) {
+            // The remainder goes to the first segments, so that the segments add up to the maximum size.
+            segments[i] = new Segment(maxSize / segments.length + (i < maxSize % segments.length ? 1 : 0));
+        }
+    }
+
+    /**
+     * Gets the parsed pointer, parsing and caching it on a miss. Text that is not a pointer is not cached.
+     *
+     * @throws SdkClientException If the text is not a pointer, like {@link PayloadS3Pointer#fromJson(String)}.
+     */
+    public PayloadS3Pointer get(String payloadPointer) {
+        Segment segment = segmentFor(payloadPointer);
+        PayloadS3Pointer s3Pointer;
+        synchronized (segment) {
+            s3Pointer = segment.get(payloadPointer);
+        }
+        if (s3Pointer != null) {
+            hitCount.incrementAndGet();
+            return s3Pointer;
+        }
+
+        missCount.incrementAndGet();
+        // Parsed outside the lock, so concurrent misses on the same pointer may each parse it.
+        s3Pointer = PayloadS3Pointer.fromJson(payloadPointer);
+        synchronized (segment) {
+            segment.put(payloadPointer, s3Pointer);
+        }
+        return s3Pointer;
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the share of lookups served from the cache, or 0 before the first lookup.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long lookups = hits + missCount.get();
+        return lookups > 0 ? (double) hits / lookups : 0;
+    }
+
+    private Segment segmentFor(String payloadPointer) {
+        int hash = payloadPointer.hashCode();
+        return segments[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % segments.length];
+    }
+
+    private static final class Segment extends LinkedHashMap<String, PayloadS3Pointer> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PayloadS3Pointer> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package software.amazon.payloadoffloading;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a payload object straight into the content stored in S3, without first producing it as a String.
+ *
+ * @param <T> type of the payload.
+ * @see S3BackedPayloadStore#storeOriginalPayload(Object, PayloadSerializer)
+ * @see S3BackedPayloadStoreAsync#storeOriginalPayload(Object, PayloadSerializer)
+ * @see JacksonPayloadSerializer
+ */
+@FunctionalInterface
+public interface PayloadSerializer<T> {
+    /**
+     * Writes the payload to the stream, which must not be closed. Payloads are stored with a text content type,
+     * so text is expected to be written in UTF-8.
+     */
+    void serialize(T payload, OutputStream out) throws IOException;
+}
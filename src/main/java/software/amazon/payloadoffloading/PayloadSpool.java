@@ -0,0 +1,734 @@
+package software.amazon.payloadoffloading;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.annotations.ThreadSafe;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * A durable local spool of payloads that could not be uploaded, so that producers keep storing payloads and
+ * getting their pointers while S3 is unavailable, slow or throttling. Attach it to a store with
+ * {@link S3BackedPayloadStore#withSpool(PayloadSpool)}.
+ *
+ * <p>Uploads that fail because of S3, including throttling, timeouts and an open circuit breaker, append the
+ * payload to the current segment file of the spool and return normally. While the spool holds payloads, new
+ * payloads are spooled right away behind them, so that a payload is never overwritten by an older one of the same
+ * key, and so that they do not wait for S3 to fail again. A single background drainer uploads the spooled payloads
+ * in the order they were spooled, retrying each one until it is uploaded, and deletes segment files once all of
+ * their payloads are uploaded. Payloads that S3 rejects for a reason retrying does not help with, like missing
+ * permissions, are moved to the dead-letter file of the spool instead. Once the spool holds its maximum size,
+ * spooling waits until the drainer makes room, for up to a maximum time.</p>
+ *
+ * <p>Every payload is synced to disk before it is acknowledged. The position of the drainer is saved in a
+ * checkpoint file after every upload, and the spool resumes from it when it is created again on the same
+ * directory, for example after a restart or a crash. Payloads are uploaded at least once: a payload uploaded
+ * right before a crash may be uploaded again. A record only partly written by a crash fails its checksum and is
+ * dropped, since its store call never returned. Payloads are readable only once drained, so consumers should
+ * retry reads of missing payloads with {@link S3Dao#withNotFoundRetry(int, Duration)}.</p>
+ *
+ * <pre>
+ *     PayloadSpool spool = new PayloadSpool(Paths.get("/var/spool/payloads"), s3Dao, 1024L * 1024 * 1024);
+ *     PayloadStore payloadStore = new S3BackedPayloadStore(s3Dao, s3BucketName).withSpool(spool);
+ * </pre>
+ */
+@ThreadSafe
+public class PayloadSpool implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(PayloadSpool.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String DEAD_LETTER_FILE = "dead-letter.spool";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final Duration DEFAULT_RETRY_DELAY = Duration.ofSeconds(1);
+    private static final Duration DEFAULT_MAX_WAIT = Duration.ofMinutes(1);
+
+    private final Path directory;
+    private final S3Dao s3Dao;
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition changed = lock.newCondition();
+    private final Thread drainer;
+    private final AtomicLong drainedCount = new AtomicLong();
+    private final AtomicLong deadLetteredCount = new AtomicLong();
+    private volatile long segmentSize = DEFAULT_SEGMENT_SIZE;
+    private volatile Duration retryDelay = DEFAULT_RETRY_DELAY;
+    private volatile Duration maxWait = DEFAULT_MAX_WAIT;
+    private volatile boolean backedUp;
+    private volatile boolean closed;
+
+    // Guarded by lock.
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private FileChannel appendChannel;
+    private long nextSegmentNumber;
+    private long drainOffset;
+    private long spooledBytes;
+    private int spooledCount;
+
+    /**
+     * Creates the spool, resuming the payloads spooled to the directory by a previous instance, and starts its
+     * drainer.
+     *
+     * @param directory Directory of the segment files. It is created if it does not exist, and must not be
+     *                  shared with anything other than a single spool instance.
+     * @param s3Dao     DAO the spooled payloads are uploaded with.
+     * @param maxBytes  Maximum size in bytes of the spooled payloads, with their bucket names and keys.
+     * @throws SdkClientException If the directory cannot be read.
+     */
+    public PayloadSpool(Path directory, S3Dao s3Dao, long maxBytes) {
+        if (directory == null || s3Dao == null || maxBytes <= 0) {
+            String errorMessage = "Spool directory and DAO cannot be null and maximum spool size must be positive.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        this.directory = directory;
+        this.s3Dao = s3Dao;
+        this.maxBytes = maxBytes;
+        recover();
+        this.drainer = new Thread(this::runDrainer, "payload-offloading-spool-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * @param segmentSize size in bytes from which the next payload starts a new segment file. Default: 64MB
+     */
+    public PayloadSpool withSegmentSize(long segmentSize) {
+        if (segmentSize <= 0) {
+            String errorMessage = "Spool segment size must be positive.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * @param retryDelay time the drainer waits before uploading a payload again after a failure. Default: 1 second
+     */
+    public PayloadSpool withRetryDelay(Duration retryDelay) {
+        if (retryDelay == null || retryDelay.isNegative()) {
+            String errorMessage = "Spool retry delay must be at least 0.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        this.retryDelay = retryDelay;
+        return this;
+    }
+
+    /**
+     * @param maxWait maximum time spooling waits for room once the spool is full, before it fails.
+     *                Default: 1 minute
+     */
+    public PayloadSpool withMaxWait(Duration maxWait) {
+        if (maxWait == null || maxWait.isNegative()) {
+            String errorMessage = "Spool maximum wait must be at least 0.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        this.maxWait = maxWait;
+        return this;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the size in bytes of the payloads spooled and not uploaded yet.
+     */
+    public long getSpooledBytes() {
+        lock.lock();
+        try {
+            return spooledBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of payloads spooled and not uploaded yet.
+     */
+    public int getSpooledCount() {
+        lock.lock();
+        try {
+            return spooledCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of spooled payloads uploaded by the drainer of this instance.
+     */
+    public long getDrainedCount() {
+        return drainedCount.get();
+    }
+
+    /**
+     * @return the number of spooled payloads moved to the dead-letter file by the drainer of this instance.
+     */
+    public long getDeadLetteredCount() {
+        return deadLetteredCount.get();
+    }
+
+    /**
+     * @return the file spooled payloads that can never be uploaded are appended to, in the record format of the
+     * segment files. It only exists once a payload was moved to it.
+     */
+    public Path getDeadLetterFile() {
+        return directory.resolve(DEAD_LETTER_FILE);
+    }
+
+    /**
+     * @return whether the last upload of a spooled payload failed, in which case new payloads are spooled
+     * without trying to upload them first.
+     */
+    public boolean isBackedUp() {
+        return backedUp;
+    }
+
+    /**
+     * Waits until all spooled payloads are uploaded, for example before a planned shutdown.
+     *
+     * @param timeout maximum time to wait.
+     * @return whether the spool is empty.
+     */
+    public boolean awaitDrained(Duration timeout) {
+        long remainingNanos = timeout.toNanos();
+        lock.lock();
+        try {
+            while (spooledCount > 0 && remainingNanos > 0) {
+                remainingNanos = changed.awaitNanos(remainingNanos);
+            }
+            return spooledCount == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the drainer and closes the current segment file. Payloads that are still spooled stay on disk, and
+     * are uploaded by the next spool created on the directory.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        drainer.interrupt();
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            closeAppendChannel();
+            notEmpty.signalAll();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the upload of a payload, and spools the payload instead if the upload fails because of S3, or right
+     * away while the spool holds payloads.
+     *
+     * @param content encoded payload, only encoded if it is spooled.
+     * @throws SdkException If the upload failed for a reason spooling does not help with, like missing
+     *                      permissions, or the payload cannot be spooled.
+     */
+    void upload(String s3BucketName, String s3Key, String objectTagging, Supplier<byte[]> content,
+                Runnable upload) {
+        if (!backedUp && getSpooledCount() == 0) {
+            try {
+                upload.run();
+                return;
+            } catch (SdkException e) {
+                if (!S3CircuitBreaker.isFailure(e)) {
+                    throw e;
+                }
+                LOG.warn("Failed to upload the payload, spooling it, Bucket name: " + s3BucketName
+                        + ", Object key: " + s3Key + ".");
+            }
+        }
+        append(new Record(s3BucketName, s3Key, objectTagging, content.get()));
+    }
+
+    /**
+     * Appends a payload to the current segment and syncs it to disk, waiting while the spool is full.
+     *
+     * @throws SdkClientException If the spool stays full for longer than the maximum wait.
+     */
+    void append(Record record) {
+        byte[] encoded = record.encode();
+        if (encoded.length > maxBytes) {
+            String errorMessage = "Payload of " + record.content.length + " bytes is larger than the spool.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        long remainingNanos = maxWait.toNanos();
+        lock.lock();
+        try {
+            while (spooledBytes + encoded.length > maxBytes && !closed) {
+                if (remainingNanos <= 0) {
+                    String errorMessage = "Payload spool stayed full for " + maxWait.toMillis() + " ms.";
+                    LOG.error(errorMessage);
+                    throw SdkClientException.create(errorMessage);
+                }
+                remainingNanos = changed.awaitNanos(remainingNanos);
+            }
+            if (closed) {
+                String errorMessage = "Payload spool is closed.";
+                LOG.error(errorMessage);
+                throw SdkClientException.create(errorMessage);
+            }
+            Segment segment = segments.peekLast();
+            if (appendChannel == null || segment.size >= segmentSize) {
+                segment = startSegment();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(encoded);
+            while (buffer.hasRemaining()) {
+                appendChannel.write(buffer);
+            }
+            appendChannel.force(false);
+            segment.size += encoded.length;
+            spooledBytes += encoded.length;
+            spooledCount++;
+            notEmpty.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            String errorMessage = "Interrupted while waiting for room in the payload spool.";
+            LOG.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        } catch (IOException e) {
+            String errorMessage = "Failed to write the payload to the spool.";
+            LOG.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        } finally {
+            lock.unlock();
+        }
+        LOG.info("Payload spooled, Bucket name: " + record.s3BucketName + ", Object key: " + record.s3Key + ".");
+    }
+
+    private void runDrainer() {
+        while (!closed) {
+            Segment segment;
+            long offset;
+            long end;
+            lock.lock();
+            try {
+                while (spooledCount == 0 && !closed) {
+                    notEmpty.await();
+                }
+                if (closed) {
+                    return;
+                }
+                segment = segments.peekFirst();
+                offset = drainOffset;
+                end = segment.size;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            Record record;
+            long nextOffset;
+            try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+                record = Record.read(channel, offset, end);
+                nextOffset = offset + Record.sizeAt(channel, offset);
+            } catch (IOException e) {
+                LOG.error("Failed to read the payload spool, retrying, Segment: " + segment.path + ".", e);
+                if (!sleep(retryDelay)) {
+                    return;
+                }
+                continue;
+            }
+            if (!uploadSpooled(record)) {
+                return;
+            }
+            advance(segment, nextOffset);
+        }
+    }
+
+    /**
+     * Uploads a spooled payload, retrying it until it is uploaded or the spool is closed. A payload S3 rejects for
+     * a reason retrying does not help with is moved to the dead-letter file instead.
+     *
+     * @return whether the drainer is done with the payload.
+     */
+    private boolean uploadSpooled(Record record) {
+        while (!closed) {
+            try {
+                s3Dao.storeBytesInS3(record.s3BucketName, record.s3Key, record.content, record.objectTagging);
+                backedUp = false;
+                drainedCount.incrementAndGet();
+                LOG.info("Spooled payload uploaded, Bucket name: " + record.s3BucketName + ", Object key: "
+                        + record.s3Key + ".");
+                return true;
+            } catch (RuntimeException e) {
+                if (!S3CircuitBreaker.isFailure(e) && deadLetter(record, e)) {
+                    backedUp = false;
+                    return true;
+                }
+                backedUp = true;
+                LOG.warn("Failed to upload the spooled payload, retrying, Bucket name: " + record.s3BucketName
+                        + ", Object key: " + record.s3Key + ".");
+                if (!sleep(retryDelay)) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends a payload that can never be uploaded to the dead-letter file and syncs it to disk.
+     *
+     * @return whether the payload was written, otherwise it stays in the spool.
+     */
+    private boolean deadLetter(Record record, RuntimeException cause) {
+        try (FileChannel channel = FileChannel.open(getDeadLetterFile(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(record.encode());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            LOG.error("Failed to write the payload spool dead-letter file, retrying, Bucket name: "
+                    + record.s3BucketName + ", Object key: " + record.s3Key + ".", e);
+            return false;
+        }
+        deadLetteredCount.incrementAndGet();
+        LOG.error("Spooled payload rejected by S3, moved it to the dead-letter file, Bucket name: "
+                + record.s3BucketName + ", Object key: " + record.s3Key + ".", cause);
+        return true;
+    }
+
+    /**
+     * Moves the drainer past an uploaded or dead-lettered payload, deleting its segment once the drainer is done
+     * with all of its payloads.
+     */
+    private void advance(Segment segment, long nextOffset) {
+        lock.lock();
+        try {
+            spooledBytes -= nextOffset - drainOffset;
+            spooledCount--;
+            drainOffset = nextOffset;
+            if (drainOffset >= segment.size) {
+                if (segment == segments.peekLast()) {
+                    closeAppendChannel();
+                }
+                segments.removeFirst();
+                deleteQuietly(segment.path);
+                drainOffset = 0;
+            }
+            Segment head = segments.peekFirst();
+            if (head == null) {
+                deleteQuietly(directory.resolve(CHECKPOINT_FILE));
+            } else {
+                writeCheckpoint(head.number, drainOffset);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Segment startSegment() throws IOException {
+        closeAppendChannel();
+        Segment segment = new Segment(nextSegmentNumber++, 0);
+        segment.path = directory.resolve(segmentName(segment.number));
+        appendChannel = FileChannel.open(segment.path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private void closeAppendChannel() {
+        if (appendChannel != null) {
+            try {
+                appendChannel.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close the payload spool segment.", e);
+            }
+            appendChannel = null;
+        }
+    }
+
+    /**
+     * Loads the segments left by a previous spool, skipping the payloads before its checkpoint, and truncates
+     * records only partly written by a crash. New payloads go to a new segment.
+     */
+    private void recover() {
+        List<Segment> found = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    String name = entry.getFileName().toString();
+                    if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                        Segment segment = new Segment(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                name.length() - SEGMENT_SUFFIX.length())), Files.size(entry));
+                        segment.path = entry;
+                        found.add(segment);
+                    } else if (name.endsWith(TEMP_SUFFIX)) {
+                        deleteQuietly(entry);
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            String errorMessage = "Failed to read the payload spool directory.";
+            LOG.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        }
+        found.sort((a, b) -> Long.compare(a.number, b.number));
+
+        long[] checkpoint = readCheckpoint();
+        for (Segment segment : found) {
+            nextSegmentNumber = segment.number + 1;
+            long offset = segment.number == checkpoint[0] ? checkpoint[1] : 0;
+            if (segment.number < checkpoint[0] || !recoverSegment(segment, offset)) {
+                deleteQuietly(segment.path);
+                continue;
+            }
+            if (segments.isEmpty()) {
+                drainOffset = offset;
+            }
+            segments.addLast(segment);
+        }
+        if (segments.isEmpty()) {
+            deleteQuietly(directory.resolve(CHECKPOINT_FILE));
+        }
+        if (spooledCount > 0) {
+            LOG.info("Payload spool recovered, Payloads: " + spooledCount + ", Bytes: " + spooledBytes + ".");
+        }
+    }
+
+    /**
+     * Counts the payloads of a segment from the given offset, truncating it after the last complete record.
+     *
+     * @return whether the segment has payloads left to upload.
+     */
+    private boolean recoverSegment(Segment segment, long offset) {
+        int count = 0;
+        long position = offset;
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            while (position < segment.size) {
+                try {
+                    Record.read(channel, position, segment.size);
+                } catch (IOException e) {
+                    LOG.warn("Truncating incomplete payload spool record, Segment: " + segment.path + ", Offset: "
+                            + position + ".", e);
+                    channel.truncate(position);
+                    channel.force(false);
+                    segment.size = position;
+                    break;
+                }
+                position += Record.sizeAt(channel, position);
+                count++;
+            }
+        } catch (IOException e) {
+            String errorMessage = "Failed to recover the payload spool segment: " + segment.path + ".";
+            LOG.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        }
+        spooledCount += count;
+        spooledBytes += segment.size - offset;
+        return count > 0;
+    }
+
+    /**
+     * @return the segment number and offset of the next payload to upload, or 0 and 0 without a checkpoint.
+     */
+    private long[] readCheckpoint() {
+        Path checkpointPath = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpointPath)) {
+            return new long[] {0, 0};
+        }
+        try {
+            String[] fields = new String(Files.readAllBytes(checkpointPath), StandardCharsets.UTF_8).trim()
+                    .split(" ");
+            return new long[] {Long.parseLong(fields[0]), Long.parseLong(fields[1])};
+        } catch (IOException | RuntimeException e) {
+            // Uploading payloads again is safe, losing them is not.
+            LOG.warn("Failed to read the payload spool checkpoint, uploading all spooled payloads.", e);
+            return new long[] {0, 0};
+        }
+    }
+
+    private void writeCheckpoint(long segmentNumber, long offset) {
+        Path tempPath = directory.resolve(CHECKPOINT_FILE + TEMP_SUFFIX);
+        try {
+            ByteBuffer content = ByteBuffer.wrap((segmentNumber + " " + offset).getBytes(StandardCharsets.UTF_8));
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+                // Durable before the move, or a crash can leave an empty or torn checkpoint in its place.
+                channel.force(true);
+            }
+            Files.move(tempPath, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The payloads since the last checkpoint are uploaded again after a restart.
+            LOG.warn("Failed to write the payload spool checkpoint.", e);
+            deleteQuietly(tempPath);
+        }
+    }
+
+    private static boolean sleep(Duration delay) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(delay.toNanos());
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private static String segmentName(long number) {
+        return SEGMENT_PREFIX + String.format("%020d", number) + SEGMENT_SUFFIX;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete payload spool file: " + path + ".", e);
+        }
+    }
+
+    private static final class Segment {
+        final long number;
+        Path path;
+        long size;
+
+        Segment(long number, long size) {
+            this.number = number;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A spooled payload with the object it is uploaded to. Records are stored as the length and CRC32 of their
+     * body, followed by the body.
+     */
+    static final class Record {
+        final String s3BucketName;
+        final String s3Key;
+        final String objectTagging;
+        final byte[] content;
+
+        Record(String s3BucketName, String s3Key, String objectTagging, byte[] content) {
+            this.s3BucketName = s3BucketName;
+            this.s3Key = s3Key;
+            this.objectTagging = objectTagging;
+            this.content = content;
+        }
+
+        byte[] encode() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length + 256);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(0);
+                out.writeInt(0);
+                out.writeUTF(s3BucketName);
+                out.writeUTF(s3Key);
+                out.writeBoolean(objectTagging != null);
+                if (objectTagging != null) {
+                    out.writeUTF(objectTagging);
+                }
+                out.writeInt(content.length);
+                out.write(content);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            byte[] encoded = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(encoded, RECORD_HEADER_SIZE, encoded.length - RECORD_HEADER_SIZE);
+            ByteBuffer.wrap(encoded).putInt(encoded.length - RECORD_HEADER_SIZE).putInt((int) crc.getValue());
+            return encoded;
+        }
+
+        /**
+         * @throws IOException If the record is incomplete or does not match its checksum.
+         */
+        static Record read(FileChannel channel, long position, long end) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            readFully(channel, header, position, end);
+            int length = header.getInt(0);
+            int checksum = header.getInt(4);
+            if (length < 0 || length > end - position - RECORD_HEADER_SIZE) {
+                throw new IOException("Incomplete payload spool record of " + length + " bytes.");
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(channel, body, position + RECORD_HEADER_SIZE, end);
+            CRC32 crc = new CRC32();
+            crc.update(body.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Payload spool record does not match its checksum.");
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array()));
+            String s3BucketName = in.readUTF();
+            String s3Key = in.readUTF();
+            String objectTagging = in.readBoolean() ? in.readUTF() : null;
+            byte[] content = new byte[in.readInt()];
+            in.readFully(content);
+            return new Record(s3BucketName, s3Key, objectTagging, content);
+        }
+
+        /**
+         * @return the size of the record read at the given position, which was read successfully before.
+         */
+        static int sizeAt(FileChannel channel, long position) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            readFully(channel, header, position, Long.MAX_VALUE);
+            return RECORD_HEADER_SIZE + header.getInt(0);
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position, long end)
+                throws IOException {
+            while (buffer.hasRemaining()) {
+                long readPosition = position + buffer.position();
+                if (readPosition >= end || channel.read(buffer, readPosition) < 0) {
+                    throw new IOException("Incomplete payload spool record.");
+                }
+            }
+        }
+    }
+}
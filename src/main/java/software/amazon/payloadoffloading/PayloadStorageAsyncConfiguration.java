@@ -8,6 +8,8 @@ import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
 
+import java.util.concurrent.Executor;
+
 /**
  * <p>Amazon payload storage configuration options such as asynchronous Amazon S3 client,
  * bucket name, and payload size threshold for payloads.</p>
@@ -36,14 +38,20 @@ public class PayloadStorageAsyncConfiguration extends PayloadStorageConfiguratio
     private static final Logger LOG = LoggerFactory.getLogger(PayloadStorageAsyncConfiguration.class);
 
     private S3AsyncClient s3Async;
+    /**
+     * This field is optional, it is set only when continuations should not run on the S3 client's threads.
+     */
+    private Executor completionExecutor;
 
     public PayloadStorageAsyncConfiguration() {
         s3Async = null;
+        completionExecutor = null;
     }
 
     public PayloadStorageAsyncConfiguration(PayloadStorageAsyncConfiguration other) {
         super(other);
         this.s3Async = other.getS3AsyncClient();
+        this.completionExecutor = other.getCompletionExecutor();
     }
 
     /**
@@ -104,6 +112,42 @@ public class PayloadStorageAsyncConfiguration extends PayloadStorageConfiguratio
         return s3Async;
     }
 
+    /**
+     * Sets the executor that CPU heavy continuations run on, such as checksum verification and UTF-8 decoding of
+     * downloaded payloads, and that returned futures complete on.
+     *
+     * Responses are received on the threads of the S3 client's HTTP client, typically a few event loop threads
+     * shared by all requests. Without a completion executor, decoding multi-megabyte payloads and stages chained
+     * on the returned futures run on those threads and delay every other request. Pass the executor to
+     * {@link S3AsyncDao#withCompletionExecutor(Executor)}.
+     *
+     * @param completionExecutor The executor to use, or null to run continuations on the S3 client's threads.
+     */
+    public void setCompletionExecutor(Executor completionExecutor) {
+        this.completionExecutor = completionExecutor;
+    }
+
+    /**
+     * Sets the executor that CPU heavy continuations run on and that returned futures complete on.
+     *
+     * @param completionExecutor The executor to use, or null to run continuations on the S3 client's threads.
+     * @return the updated PayloadStorageAsyncConfiguration object.
+     * @see #setCompletionExecutor(Executor)
+     */
+    public PayloadStorageAsyncConfiguration withCompletionExecutor(Executor completionExecutor) {
+        setCompletionExecutor(completionExecutor);
+        return this;
+    }
+
+    /**
+     * Gets the executor that CPU heavy continuations run on.
+     *
+     * @return The completion executor. Default null.
+     */
+    public Executor getCompletionExecutor() {
+        return completionExecutor;
+    }
+
     /**
      * Sets the payload size threshold for storing payloads in Amazon S3.
      *
@@ -150,4 +194,26 @@ public class PayloadStorageAsyncConfiguration extends PayloadStorageConfiguratio
         setObjectCannedACL(objectCannedACL);
         return this;
     }
+
+    /**
+     * Sets the S3 lifecycle policy that expires stored payloads, replacing per-payload DeleteObject requests.
+     *
+     * @param lifecycleExpiry The expiry policy, or null to delete payloads explicitly.
+     * @return the updated PayloadStorageAsyncConfiguration object.
+     */
+    public PayloadStorageAsyncConfiguration withLifecycleExpiry(LifecycleExpiry lifecycleExpiry) {
+        setLifecycleExpiry(lifecycleExpiry);
+        return this;
+    }
+
+    /**
+     * Sets the timeout of payload operations, covering retries and all parts of a payload.
+     *
+     * @param operationTimeout The timeout, or null to rely on the timeouts of the S3 client only.
+     * @return the updated PayloadStorageAsyncConfiguration object.
+     */
+    public PayloadStorageAsyncConfiguration withOperationTimeout(OperationTimeout operationTimeout) {
+        setOperationTimeout(operationTimeout);
+        return this;
+    }
 }
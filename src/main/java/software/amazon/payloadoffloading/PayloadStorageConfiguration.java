@@ -148,4 +148,26 @@ public class PayloadStorageConfiguration extends PayloadStorageConfigurationBase
         setObjectCannedACL(objectCannedACL);
         return this;
     }
+
+    /**
+     * Sets the S3 lifecycle policy that expires stored payloads, replacing per-payload DeleteObject requests.
+     *
+     * @param lifecycleExpiry The expiry policy, or null to delete payloads explicitly.
+     * @return the updated PayloadStorageConfiguration object.
+     */
+    public PayloadStorageConfiguration withLifecycleExpiry(LifecycleExpiry lifecycleExpiry) {
+        setLifecycleExpiry(lifecycleExpiry);
+        return this;
+    }
+
+    /**
+     * Sets the timeout of payload operations, covering retries and all parts of a payload.
+     *
+     * @param operationTimeout The timeout, or null to rely on the timeouts of the S3 client only.
+     * @return the updated PayloadStorageConfiguration object.
+     */
+    public PayloadStorageConfiguration withOperationTimeout(OperationTimeout operationTimeout) {
+        setOperationTimeout(operationTimeout);
+        return this;
+    }
 }
@@ -30,6 +30,11 @@ public abstract class PayloadStorageConfigurationBase {
      * This field is optional, it is set only when we want to add access control list to Amazon S3 buckets and objects
      */
     private ObjectCannedACL objectCannedACL;
+    /**
+     * This field is optional, it is set only when payloads are expired by an S3 lifecycle rule instead of deleted.
+     */
+    private LifecycleExpiry lifecycleExpiry;
+    private OperationTimeout operationTimeout;
 
     public PayloadStorageConfigurationBase() {
         s3BucketName = null;
@@ -44,6 +49,8 @@ public abstract class PayloadStorageConfigurationBase {
         this.payloadSizeThreshold = other.getPayloadSizeThreshold();
         this.serverSideEncryptionStrategy = other.getServerSideEncryptionStrategy();
         this.objectCannedACL = other.getObjectCannedACL();
+        this.lifecycleExpiry = other.getLifecycleExpiry();
+        this.operationTimeout = other.getOperationTimeout();
     }
 
     /**
@@ -175,4 +182,50 @@ public abstract class PayloadStorageConfigurationBase {
     public ObjectCannedACL getObjectCannedACL() {
         return objectCannedACL;
     }
-}
\ No newline at end of file
+
+    /**
+     * Sets the S3 lifecycle policy that expires stored payloads, replacing per-payload DeleteObject requests.
+     *
+     * This is optional, it is set only when the bucket has the rule from
+     * {@link LifecycleExpiry#toLifecycleConfiguration()}.
+     *
+     * @param lifecycleExpiry The expiry policy, or null to delete payloads explicitly.
+     */
+    public void setLifecycleExpiry(LifecycleExpiry lifecycleExpiry) {
+        this.lifecycleExpiry = lifecycleExpiry;
+    }
+
+    /**
+     * Checks whether stored payloads are expired by an S3 lifecycle rule instead of being deleted.
+     * @return True if a lifecycle expiry policy is defined
+     */
+    public boolean isLifecycleExpiryEnabled() {
+        return null != lifecycleExpiry;
+    }
+
+    /**
+     * Gets the S3 lifecycle policy that expires stored payloads.
+     * @return The expiry policy. Default null.
+     */
+    public LifecycleExpiry getLifecycleExpiry() {
+        return lifecycleExpiry;
+    }
+
+    /**
+     * Sets the timeout of payload operations, covering retries and all parts of a payload, after which they
+     * fail with a {@link PayloadTimeoutException}.
+     *
+     * @param operationTimeout The timeout, or null to rely on the timeouts of the S3 client only.
+     */
+    public void setOperationTimeout(OperationTimeout operationTimeout) {
+        this.operationTimeout = operationTimeout;
+    }
+
+    /**
+     * Gets the timeout of payload operations.
+     * @return The operation timeout. Default null.
+     */
+    public OperationTimeout getOperationTimeout() {
+        return operationTimeout;
+    }
+}
@@ -1,5 +1,10 @@
 package software.amazon.payloadoffloading;
 
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
@@ -48,6 +53,48 @@ public interface PayloadStore {
      */
     String getOriginalPayload(String payloadPointer);
 
+    /**
+     * Gets a handle to the original payload that fetches it on first access, using
+     * {@link #getOriginalPayload(String)}. Payloads that are never accessed are never fetched.
+     *
+     * @param payloadPointer
+     * @return a lazy handle to the original payload.
+     */
+    default LazyPayload getLazyPayload(String payloadPointer) {
+        return LazyPayload.of(payloadPointer, this);
+    }
+
+    /**
+     * Creates a URL that gets the original payload over plain HTTP, without credentials or the AWS SDK, until
+     * it expires. The URL is signed locally, without sending any request, so that producers can hand out URLs
+     * at message rate. The payload is served as stored, without checksum verification.
+     *
+     * @param payloadPointer
+     * @param expiration time the URL is valid for, at most 7 days.
+     * @return presigned URL of the original payload.
+     * @throws SdkClientException  If the URL cannot be signed, for example if payloadPointer is invalid or
+     *                                points to a payload stored in chunks.
+     * @throws UnsupportedOperationException If the store does not support presigned URLs.
+     */
+    default URL presignGet(String payloadPointer, Duration expiration) {
+        throw new UnsupportedOperationException("Presigned URLs are not supported by " + getClass().getName() + ".");
+    }
+
+    /**
+     * Creates URLs that get the original payloads like {@link #presignGet(String, Duration)}.
+     *
+     * @param payloadPointers
+     * @param expiration time the URLs are valid for, at most 7 days.
+     * @return presigned URLs of the original payloads, in the order of the pointers.
+     */
+    default List<URL> presignGet(List<String> payloadPointers, Duration expiration) {
+        List<URL> urls = new ArrayList<>(payloadPointers.size());
+        for (String payloadPointer : payloadPointers) {
+            urls.add(presignGet(payloadPointer, expiration));
+        }
+        return urls;
+    }
+
     /**
      * Deletes the original payload using the given payloadPointer. The pointer must
      * have been obtained using {@link storeOriginalPayload}
@@ -0,0 +1,29 @@
+package software.amazon.payloadoffloading;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.time.Duration;
+
+/**
+ * Thrown when an operation on a payload does not finish within its timeout. The timeout covers the whole
+ * operation, including retries of its requests and all parts of payloads transferred in parts.
+ *
+ * @see OperationTimeout
+ */
+public class PayloadTimeoutException extends SdkClientException {
+    private static final long serialVersionUID = 1L;
+
+    private final Duration timeout;
+
+    PayloadTimeoutException(String message, Duration timeout, Throwable cause) {
+        super(SdkClientException.builder().message(message).cause(cause));
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return the timeout that the operation exceeded.
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,256 @@
+package software.amazon.payloadoffloading;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Collects an S3 object into a value converted from its content with a single copy of the content.
+ *
+ * <p>Unlike {@link AsyncResponseTransformer#toBytes()}, which grows a buffer as data arrives and then copies
+ * it again into the value, the content is written into a buffer presized from the Content-Length of the
+ * response and taken from a {@link ByteArrayPool}. The buffer is converted once, straight into the final value,
+ * and returned to the pool.</p>
+ *
+ * <p>Content is received on the thread of the HTTP client, typically an event loop thread. When an executor is
+ * given, checksum verification and conversion run on it instead, so that large payloads do not stall other
+ * requests sharing the event loop.</p>
+ *
+ * <p>When the future returned by {@link #prepare()} is cancelled or otherwise completed early, the subscription
+ * to the content is cancelled and the buffer is returned to the pool.</p>
+ *
+ * <p>When a memory budget is given, the Content-Length of the response is reserved in it before any content is
+ * requested, and released together with the buffer.</p>
+ *
+ * @see StringAsyncResponseTransformer
+ */
+class PooledAsyncResponseTransformer<T> implements AsyncResponseTransformer<GetObjectResponse, T> {
+    private static final int UNKNOWN_LENGTH_INITIAL_SIZE = ByteArrayPool.MIN_POOLED_SIZE;
+
+    private final ByteArrayPool pool;
+    private final String expectedChecksum;
+    private final ContentConverter<T> converter;
+    private final Executor decodeExecutor;
+    private final PayloadMemoryBudget memoryBudget;
+    private final Object lock = new Object();
+    private volatile CompletableFuture<T> future;
+    private volatile Subscription subscription;
+    private volatile byte[] buffer;
+    private int position;
+    // Guarded by lock.
+    private CompletableFuture<Void> reservation;
+    private long reservedBytes;
+
+    /**
+     * @param expectedChecksum checksum the content is verified against before conversion, or null to skip
+     *                         verification.
+     * @param converter        converter of the content to the value, which must not keep a reference to the
+     *                         buffer it is given.
+     * @param decodeExecutor   executor to verify and convert the content on, or null to do it on the thread that
+     *                         received the last part of the content.
+     */
+    PooledAsyncResponseTransformer(ByteArrayPool pool, String expectedChecksum, ContentConverter<T> converter,
+                                   Executor decodeExecutor) {
+        this(pool, expectedChecksum, converter, decodeExecutor, null);
+    }
+
+    /**
+     * @param memoryBudget budget to reserve the Content-Length of the response in, or null to not reserve it.
+     */
+    PooledAsyncResponseTransformer(ByteArrayPool pool, String expectedChecksum, ContentConverter<T> converter,
+                                   Executor decodeExecutor, PayloadMemoryBudget memoryBudget) {
+        this.pool = pool;
+        this.expectedChecksum = expectedChecksum;
+        this.converter = converter;
+        this.decodeExecutor = decodeExecutor;
+        this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    public CompletableFuture<T> prepare() {
+        // Called again for every retry attempt, so any buffer from a previous attempt is released.
+        releaseBuffer();
+        position = 0;
+        CompletableFuture<T> attempt = new CompletableFuture<>();
+        attempt.whenComplete((v, t) -> {
+            if (t != null) {
+                abort();
+            }
+        });
+        future = attempt;
+        return attempt;
+    }
+
+    @Override
+    public void onResponse(GetObjectResponse response) {
+        Long contentLength = response.contentLength();
+        int initialSize = contentLength != null && contentLength >= 0 && contentLength <= Integer.MAX_VALUE
+                ? contentLength.intValue() : UNKNOWN_LENGTH_INITIAL_SIZE;
+        synchronized (lock) {
+            if (!future.isDone()) {
+                if (memoryBudget != null && contentLength != null) {
+                    reservation = memoryBudget.reserve(contentLength);
+                    reservedBytes = contentLength;
+                }
+                buffer = pool.acquire(initialSize);
+            }
+        }
+    }
+
+    @Override
+    public void onStream(SdkPublisher<ByteBuffer> publisher) {
+        publisher.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                if (future.isDone()) {
+                    s.cancel();
+                    return;
+                }
+                CompletableFuture<Void> reserved;
+                synchronized (lock) {
+                    reserved = reservation;
+                }
+                if (reserved == null) {
+                    s.request(Long.MAX_VALUE);
+                    return;
+                }
+                // The content is only requested once its bytes were reserved.
+                reserved.whenComplete((v, t) -> {
+                    if (t != null) {
+                        s.cancel();
+                        exceptionOccurred(Util.unwrapFutureException(t));
+                    } else {
+                        s.request(Long.MAX_VALUE);
+                    }
+                });
+            }
+
+            @Override
+            public void onNext(ByteBuffer byteBuffer) {
+                append(byteBuffer);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                exceptionOccurred(t);
+            }
+
+            @Override
+            public void onComplete() {
+                complete();
+            }
+        });
+    }
+
+    @Override
+    public void exceptionOccurred(Throwable error) {
+        releaseBuffer();
+        future.completeExceptionally(error);
+    }
+
+    private void abort() {
+        Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+        releaseBuffer();
+    }
+
+    private void append(ByteBuffer byteBuffer) {
+        synchronized (lock) {
+            if (future.isDone()) {
+                // Cancelled, the buffer was already released.
+                return;
+            }
+            appendLocked(byteBuffer);
+        }
+    }
+
+    private void appendLocked(ByteBuffer byteBuffer) {
+        int remaining = byteBuffer.remaining();
+        byte[] current = buffer;
+        if (current == null) {
+            current = pool.acquire(Math.max(remaining, UNKNOWN_LENGTH_INITIAL_SIZE));
+        }
+        if (current.length - position < remaining) {
+            // Only reached when the Content-Length was missing or wrong.
+            byte[] grown = pool.acquire((int) Math.min(Integer.MAX_VALUE - 8,
+                    Math.max((long) current.length * 2, (long) position + remaining)));
+            System.arraycopy(current, 0, grown, 0, position);
+            pool.release(current);
+            current = grown;
+        }
+        byteBuffer.get(current, position, remaining);
+        position += remaining;
+        buffer = current;
+    }
+
+    private void complete() {
+        if (decodeExecutor == null) {
+            decode();
+            return;
+        }
+        try {
+            decodeExecutor.execute(this::decode);
+        } catch (RejectedExecutionException e) {
+            exceptionOccurred(e);
+        }
+    }
+
+    private void decode() {
+        T value;
+        synchronized (lock) {
+            if (future.isDone()) {
+                return;
+            }
+            byte[] content = buffer == null ? new byte[0] : buffer;
+            try {
+                Util.verifyChecksum(expectedChecksum, content, 0, position);
+                value = converter.convert(content, 0, position);
+            } catch (RuntimeException e) {
+                exceptionOccurred(e);
+                return;
+            }
+        }
+        releaseBuffer();
+        future.complete(value);
+    }
+
+    private void releaseBuffer() {
+        byte[] content;
+        CompletableFuture<Void> reserved;
+        long bytes;
+        synchronized (lock) {
+            content = buffer;
+            buffer = null;
+            reserved = reservation;
+            bytes = reservedBytes;
+            reservation = null;
+        }
+        if (content != null) {
+            pool.release(content);
+        }
+        // Withdrawn if still waiting, otherwise released.
+        if (reserved != null && !reserved.cancel(false) && !reserved.isCompletedExceptionally()) {
+            memoryBudget.release(bytes);
+        }
+    }
+
+    /**
+     * Converts the content of an object, held in a pooled buffer, to a value.
+     */
+    interface ContentConverter<T> {
+        /**
+         * @throws RuntimeException If the content cannot be converted, which fails the transformation.
+         */
+        T convert(byte[] content, int offset, int length);
+    }
+}
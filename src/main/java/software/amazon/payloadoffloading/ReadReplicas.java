@@ -0,0 +1,173 @@
+package software.amazon.payloadoffloading;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.annotations.ThreadSafe;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Replicas of source buckets, for example S3 Replication targets in other regions, with the clients to read
+ * them, and the latency of reads from every bucket as an exponentially weighted moving average.
+ *
+ * <p>A read of a source bucket is sent to whichever of the bucket and its replicas has the lowest average
+ * latency. Buckets that have not been read yet are tried first, and every {@value #PROBE_INTERVAL}th read goes
+ * to the bucket measured least recently, so that the averages of the others stay current. A failed read adds a
+ * penalty to the average of its bucket, so that a failing replica stops being selected until probes find it
+ * healthy again.</p>
+ *
+ * @param <C> type of the S3 clients.
+ */
+@ThreadSafe
+final class ReadReplicas<C> {
+    private static final Logger LOG = LoggerFactory.getLogger(ReadReplicas.class);
+    static final int PROBE_INTERVAL = 32;
+    private static final double LATENCY_WEIGHT = 0.2;
+    private static final long FAILURE_PENALTY_FACTOR = 10;
+    private static final long MIN_FAILURE_PENALTY_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private final LongSupplier nanoClock;
+    private final Map<String, List<Endpoint<C>>> endpointsBySource = new ConcurrentHashMap<>();
+    private final Map<String, Endpoint<C>> endpointsByBucket = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> readCounts = new ConcurrentHashMap<>();
+
+    ReadReplicas(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    void addReplica(String s3BucketName, C sourceClient, String replicaBucketName, C replicaClient) {
+        if (s3BucketName == null || replicaBucketName == null || replicaClient == null
+                || s3BucketName.equals(replicaBucketName)) {
+            String errorMessage = "Source and replica bucket names and the replica client cannot be null, and a "
+                    + "bucket cannot be its own replica.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        List<Endpoint<C>> endpoints = endpointsBySource.computeIfAbsent(s3BucketName, source -> {
+            Endpoint<C> sourceEndpoint = endpointsByBucket.computeIfAbsent(source,
+                    bucket -> new Endpoint<>(sourceClient, bucket, true));
+            List<Endpoint<C>> group = new CopyOnWriteArrayList<>();
+            group.add(sourceEndpoint);
+            return group;
+        });
+        Endpoint<C> replica = new Endpoint<>(replicaClient, replicaBucketName, false);
+        endpointsByBucket.put(replicaBucketName, replica);
+        endpoints.add(replica);
+        readCounts.putIfAbsent(s3BucketName, new AtomicLong());
+    }
+
+    /**
+     * @return the bucket to read objects of the source bucket from, or null if the bucket has no replicas.
+     */
+    Endpoint<C> select(String s3BucketName) {
+        List<Endpoint<C>> endpoints = endpointsBySource.get(s3BucketName);
+        if (endpoints == null) {
+            return null;
+        }
+        boolean probe = readCounts.get(s3BucketName).incrementAndGet() % PROBE_INTERVAL == 0;
+        Endpoint<C> selected = null;
+        for (Endpoint<C> endpoint : endpoints) {
+            if (endpoint.latencyNanos.get() < 0) {
+                return endpoint;
+            }
+            if (selected == null
+                    || (probe ? endpoint.lastRecordedNanos < selected.lastRecordedNanos
+                        : endpoint.latencyNanos.get() < selected.latencyNanos.get())) {
+                selected = endpoint;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @return the source or replica bucket with the given name, or null if it is not replicated.
+     */
+    Endpoint<C> getEndpoint(String s3BucketName) {
+        return endpointsByBucket.get(s3BucketName);
+    }
+
+    /**
+     * @return the average read latency of the bucket, or null if it has not been read or is not replicated.
+     */
+    Duration getLatency(String s3BucketName) {
+        Endpoint<C> endpoint = endpointsByBucket.get(s3BucketName);
+        long latencyNanos = endpoint != null ? endpoint.latencyNanos.get() : -1;
+        return latencyNanos >= 0 ? Duration.ofNanos(latencyNanos) : null;
+    }
+
+    /**
+     * @return whether a read that failed in a replica bucket should be sent to the source bucket, because the
+     * object is not replicated yet or the replica is failing.
+     */
+    static boolean shouldFallBack(Throwable t) {
+        return Util.isNotFound(t) || S3CircuitBreaker.isFailure(t);
+    }
+
+    long nanoTime() {
+        return nanoClock.getAsLong();
+    }
+
+    /**
+     * A bucket reads of a source bucket may be sent to, either the source itself or one of its replicas.
+     */
+    static final class Endpoint<C> {
+        private final C client;
+        private final String s3BucketName;
+        private final boolean source;
+        private final AtomicLong latencyNanos = new AtomicLong(-1);
+        private volatile long lastRecordedNanos;
+
+        private Endpoint(C client, String s3BucketName, boolean source) {
+            this.client = client;
+            this.s3BucketName = s3BucketName;
+            this.source = source;
+        }
+
+        C getClient() {
+            return client;
+        }
+
+        String getS3BucketName() {
+            return s3BucketName;
+        }
+
+        boolean isSource() {
+            return source;
+        }
+
+        /**
+         * Adds the time from sending a GET request to receiving its response to the average.
+         */
+        void recordLatency(long startNanos, long endNanos) {
+            record(endNanos - startNanos, endNanos);
+        }
+
+        /**
+         * Adds a penalty for a failed GET request to the average, a multiple of the time to the failure and at
+         * least {@link #MIN_FAILURE_PENALTY_NANOS}, so that fast failures do not look like fast reads.
+         */
+        void recordFailure(long startNanos, long endNanos) {
+            long elapsed = Math.max(0, endNanos - startNanos);
+            long penalty = elapsed > Long.MAX_VALUE / FAILURE_PENALTY_FACTOR ? Long.MAX_VALUE
+                    : Math.max(MIN_FAILURE_PENALTY_NANOS, elapsed * FAILURE_PENALTY_FACTOR);
+            record(penalty, endNanos);
+        }
+
+        private void record(long sample, long endNanos) {
+            long current;
+            long updated;
+            do {
+                current = latencyNanos.get();
+                updated = current < 0 ? sample : current + (long) (LATENCY_WEIGHT * (sample - current));
+            } while (!latencyNanos.compareAndSet(current, updated));
+            lastRecordedNanos = endNanos;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package software.amazon.payloadoffloading;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * PayloadStore that sends each payload to one of several stores by its size, for example small and hot payloads
+ * to an {@link S3BackedPayloadStore} on a low-latency bucket and larger ones to one on a standard bucket.
+ *
+ * <p>A payload goes to the route with the smallest maximum payload size it fits in, by its UTF-8 size, which is
+ * computed with a single scan of its chars. The pointer issued by the store of the route is returned in the
+ * compact format, naming the route, so that reads and deletes go to the same store whatever the routes of the
+ * reader. The stores must issue S3 object pointers, as all stores of this library do. Pointers that do not name a
+ * route are read from the route of the largest payloads.</p>
+ *
+ * <p>Routes are configured before the store is used, and each keeps metrics of the operations sent through it.</p>
+ */
+public class RoutingPayloadStore implements PayloadStore {
+    private final PayloadRouter<PayloadStore> router = new PayloadRouter<>();
+
+    /**
+     * Adds a route taking payloads up to the given size, which are larger than the payloads of all routes with
+     * a smaller maximum size.
+     *
+     * @param name           Name of the route, carried by the pointers of its payloads, so it must not change
+     *                       while they are in use.
+     * @param maxPayloadSize UTF-8 size in bytes of the largest payloads of the route, or Long.MAX_VALUE for all.
+     * @param payloadStore   Store the payloads of the route are stored in.
+     * @return this RoutingPayloadStore.
+     * @throws SdkClientException If the name is already used, or the maximum payload size is negative.
+     */
+    public RoutingPayloadStore withRoute(String name, long maxPayloadSize, PayloadStore payloadStore) {
+        router.addRoute(name, maxPayloadSize, payloadStore);
+        return this;
+    }
+
+    /**
+     * @return the route with the given name, with its metrics, or null if there is none.
+     */
+    public PayloadRoute getRoute(String name) {
+        return router.getRoute(name);
+    }
+
+    /**
+     * @return all routes in ascending order of their maximum payload size.
+     */
+    public List<PayloadRoute> getRoutes() {
+        return router.getRoutes();
+    }
+
+    @Override
+    public String storeOriginalPayload(String payload) {
+        return storeOriginalPayload(payload, UUID.randomUUID().toString());
+    }
+
+    /**
+     * @throws SdkClientException If the payload is larger than the maximum payload size of all routes.
+     */
+    @Override
+    public String storeOriginalPayload(String payload, String s3Key) {
+        long payloadSize = Util.getStringSizeInBytes(payload);
+        PayloadRoute route = router.forPayloadSize(payloadSize);
+        String payloadPointer;
+        try {
+            payloadPointer = PayloadRouter.routedPointer(router.storeOf(route).storeOriginalPayload(payload, s3Key),
+                    route);
+        } catch (RuntimeException e) {
+            route.recordFailed();
+            throw e;
+        }
+        route.recordStored(payloadSize);
+        return payloadPointer;
+    }
+
+    @Override
+    public String getOriginalPayload(String payloadPointer) {
+        PayloadRoute route = router.forPointer(PayloadS3Pointer.fromJson(payloadPointer));
+        String originalPayload;
+        try {
+            originalPayload = router.storeOf(route).getOriginalPayload(payloadPointer);
+        } catch (RuntimeException e) {
+            route.recordFailed();
+            throw e;
+        }
+        route.recordRead();
+        return originalPayload;
+    }
+
+    /**
+     * Creates a URL that gets the original payload through the store of the route named by the pointer.
+     */
+    @Override
+    public URL presignGet(String payloadPointer, Duration expiration) {
+        PayloadRoute route = router.forPointer(PayloadS3Pointer.fromJson(payloadPointer));
+        return router.storeOf(route).presignGet(payloadPointer, expiration);
+    }
+
+    @Override
+    public void deleteOriginalPayload(String payloadPointer) {
+        PayloadRoute route = router.forPointer(PayloadS3Pointer.fromJson(payloadPointer));
+        try {
+            router.storeOf(route).deleteOriginalPayload(payloadPointer);
+        } catch (RuntimeException e) {
+            route.recordFailed();
+            throw e;
+        }
+        route.recordDeleted();
+    }
+}
@@ -0,0 +1,123 @@
+package software.amazon.payloadoffloading;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+/**
+ * PayloadStoreAsync that sends each payload to one of several stores by its size, like
+ * {@link RoutingPayloadStore}.
+ */
+public class RoutingPayloadStoreAsync implements PayloadStoreAsync {
+    private final PayloadRouter<PayloadStoreAsync> router = new PayloadRouter<>();
+
+    /**
+     * Adds a route taking payloads up to the given size, which are larger than the payloads of all routes with
+     * a smaller maximum size.
+     *
+     * @param name              Name of the route, carried by the pointers of its payloads, so it must not change
+     *                          while they are in use.
+     * @param maxPayloadSize    UTF-8 size in bytes of the largest payloads of the route, or Long.MAX_VALUE for all.
+     * @param payloadStoreAsync Store the payloads of the route are stored in.
+     * @return this RoutingPayloadStoreAsync.
+     * @throws SdkClientException If the name is already used, or the maximum payload size is negative.
+     */
+    public RoutingPayloadStoreAsync withRoute(String name, long maxPayloadSize, PayloadStoreAsync payloadStoreAsync) {
+        router.addRoute(name, maxPayloadSize, payloadStoreAsync);
+        return this;
+    }
+
+    /**
+     * @return the route with the given name, with its metrics, or null if there is none.
+     */
+    public PayloadRoute getRoute(String name) {
+        return router.getRoute(name);
+    }
+
+    /**
+     * @return all routes in ascending order of their maximum payload size.
+     */
+    public List<PayloadRoute> getRoutes() {
+        return router.getRoutes();
+    }
+
+    @Override
+    public CompletableFuture<String> storeOriginalPayload(String payload) {
+        return storeOriginalPayload(payload, UUID.randomUUID().toString());
+    }
+
+    @Override
+    public CompletableFuture<String> storeOriginalPayload(String payload, String s3Key) {
+        try {
+            long payloadSize = Util.getStringSizeInBytes(payload);
+            PayloadRoute route = router.forPayloadSize(payloadSize);
+            CompletableFuture<String> storedFuture = router.storeOf(route).storeOriginalPayload(payload, s3Key);
+            return Util.propagateCancellation(storedFuture
+                .thenApply(payloadPointer -> PayloadRouter.routedPointer(payloadPointer, route))
+                .whenComplete((payloadPointer, t) -> {
+                    if (t != null) {
+                        route.recordFailed();
+                    } else {
+                        route.recordStored(payloadSize);
+                    }
+                }), storedFuture);
+        } catch (Exception e) {
+            CompletableFuture<String> futureEx = new CompletableFuture<>();
+            futureEx.completeExceptionally((e instanceof RuntimeException) ? e : new CompletionException(e));
+            return futureEx;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> getOriginalPayload(String payloadPointer) {
+        try {
+            PayloadRoute route = router.forPointer(PayloadS3Pointer.fromJson(payloadPointer));
+            CompletableFuture<String> originalPayloadFuture = router.storeOf(route).getOriginalPayload(payloadPointer);
+            return Util.propagateCancellation(originalPayloadFuture
+                .whenComplete((originalPayload, t) -> {
+                    if (t != null) {
+                        route.recordFailed();
+                    } else {
+                        route.recordRead();
+                    }
+                }), originalPayloadFuture);
+        } catch (Exception e) {
+            CompletableFuture<String> futureEx = new CompletableFuture<>();
+            futureEx.completeExceptionally((e instanceof RuntimeException) ? e : new CompletionException(e));
+            return futureEx;
+        }
+    }
+
+    /**
+     * Creates a URL that gets the original payload through the store of the route named by the pointer.
+     */
+    @Override
+    public URL presignGet(String payloadPointer, Duration expiration) {
+        PayloadRoute route = router.forPointer(PayloadS3Pointer.fromJson(payloadPointer));
+        return router.storeOf(route).presignGet(payloadPointer, expiration);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteOriginalPayload(String payloadPointer) {
+        try {
+            PayloadRoute route = router.forPointer(PayloadS3Pointer.fromJson(payloadPointer));
+            CompletableFuture<Void> deletedFuture = router.storeOf(route).deleteOriginalPayload(payloadPointer);
+            return Util.propagateCancellation(deletedFuture
+                .whenComplete((v, t) -> {
+                    if (t != null) {
+                        route.recordFailed();
+                    } else {
+                        route.recordDeleted();
+                    }
+                }), deletedFuture);
+        } catch (Exception e) {
+            CompletableFuture<Void> futureEx = new CompletableFuture<>();
+            futureEx.completeExceptionally((e instanceof RuntimeException) ? e : new CompletionException(e));
+            return futureEx;
+        }
+    }
+}
@@ -1,29 +1,71 @@
 package software.amazon.payloadoffloading;
 
-import java.io.UncheckedIOException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.utils.IoUtils;
 
 /**
  * Dao layer to access S3.
+ *
+ * <p>Threading model: requests are sent from the calling thread, and their responses are received on the
+ * threads of the S3 client's HTTP client, typically a small number of event loop threads shared by all
+ * requests. Without a completion executor, checksum verification, UTF-8 decoding, cache writes and any stages
+ * callers chain on the returned futures may run on those threads. With
+ * {@link #withCompletionExecutor(Executor)}, all of that work runs on the given executor instead, and the
+ * returned futures complete on it, except for payloads served from the cache which complete on the calling
+ * thread. Futures failed by an operation timeout complete on a shared timer thread.</p>
  */
 public class S3AsyncDao {
     private static final Logger LOG = LoggerFactory.getLogger(S3AsyncDao.class);
+    private static final long DEFAULT_RANGED_GET_PART_SIZE = 8L * 1024 * 1024;
+    private static final int DEFAULT_RANGED_GET_PARALLELISM = 8;
+    private static final int DEFAULT_MULTIPART_PARALLELISM = 4;
     private final S3AsyncClient s3Client;
     private final ServerSideEncryptionStrategy serverSideEncryptionStrategy;
     private final ObjectCannedACL objectCannedACL;
+    private DiskPayloadCache payloadCache;
+    private long rangedGetPartSize = DEFAULT_RANGED_GET_PART_SIZE;
+    private int rangedGetParallelism = DEFAULT_RANGED_GET_PARALLELISM;
+    private Executor completionExecutor;
+    private S3CircuitBreaker circuitBreaker;
+    private long multipartPartSize = S3Dao.DEFAULT_MULTIPART_PART_SIZE;
+    private int multipartParallelism = DEFAULT_MULTIPART_PARALLELISM;
+    private S3Presigner presigner;
+    private int notFoundRetries;
+    private Duration notFoundRetryDelay = Duration.ZERO;
+    private final ReadReplicas<S3AsyncClient> readReplicas = new ReadReplicas<>(System::nanoTime);
 
     public S3AsyncDao(S3AsyncClient s3Client) {
         this(s3Client, null, null);
@@ -38,38 +80,582 @@ public class S3AsyncDao {
         this.objectCannedACL = objectCannedACL;
     }
 
+    /**
+     * Serves reads from the given local disk cache when possible, and adds payloads read from S3 to it.
+     *
+     * @param payloadCache cache to use, or null to disable caching.
+     * @return this S3AsyncDao.
+     */
+    public S3AsyncDao withPayloadCache(DiskPayloadCache payloadCache) {
+        this.payloadCache = payloadCache;
+        return this;
+    }
+
+    /**
+     * Sets the part size for payloads of known size downloaded with parallel ranged GETs. Payloads up to this
+     * size are downloaded with a single GET.
+     *
+     * @param rangedGetPartSize part size in bytes, between 1 byte and 2GB. Default: 8MB.
+     * @return this S3AsyncDao.
+     */
+    public S3AsyncDao withRangedGetPartSize(long rangedGetPartSize) {
+        return withRangedGetPartSize(rangedGetPartSize, rangedGetParallelism);
+    }
+
+    /**
+     * Sets the part size and the number of parts in flight for payloads of known size downloaded with parallel
+     * ranged GETs. Every part in flight takes a connection of the S3 client, which has 50 by default.
+     *
+     * @param rangedGetPartSize    part size in bytes, between 1 byte and 2GB. Default: 8MB.
+     * @param rangedGetParallelism maximum number of parts of a payload in flight at the same time. Default: 8.
+     * @return this S3AsyncDao.
+     */
+    public S3AsyncDao withRangedGetPartSize(long rangedGetPartSize, int rangedGetParallelism) {
+        Util.checkRangedGets(rangedGetPartSize, rangedGetParallelism);
+        this.rangedGetPartSize = rangedGetPartSize;
+        this.rangedGetParallelism = rangedGetParallelism;
+        return this;
+    }
+
+    /**
+     * Sets the executor that CPU heavy continuations, such as checksum verification and decoding of payloads,
+     * run on and that returned futures complete on, keeping that work off the HTTP client's event loop threads.
+     *
+     * @param completionExecutor executor to use, or null to run continuations on the thread that completed the
+     *                           request.
+     * @return this S3AsyncDao.
+     */
+    public S3AsyncDao withCompletionExecutor(Executor completionExecutor) {
+        this.completionExecutor = completionExecutor;
+        return this;
+    }
+
+    /**
+     * Fails requests fast while recent requests to their bucket failed or were slow, see {@link S3CircuitBreaker}.
+     * Payloads served from the cache are not affected, and payloads downloaded with parallel ranged GETs or in
+     * chunks count as one request.
+     *
+     * @param circuitBreaker circuit breaker to use, or null to always send requests.
+     * @return this S3AsyncDao.
+     */
+    public S3AsyncDao withCircuitBreaker(S3CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    /**
+     * Sets how payloads of unknown length stored from a publisher are uploaded. Each multipart upload holds up to
+     * the parallelism plus one parts in memory.
+     *
+     * @param multipartPartSize    part size in bytes, between 5MB and 2GB. Default: 8MB.
+     * @param multipartParallelism maximum number of parts of an upload in flight at the same time. Default: 4.
+     * @return this S3AsyncDao.
+     */
+    public S3AsyncDao withMultipartUpload(long multipartPartSize, int multipartParallelism) {
+        Util.checkMultipartPartSize(multipartPartSize);
+        if (multipartParallelism < 1) {
+            String errorMessage = "Multipart upload parallelism must be at least 1.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        this.multipartPartSize = multipartPartSize;
+        this.multipartParallelism = multipartParallelism;
+        return this;
+    }
+
+    /**
+     * Reads objects of a bucket from whichever of the bucket and its replicas, for example S3 Replication targets
+     * in the regions of consumers, had the lowest recent latency. Reads of objects not found in the replica, for
+     * example because of replication lag, and reads the replica fails with a server, throttling or client error
+     * fall back to the source bucket. Failures count against the latency of the bucket. Writes and deletes always
+     * go to the source bucket. May be called once per replica.
+     *
+     * @param s3BucketName      source bucket named by pointers.
+     * @param replicaBucketName bucket the objects of the source bucket are replicated to.
+     * @param replicaClient     client to read the replica bucket with, typically of the region of the replica.
+     * @return this S3AsyncDao.
+     */
+    public S3AsyncDao withReadReplica(String s3BucketName, String replicaBucketName, S3AsyncClient replicaClient) {
+        readReplicas.addReplica(s3BucketName, s3Client, replicaBucketName, replicaClient);
+        return this;
+    }
+
+    /**
+     * Gets the average time to the response of recent GET requests to a replicated bucket or one of its
+     * replicas, which reads are routed by.
+     *
+     * @return the exponentially weighted moving average of the latency, or null if the bucket has not been read
+     * or is not replicated.
+     */
+    public Duration getReadLatency(String s3BucketName) {
+        return readReplicas.getLatency(s3BucketName);
+    }
+
+    /**
+     * Retries reads of objects that are not found, for consumers of payloads stored with a
+     * {@link WriteBehindUploader} whose pointers may arrive before the upload finished. Retries are scheduled
+     * on a shared timer thread, and stop once the timeout of the read would expire before the next one.
+     *
+     * @param maxRetries maximum number of retries of a read, or 0 to fail right away. Default: 0
+     * @param delay      time to wait before each retry.
+     * @return this S3AsyncDao.
+     */
+    public S3AsyncDao withNotFoundRetry(int maxRetries, Duration delay) {
+        Util.checkNotFoundRetry(maxRetries, delay);
+        this.notFoundRetries = maxRetries;
+        this.notFoundRetryDelay = delay;
+        return this;
+    }
+
+    /**
+     * Signs the URLs of {@link #presignGetObject(String, String, Duration)} with the given presigner, which
+     * signs locally without sending any request. The presigner must be of the region and credentials of the
+     * buckets, and is not closed by this S3AsyncDao.
+     *
+     * @param presigner presigner to use, or null to disable presigned URLs.
+     * @return this S3AsyncDao.
+     */
+    public S3AsyncDao withPresigner(S3Presigner presigner) {
+        this.presigner = presigner;
+        return this;
+    }
+
+    /**
+     * Creates a URL that gets an S3 object over plain HTTP, without credentials, until it expires. URLs always
+     * name the given bucket, not one of its read replicas.
+     *
+     * @param expiration time the URL is valid for, at most 7 days.
+     * @return presigned URL of the object.
+     * @throws SdkClientException If no presigner is configured, or the URL cannot be signed.
+     */
+    public URL presignGetObject(String s3BucketName, String s3Key, Duration expiration) {
+        return Util.presignGetObject(presigner, s3BucketName, s3Key, expiration);
+    }
+
     public CompletableFuture<String> getTextFromS3(String s3BucketName, String s3Key) {
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                .bucket(s3BucketName)
-                .key(s3Key)
-                .build();
+        return getTextFromS3(s3BucketName, s3Key, -1, null);
+    }
+
+    /**
+     * Gets a payload whose size and checksum may be known, for example from a compact pointer. Payloads larger
+     * than the ranged GET part size are downloaded in parallel parts straight into an exactly sized buffer.
+     *
+     * @param payloadSize size of the payload in bytes, or -1 if unknown.
+     * @param checksum    checksum to verify the payload against, or null to skip verification.
+     */
+    public CompletableFuture<String> getTextFromS3(String s3BucketName, String s3Key, long payloadSize,
+                                                   String checksum) {
+        return getTextFromS3(s3BucketName, s3Key, payloadSize, checksum, null);
+    }
+
+    /**
+     * Gets a payload within the given timeout, which covers the GET requests, their retries and all parts of
+     * payloads downloaded with ranged GETs. Requests still in flight when the timeout expires are cancelled.
+     *
+     * @param timeout timeout of the operation, or null for none.
+     * @return future value of the payload, failing with a {@link PayloadTimeoutException} on timeout.
+     */
+    public CompletableFuture<String> getTextFromS3(String s3BucketName, String s3Key, long payloadSize,
+                                                   String checksum, Duration timeout) {
+        return getTextFromS3(s3BucketName, s3Key, payloadSize, checksum, timeout, null);
+    }
+
+    /**
+     * Gets a payload like {@link #getTextFromS3(String, String, long, String, Duration)}, reserving the
+     * Content-Length of a payload of unknown size in the given budget before its content is buffered.
+     *
+     * @param memoryBudget budget to reserve payloads of unknown size in, or null to not reserve them.
+     */
+    CompletableFuture<String> getTextFromS3(String s3BucketName, String s3Key, long payloadSize, String checksum,
+                                            Duration timeout, PayloadMemoryBudget memoryBudget) {
+        if (payloadCache != null) {
+            String cachedText = payloadCache.get(s3BucketName, s3Key);
+            if (cachedText != null) {
+                return CompletableFuture.completedFuture(cachedText);
+            }
+        }
+        long cacheGeneration = payloadCache != null ? payloadCache.getGeneration(s3BucketName, s3Key) : -1;
+
+        CompletableFuture<String> text = readFromS3(s3BucketName, timeout,
+                (client, bucket, remaining, endpoint, quietNotFound) -> sendGetObject(client, bucket, s3Key,
+                        payloadSize, checksum, remaining, Util::decodeUtf8, endpoint, quietNotFound,
+                        payloadSize < 0 ? memoryBudget : null));
+        if (payloadCache == null) {
+            return text;
+        }
+        return Util.propagateCancellation(text.thenApply(v -> {
+            payloadCache.put(s3BucketName, s3Key, v, cacheGeneration);
+            return v;
+        }), text);
+    }
+
+    /**
+     * Gets a payload deserialized straight from the buffer its content was received into, without decoding it to
+     * a String first. Payloads larger than the ranged GET part size are downloaded in parallel parts like text
+     * payloads. The payload is not cached.
+     *
+     * @param payloadSize  size of the payload in bytes, or -1 if unknown.
+     * @param checksum     checksum to verify the payload against, or null to skip verification.
+     * @param deserializer deserializer reading the payload from the content of the object.
+     * @param timeout      timeout of the operation, or null for none.
+     * @return future value of the payload, failing with a {@link PayloadTimeoutException} on timeout.
+     */
+    public <T> CompletableFuture<T> getValueFromS3(String s3BucketName, String s3Key, long payloadSize,
+                                                   String checksum, PayloadDeserializer<T> deserializer,
+                                                   Duration timeout) {
+        return readFromS3(s3BucketName, timeout,
+                (client, bucket, remaining, endpoint, quietNotFound) -> sendGetObject(client, bucket, s3Key,
+                        payloadSize, checksum, remaining, deserializing(deserializer), endpoint, quietNotFound, null));
+    }
+
+    private <T> CompletableFuture<T> sendGetObject(S3AsyncClient client, String s3BucketName, String s3Key,
+                                                   long payloadSize, String checksum, Duration timeout,
+                                                   PooledAsyncResponseTransformer.ContentConverter<T> converter,
+                                                   ReadReplicas.Endpoint<S3AsyncClient> endpoint,
+                                                   boolean quietNotFound, PayloadMemoryBudget memoryBudget) {
+        Deadline deadline = Deadline.after(timeout);
+        CompletableFuture<T> value;
+        if (payloadSize > rangedGetPartSize && payloadSize <= Integer.MAX_VALUE - 8) {
+            value = getRangesFromS3(client, s3BucketName, s3Key, (int) payloadSize, checksum, converter, deadline,
+                    endpoint);
+        } else {
+            GetObjectRequest getObjectRequest = deadline.apply(GetObjectRequest.builder()
+                    .bucket(s3BucketName)
+                    .key(s3Key))
+                    .build();
+            value = client.getObject(getObjectRequest, timed(new PooledAsyncResponseTransformer<>(
+                    ByteArrayPool.shared(), checksum, converter, completionExecutor, memoryBudget), endpoint));
+        }
 
-        return s3Client.getObject(getObjectRequest, AsyncResponseTransformer.toBytes())
-            .thenApply(ResponseBytes::asUtf8String)
-            .handle((v, tIn) -> {
+        CompletableFuture<T> result = value
+            .handleAsync((v, tIn) -> {
                 if (tIn != null) {
                     Throwable t = Util.unwrapFutureException(tIn);
+                    if (deadline.isTimeout(t)) {
+                        throw timeoutException(deadline, "Getting the payload from S3", t);
+                    }
+                    if ((quietNotFound && Util.isNotFound(t)) || t instanceof MemoryBudgetExceededException) {
+                        throw new CompletionException(t);
+                    }
                     if (t instanceof SdkException) {
                         String errorMessage = "Failed to get the S3 object which contains the payload.";
                         LOG.error(errorMessage, t);
                         throw SdkException.create(errorMessage, t);
                     }
-                    if (t instanceof UncheckedIOException) {
-                        String errorMessage = "Failure when handling the message which was read from S3 object.";
+                    throw new CompletionException(t);
+                }
+                return v;
+            }, completionExecutor());
+        return deadline.enforce(Util.propagateCancellation(result, value), "Getting the payload from S3");
+    }
+
+    private <T> CompletableFuture<T> getRangesFromS3(S3AsyncClient client, String s3BucketName, String s3Key,
+                                                     int payloadSize, String checksum,
+                                                     PooledAsyncResponseTransformer.ContentConverter<T> converter,
+                                                     Deadline deadline, ReadReplicas.Endpoint<S3AsyncClient> endpoint) {
+        byte[] content = new byte[payloadSize];
+        int partCount = (int) ((payloadSize + rangedGetPartSize - 1) / rangedGetPartSize);
+        // The first failed part cancels the parts in flight, so that they stop writing into the buffer.
+        CompletableFuture<Void> parts = Util.forEachBounded(partCount, rangedGetParallelism, i -> {
+            int offset = (int) (i * rangedGetPartSize);
+            int length = (int) Math.min(rangedGetPartSize, payloadSize - offset);
+            GetObjectRequest getObjectRequest = deadline.apply(GetObjectRequest.builder()
+                    .bucket(s3BucketName)
+                    .key(s3Key)
+                    .range("bytes=" + offset + "-" + (offset + length - 1)))
+                    .build();
+            return client.getObject(getObjectRequest,
+                    timed(new ByteRangeAsyncResponseTransformer(content, offset, length), endpoint));
+        });
+        CompletableFuture<T> result = parts.thenApplyAsync(v -> {
+            Util.verifyChecksum(checksum, content, 0, payloadSize);
+            return converter.convert(content, 0, payloadSize);
+        }, completionExecutor());
+        return Util.propagateCancellation(result, parts);
+    }
+
+    /**
+     * Gets a payload stored in chunks, downloading up to the given number of chunks in parallel straight into
+     * one exactly sized buffer, and verifying the checksum of every chunk. Chunked payloads are not cached.
+     *
+     * @param manifest    pointer listing the chunks of the payload.
+     * @param parallelism maximum number of chunks downloaded at the same time.
+     * @param timeout     timeout of the operation covering all chunks, or null for none.
+     * @return future value of the payload, failing with a {@link PayloadTimeoutException} on timeout.
+     */
+    public CompletableFuture<String> getChunkedTextFromS3(PayloadS3Pointer manifest, int parallelism,
+                                                          Duration timeout) {
+        return getChunksFromS3(manifest, parallelism, timeout, Util::decodeUtf8);
+    }
+
+    /**
+     * Gets a payload stored in chunks like {@link #getChunkedTextFromS3(PayloadS3Pointer, int, Duration)}, and
+     * deserializes it straight from the buffer the chunks were downloaded into.
+     *
+     * @param deserializer deserializer reading the payload from the content of the chunks.
+     * @return future value of the payload, failing with a {@link PayloadTimeoutException} on timeout.
+     */
+    public <T> CompletableFuture<T> getChunkedValueFromS3(PayloadS3Pointer manifest, int parallelism,
+                                                          PayloadDeserializer<T> deserializer, Duration timeout) {
+        return getChunksFromS3(manifest, parallelism, timeout, deserializing(deserializer));
+    }
+
+    private <T> CompletableFuture<T> getChunksFromS3(PayloadS3Pointer manifest, int parallelism, Duration timeout,
+                                                     PooledAsyncResponseTransformer.ContentConverter<T> converter) {
+        if (manifest.getPayloadSize() > Integer.MAX_VALUE - 8) {
+            CompletableFuture<T> futureEx = new CompletableFuture<>();
+            futureEx.completeExceptionally(SdkClientException.create("Payload of " + manifest.getPayloadSize()
+                    + " bytes is too large to be read as text, read it as a stream instead."));
+            return futureEx;
+        }
+        return readFromS3(manifest.getS3BucketName(), timeout,
+                (client, bucket, remaining, endpoint, quietNotFound) -> sendChunkedGetObjects(client, bucket, manifest,
+                        parallelism, remaining, converter, endpoint, quietNotFound));
+    }
+
+    private <T> CompletableFuture<T> sendChunkedGetObjects(S3AsyncClient client, String s3BucketName,
+                                                           PayloadS3Pointer manifest, int parallelism,
+                                                           Duration timeout,
+                                                           PooledAsyncResponseTransformer.ContentConverter<T> converter,
+                                                           ReadReplicas.Endpoint<S3AsyncClient> endpoint,
+                                                           boolean quietNotFound) {
+        Deadline deadline = Deadline.after(timeout);
+        byte[] content = new byte[(int) manifest.getPayloadSize()];
+        CompletableFuture<Void> chunks = Util.forEachBounded(manifest.getChunkCount(), parallelism, i -> {
+            GetObjectRequest getObjectRequest = deadline.apply(GetObjectRequest.builder()
+                    .bucket(s3BucketName)
+                    .key(manifest.getChunkKey(i)))
+                    .build();
+            return client.getObject(getObjectRequest, timed(new ByteRangeAsyncResponseTransformer(content,
+                    (int) (i * manifest.getChunkSize()), (int) manifest.getChunkLength(i)), endpoint));
+        });
+        CompletableFuture<T> result = chunks
+            .handleAsync((v, tIn) -> {
+                if (tIn != null) {
+                    Throwable t = Util.unwrapFutureException(tIn);
+                    if (deadline.isTimeout(t)) {
+                        throw timeoutException(deadline, "Getting the payload chunks from S3", t);
+                    }
+                    if (quietNotFound && Util.isNotFound(t)) {
+                        throw new CompletionException(t);
+                    }
+                    if (t instanceof SdkException) {
+                        String errorMessage = "Failed to get the S3 objects which contain the payload chunks.";
+                        LOG.error(errorMessage, t);
+                        throw SdkException.create(errorMessage, t);
+                    }
+                    throw new CompletionException(t);
+                }
+                for (int i = 0; i < manifest.getChunkCount(); i++) {
+                    Util.verifyChecksum(manifest.getChunkChecksums().get(i), content,
+                            (int) (i * manifest.getChunkSize()), (int) manifest.getChunkLength(i));
+                }
+                return converter.convert(content, 0, content.length);
+            }, completionExecutor());
+        return deadline.enforce(Util.propagateCancellation(result, chunks), "Getting the payload chunks from S3");
+    }
+
+    /**
+     * Writes the content of an S3 object to a file as it is received, without buffering it in memory, and
+     * verifies the size and checksum of what was written. The content is not cached.
+     *
+     * @param size     size of the object in bytes, or -1 if unknown.
+     * @param checksum checksum to verify the content against, or null to skip verification.
+     * @param file     existing file whose content is replaced.
+     * @param timeout  timeout of the operation, or null for none.
+     * @return future that completes once the content is written, failing with a {@link PayloadTimeoutException}
+     * on timeout.
+     */
+    public CompletableFuture<Void> getFileFromS3(String s3BucketName, String s3Key, long size, String checksum,
+                                                 Path file, Duration timeout) {
+        return readFromS3(s3BucketName, timeout,
+                (client, bucket, remaining, endpoint, quietNotFound) -> sendGetObjectsToFile(client, bucket, file, 1, 1,
+                        remaining, "Getting the payload from S3",
+                        "Failed to get the S3 object which contains the payload.",
+                        (i, channel) -> new FileRangeAsyncResponseTransformer(channel, 0, size, checksum),
+                        i -> s3Key, endpoint, quietNotFound));
+    }
+
+    /**
+     * Writes a payload stored in chunks to a file, downloading up to the given number of chunks in parallel
+     * straight into their place in the file, and verifying the checksum of every chunk.
+     *
+     * @param manifest    pointer listing the chunks of the payload.
+     * @param parallelism maximum number of chunks downloaded at the same time.
+     * @param file        existing file whose content is replaced.
+     * @param timeout     timeout of the operation covering all chunks, or null for none.
+     * @return future that completes once the payload is written, failing with a {@link PayloadTimeoutException}
+     * on timeout.
+     */
+    public CompletableFuture<Void> getChunkedFileFromS3(PayloadS3Pointer manifest, int parallelism, Path file,
+                                                        Duration timeout) {
+        return readFromS3(manifest.getS3BucketName(), timeout,
+                (client, bucket, remaining, endpoint, quietNotFound) -> sendGetObjectsToFile(client, bucket, file,
+                        manifest.getChunkCount(), parallelism, remaining, "Getting the payload chunks from S3",
+                        "Failed to get the S3 objects which contain the payload chunks.",
+                        (i, channel) -> new FileRangeAsyncResponseTransformer(channel, i * manifest.getChunkSize(),
+                                manifest.getChunkLength(i), manifest.getChunkChecksums().get(i)),
+                        manifest::getChunkKey, endpoint, quietNotFound));
+    }
+
+    private CompletableFuture<Void> sendGetObjectsToFile(S3AsyncClient client, String s3BucketName, Path file,
+                                                         int count, int parallelism, Duration timeout,
+                                                         String operation, String errorMessage,
+                                                         BiFunction<Integer, FileChannel,
+                                                                 FileRangeAsyncResponseTransformer> transformers,
+                                                         IntFunction<String> s3Keys,
+                                                         ReadReplicas.Endpoint<S3AsyncClient> endpoint,
+                                                         boolean quietNotFound) {
+        Deadline deadline = Deadline.after(timeout);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            String openErrorMessage = "Failed to open the file to write the payload to.";
+            LOG.error(openErrorMessage, e);
+            CompletableFuture<Void> futureEx = new CompletableFuture<>();
+            futureEx.completeExceptionally(SdkClientException.create(openErrorMessage, e));
+            return futureEx;
+        }
+        CompletableFuture<Void> objects = Util.forEachBounded(count, parallelism, i -> {
+            GetObjectRequest getObjectRequest = deadline.apply(GetObjectRequest.builder()
+                    .bucket(s3BucketName)
+                    .key(s3Keys.apply(i)))
+                    .build();
+            return client.getObject(getObjectRequest, timed(transformers.apply(i, channel), endpoint));
+        });
+        CompletableFuture<Void> result = objects
+            .handleAsync((v, tIn) -> {
+                IoUtils.closeQuietly(channel, LOG);
+                if (tIn != null) {
+                    Throwable t = Util.unwrapFutureException(tIn);
+                    if (deadline.isTimeout(t)) {
+                        throw timeoutException(deadline, operation, t);
+                    }
+                    if (quietNotFound && Util.isNotFound(t)) {
+                        throw new CompletionException(t);
+                    }
+                    if (t instanceof SdkException) {
                         LOG.error(errorMessage, t);
-                        throw SdkClientException.create(errorMessage, t);
+                        throw SdkException.create(errorMessage, t);
                     }
                     throw new CompletionException(t);
                 }
                 return v;
-            });
+            }, completionExecutor());
+        return deadline.enforce(Util.propagateCancellation(result, objects), operation);
     }
 
     public CompletableFuture<Void> storeTextInS3(String s3BucketName, String s3Key, String payloadContentStr) {
+        return storeTextInS3(s3BucketName, s3Key, payloadContentStr, null);
+    }
+
+    /**
+     * @param objectTagging URL encoded tagging to store the object with, or null for none.
+     */
+    public CompletableFuture<Void> storeTextInS3(String s3BucketName, String s3Key, String payloadContentStr,
+                                                 String objectTagging) {
+        return storeTextInS3(s3BucketName, s3Key, payloadContentStr, objectTagging, null);
+    }
+
+    /**
+     * @param objectTagging URL encoded tagging to store the object with, or null for none.
+     * @param timeout       timeout of the PUT request including its retries, or null for none.
+     * @return future value that fails with a {@link PayloadTimeoutException} on timeout.
+     */
+    public CompletableFuture<Void> storeTextInS3(String s3BucketName, String s3Key, String payloadContentStr,
+                                                 String objectTagging, Duration timeout) {
+        return putObject(s3BucketName, s3Key, AsyncRequestBody.fromString(payloadContentStr), objectTagging,
+                Deadline.after(timeout));
+    }
+
+    /**
+     * Stores an already UTF-8 encoded payload. The array is uploaded without being copied, and must not be
+     * modified until the returned future completes.
+     */
+    public CompletableFuture<Void> storeBytesInS3(String s3BucketName, String s3Key, byte[] payloadBytes) {
+        return storeBytesInS3(s3BucketName, s3Key, payloadBytes, null);
+    }
+
+    /**
+     * @param objectTagging URL encoded tagging to store the object with, or null for none.
+     */
+    public CompletableFuture<Void> storeBytesInS3(String s3BucketName, String s3Key, byte[] payloadBytes,
+                                                  String objectTagging) {
+        return storeBytesInS3(s3BucketName, s3Key, payloadBytes, objectTagging, null);
+    }
+
+    /**
+     * @param objectTagging URL encoded tagging to store the object with, or null for none.
+     * @param timeout       timeout of the PUT request including its retries, or null for none.
+     * @return future value that fails with a {@link PayloadTimeoutException} on timeout.
+     */
+    public CompletableFuture<Void> storeBytesInS3(String s3BucketName, String s3Key, byte[] payloadBytes,
+                                                  String objectTagging, Duration timeout) {
+        return storeBytesInS3(s3BucketName, s3Key, payloadBytes, payloadBytes.length, objectTagging, timeout);
+    }
+
+    /**
+     * Stores the payload held in the first bytes of the array, for example a serialized payload in the buffer
+     * it was serialized into. The array is uploaded without being copied, and must not be modified until the
+     * returned future completes.
+     *
+     * @param length        size of the payload in bytes.
+     * @param objectTagging URL encoded tagging to store the object with, or null for none.
+     * @param timeout       timeout of the PUT request including its retries, or null for none.
+     * @return future value that fails with a {@link PayloadTimeoutException} on timeout.
+     */
+    public CompletableFuture<Void> storeBytesInS3(String s3BucketName, String s3Key, byte[] payloadBytes,
+                                                  int length, String objectTagging, Duration timeout) {
+        return storeBytesInS3(s3BucketName, s3Key, payloadBytes, 0, length, objectTagging, timeout);
+    }
+
+    /**
+     * Stores the payload held in a range of the array, for example a chunk of a larger payload, without copying
+     * it like {@link #storeBytesInS3(String, String, byte[], int, String, Duration)}.
+     *
+     * @param offset        index of the first byte of the payload in the array.
+     * @param length        size of the payload in bytes.
+     * @param objectTagging URL encoded tagging to store the object with, or null for none.
+     * @param timeout       timeout of the PUT request including its retries, or null for none.
+     * @return future value that fails with a {@link PayloadTimeoutException} on timeout.
+     */
+    public CompletableFuture<Void> storeBytesInS3(String s3BucketName, String s3Key, byte[] payloadBytes,
+                                                  int offset, int length, String objectTagging, Duration timeout) {
+        return putObject(s3BucketName, s3Key,
+                AsyncRequestBody.fromRemainingByteBufferUnsafe(ByteBuffer.wrap(payloadBytes, offset, length)),
+                objectTagging, Deadline.after(timeout));
+    }
+
+    private CompletableFuture<Void> putObject(String s3BucketName, String s3Key, AsyncRequestBody requestBody,
+                                              String objectTagging, Deadline deadline) {
+        return invalidatingCachedPayload(s3BucketName, s3Key, throughCircuitBreaker(s3BucketName,
+                S3CircuitBreaker.Operation.PUT,
+                () -> sendPutObject(s3BucketName, s3Key, requestBody, objectTagging, deadline)));
+    }
+
+    /**
+     * @return a future completing like the given one once the payload is dropped from the local cache, also after
+     * failures, which may have replaced the object anyway.
+     */
+    private <T> CompletableFuture<T> invalidatingCachedPayload(String s3BucketName, String s3Key,
+                                                               CompletableFuture<T> put) {
+        if (payloadCache == null) {
+            return put;
+        }
+        return Util.propagateCancellation(put.whenComplete((v, t) -> invalidateCachedPayload(s3BucketName, s3Key)),
+                put);
+    }
+
+    private PutObjectRequest.Builder putObjectRequest(String s3BucketName, String s3Key, String objectTagging) {
         PutObjectRequest.Builder putObjectRequestBuilder = PutObjectRequest.builder()
             .bucket(s3BucketName)
             .key(s3Key);
 
+        if (objectTagging != null) {
+            putObjectRequestBuilder.tagging(objectTagging);
+        }
+
         if (objectCannedACL != null) {
             putObjectRequestBuilder.acl(objectCannedACL);
         }
@@ -78,11 +664,20 @@ public class S3AsyncDao {
         if (serverSideEncryptionStrategy != null) {
             serverSideEncryptionStrategy.decorate(putObjectRequestBuilder);
         }
+        return putObjectRequestBuilder;
+    }
 
-        return s3Client.putObject(putObjectRequestBuilder.build(), AsyncRequestBody.fromString(payloadContentStr))
-            .handle((v, tIn) -> {
+    private CompletableFuture<Void> sendPutObject(String s3BucketName, String s3Key, AsyncRequestBody requestBody,
+                                                  String objectTagging, Deadline deadline) {
+        CompletableFuture<PutObjectResponse> response = s3Client.putObject(
+                deadline.apply(putObjectRequest(s3BucketName, s3Key, objectTagging)).build(), requestBody);
+        CompletableFuture<Void> result = response
+            .handleAsync((v, tIn) -> {
                 if (tIn != null) {
                     Throwable t = Util.unwrapFutureException(tIn);
+                    if (deadline.isTimeout(t)) {
+                        throw timeoutException(deadline, "Storing the payload in S3", t);
+                    }
                     if (t instanceof SdkException) {
                         String errorMessage = "Failed to store the message content in an S3 object.";
                         LOG.error(errorMessage, t);
@@ -91,18 +686,90 @@ public class S3AsyncDao {
                     throw new CompletionException(t);
                 }
                 return null;
-            });
+            }, completionExecutor());
+        return deadline.enforce(Util.propagateCancellation(result, response), "Storing the payload in S3");
+    }
+
+    /**
+     * Stores a payload of unknown length published as byte buffers, for example by an {@link AsyncRequestBody}.
+     * Payloads up to the multipart part size are stored with a single PUT. Larger payloads are uploaded with a
+     * multipart upload while they are published, with up to the multipart parallelism parts in flight. The
+     * publisher is asked for more content only while there is room for it, so that memory stays bounded
+     * whatever the size of the payload. A failed or cancelled multipart upload is aborted.
+     *
+     * @param objectTagging URL encoded tagging to store the object with, or null for none.
+     * @param timeout       timeout of the operation covering all requests, or null for none.
+     * @return future value of a pointer to the stored payload carrying its size and checksum, failing with a
+     * {@link PayloadTimeoutException} on timeout.
+     */
+    public CompletableFuture<PayloadS3Pointer> storeStreamInS3(String s3BucketName, String s3Key,
+                                                               Publisher<ByteBuffer> payload, String objectTagging,
+                                                               Duration timeout) {
+        return invalidatingCachedPayload(s3BucketName, s3Key, throughCircuitBreaker(s3BucketName,
+                S3CircuitBreaker.Operation.PUT,
+                () -> sendStream(s3BucketName, s3Key, payload, objectTagging, Deadline.after(timeout))));
+    }
+
+    private CompletableFuture<PayloadS3Pointer> sendStream(String s3BucketName, String s3Key,
+                                                           Publisher<ByteBuffer> payload, String objectTagging,
+                                                           Deadline deadline) {
+        MultipartUploadSubscriber subscriber = new MultipartUploadSubscriber(s3Client,
+                putObjectRequest(s3BucketName, s3Key, objectTagging).contentType(S3Dao.TEXT_CONTENT_TYPE).build(),
+                deadline, (int) multipartPartSize, multipartParallelism);
+        CompletableFuture<PayloadS3Pointer> upload = subscriber.future();
+        CompletableFuture<PayloadS3Pointer> result = upload
+            .handleAsync((v, tIn) -> {
+                if (tIn != null) {
+                    Throwable t = Util.unwrapFutureException(tIn);
+                    if (deadline.isTimeout(t)) {
+                        throw timeoutException(deadline, "Storing the payload in S3", t);
+                    }
+                    if (t instanceof SdkException) {
+                        String errorMessage = "Failed to store the message content in an S3 object with a "
+                                + "multipart upload.";
+                        LOG.error(errorMessage, t);
+                        throw SdkException.create(errorMessage, t);
+                    }
+                    String errorMessage = "Failed to read the payload to store in S3.";
+                    LOG.error(errorMessage, t);
+                    throw SdkClientException.create(errorMessage, t);
+                }
+                return v;
+            }, completionExecutor());
+        payload.subscribe(subscriber);
+        return deadline.enforce(Util.propagateCancellation(result, upload), "Storing the payload in S3");
     }
 
     public CompletableFuture<Void> deletePayloadFromS3(String s3BucketName, String s3Key) {
-        DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
+        return deletePayloadFromS3(s3BucketName, s3Key, null);
+    }
+
+    /**
+     * @param timeout timeout of the DELETE request including its retries, or null for none.
+     * @return future value that fails with a {@link PayloadTimeoutException} on timeout.
+     */
+    public CompletableFuture<Void> deletePayloadFromS3(String s3BucketName, String s3Key, Duration timeout) {
+        return throughCircuitBreaker(s3BucketName, S3CircuitBreaker.Operation.DELETE,
+                () -> sendDeleteObject(s3BucketName, s3Key, timeout));
+    }
+
+    private CompletableFuture<Void> sendDeleteObject(String s3BucketName, String s3Key, Duration timeout) {
+        Deadline deadline = Deadline.after(timeout);
+        DeleteObjectRequest deleteObjectRequest = deadline.apply(DeleteObjectRequest.builder()
                 .bucket(s3BucketName)
-                .key(s3Key)
+                .key(s3Key))
                 .build();
-        return s3Client.deleteObject(deleteObjectRequest)
-            .handle((v, tIn) -> {
+        if (payloadCache != null) {
+            payloadCache.invalidate(s3BucketName, s3Key);
+        }
+        CompletableFuture<DeleteObjectResponse> response = s3Client.deleteObject(deleteObjectRequest);
+        CompletableFuture<Void> result = response
+            .handleAsync((v, tIn) -> {
                 if (tIn != null) {
                     Throwable t = Util.unwrapFutureException(tIn);
+                    if (deadline.isTimeout(t)) {
+                        throw timeoutException(deadline, "Deleting the payload from S3", t);
+                    }
                     if (t instanceof SdkException) {
                         String errorMessage = "Failed to delete the S3 object which contains the payload";
                         LOG.error(errorMessage, t);
@@ -113,6 +780,231 @@ public class S3AsyncDao {
 
                 LOG.info("S3 object deleted, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
                 return null;
+            }, completionExecutor());
+        return deadline.enforce(Util.propagateCancellation(result, response), "Deleting the payload from S3");
+    }
+
+    /**
+     * Deletes several S3 objects, for example all chunks of a payload stored in chunks, with concurrent
+     * DeleteObjects requests of up to 1000 keys each.
+     *
+     * @param timeout timeout of the operation, or null for none.
+     * @return future value that fails with a {@link PayloadTimeoutException} on timeout.
+     */
+    public CompletableFuture<Void> deletePayloadsFromS3(String s3BucketName, List<String> s3Keys,
+                                                        Duration timeout) {
+        return throughCircuitBreaker(s3BucketName, S3CircuitBreaker.Operation.DELETE,
+                () -> sendDeleteObjects(s3BucketName, s3Keys, timeout));
+    }
+
+    private CompletableFuture<Void> sendDeleteObjects(String s3BucketName, List<String> s3Keys, Duration timeout) {
+        Deadline deadline = Deadline.after(timeout);
+        for (String s3Key : s3Keys) {
+            invalidateCachedPayload(s3BucketName, s3Key);
+        }
+        int batchCount = (s3Keys.size() + S3Dao.MAX_KEYS_PER_DELETE - 1) / S3Dao.MAX_KEYS_PER_DELETE;
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[batchCount];
+        for (int i = 0; i < batchCount; i++) {
+            int from = i * S3Dao.MAX_KEYS_PER_DELETE;
+            List<String> batch = s3Keys.subList(from, Math.min(from + S3Dao.MAX_KEYS_PER_DELETE, s3Keys.size()));
+            responses[i] = s3Client.deleteObjects(deadline.apply(DeleteObjectsRequest.builder()
+                    .bucket(s3BucketName)
+                    .delete(Util.deleteOf(batch)))
+                    .build());
+        }
+        CompletableFuture<Void> result = CompletableFuture.allOf(responses)
+            .handleAsync((v, tIn) -> {
+                if (tIn != null) {
+                    Throwable t = Util.unwrapFutureException(tIn);
+                    if (deadline.isTimeout(t)) {
+                        throw timeoutException(deadline, "Deleting the payloads from S3", t);
+                    }
+                    if (t instanceof SdkException) {
+                        String errorMessage = "Failed to delete the S3 objects which contain the payload";
+                        LOG.error(errorMessage, t);
+                        throw SdkException.create(errorMessage, t);
+                    }
+                    throw new CompletionException(t);
+                }
+                for (CompletableFuture<?> response : responses) {
+                    DeleteObjectsResponse deleted = (DeleteObjectsResponse) response.join();
+                    if (deleted.hasErrors() && !deleted.errors().isEmpty()) {
+                        String errorMessage = "Failed to delete " + deleted.errors().size() + " of the S3 objects "
+                                + "which contain the payload, first error: " + deleted.errors().get(0).message();
+                        LOG.error(errorMessage);
+                        throw SdkClientException.create(errorMessage);
+                    }
+                }
+
+                LOG.info("S3 objects deleted, Bucket name: " + s3BucketName + ", Object count: " + s3Keys.size()
+                        + ".");
+                return null;
+            }, completionExecutor());
+        return deadline.enforce(Util.propagateCancellation(result, responses), "Deleting the payloads from S3");
+    }
+
+    /**
+     * Sends a HeadBucket request to open a pooled connection to S3 ahead of the first payload. Failures, including
+     * access denied when the caller may not list the bucket, are logged and ignored since the connection is
+     * set up either way.
+     *
+     * @return future that completes normally once the request finished.
+     */
+    public CompletableFuture<Void> warmUpConnection(String s3BucketName) {
+        return s3Client.headBucket(HeadBucketRequest.builder().bucket(s3BucketName).build())
+            .handle((v, t) -> {
+                if (t != null) {
+                    LOG.debug("Warm-up request to S3 failed, Bucket name: " + s3BucketName + ".",
+                        Util.unwrapFutureException(t));
+                }
+                return null;
             });
     }
+
+    /**
+     * Drops a payload from the local cache without deleting it from S3, for payloads that are expired by a
+     * lifecycle rule. Payloads stored or deleted through this DAO are dropped already.
+     */
+    public void invalidateCachedPayload(String s3BucketName, String s3Key) {
+        if (payloadCache != null) {
+            payloadCache.invalidate(s3BucketName, s3Key);
+        }
+    }
+
+    private <T> CompletableFuture<T> throughCircuitBreaker(String s3BucketName, S3CircuitBreaker.Operation operation,
+                                                           Supplier<CompletableFuture<T>> request) {
+        return circuitBreaker != null ? circuitBreaker.callAsync(s3BucketName, operation, request) : request.get();
+    }
+
+    /**
+     * Sends a read, and sends it again after the retry delay while the object is not found, up to the maximum
+     * number of retries and within the same timeout.
+     */
+    private <T> CompletableFuture<T> readFromS3(String s3BucketName, Duration timeout, ReadRequest<T> request) {
+        if (notFoundRetries == 0) {
+            return readFromReplicas(s3BucketName, timeout, request, false);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        readWithNotFoundRetries(s3BucketName, Deadline.after(timeout), request, 0, result);
+        return result;
+    }
+
+    private <T> void readWithNotFoundRetries(String s3BucketName, Deadline deadline, ReadRequest<T> request,
+                                             int retry, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            // Cancelled while waiting to retry.
+            return;
+        }
+        boolean retryNotFound = retry < notFoundRetries;
+        CompletableFuture<T> read = readFromReplicas(s3BucketName, deadline.remaining(), request, retryNotFound);
+        Util.propagateCancellation(result, read);
+        read.whenComplete((v, t) -> {
+            if (t == null) {
+                result.complete(v);
+            } else if (!retryNotFound || !Util.isNotFound(t)) {
+                result.completeExceptionally(t);
+            } else if (!deadline.hasRemaining(notFoundRetryDelay)) {
+                Throwable cause = Util.unwrapFutureException(t);
+                String errorMessage = "Failed to get the S3 object which contains the payload.";
+                LOG.error(errorMessage, cause);
+                result.completeExceptionally(SdkException.create(errorMessage, cause));
+            } else {
+                // Not uploaded yet.
+                LOG.debug("S3 object not found, retrying, Bucket name: " + s3BucketName + ".");
+                Deadline.schedule(() -> readWithNotFoundRetries(s3BucketName, deadline, request, retry + 1, result),
+                        notFoundRetryDelay);
+            }
+        });
+    }
+
+    /**
+     * Sends a read of a source bucket to whichever of the bucket and its replicas is selected by latency, and
+     * sends it to the source bucket if the object is not found in the replica, within the same timeout.
+     *
+     * @param quietNotFound whether to fail with the exception of a missing object as is, without logging it.
+     */
+    private <T> CompletableFuture<T> readFromReplicas(String s3BucketName, Duration timeout, ReadRequest<T> request,
+                                                      boolean quietNotFound) {
+        ReadReplicas.Endpoint<S3AsyncClient> endpoint = readReplicas.select(s3BucketName);
+        if (endpoint == null || endpoint.isSource()) {
+            return throughCircuitBreaker(s3BucketName, S3CircuitBreaker.Operation.GET,
+                    () -> request.send(s3Client, s3BucketName, timeout, endpoint, quietNotFound));
+        }
+
+        Deadline deadline = Deadline.after(timeout);
+        CompletableFuture<T> replicaRead = throughCircuitBreaker(endpoint.getS3BucketName(),
+                S3CircuitBreaker.Operation.GET,
+                () -> request.send(endpoint.getClient(), endpoint.getS3BucketName(), deadline.remaining(), endpoint,
+                        true));
+        CompletableFuture<T> result = new CompletableFuture<>();
+        replicaRead.whenComplete((v, t) -> {
+            if (t == null) {
+                result.complete(v);
+                return;
+            }
+            if (result.isDone() || !ReadReplicas.shouldFallBack(t) || deadline.isExpired()) {
+                result.completeExceptionally(t);
+                return;
+            }
+            // Not replicated yet, or the replica is failing.
+            LOG.debug("S3 object could not be read from the replica bucket, reading it from the source bucket, "
+                    + "Bucket name: " + endpoint.getS3BucketName() + ".");
+            CompletableFuture<T> sourceRead = throughCircuitBreaker(s3BucketName, S3CircuitBreaker.Operation.GET,
+                    () -> request.send(s3Client, s3BucketName, deadline.remaining(),
+                            readReplicas.getEndpoint(s3BucketName), quietNotFound));
+            Util.propagateCancellation(result, sourceRead);
+            sourceRead.whenComplete((sourceValue, sourceT) -> {
+                if (sourceT != null) {
+                    result.completeExceptionally(sourceT);
+                } else {
+                    result.complete(sourceValue);
+                }
+            });
+        });
+        return Util.propagateCancellation(result, replicaRead);
+    }
+
+    private <T> AsyncResponseTransformer<GetObjectResponse, T> timed(
+            AsyncResponseTransformer<GetObjectResponse, T> transformer, ReadReplicas.Endpoint<S3AsyncClient> endpoint) {
+        return endpoint != null
+                ? new TimedAsyncResponseTransformer<>(transformer, readReplicas, endpoint)
+                : transformer;
+    }
+
+    private static <T> PooledAsyncResponseTransformer.ContentConverter<T> deserializing(
+            PayloadDeserializer<T> deserializer) {
+        return (content, offset, length) -> {
+            try {
+                return deserializer.deserialize(new ByteArrayInputStream(content, offset, length));
+            } catch (IOException e) {
+                String errorMessage = "Failed to deserialize the payload which was read from S3.";
+                LOG.error(errorMessage, e);
+                throw SdkClientException.create(errorMessage, e);
+            }
+        };
+    }
+
+    private static PayloadTimeoutException timeoutException(Deadline deadline, String operation, Throwable cause) {
+        PayloadTimeoutException e = deadline.timeoutException(operation, cause);
+        LOG.error(e.getMessage(), cause);
+        return e;
+    }
+
+    private Executor completionExecutor() {
+        // Without an executor, continuations run on the thread that completes the previous stage.
+        return completionExecutor != null ? completionExecutor : Runnable::run;
+    }
+
+    /**
+     * A read sent to a source bucket or one of its replicas.
+     */
+    private interface ReadRequest<T> {
+        /**
+         * @param endpoint      endpoint to record the latency of the requests in, or null if the bucket is not
+         *                      replicated.
+         * @param quietNotFound whether to fail with the exception of a missing object as is, without logging it.
+         */
+        CompletableFuture<T> send(S3AsyncClient client, String s3BucketName, Duration timeout,
+                                  ReadReplicas.Endpoint<S3AsyncClient> endpoint, boolean quietNotFound);
+    }
 }
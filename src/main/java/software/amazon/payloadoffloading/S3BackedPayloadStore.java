@@ -3,22 +3,218 @@ package software.amazon.payloadoffloading;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * S3 based implementation for PayloadStore.
  */
 public class S3BackedPayloadStore implements PayloadStore {
     private static final Logger LOG = LoggerFactory.getLogger(S3BackedPayloadStore.class);
+    static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+    static final int DEFAULT_CHUNK_PARALLELISM = 4;
 
     private final String s3BucketName;
     private final S3Dao s3Dao;
+    private boolean compactPointers = false;
+    private LifecycleExpiry lifecycleExpiry;
+    private OperationTimeout operationTimeout;
+    private long chunkSize = -1;
+    private int chunkParallelism = DEFAULT_CHUNK_PARALLELISM;
+    private PayloadS3PointerCache pointerCache;
+    private PayloadMemoryBudget memoryBudget;
+    private long spillThreshold = -1;
+    private Path spillDirectory;
+    private WriteBehindUploader writeBehindUploader;
+    private PayloadSpool spool;
 
     public S3BackedPayloadStore(S3Dao s3Dao, String s3BucketName) {
         this.s3BucketName = s3BucketName;
         this.s3Dao = s3Dao;
     }
 
+    /**
+     * Sets whether stored payloads are referenced by compact v2 pointers, which also carry the payload size and
+     * checksum, instead of v1 pointers. Pointers in either format are always accepted when reading.
+     *
+     * @param compactPointers Whether to produce compact v2 pointers. Default: false
+     * @return this S3BackedPayloadStore.
+     */
+    public S3BackedPayloadStore withCompactPointers(boolean compactPointers) {
+        this.compactPointers = compactPointers;
+        return this;
+    }
+
+    /**
+     * Expires stored payloads by an S3 lifecycle rule instead of deleting them. Payloads are stored with the
+     * tag or under the prefix of the given policy, and {@link #deleteOriginalPayload(String)} no longer sends
+     * any request to S3 for payloads the policy expires. The bucket must have the rule from
+     * {@link LifecycleExpiry#toLifecycleConfiguration()}.
+     *
+     * @param lifecycleExpiry Expiry policy, or null to delete payloads explicitly. Default: null
+     * @return this S3BackedPayloadStore.
+     */
+    public S3BackedPayloadStore withLifecycleExpiry(LifecycleExpiry lifecycleExpiry) {
+        this.lifecycleExpiry = lifecycleExpiry;
+        return this;
+    }
+
+    /**
+     * Limits the time each operation may take, including retries of its requests. Operations that exceed it
+     * fail with a {@link PayloadTimeoutException}. The overloads taking a timeout override it per operation.
+     *
+     * @param operationTimeout Timeout of the operations, or null for none. Default: null
+     * @return this S3BackedPayloadStore.
+     */
+    public S3BackedPayloadStore withOperationTimeout(OperationTimeout operationTimeout) {
+        this.operationTimeout = operationTimeout;
+        return this;
+    }
+
+    /**
+     * Resolves pointers through the given cache, so that a pointer read several times, for example to get and
+     * then delete its payload, is parsed once.
+     *
+     * @param pointerCache Cache of parsed pointers, or null to parse pointers on every read. Default: null
+     * @return this S3BackedPayloadStore.
+     */
+    public S3BackedPayloadStore withPointerCache(PayloadS3PointerCache pointerCache) {
+        this.pointerCache = pointerCache;
+        return this;
+    }
+
+    /**
+     * Reserves the bytes of payloads in the given budget while they are buffered, waiting or failing with a
+     * {@link MemoryBudgetExceededException} when the budget is exhausted.
+     *
+     * @param memoryBudget Budget shared with other stores, or null for no limit. Default: null
+     * @return this S3BackedPayloadStore.
+     */
+    public S3BackedPayloadStore withMemoryBudget(PayloadMemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    /**
+     * Makes {@link #getOriginalPayloadHandle(String)} write payloads larger than the threshold, and payloads of
+     * unknown size behind v1 pointers, to a temporary file that is memory-mapped instead of reading them into
+     * memory, so that random access to payloads of any size does not take heap space.
+     *
+     * @param spillThreshold Size in bytes above which payloads are written to a file, or -1 to read all payloads
+     *                       into memory. Default: -1
+     * @param directory      Directory of the temporary files, created if it does not exist, or null for the
+     *                       default temporary directory.
+     * @return this S3BackedPayloadStore.
+     */
+    public S3BackedPayloadStore withSpillToDisk(long spillThreshold, Path directory) {
+        Util.checkSpillThreshold(spillThreshold);
+        this.spillThreshold = spillThreshold;
+        this.spillDirectory = directory;
+        return this;
+    }
+
+    /**
+     * Returns the pointers of text payloads before they are uploaded, and uploads them in the background with
+     * the given uploader, which may be shared by several stores. Payloads stored in chunks, serialized or from a
+     * stream are still uploaded before their pointer is returned. Upload failures are reported by
+     * {@link WriteBehindUploader#flush()} rather than by {@link #storeOriginalPayload(String)}.
+     *
+     * @param writeBehindUploader Uploader of the payloads, or null to upload them before returning. Default: null
+     * @return this S3BackedPayloadStore.
+     */
+    public S3BackedPayloadStore withWriteBehind(WriteBehindUploader writeBehindUploader) {
+        this.writeBehindUploader = writeBehindUploader;
+        return this;
+    }
+
+    /**
+     * Spools text payloads to local disk when their upload fails because S3 is unavailable, slow or throttling,
+     * and returns their pointer as if they were uploaded. The spool uploads them in the background. Payloads
+     * stored in chunks, serialized or from a stream are not spooled.
+     *
+     * @param spool Spool of the payloads, or null to fail stores when S3 fails. Default: null
+     * @return this S3BackedPayloadStore.
+     */
+    public S3BackedPayloadStore withSpool(PayloadSpool spool) {
+        this.spool = spool;
+        return this;
+    }
+
+    /**
+     * Stores payloads larger than the chunk size in chunks of that size, one S3 object per chunk, uploaded and
+     * downloaded with up to the given number of concurrent requests. Such payloads are referenced by a compact
+     * manifest pointer listing the chunks, and deleting them deletes all chunks. Payloads of any size, including
+     * payloads larger than 2GB, can be stored from a stream with {@link #storeChunkedPayload(InputStream)} and
+     * read with {@link #getOriginalPayloadStream(String)}.
+     *
+     * @param chunkSize   Size of the chunks in bytes, or -1 to store payloads as single objects. Default: -1
+     * @param parallelism Maximum number of chunks transferred at the same time. Default: 4
+     * @return this S3BackedPayloadStore.
+     */
+    public S3BackedPayloadStore withChunkedPayloads(long chunkSize, int parallelism) {
+        Util.checkChunking(chunkSize, parallelism);
+        this.chunkSize = chunkSize;
+        this.chunkParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Warms up the store to cut the latency of the first payloads, for example right after a deployment or a
+     * cold start. Loads and initializes the pointer formats and payload encoding paths, and opens up to the
+     * given number of pooled connections to S3 with concurrent HeadBucket requests. Failed requests are ignored.
+     *
+     * @param connections Number of concurrent requests to open connections with, or 0 to open none. At most 50,
+     *                    the default maximum number of connections of the SDK HTTP clients, are opened.
+     * @return how long the warm-up took.
+     */
+    public Duration warmUp(int connections) {
+        long start = System.nanoTime();
+        Util.warmUpPayloadPath(s3BucketName);
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[Util.warmUpConnections(connections)];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = CompletableFuture.runAsync(() -> s3Dao.warmUpConnection(s3BucketName),
+                    RequestThreads.EXECUTOR);
+        }
+        CompletableFuture.allOf(requests).join();
+        Duration duration = Duration.ofNanos(System.nanoTime() - start);
+        LOG.info("Payload store warmed up with " + requests.length + " connections in " + duration.toMillis()
+                + " ms.");
+        return duration;
+    }
+
+    /**
+     * Runs {@link #warmUp(int)} in the background on the given executor.
+     *
+     * @return future value of how long the warm-up took.
+     */
+    public CompletableFuture<Duration> warmUpInBackground(int connections, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> warmUp(connections), executor);
+    }
+
     @Override
     public String storeOriginalPayload(String payload) {
         String s3Key = UUID.randomUUID().toString();
@@ -27,8 +223,80 @@ public class S3BackedPayloadStore implements PayloadStore {
 
     @Override
     public String storeOriginalPayload(String payload, String s3Key) {
-        s3Dao.storeTextInS3(s3BucketName, s3Key, payload);
-        LOG.info("S3 object created, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
+        // The number of chars is a lower bound of the UTF-8 size, which is not known yet.
+        return storeOriginalPayload(payload, s3Key, timeoutFor(payload.length()));
+    }
+
+    /**
+     * Stores payload like {@link #storeOriginalPayload(String, String)}, within the given timeout.
+     *
+     * @param timeout timeout of the operation, or null for none.
+     * @throws PayloadTimeoutException If the payload was not stored within the timeout.
+     */
+    public String storeOriginalPayload(String payload, String s3Key, Duration timeout) {
+        // Reserves the size of the encoded payload, which takes up to 3 bytes per char.
+        long payloadSize = Util.getStringSizeInBytes(payload);
+        if (memoryBudget == null || writeBehindUploader == null) {
+            return withinMemoryBudget(payloadSize, () -> storeText(payload, s3Key, timeout, null));
+        }
+        // A queued payload stays in memory until it is uploaded, so its upload takes over the release.
+        memoryBudget.acquire(payloadSize);
+        AtomicReference<Runnable> release = new AtomicReference<>(() -> memoryBudget.release(payloadSize));
+        try {
+            return storeText(payload, s3Key, timeout, release);
+        } finally {
+            Runnable notQueued = release.getAndSet(null);
+            if (notQueued != null) {
+                notQueued.run();
+            }
+        }
+    }
+
+    /**
+     * @param release release of the memory budget reservation of the payload, taken over if the upload is queued,
+     *                or null.
+     */
+    private String storeText(String payload, String s3Key, Duration timeout, AtomicReference<Runnable> release) {
+        String objectTagging = null;
+        if (lifecycleExpiry != null) {
+            s3Key = lifecycleExpiry.getObjectKey(s3Key);
+            objectTagging = lifecycleExpiry.getObjectTagging();
+        }
+
+        byte[] payloadBytes = compactPointers || chunkSize > 0 ? payload.getBytes(StandardCharsets.UTF_8) : null;
+        if (chunkSize > 0 && payloadBytes.length > chunkSize) {
+            return storeChunks(new ByteArrayInputStream(payloadBytes), s3Key, objectTagging, Deadline.after(timeout));
+        }
+
+        String objectKey = s3Key;
+        String tagging = objectTagging;
+        if (compactPointers) {
+            upload(objectKey, tagging, () -> payloadBytes, release, () -> {
+                if (timeout != null) {
+                    s3Dao.storeBytesInS3(s3BucketName, objectKey, payloadBytes, tagging, timeout);
+                } else if (tagging != null) {
+                    s3Dao.storeBytesInS3(s3BucketName, objectKey, payloadBytes, tagging);
+                } else {
+                    s3Dao.storeBytesInS3(s3BucketName, objectKey, payloadBytes);
+                }
+                LOG.info("S3 object created, Bucket name: " + s3BucketName + ", Object key: " + objectKey + ".");
+            });
+
+            PayloadS3Pointer s3Pointer = new PayloadS3Pointer(s3BucketName, s3Key, payloadBytes.length, null,
+                    Util.checksum(payloadBytes, 0, payloadBytes.length));
+            return s3Pointer.toCompactJson();
+        }
+
+        upload(objectKey, tagging, () -> payload.getBytes(StandardCharsets.UTF_8), release, () -> {
+            if (timeout != null) {
+                s3Dao.storeTextInS3(s3BucketName, objectKey, payload, tagging, timeout);
+            } else if (tagging != null) {
+                s3Dao.storeTextInS3(s3BucketName, objectKey, payload, tagging);
+            } else {
+                s3Dao.storeTextInS3(s3BucketName, objectKey, payload);
+            }
+            LOG.info("S3 object created, Bucket name: " + s3BucketName + ", Object key: " + objectKey + ".");
+        });
 
         // Convert S3 pointer (bucket name, key, etc) to JSON string
         PayloadS3Pointer s3Pointer = new PayloadS3Pointer(s3BucketName, s3Key);
@@ -36,24 +304,516 @@ public class S3BackedPayloadStore implements PayloadStore {
         return s3Pointer.toJson();
     }
 
+    /**
+     * Runs the upload of a payload, or queues it with the write-behind uploader, spooling the payload if the
+     * upload fails.
+     *
+     * @param content encoded payload, to spool it.
+     * @param release  release of the memory budget reservation of the payload, run once a queued upload completed,
+     *                 or null.
+     */
+    private void upload(String s3Key, String objectTagging, Supplier<byte[]> content,
+                        AtomicReference<Runnable> release, Runnable upload) {
+        Runnable spooledUpload = spool != null
+                ? () -> spool.upload(s3BucketName, s3Key, objectTagging, content, upload)
+                : upload;
+        if (writeBehindUploader != null) {
+            CompletableFuture<Void> done = writeBehindUploader.submit(s3BucketName, s3Key, spooledUpload);
+            Runnable queuedRelease = release != null ? release.getAndSet(null) : null;
+            if (queuedRelease != null) {
+                done.whenComplete((result, failure) -> queuedRelease.run());
+            }
+        } else {
+            spooledUpload.run();
+        }
+    }
+
+    /**
+     * Stores a payload object serialized straight into the content of the S3 object, without producing it as a
+     * String and encoding that again. Payloads larger than the chunk size configured with
+     * {@link #withChunkedPayloads(long, int)} are stored in chunks.
+     *
+     * @param payload    payload object.
+     * @param serializer serializer writing the payload as UTF-8 text, for example a {@link JacksonPayloadSerializer}.
+     * @return a pointer that must be used to retrieve the original payload later, with
+     * {@link #getOriginalPayload(String, PayloadDeserializer)} or as text.
+     * @throws SdkClientException If the payload cannot be serialized.
+     */
+    public <T> String storeOriginalPayload(T payload, PayloadSerializer<? super T> serializer) {
+        return storeOriginalPayload(payload, serializer, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Stores a payload object like {@link #storeOriginalPayload(Object, PayloadSerializer)}, under the given key.
+     */
+    public <T> String storeOriginalPayload(T payload, PayloadSerializer<? super T> serializer, String s3Key) {
+        PayloadOutputStream serializedPayload = new PayloadOutputStream();
+        try {
+            serializer.serialize(payload, serializedPayload);
+        } catch (IOException e) {
+            String errorMessage = "Failed to serialize the payload to store in S3.";
+            LOG.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        }
+        // The size is only known once serialized, so the payload is reserved while it is uploaded.
+        return withinMemoryBudget(serializedPayload.size(), () -> storeSerialized(serializedPayload, s3Key));
+    }
+
+    private String storeSerialized(PayloadOutputStream serializedPayload, String s3Key) {
+        String objectTagging = null;
+        if (lifecycleExpiry != null) {
+            s3Key = lifecycleExpiry.getObjectKey(s3Key);
+            objectTagging = lifecycleExpiry.getObjectTagging();
+        }
+
+        int payloadSize = serializedPayload.size();
+        Duration timeout = timeoutFor(payloadSize);
+        if (chunkSize > 0 && payloadSize > chunkSize) {
+            return storeChunks(serializedPayload.toInputStream(), s3Key, objectTagging, Deadline.after(timeout));
+        }
+
+        s3Dao.storeBytesInS3(s3BucketName, s3Key, serializedPayload.buffer(), payloadSize, objectTagging, timeout);
+        LOG.info("S3 object created, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
+        if (compactPointers) {
+            return new PayloadS3Pointer(s3BucketName, s3Key, payloadSize, null,
+                    Util.checksum(serializedPayload.buffer(), 0, payloadSize)).toCompactJson();
+        }
+        return new PayloadS3Pointer(s3BucketName, s3Key).toJson();
+    }
+
+    /**
+     * Stores a payload of unknown length read from a stream, for example an export produced while it is stored,
+     * without holding it in memory as a whole. The payload is uploaded as a single S3 object with a multipart
+     * upload while the stream is read, one part of the multipart part size of the {@link S3Dao} at a time, and a
+     * failed upload is aborted. The stream is not closed.
+     *
+     * @param payload stream of the UTF-8 encoded payload.
+     * @return a pointer that must be used to retrieve the original payload later.
+     * @throws PayloadTimeoutException If the payload was not stored within the operation timeout for payloads of
+     *                                 unknown size.
+     */
+    public String storeOriginalPayload(InputStream payload) {
+        return storeOriginalPayload(payload, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Stores a payload of unknown length like {@link #storeOriginalPayload(InputStream)}, under the given key.
+     */
+    public String storeOriginalPayload(InputStream payload, String s3Key) {
+        String objectTagging = null;
+        if (lifecycleExpiry != null) {
+            s3Key = lifecycleExpiry.getObjectKey(s3Key);
+            objectTagging = lifecycleExpiry.getObjectTagging();
+        }
+        PayloadS3Pointer s3Pointer = s3Dao.storeStreamInS3(s3BucketName, s3Key, payload, objectTagging,
+                timeoutFor(-1));
+        LOG.info("S3 object created, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
+        return compactPointers ? s3Pointer.toCompactJson() : s3Pointer.toJson();
+    }
+
+    /**
+     * Stores a payload of any size read from a stream in chunks, even if it fits in one chunk, and returns a
+     * manifest pointer listing the chunks. The stream is read on the calling thread, up to the parallelism
+     * configured with {@link #withChunkedPayloads(long, int)} chunks ahead of the uploads. The stream is not
+     * closed.
+     *
+     * @param payload stream of the payload.
+     * @return a pointer that must be used to retrieve the original payload later.
+     * @throws PayloadTimeoutException If the payload was not stored within the operation timeout for payloads of
+     *                                 unknown size.
+     */
+    public String storeChunkedPayload(InputStream payload) {
+        return storeChunkedPayload(payload, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Stores a payload of any size read from a stream in chunks, like {@link #storeChunkedPayload(InputStream)},
+     * with the chunks stored under the given key.
+     */
+    public String storeChunkedPayload(InputStream payload, String s3Key) {
+        String objectTagging = null;
+        if (lifecycleExpiry != null) {
+            s3Key = lifecycleExpiry.getObjectKey(s3Key);
+            objectTagging = lifecycleExpiry.getObjectTagging();
+        }
+        return storeChunks(payload, s3Key, objectTagging, Deadline.after(timeoutFor(-1)));
+    }
+
+    private String storeChunks(InputStream payload, String s3Key, String objectTagging, Deadline deadline) {
+        long maxChunkSize = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+        List<String> chunkChecksums = new ArrayList<>();
+        Deque<Future<?>> uploads = new ArrayDeque<>();
+        long payloadSize = 0;
+        try {
+            byte[] chunk = readChunk(payload, maxChunkSize);
+            if (chunk == null) {
+                // An empty payload is stored as a single empty chunk.
+                chunk = new byte[0];
+            }
+            while (chunk != null) {
+                if (uploads.size() >= chunkParallelism) {
+                    awaitChunk(uploads.removeFirst());
+                }
+                String chunkKey = PayloadS3Pointer.chunkKey(s3Key, chunkChecksums.size());
+                byte[] chunkBytes = chunk;
+                uploads.add(RequestThreads.EXECUTOR.submit(() -> s3Dao.storeBytesInS3(s3BucketName, chunkKey,
+                        chunkBytes, objectTagging, deadline.remaining())));
+                chunkChecksums.add(Util.checksum(chunk, 0, chunk.length));
+                payloadSize += chunk.length;
+                chunk = chunk.length == maxChunkSize ? readChunk(payload, maxChunkSize) : null;
+            }
+            while (!uploads.isEmpty()) {
+                awaitChunk(uploads.removeFirst());
+            }
+        } catch (IOException e) {
+            awaitChunksQuietly(uploads);
+            deleteChunksQuietly(s3Key, chunkChecksums.size());
+            String errorMessage = "Failed to read the payload to store in chunks.";
+            LOG.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        } catch (RuntimeException e) {
+            awaitChunksQuietly(uploads);
+            deleteChunksQuietly(s3Key, chunkChecksums.size());
+            if (deadline.isTimeout(e)) {
+                throw deadline.timeoutException("Storing the payload chunks in S3", e);
+            }
+            throw e;
+        }
+        LOG.info("S3 objects created, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ", Chunk count: "
+                + chunkChecksums.size() + ".");
+
+        return new PayloadS3Pointer(s3BucketName, s3Key, payloadSize, maxChunkSize, chunkChecksums).toCompactJson();
+    }
+
+    private void deleteChunksQuietly(String s3Key, int chunkCount) {
+        if (lifecycleExpiry != null) {
+            return;
+        }
+        List<String> chunkKeys = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            chunkKeys.add(PayloadS3Pointer.chunkKey(s3Key, i));
+        }
+        try {
+            s3Dao.deletePayloadsFromS3(s3BucketName, chunkKeys, null);
+        } catch (SdkException e) {
+            LOG.warn("Failed to delete the chunks of a payload that could not be stored, Bucket name: "
+                    + s3BucketName + ", Object key: " + s3Key + ".", e);
+        }
+    }
+
+    /**
+     * @return up to the given number of bytes read from the stream, or null if it has ended.
+     */
+    private static byte[] readChunk(InputStream in, long maxChunkSize) throws IOException {
+        byte[] chunk = new byte[(int) maxChunkSize];
+        int position = 0;
+        int read;
+        while (position < chunk.length && (read = in.read(chunk, position, chunk.length - position)) >= 0) {
+            position += read;
+        }
+        if (position == 0) {
+            return null;
+        }
+        return position == chunk.length ? chunk : Arrays.copyOf(chunk, position);
+    }
+
+    /**
+     * Waits for the chunk uploads still in flight, which could otherwise store their chunk after the chunks of a
+     * failed payload were deleted.
+     */
+    private static void awaitChunksQuietly(Deque<Future<?>> uploads) {
+        for (Future<?> upload : uploads) {
+            try {
+                upload.get();
+            } catch (ExecutionException e) {
+                // Only the first failure is reported.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static void awaitChunk(Future<?> upload) {
+        try {
+            upload.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw SdkClientException.create("Failed to store a chunk of the payload.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw SdkClientException.create("Interrupted while storing the payload chunks.", e);
+        }
+    }
+
     @Override
     public String getOriginalPayload(String payloadPointer) {
-        PayloadS3Pointer s3Pointer = PayloadS3Pointer.fromJson(payloadPointer);
+        PayloadS3Pointer s3Pointer = parsePointer(payloadPointer);
+        return getOriginalPayload(s3Pointer, timeoutFor(s3Pointer.getPayloadSize()));
+    }
+
+    /**
+     * Retrieves the original payload like {@link #getOriginalPayload(String)}, within the given timeout.
+     *
+     * @param timeout timeout of the operation, or null for none.
+     * @throws PayloadTimeoutException If the payload was not read within the timeout.
+     */
+    public String getOriginalPayload(String payloadPointer, Duration timeout) {
+        return getOriginalPayload(parsePointer(payloadPointer), timeout);
+    }
+
+    /**
+     * Retrieves the original payload deserialized straight from the content read from S3, without decoding it to
+     * a String first. Payloads stored in chunks are deserialized while the chunks are streamed in.
+     *
+     * @param payloadPointer
+     * @param deserializer   deserializer reading the payload, for example a {@link JacksonPayloadSerializer}.
+     * @return original payload
+     * @throws SdkClientException If the payload cannot be read or deserialized.
+     */
+    public <T> T getOriginalPayload(String payloadPointer, PayloadDeserializer<T> deserializer) {
+        PayloadS3Pointer s3Pointer = parsePointer(payloadPointer);
+        return withinMemoryBudget(s3Pointer.getPayloadSize(), () -> readOriginalPayload(s3Pointer, deserializer));
+    }
 
+    private <T> T readOriginalPayload(PayloadS3Pointer s3Pointer, PayloadDeserializer<T> deserializer) {
         String s3BucketName = s3Pointer.getS3BucketName();
         String s3Key = s3Pointer.getS3Key();
+        Duration timeout = timeoutFor(s3Pointer.getPayloadSize());
 
-        String originalPayload = s3Dao.getTextFromS3(s3BucketName, s3Key);
+        if (s3Pointer.getPayloadSize() >= 0) {
+            Util.checkContentEncoding(s3Pointer);
+        }
+        T originalPayload;
+        if (s3Pointer.isChunked()) {
+            Deadline deadline = Deadline.after(timeout);
+            try (InputStream chunks = openChunks(s3Pointer, deadline)) {
+                originalPayload = deserializer.deserialize(chunks);
+            } catch (IOException e) {
+                throw chunksReadFailure(e, deadline);
+            }
+        } else {
+            originalPayload = s3Dao.getValueFromS3(s3BucketName, s3Key, s3Pointer.getPayloadSize(),
+                    s3Pointer.getChecksum(), deserializer, timeout);
+        }
         LOG.info("S3 object read, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
         return originalPayload;
     }
 
+    private String getOriginalPayload(PayloadS3Pointer s3Pointer, Duration timeout) {
+        return withinMemoryBudget(s3Pointer.getPayloadSize(), () -> readOriginalPayload(s3Pointer, timeout));
+    }
+
+    private String readOriginalPayload(PayloadS3Pointer s3Pointer, Duration timeout) {
+        String s3BucketName = s3Pointer.getS3BucketName();
+        String s3Key = s3Pointer.getS3Key();
+
+        if (s3Pointer.getPayloadSize() >= 0) {
+            Util.checkContentEncoding(s3Pointer);
+        }
+        String originalPayload;
+        if (s3Pointer.isChunked()) {
+            originalPayload = getChunkedPayload(s3Pointer, Deadline.after(timeout));
+        } else if (s3Pointer.getPayloadSize() < 0 && memoryBudget != null) {
+            // Reserved by the Content-Length of the object, as the pointer has no size.
+            originalPayload = s3Dao.getTextFromS3(s3BucketName, s3Key, -1, s3Pointer.getChecksum(), timeout,
+                    memoryBudget);
+        } else if (timeout != null) {
+            originalPayload = s3Dao.getTextFromS3(s3BucketName, s3Key, s3Pointer.getPayloadSize(),
+                    s3Pointer.getChecksum(), timeout);
+        } else if (s3Pointer.getPayloadSize() >= 0) {
+            originalPayload = s3Dao.getTextFromS3(s3BucketName, s3Key, s3Pointer.getPayloadSize(),
+                    s3Pointer.getChecksum());
+        } else {
+            originalPayload = s3Dao.getTextFromS3(s3BucketName, s3Key);
+        }
+        LOG.info("S3 object read, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
+        return originalPayload;
+    }
+
+    private String getChunkedPayload(PayloadS3Pointer manifest, Deadline deadline) {
+        byte[] content = readChunks(manifest, deadline);
+        return Util.decodeUtf8(content, 0, content.length);
+    }
+
+    private byte[] readChunks(PayloadS3Pointer manifest, Deadline deadline) {
+        if (manifest.getPayloadSize() > Integer.MAX_VALUE - 8) {
+            String errorMessage = "Payload of " + manifest.getPayloadSize() + " bytes is too large to be read as "
+                    + "text, read it with getOriginalPayloadStream instead.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        byte[] content = new byte[(int) manifest.getPayloadSize()];
+        try (InputStream chunks = openChunks(manifest, deadline)) {
+            int position = 0;
+            int read;
+            while (position < content.length
+                    && (read = chunks.read(content, position, content.length - position)) >= 0) {
+                position += read;
+            }
+        } catch (IOException e) {
+            throw chunksReadFailure(e, deadline);
+        }
+        return content;
+    }
+
+    private static RuntimeException chunksReadFailure(IOException e, Deadline deadline) {
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        if (deadline.isTimeout(cause)) {
+            return deadline.timeoutException("Getting the payload chunks from S3", cause);
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        String errorMessage = "Failed to get the S3 objects which contain the payload chunks.";
+        LOG.error(errorMessage, e);
+        return SdkClientException.create(errorMessage, e);
+    }
+
+    /**
+     * Gets the original payload as a stream, which works for payloads of any size. Payloads stored in chunks are
+     * streamed in order while up to the configured parallelism of chunks is downloaded ahead of the reader;
+     * other payloads are read into memory first. The stream must be closed.
+     *
+     * @param payloadPointer
+     * @return stream of the original payload, in UTF-8 for payloads stored from text.
+     * @throws SdkClientException If the payload cannot be read. Failures of later chunks are thrown from the
+     *                            stream as IOExceptions.
+     */
+    public InputStream getOriginalPayloadStream(String payloadPointer) {
+        PayloadS3Pointer s3Pointer = parsePointer(payloadPointer);
+        Deadline deadline = Deadline.after(timeoutFor(s3Pointer.getPayloadSize()));
+        if (s3Pointer.isChunked()) {
+            return openChunks(s3Pointer, deadline);
+        }
+        if (s3Pointer.getPayloadSize() >= 0) {
+            Util.checkContentEncoding(s3Pointer);
+        }
+        return new ByteArrayInputStream(s3Dao.getBytesFromS3(s3Pointer.getS3BucketName(), s3Pointer.getS3Key(),
+                s3Pointer.getPayloadSize(), s3Pointer.getChecksum(), deadline.remaining()));
+    }
+
+    /**
+     * Gets the original payload for random access, for example to content like zip archives that cannot be
+     * read as a stream. Payloads above the spill threshold configured with {@link #withSpillToDisk(long, Path)}
+     * are written to a temporary file through a FileChannel as they are downloaded, and are then memory-mapped,
+     * so that heap usage does not grow with their size; other payloads are read into memory.
+     *
+     * @param payloadPointer
+     * @return handle of the original payload, which must be closed to delete its file.
+     * @throws SdkClientException If the payload cannot be read or written to a file.
+     */
+    public PayloadHandle getOriginalPayloadHandle(String payloadPointer) {
+        PayloadS3Pointer s3Pointer = parsePointer(payloadPointer);
+        long payloadSize = s3Pointer.getPayloadSize();
+        Deadline deadline = Deadline.after(timeoutFor(payloadSize));
+        if (payloadSize >= 0) {
+            Util.checkContentEncoding(s3Pointer);
+        }
+        if (spillThreshold < 0 || (payloadSize >= 0 && payloadSize <= spillThreshold)) {
+            return withinMemoryBudget(payloadSize, () -> PayloadHandle.inMemory(s3Pointer.isChunked()
+                    ? readChunks(s3Pointer, deadline)
+                    : s3Dao.getBytesFromS3(s3Pointer.getS3BucketName(), s3Pointer.getS3Key(), payloadSize,
+                            s3Pointer.getChecksum(), deadline.remaining())));
+        }
+
+        Path file = Util.createSpillFile(spillDirectory);
+        try {
+            if (s3Pointer.isChunked()) {
+                try (InputStream chunks = openChunks(s3Pointer, deadline);
+                     FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    Util.transferTo(chunks, channel);
+                } catch (IOException e) {
+                    throw chunksReadFailure(e, deadline);
+                }
+            } else {
+                s3Dao.getFileFromS3(s3Pointer.getS3BucketName(), s3Pointer.getS3Key(), payloadSize,
+                        s3Pointer.getChecksum(), file, deadline.remaining());
+            }
+            LOG.info("S3 object read to a file, Bucket name: " + s3Pointer.getS3BucketName() + ", Object key: "
+                    + s3Pointer.getS3Key() + ".");
+            return PayloadHandle.spilled(file);
+        } catch (RuntimeException e) {
+            Util.deleteSpillFile(file);
+            throw e;
+        }
+    }
+
+    private InputStream openChunks(PayloadS3Pointer manifest, Deadline deadline) {
+        return new ChunkedPayloadInputStream(manifest.getChunkCount(), chunkParallelism,
+                i -> s3Dao.getBytesFromS3(manifest.getS3BucketName(), manifest.getChunkKey(i),
+                        manifest.getChunkLength(i), manifest.getChunkChecksums().get(i), deadline.remaining()),
+                RequestThreads.EXECUTOR);
+    }
+
+    /**
+     * Creates a URL that gets the original payload over plain HTTP, signed locally with the presigner of the
+     * S3 DAO, see {@link S3Dao#withPresigner}.
+     *
+     * @throws SdkClientException If the DAO has no presigner, or the payload is stored in chunks.
+     */
+    @Override
+    public URL presignGet(String payloadPointer, Duration expiration) {
+        PayloadS3Pointer s3Pointer = parsePointer(payloadPointer);
+        Util.checkPresignable(s3Pointer);
+        return s3Dao.presignGetObject(s3Pointer.getS3BucketName(), s3Pointer.getS3Key(), expiration);
+    }
+
     @Override
     public void deleteOriginalPayload(String payloadPointer) {
-        PayloadS3Pointer s3Pointer = PayloadS3Pointer.fromJson(payloadPointer);
+        deleteOriginalPayload(payloadPointer, timeoutFor(0));
+    }
+
+    /**
+     * Deletes the original payload like {@link #deleteOriginalPayload(String)}, within the given timeout.
+     *
+     * @param timeout timeout of the operation, or null for none.
+     * @throws PayloadTimeoutException If the payload was not deleted within the timeout.
+     */
+    public void deleteOriginalPayload(String payloadPointer, Duration timeout) {
+        PayloadS3Pointer s3Pointer = parsePointer(payloadPointer);
 
         String s3BucketName = s3Pointer.getS3BucketName();
         String s3Key = s3Pointer.getS3Key();
-        s3Dao.deletePayloadFromS3(s3BucketName, s3Key);
+        if (lifecycleExpiry != null && lifecycleExpiry.expires(s3Key)) {
+            // Reclaimed by the bucket lifecycle rule.
+            s3Dao.invalidateCachedPayload(s3BucketName, s3Key);
+            LOG.debug("S3 object left to lifecycle expiry, Bucket name: " + s3BucketName + ", Object key: "
+                    + s3Key + ".");
+            return;
+        }
+        if (s3Pointer.isChunked()) {
+            s3Dao.deletePayloadsFromS3(s3BucketName, s3Pointer.getChunkKeys(), timeout);
+        } else if (timeout != null) {
+            s3Dao.deletePayloadFromS3(s3BucketName, s3Key, timeout);
+        } else {
+            s3Dao.deletePayloadFromS3(s3BucketName, s3Key);
+        }
+    }
+
+    private PayloadS3Pointer parsePointer(String payloadPointer) {
+        return pointerCache != null ? pointerCache.get(payloadPointer) : PayloadS3Pointer.fromJson(payloadPointer);
+    }
+
+    private <T> T withinMemoryBudget(long payloadSize, Supplier<T> operation) {
+        return memoryBudget != null ? memoryBudget.call(payloadSize, operation) : operation.get();
+    }
+
+    private Duration timeoutFor(long payloadSize) {
+        return operationTimeout != null ? operationTimeout.forPayloadSize(payloadSize) : null;
+    }
+
+    /**
+     * Daemon threads shared by all stores for requests sent in parallel with the blocking client, such as chunk
+     * uploads. Every caller bounds its own requests in flight, so threads are created as needed.
+     */
+    private static final class RequestThreads {
+        static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "payload-offloading-request");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 }
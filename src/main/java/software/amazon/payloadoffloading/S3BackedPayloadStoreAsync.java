@@ -1,10 +1,25 @@
 package software.amazon.payloadoffloading;
 
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.utils.IoUtils;
 import software.amazon.payloadoffloading.PayloadS3Pointer;
 
 /**
@@ -15,12 +30,151 @@ public class S3BackedPayloadStoreAsync implements PayloadStoreAsync {
 
     private final String s3BucketName;
     private final S3AsyncDao s3Dao;
+    private boolean compactPointers = false;
+    private LifecycleExpiry lifecycleExpiry;
+    private OperationTimeout operationTimeout;
+    private long chunkSize = -1;
+    private int chunkParallelism = S3BackedPayloadStore.DEFAULT_CHUNK_PARALLELISM;
+    private PayloadS3PointerCache pointerCache;
+    private PayloadMemoryBudget memoryBudget;
+    private long spillThreshold = -1;
+    private Path spillDirectory;
 
     public S3BackedPayloadStoreAsync(S3AsyncDao s3Dao, String s3BucketName) {
         this.s3BucketName = s3BucketName;
         this.s3Dao = s3Dao;
     }
 
+    /**
+     * Sets whether stored payloads are referenced by compact v2 pointers, which also carry the payload size and
+     * checksum, instead of v1 pointers. Pointers in either format are always accepted when reading.
+     *
+     * @param compactPointers Whether to produce compact v2 pointers. Default: false
+     * @return this S3BackedPayloadStoreAsync.
+     */
+    public S3BackedPayloadStoreAsync withCompactPointers(boolean compactPointers) {
+        this.compactPointers = compactPointers;
+        return this;
+    }
+
+    /**
+     * Expires stored payloads by an S3 lifecycle rule instead of deleting them. Payloads are stored with the
+     * tag or under the prefix of the given policy, and {@link #deleteOriginalPayload(String)} no longer sends
+     * any request to S3 for payloads the policy expires. The bucket must have the rule from
+     * {@link LifecycleExpiry#toLifecycleConfiguration()}.
+     *
+     * @param lifecycleExpiry Expiry policy, or null to delete payloads explicitly. Default: null
+     * @return this S3BackedPayloadStoreAsync.
+     */
+    public S3BackedPayloadStoreAsync withLifecycleExpiry(LifecycleExpiry lifecycleExpiry) {
+        this.lifecycleExpiry = lifecycleExpiry;
+        return this;
+    }
+
+    /**
+     * Limits the time each operation may take, including retries of its requests and all parts of payloads
+     * downloaded with ranged GETs. Operations that exceed it fail with a {@link PayloadTimeoutException}, and
+     * their requests still in flight are cancelled. The overloads taking a timeout override it per operation.
+     *
+     * @param operationTimeout Timeout of the operations, or null for none. Default: null
+     * @return this S3BackedPayloadStoreAsync.
+     */
+    public S3BackedPayloadStoreAsync withOperationTimeout(OperationTimeout operationTimeout) {
+        this.operationTimeout = operationTimeout;
+        return this;
+    }
+
+    /**
+     * Resolves pointers through the given cache, so that a pointer read several times, for example to get and
+     * then delete its payload, is parsed once.
+     *
+     * @param pointerCache Cache of parsed pointers, or null to parse pointers on every read. Default: null
+     * @return this S3BackedPayloadStoreAsync.
+     */
+    public S3BackedPayloadStoreAsync withPointerCache(PayloadS3PointerCache pointerCache) {
+        this.pointerCache = pointerCache;
+        return this;
+    }
+
+    /**
+     * Reserves the bytes of payloads in the given budget while they are buffered. Operations wait for the budget
+     * without blocking, and fail with a {@link MemoryBudgetExceededException} when it cannot be reserved.
+     *
+     * @param memoryBudget Budget shared with other stores, or null for no limit. Default: null
+     * @return this S3BackedPayloadStoreAsync.
+     */
+    public S3BackedPayloadStoreAsync withMemoryBudget(PayloadMemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    /**
+     * Makes {@link #getOriginalPayloadHandle(String)} write payloads larger than the threshold, and payloads of
+     * unknown size behind v1 pointers, to a temporary file that is memory-mapped instead of reading them into
+     * memory, so that random access to payloads of any size does not take heap space.
+     *
+     * @param spillThreshold Size in bytes above which payloads are written to a file, or -1 to read all payloads
+     *                       into memory. Default: -1
+     * @param directory      Directory of the temporary files, created if it does not exist, or null for the
+     *                       default temporary directory.
+     * @return this S3BackedPayloadStoreAsync.
+     */
+    public S3BackedPayloadStoreAsync withSpillToDisk(long spillThreshold, Path directory) {
+        Util.checkSpillThreshold(spillThreshold);
+        this.spillThreshold = spillThreshold;
+        this.spillDirectory = directory;
+        return this;
+    }
+
+    /**
+     * Stores payloads larger than the chunk size in chunks of that size, one S3 object per chunk, uploaded and
+     * downloaded with up to the given number of concurrent requests. Such payloads are referenced by a compact
+     * manifest pointer listing the chunks, and deleting them deletes all chunks. Manifests are read with the
+     * given parallelism even when chunking is disabled.
+     *
+     * @param chunkSize   Size of the chunks in bytes, or -1 to store payloads as single objects. Default: -1
+     * @param parallelism Maximum number of chunks transferred at the same time. Default: 4
+     * @return this S3BackedPayloadStoreAsync.
+     */
+    public S3BackedPayloadStoreAsync withChunkedPayloads(long chunkSize, int parallelism) {
+        Util.checkChunking(chunkSize, parallelism);
+        this.chunkSize = chunkSize;
+        this.chunkParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Warms up the store to cut the latency of the first payloads, for example right after a deployment or a
+     * cold start. Loads and initializes the pointer formats and payload encoding paths on the calling thread,
+     * and opens up to the given number of pooled connections to S3 with concurrent HeadBucket requests, without
+     * waiting for them. Failed requests are ignored. Join the returned future to warm up synchronously.
+     *
+     * @param connections Number of concurrent requests to open connections with, or 0 to open none. At most 50,
+     *                    the default maximum number of connections of the SDK HTTP clients, are opened.
+     * @return future value of how long the warm-up took.
+     */
+    public CompletableFuture<Duration> warmUp(int connections) {
+        long start = System.nanoTime();
+        try {
+            Util.warmUpPayloadPath(s3BucketName);
+        } catch (Exception e) {
+            CompletableFuture<Duration> futureEx = new CompletableFuture<>();
+            futureEx.completeExceptionally((e instanceof RuntimeException) ? e : new CompletionException(e));
+            return futureEx;
+        }
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[Util.warmUpConnections(connections)];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = s3Dao.warmUpConnection(s3BucketName);
+        }
+        return CompletableFuture.allOf(requests)
+            .thenApply(v -> {
+                Duration duration = Duration.ofNanos(System.nanoTime() - start);
+                LOG.info("Payload store warmed up with " + requests.length + " connections in "
+                    + duration.toMillis() + " ms.");
+                return duration;
+            });
+    }
+
     @Override
     public CompletableFuture<String> storeOriginalPayload(String payload) {
         String s3Key = UUID.randomUUID().toString();
@@ -28,8 +182,60 @@ public class S3BackedPayloadStoreAsync implements PayloadStoreAsync {
     }
 
     @Override
-    public CompletableFuture<String> storeOriginalPayload(String payload, String s3Key) {
-        return s3Dao.storeTextInS3(s3BucketName, s3Key, payload)
+    public CompletableFuture<String> storeOriginalPayload(String payload, String storageKey) {
+        // The number of chars is a lower bound of the UTF-8 size, which is not known yet.
+        return storeOriginalPayload(payload, storageKey, timeoutFor(payload.length()));
+    }
+
+    /**
+     * Stores payload like {@link #storeOriginalPayload(String, String)}, within the given timeout.
+     *
+     * @param timeout timeout of the operation, or null for none.
+     * @return future value of the pointer, failing with a {@link PayloadTimeoutException} on timeout.
+     */
+    public CompletableFuture<String> storeOriginalPayload(String payload, String storageKey, Duration timeout) {
+        // Reserves the size of the encoded payload, which takes up to 3 bytes per char.
+        return withinMemoryBudget(Util.getStringSizeInBytes(payload), () -> storeText(payload, storageKey, timeout));
+    }
+
+    private CompletableFuture<String> storeText(String payload, String storageKey, Duration timeout) {
+        String s3Key = lifecycleExpiry != null ? lifecycleExpiry.getObjectKey(storageKey) : storageKey;
+        String objectTagging = lifecycleExpiry != null ? lifecycleExpiry.getObjectTagging() : null;
+
+        byte[] payloadBytes = compactPointers || chunkSize > 0 ? payload.getBytes(StandardCharsets.UTF_8) : null;
+        if (chunkSize > 0 && payloadBytes.length > chunkSize) {
+            return storeChunks(payloadBytes, payloadBytes.length, s3Key, objectTagging, Deadline.after(timeout));
+        }
+
+        if (compactPointers) {
+            String checksum = Util.checksum(payloadBytes, 0, payloadBytes.length);
+            CompletableFuture<Void> stored;
+            if (timeout != null) {
+                stored = s3Dao.storeBytesInS3(s3BucketName, s3Key, payloadBytes, objectTagging, timeout);
+            } else if (objectTagging != null) {
+                stored = s3Dao.storeBytesInS3(s3BucketName, s3Key, payloadBytes, objectTagging);
+            } else {
+                stored = s3Dao.storeBytesInS3(s3BucketName, s3Key, payloadBytes);
+            }
+            return Util.propagateCancellation(stored
+                .thenApply(v -> {
+                    LOG.info("S3 object created, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
+
+                    PayloadS3Pointer s3Pointer = new PayloadS3Pointer(s3BucketName, s3Key, payloadBytes.length,
+                            null, checksum);
+                    return s3Pointer.toCompactJson();
+                }), stored);
+        }
+
+        CompletableFuture<Void> stored;
+        if (timeout != null) {
+            stored = s3Dao.storeTextInS3(s3BucketName, s3Key, payload, objectTagging, timeout);
+        } else if (objectTagging != null) {
+            stored = s3Dao.storeTextInS3(s3BucketName, s3Key, payload, objectTagging);
+        } else {
+            stored = s3Dao.storeTextInS3(s3BucketName, s3Key, payload);
+        }
+        return Util.propagateCancellation(stored
             .thenApply(v -> {
                 LOG.info("S3 object created, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
 
@@ -37,22 +243,291 @@ public class S3BackedPayloadStoreAsync implements PayloadStoreAsync {
                 PayloadS3Pointer s3Pointer = new PayloadS3Pointer(s3BucketName, s3Key);
 
                 return s3Pointer.toJson();
+            }), stored);
+    }
+
+    /**
+     * Stores a payload of unknown length, for example an export produced while it is stored, without holding it
+     * in memory as a whole. The payload is uploaded with a multipart upload while it is published, with memory
+     * bounded by the multipart settings of the {@link S3AsyncDao}, and a failed or cancelled upload is aborted.
+     *
+     * @param payload publisher of the UTF-8 encoded payload, for example an {@link AsyncRequestBody}.
+     * @return future value of a pointer that must be used to retrieve the original payload later, completing once
+     * the upload completed.
+     */
+    public CompletableFuture<String> storeOriginalPayload(Publisher<ByteBuffer> payload) {
+        return storeOriginalPayload(payload, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Stores a payload of unknown length like {@link #storeOriginalPayload(Publisher)}, under the given key.
+     */
+    public CompletableFuture<String> storeOriginalPayload(Publisher<ByteBuffer> payload, String storageKey) {
+        String s3Key = lifecycleExpiry != null ? lifecycleExpiry.getObjectKey(storageKey) : storageKey;
+        String objectTagging = lifecycleExpiry != null ? lifecycleExpiry.getObjectTagging() : null;
+
+        CompletableFuture<PayloadS3Pointer> stored = s3Dao.storeStreamInS3(s3BucketName, s3Key, payload,
+                objectTagging, timeoutFor(-1));
+        return Util.propagateCancellation(stored
+            .thenApply(s3Pointer -> {
+                LOG.info("S3 object created, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
+                return compactPointers ? s3Pointer.toCompactJson() : s3Pointer.toJson();
+            }), stored);
+    }
+
+    /**
+     * Stores a payload object serialized straight into the content of the S3 object, without producing it as a
+     * String and encoding that again. The payload is serialized on the calling thread. Payloads larger than the
+     * chunk size configured with {@link #withChunkedPayloads(long, int)} are stored in chunks.
+     *
+     * @param payload    payload object.
+     * @param serializer serializer writing the payload as UTF-8 text, for example a {@link JacksonPayloadSerializer}.
+     * @return future value of a pointer that must be used to retrieve the original payload later, with
+     * {@link #getOriginalPayload(String, PayloadDeserializer)} or as text.
+     */
+    public <T> CompletableFuture<String> storeOriginalPayload(T payload, PayloadSerializer<? super T> serializer) {
+        return storeOriginalPayload(payload, serializer, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Stores a payload object like {@link #storeOriginalPayload(Object, PayloadSerializer)}, under the given key.
+     */
+    public <T> CompletableFuture<String> storeOriginalPayload(T payload, PayloadSerializer<? super T> serializer,
+                                                              String storageKey) {
+        PayloadOutputStream serializedPayload = new PayloadOutputStream();
+        try {
+            serializer.serialize(payload, serializedPayload);
+        } catch (IOException e) {
+            String errorMessage = "Failed to serialize the payload to store in S3.";
+            LOG.error(errorMessage, e);
+            CompletableFuture<String> futureEx = new CompletableFuture<>();
+            futureEx.completeExceptionally(SdkClientException.create(errorMessage, e));
+            return futureEx;
+        }
+        // The size is only known once serialized, so the payload is reserved while it is uploaded.
+        return withinMemoryBudget(serializedPayload.size(), () -> storeSerialized(serializedPayload, storageKey));
+    }
+
+    private CompletableFuture<String> storeSerialized(PayloadOutputStream serializedPayload, String storageKey) {
+        String s3Key = lifecycleExpiry != null ? lifecycleExpiry.getObjectKey(storageKey) : storageKey;
+        String objectTagging = lifecycleExpiry != null ? lifecycleExpiry.getObjectTagging() : null;
+
+        byte[] payloadBytes = serializedPayload.buffer();
+        int payloadSize = serializedPayload.size();
+        Duration timeout = timeoutFor(payloadSize);
+        if (chunkSize > 0 && payloadSize > chunkSize) {
+            return storeChunks(payloadBytes, payloadSize, s3Key, objectTagging, Deadline.after(timeout));
+        }
+
+        String checksum = compactPointers ? Util.checksum(payloadBytes, 0, payloadSize) : null;
+        CompletableFuture<Void> stored = s3Dao.storeBytesInS3(s3BucketName, s3Key, payloadBytes, payloadSize,
+                objectTagging, timeout);
+        return Util.propagateCancellation(stored
+            .thenApply(v -> {
+                LOG.info("S3 object created, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
+                if (compactPointers) {
+                    return new PayloadS3Pointer(s3BucketName, s3Key, payloadSize, null, checksum).toCompactJson();
+                }
+                return new PayloadS3Pointer(s3BucketName, s3Key).toJson();
+            }), stored);
+    }
+
+    private CompletableFuture<String> storeChunks(byte[] payloadBytes, int payloadSize, String s3Key,
+                                                  String objectTagging, Deadline deadline) {
+        int chunkCount = (int) ((payloadSize + chunkSize - 1) / chunkSize);
+        List<String> chunkChecksums = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            int offset = (int) (i * chunkSize);
+            chunkChecksums.add(Util.checksum(payloadBytes, offset, chunkLength(payloadSize, offset)));
+        }
+        // Cancelling an upload would not withdraw a PUT already sent, which could store its chunk after the chunks
+        // were deleted. Only copies of the uploads are cancelled, and a failure deletes the chunks once the
+        // uploads started have settled.
+        List<CompletableFuture<Void>> uploads = new ArrayList<>(chunkCount);
+        AtomicBoolean settling = new AtomicBoolean();
+        CompletableFuture<Void> stored = Util.forEachBounded(chunkCount, chunkParallelism, i -> {
+            int offset = (int) (i * chunkSize);
+            CompletableFuture<Void> upload;
+            synchronized (uploads) {
+                if (settling.get()) {
+                    // Started while the failure was being handled, after the uploads to wait for were taken.
+                    throw new CancellationException("Storing the payload chunks failed.");
+                }
+                upload = s3Dao.storeBytesInS3(s3BucketName, PayloadS3Pointer.chunkKey(s3Key, i), payloadBytes,
+                        offset, chunkLength(payloadSize, offset), objectTagging, deadline.remaining());
+                uploads.add(upload);
+            }
+            return upload.thenApply(v -> v);
+        });
+        CompletableFuture<String> result = stored
+            .handle((v, t) -> t)
+            .thenCompose(tIn -> {
+                if (tIn == null) {
+                    LOG.info("S3 objects created, Bucket name: " + s3BucketName + ", Object key: " + s3Key
+                        + ", Chunk count: " + chunkCount + ".");
+                    return CompletableFuture.completedFuture(
+                        new PayloadS3Pointer(s3BucketName, s3Key, payloadSize, chunkSize, chunkChecksums)
+                            .toCompactJson());
+                }
+                CompletableFuture<?>[] started;
+                synchronized (uploads) {
+                    settling.set(true);
+                    started = uploads.toArray(new CompletableFuture<?>[0]);
+                }
+                return CompletableFuture.allOf(started).handle((v, t) -> null).thenApply(settled -> {
+                    deleteChunksQuietly(s3Key, chunkCount);
+                    Throwable t = Util.unwrapFutureException(tIn);
+                    if (deadline.isTimeout(t)) {
+                        throw deadline.timeoutException("Storing the payload chunks in S3", t);
+                    }
+                    throw (t instanceof RuntimeException) ? (RuntimeException) t : new CompletionException(t);
+                });
+            });
+        return deadline.enforce(Util.propagateCancellation(result, stored), "Storing the payload chunks in S3");
+    }
+
+    private int chunkLength(int payloadSize, int offset) {
+        return (int) Math.min(chunkSize, payloadSize - offset);
+    }
+
+    private void deleteChunksQuietly(String s3Key, int chunkCount) {
+        if (lifecycleExpiry != null) {
+            return;
+        }
+        List<String> chunkKeys = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            chunkKeys.add(PayloadS3Pointer.chunkKey(s3Key, i));
+        }
+        s3Dao.deletePayloadsFromS3(s3BucketName, chunkKeys, null)
+            .whenComplete((v, t) -> {
+                if (t != null) {
+                    LOG.warn("Failed to delete the chunks of a payload that could not be stored, Bucket name: "
+                        + s3BucketName + ", Object key: " + s3Key + ".", Util.unwrapFutureException(t));
+                }
             });
     }
 
     @Override
     public CompletableFuture<String> getOriginalPayload(String payloadPointer) {
+        return getOriginalPayload(payloadPointer, null, true);
+    }
+
+    /**
+     * Retrieves the original payload like {@link #getOriginalPayload(String)}, within the given timeout.
+     *
+     * @param timeout timeout of the operation, or null for none.
+     * @return future value of the original payload, failing with a {@link PayloadTimeoutException} on timeout.
+     */
+    public CompletableFuture<String> getOriginalPayload(String payloadPointer, Duration timeout) {
+        return getOriginalPayload(payloadPointer, timeout, false);
+    }
+
+    /**
+     * Retrieves the original payload deserialized straight from the buffer its content was received into,
+     * without decoding it to a String first.
+     *
+     * @param payloadPointer
+     * @param deserializer   deserializer reading the payload, for example a {@link JacksonPayloadSerializer}.
+     * @return future value of the original payload.
+     */
+    public <T> CompletableFuture<T> getOriginalPayload(String payloadPointer, PayloadDeserializer<T> deserializer) {
         try {
-            PayloadS3Pointer s3Pointer = PayloadS3Pointer.fromJson(payloadPointer);
+            PayloadS3Pointer s3Pointer = parsePointer(payloadPointer);
+            return withinMemoryBudget(s3Pointer.getPayloadSize(), () -> readOriginalPayload(s3Pointer, deserializer));
+        } catch (Exception e) {
+            CompletableFuture<T> futureEx = new CompletableFuture<>();
+            futureEx.completeExceptionally((e instanceof RuntimeException) ? e : new CompletionException(e));
+            return futureEx;
+        }
+    }
 
-            String s3BucketName = s3Pointer.getS3BucketName();
-            String s3Key = s3Pointer.getS3Key();
+    private <T> CompletableFuture<T> readOriginalPayload(PayloadS3Pointer s3Pointer,
+                                                         PayloadDeserializer<T> deserializer) {
+        Duration timeout = timeoutFor(s3Pointer.getPayloadSize());
+        String s3BucketName = s3Pointer.getS3BucketName();
+        String s3Key = s3Pointer.getS3Key();
 
-            return s3Dao.getTextFromS3(s3BucketName, s3Key)
-                .thenApply(originalPayload -> {
-                    LOG.info("S3 object read, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
-                    return originalPayload;
-                });
+        if (s3Pointer.getPayloadSize() >= 0) {
+            Util.checkContentEncoding(s3Pointer);
+        }
+        CompletableFuture<T> originalPayloadFuture;
+        if (s3Pointer.isChunked()) {
+            originalPayloadFuture = s3Dao.getChunkedValueFromS3(s3Pointer, chunkParallelism, deserializer, timeout);
+        } else {
+            originalPayloadFuture = s3Dao.getValueFromS3(s3BucketName, s3Key, s3Pointer.getPayloadSize(),
+                    s3Pointer.getChecksum(), deserializer, timeout);
+        }
+
+        return Util.propagateCancellation(originalPayloadFuture
+            .thenApply(originalPayload -> {
+                LOG.info("S3 object read, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
+                return originalPayload;
+            }), originalPayloadFuture);
+    }
+
+    /**
+     * Gets the original payload for random access, for example to content like zip archives that cannot be
+     * read as a stream. Payloads above the spill threshold configured with {@link #withSpillToDisk(long, Path)}
+     * are written to a temporary file as they are received, chunks in parallel straight into their place, and
+     * are then memory-mapped, so that heap usage does not grow with their size; other payloads are read into
+     * memory.
+     *
+     * @param payloadPointer
+     * @return future value of the handle of the original payload, which must be closed to delete its file.
+     */
+    public CompletableFuture<PayloadHandle> getOriginalPayloadHandle(String payloadPointer) {
+        try {
+            PayloadS3Pointer s3Pointer = parsePointer(payloadPointer);
+            long payloadSize = s3Pointer.getPayloadSize();
+            if (spillThreshold < 0 || (payloadSize >= 0 && payloadSize <= spillThreshold)) {
+                return withinMemoryBudget(payloadSize, () -> readOriginalPayload(s3Pointer, IoUtils::toByteArray)
+                        .thenApply(PayloadHandle::inMemory));
+            }
+            return spillOriginalPayload(s3Pointer);
+        } catch (Exception e) {
+            CompletableFuture<PayloadHandle> futureEx = new CompletableFuture<>();
+            futureEx.completeExceptionally((e instanceof RuntimeException) ? e : new CompletionException(e));
+            return futureEx;
+        }
+    }
+
+    private CompletableFuture<PayloadHandle> spillOriginalPayload(PayloadS3Pointer s3Pointer) {
+        Duration timeout = timeoutFor(s3Pointer.getPayloadSize());
+        String s3BucketName = s3Pointer.getS3BucketName();
+        String s3Key = s3Pointer.getS3Key();
+
+        if (s3Pointer.getPayloadSize() >= 0) {
+            Util.checkContentEncoding(s3Pointer);
+        }
+        Path file = Util.createSpillFile(spillDirectory);
+        CompletableFuture<Void> writtenFuture;
+        if (s3Pointer.isChunked()) {
+            writtenFuture = s3Dao.getChunkedFileFromS3(s3Pointer, chunkParallelism, file, timeout);
+        } else {
+            writtenFuture = s3Dao.getFileFromS3(s3BucketName, s3Key, s3Pointer.getPayloadSize(),
+                    s3Pointer.getChecksum(), file, timeout);
+        }
+
+        CompletableFuture<PayloadHandle> handleFuture = writtenFuture
+            .thenApply(v -> {
+                LOG.info("S3 object read to a file, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
+                return PayloadHandle.spilled(file);
+            });
+        handleFuture.whenComplete((handle, t) -> {
+            if (t != null) {
+                Util.deleteSpillFile(file);
+            }
+        });
+        return Util.propagateCancellation(handleFuture, writtenFuture);
+    }
+
+    private CompletableFuture<String> getOriginalPayload(String payloadPointer, Duration timeout,
+                                                         boolean useOperationTimeout) {
+        try {
+            PayloadS3Pointer s3Pointer = parsePointer(payloadPointer);
+            Duration operationTimeout = useOperationTimeout ? timeoutFor(s3Pointer.getPayloadSize()) : timeout;
+            return withinMemoryBudget(s3Pointer.getPayloadSize(),
+                () -> readOriginalPayload(s3Pointer, operationTimeout));
         } catch (Exception e) {
             CompletableFuture<String> futureEx = new CompletableFuture<>();
             futureEx.completeExceptionally((e instanceof RuntimeException) ? e : new CompletionException(e));
@@ -60,13 +535,80 @@ public class S3BackedPayloadStoreAsync implements PayloadStoreAsync {
         }
     }
 
+    private CompletableFuture<String> readOriginalPayload(PayloadS3Pointer s3Pointer, Duration timeout) {
+        String s3BucketName = s3Pointer.getS3BucketName();
+        String s3Key = s3Pointer.getS3Key();
+
+        if (s3Pointer.getPayloadSize() >= 0) {
+            Util.checkContentEncoding(s3Pointer);
+        }
+        CompletableFuture<String> originalPayloadFuture;
+        if (s3Pointer.isChunked()) {
+            originalPayloadFuture = s3Dao.getChunkedTextFromS3(s3Pointer, chunkParallelism, timeout);
+        } else if (s3Pointer.getPayloadSize() < 0 && memoryBudget != null) {
+            // Reserved by the Content-Length of the object, as the pointer has no size.
+            originalPayloadFuture = s3Dao.getTextFromS3(s3BucketName, s3Key, -1, s3Pointer.getChecksum(), timeout,
+                    memoryBudget);
+        } else if (timeout != null) {
+            originalPayloadFuture = s3Dao.getTextFromS3(s3BucketName, s3Key, s3Pointer.getPayloadSize(),
+                    s3Pointer.getChecksum(), timeout);
+        } else if (s3Pointer.getPayloadSize() >= 0) {
+            originalPayloadFuture = s3Dao.getTextFromS3(s3BucketName, s3Key, s3Pointer.getPayloadSize(),
+                    s3Pointer.getChecksum());
+        } else {
+            originalPayloadFuture = s3Dao.getTextFromS3(s3BucketName, s3Key);
+        }
+
+        return Util.propagateCancellation(originalPayloadFuture
+            .thenApply(originalPayload -> {
+                LOG.info("S3 object read, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
+                return originalPayload;
+            }), originalPayloadFuture);
+    }
+
+    /**
+     * Creates a URL that gets the original payload over plain HTTP, signed locally with the presigner of the
+     * S3 DAO, see {@link S3AsyncDao#withPresigner}.
+     *
+     * @throws SdkClientException If the DAO has no presigner, or the payload is stored in chunks.
+     */
+    @Override
+    public URL presignGet(String payloadPointer, Duration expiration) {
+        PayloadS3Pointer s3Pointer = parsePointer(payloadPointer);
+        Util.checkPresignable(s3Pointer);
+        return s3Dao.presignGetObject(s3Pointer.getS3BucketName(), s3Pointer.getS3Key(), expiration);
+    }
+
     @Override
     public CompletableFuture<Void> deleteOriginalPayload(String payloadPointer) {
+        return deleteOriginalPayload(payloadPointer, timeoutFor(0));
+    }
+
+    /**
+     * Deletes the original payload like {@link #deleteOriginalPayload(String)}, within the given timeout.
+     *
+     * @param timeout timeout of the operation, or null for none.
+     * @return future value that fails with a {@link PayloadTimeoutException} on timeout.
+     */
+    public CompletableFuture<Void> deleteOriginalPayload(String payloadPointer, Duration timeout) {
         try {
-            PayloadS3Pointer s3Pointer = PayloadS3Pointer.fromJson(payloadPointer);
+            PayloadS3Pointer s3Pointer = parsePointer(payloadPointer);
 
             String s3BucketName = s3Pointer.getS3BucketName();
             String s3Key = s3Pointer.getS3Key();
+            if (lifecycleExpiry != null && lifecycleExpiry.expires(s3Key)) {
+                // Reclaimed by the bucket lifecycle rule.
+                s3Dao.invalidateCachedPayload(s3BucketName, s3Key);
+                LOG.debug("S3 object left to lifecycle expiry, Bucket name: " + s3BucketName + ", Object key: "
+                    + s3Key + ".");
+                return CompletableFuture.completedFuture(null);
+            }
+            if (s3Pointer.isChunked()) {
+                return s3Dao.deletePayloadsFromS3(s3BucketName, s3Pointer.getChunkKeys(), timeout);
+            }
+            if (timeout != null) {
+                return s3Dao.deletePayloadFromS3(s3BucketName, s3Key, timeout);
+            }
             return s3Dao.deletePayloadFromS3(s3BucketName, s3Key);
         } catch (Exception e) {
             CompletableFuture<Void> futureEx = new CompletableFuture<>();
@@ -74,4 +616,17 @@ public class S3BackedPayloadStoreAsync implements PayloadStoreAsync {
             return futureEx;
         }
     }
+
+    private PayloadS3Pointer parsePointer(String payloadPointer) {
+        return pointerCache != null ? pointerCache.get(payloadPointer) : PayloadS3Pointer.fromJson(payloadPointer);
+    }
+
+    private <T> CompletableFuture<T> withinMemoryBudget(long payloadSize,
+                                                        Supplier<CompletableFuture<T>> operation) {
+        return memoryBudget != null ? memoryBudget.callAsync(payloadSize, operation) : operation.get();
+    }
+
+    private Duration timeoutFor(long payloadSize) {
+        return operationTimeout != null ? operationTimeout.forPayloadSize(payloadSize) : null;
+    }
 }
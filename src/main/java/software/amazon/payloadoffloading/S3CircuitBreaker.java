@@ -0,0 +1,390 @@
+package software.amazon.payloadoffloading;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Fails requests to S3 fast while S3 is degraded, instead of letting every caller wait for retries and timeouts.
+ *
+ * <p>Every bucket and operation has its own circuit, which tracks the outcome of its last requests. A request
+ * fails when S3 does not answer it successfully: network and client errors, timeouts, throttling and server
+ * errors. Responses rejecting the request, such as access denied or a missing object, show S3 to be available
+ * and count as successful. Once enough requests were made, the circuit opens when the rate of failed requests,
+ * or of requests slower than the slow call duration, reaches its threshold. While open, requests fail with a
+ * {@link CircuitBreakerOpenException} without being sent. After the open duration, the circuit lets a few probe
+ * requests through, and closes again once all of them succeed, or opens again as soon as one fails.</p>
+ *
+ * <pre>
+ *     S3CircuitBreaker circuitBreaker = new S3CircuitBreaker()
+ *             .withFailureRateThreshold(0.5)
+ *             .withSlowCallThreshold(Duration.ofSeconds(2), 0.8)
+ *             .withOpenDuration(Duration.ofSeconds(10));
+ *     S3Dao s3Dao = new S3Dao(s3Client).withCircuitBreaker(circuitBreaker);
+ * </pre>
+ *
+ * <p>The settings must not be changed once the circuit breaker is in use.</p>
+ */
+public class S3CircuitBreaker {
+    private static final Logger LOG = LoggerFactory.getLogger(S3CircuitBreaker.class);
+
+    /**
+     * Operations with a circuit of their own.
+     */
+    public enum Operation {
+        GET, PUT, DELETE
+    }
+
+    public enum State {
+        /** Requests are sent, and their outcome is tracked. */
+        CLOSED,
+        /** Requests fail without being sent. */
+        OPEN,
+        /** A limited number of probe requests are sent to find out whether S3 recovered. */
+        HALF_OPEN
+    }
+
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<String, Circuit[]> circuits = new ConcurrentHashMap<>();
+    private final AtomicLong openedCount = new AtomicLong();
+    private final AtomicLong rejectedCallCount = new AtomicLong();
+
+    private double failureRateThreshold = 0.5;
+    private long slowCallNanos = Long.MAX_VALUE;
+    private double slowCallRateThreshold = 1.0;
+    private int windowSize = 20;
+    private int minimumCalls = 10;
+    private long openNanos = Duration.ofSeconds(30).toNanos();
+    private int halfOpenCalls = 3;
+
+    public S3CircuitBreaker() {
+        this(System::nanoTime);
+    }
+
+    S3CircuitBreaker(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @param failureRateThreshold rate of failed requests, between 0 exclusive and 1 inclusive, at which the
+     *                             circuit opens. Default: 0.5
+     * @return this S3CircuitBreaker.
+     */
+    public S3CircuitBreaker withFailureRateThreshold(double failureRateThreshold) {
+        checkRate(failureRateThreshold);
+        this.failureRateThreshold = failureRateThreshold;
+        return this;
+    }
+
+    /**
+     * Opens the circuit when too many requests are slow, even if they succeed. Slow requests are not detected
+     * by default.
+     *
+     * @param slowCallDuration      duration from which a request is slow.
+     * @param slowCallRateThreshold rate of slow requests, between 0 exclusive and 1 inclusive, at which the
+     *                              circuit opens.
+     * @return this S3CircuitBreaker.
+     */
+    public S3CircuitBreaker withSlowCallThreshold(Duration slowCallDuration, double slowCallRateThreshold) {
+        checkPositive(slowCallDuration);
+        checkRate(slowCallRateThreshold);
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        return this;
+    }
+
+    /**
+     * @param windowSize   number of most recent requests the rates are computed over. Default: 20
+     * @param minimumCalls number of requests, up to the window size, needed before the circuit may open.
+     *                     Default: 10
+     * @return this S3CircuitBreaker.
+     */
+    public S3CircuitBreaker withWindow(int windowSize, int minimumCalls) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+            String errorMessage = "Circuit breaker window size and minimum number of calls must be positive, and "
+                    + "the minimum number of calls must not exceed the window size.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        return this;
+    }
+
+    /**
+     * @param openDuration time for which requests fail fast before probe requests are sent. Default: 30 seconds
+     * @return this S3CircuitBreaker.
+     */
+    public S3CircuitBreaker withOpenDuration(Duration openDuration) {
+        checkPositive(openDuration);
+        this.openNanos = openDuration.toNanos();
+        return this;
+    }
+
+    /**
+     * @param halfOpenCalls number of probe requests that must succeed to close the circuit. Default: 3
+     * @return this S3CircuitBreaker.
+     */
+    public S3CircuitBreaker withHalfOpenCalls(int halfOpenCalls) {
+        if (halfOpenCalls < 1) {
+            String errorMessage = "Circuit breaker number of half-open calls must be positive.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        this.halfOpenCalls = halfOpenCalls;
+        return this;
+    }
+
+    /**
+     * @return the state of the circuit of the given bucket and operation. An open circuit stays open until the
+     * first request after its open duration.
+     */
+    public State getState(String s3BucketName, Operation operation) {
+        Circuit[] bucketCircuits = circuits.get(s3BucketName);
+        return bucketCircuits != null ? bucketCircuits[operation.ordinal()].getState() : State.CLOSED;
+    }
+
+    /**
+     * @return the number of times any circuit opened.
+     */
+    public long getOpenedCount() {
+        return openedCount.get();
+    }
+
+    /**
+     * @return the number of requests that failed fast because their circuit was open.
+     */
+    public long getRejectedCallCount() {
+        return rejectedCallCount.get();
+    }
+
+    /**
+     * Makes a request through the circuit of its bucket and operation.
+     *
+     * @throws CircuitBreakerOpenException If the circuit is open.
+     */
+    <T> T call(String s3BucketName, Operation operation, Supplier<T> request) {
+        Circuit circuit = circuit(s3BucketName, operation);
+        long generation = circuit.tryAcquire();
+        if (generation < 0) {
+            throw rejected(s3BucketName, operation);
+        }
+        long startNanos = nanoClock.getAsLong();
+        T result;
+        try {
+            result = request.get();
+        } catch (RuntimeException | Error e) {
+            circuit.record(generation, e, nanoClock.getAsLong() - startNanos);
+            throw e;
+        }
+        circuit.record(generation, null, nanoClock.getAsLong() - startNanos);
+        return result;
+    }
+
+    /**
+     * Makes an asynchronous request through the circuit of its bucket and operation. Cancelled requests are
+     * not counted.
+     *
+     * @return the future of the request, or a future failed with a {@link CircuitBreakerOpenException} if the
+     * circuit is open.
+     */
+    <T> CompletableFuture<T> callAsync(String s3BucketName, Operation operation,
+                                       Supplier<CompletableFuture<T>> request) {
+        Circuit circuit = circuit(s3BucketName, operation);
+        long generation = circuit.tryAcquire();
+        if (generation < 0) {
+            CompletableFuture<T> futureEx = new CompletableFuture<>();
+            futureEx.completeExceptionally(rejected(s3BucketName, operation));
+            return futureEx;
+        }
+        long startNanos = nanoClock.getAsLong();
+        CompletableFuture<T> result;
+        try {
+            result = request.get();
+        } catch (RuntimeException | Error e) {
+            circuit.record(generation, e, nanoClock.getAsLong() - startNanos);
+            throw e;
+        }
+        result.whenComplete((v, t) -> circuit.record(generation,
+                t != null ? Util.unwrapFutureException(t) : null, nanoClock.getAsLong() - startNanos));
+        return result;
+    }
+
+    private Circuit circuit(String s3BucketName, Operation operation) {
+        Circuit[] bucketCircuits = circuits.get(s3BucketName);
+        if (bucketCircuits == null) {
+            bucketCircuits = circuits.computeIfAbsent(s3BucketName, b -> {
+                Circuit[] created = new Circuit[Operation.values().length];
+                for (Operation o : Operation.values()) {
+                    created[o.ordinal()] = new Circuit(b, o);
+                }
+                return created;
+            });
+        }
+        return bucketCircuits[operation.ordinal()];
+    }
+
+    private CircuitBreakerOpenException rejected(String s3BucketName, Operation operation) {
+        rejectedCallCount.incrementAndGet();
+        CircuitBreakerOpenException e = new CircuitBreakerOpenException(s3BucketName, operation);
+        // Logged once when the circuit opens, rather than for every request failing fast.
+        LOG.debug(e.getMessage());
+        return e;
+    }
+
+    /**
+     * @return whether the request failed because S3 did not answer it successfully.
+     */
+    static boolean isFailure(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause() != cause ? cause.getCause() : null) {
+            if (cause instanceof MemoryBudgetExceededException) {
+                // Exhausted locally, S3 was not involved.
+                return false;
+            }
+            if (cause instanceof SdkServiceException) {
+                SdkServiceException serviceException = (SdkServiceException) cause;
+                return serviceException.statusCode() >= 500 || serviceException.isThrottlingException();
+            }
+        }
+        return true;
+    }
+
+    private static void checkRate(double rate) {
+        if (!(rate > 0 && rate <= 1)) {
+            String errorMessage = "Circuit breaker rate thresholds must be greater than 0 and at most 1.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+    }
+
+    private static void checkPositive(Duration duration) {
+        if (duration.isNegative() || duration.isZero()) {
+            String errorMessage = "Circuit breaker durations must be positive.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+    }
+
+    /**
+     * Circuit of one bucket and operation. Requests are tagged with the generation of the circuit they started
+     * in, which changes with every state transition, so that requests started before a transition do not count
+     * towards the new state.
+     */
+    private final class Circuit {
+        private final String s3BucketName;
+        private final Operation operation;
+        private final boolean[] failedCalls = new boolean[windowSize];
+        private final boolean[] slowCalls = new boolean[windowSize];
+        private int nextCall;
+        private int callCount;
+        private int failureCount;
+        private int slowCount;
+
+        private State state = State.CLOSED;
+        private long generation;
+        private long openedAtNanos;
+        private int probesStarted;
+        private int probesSucceeded;
+
+        Circuit(String s3BucketName, Operation operation) {
+            this.s3BucketName = s3BucketName;
+            this.operation = operation;
+        }
+
+        synchronized State getState() {
+            return state;
+        }
+
+        /**
+         * @return the generation of the circuit the request starts in, or -1 if it must fail fast.
+         */
+        synchronized long tryAcquire() {
+            if (state == State.OPEN) {
+                if (nanoClock.getAsLong() - openedAtNanos < openNanos) {
+                    return -1;
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesStarted >= halfOpenCalls) {
+                    return -1;
+                }
+                probesStarted++;
+            }
+            return generation;
+        }
+
+        synchronized void record(long callGeneration, Throwable t, long elapsedNanos) {
+            if (callGeneration != generation) {
+                return;
+            }
+            boolean ignored = t instanceof CancellationException || t instanceof CircuitBreakerOpenException;
+            boolean failed = t != null && isFailure(t);
+            boolean slow = elapsedNanos >= slowCallNanos;
+
+            if (state == State.HALF_OPEN) {
+                if (ignored) {
+                    probesStarted--;
+                } else if (failed || slow) {
+                    LOG.warn("Circuit breaker opened again for " + operation + " requests to S3 after a "
+                            + (failed ? "failed" : "slow") + " probe request, Bucket name: " + s3BucketName + ".");
+                    transitionTo(State.OPEN);
+                } else if (++probesSucceeded >= halfOpenCalls) {
+                    transitionTo(State.CLOSED);
+                }
+                return;
+            }
+            if (ignored || state != State.CLOSED) {
+                return;
+            }
+
+            if (callCount == windowSize) {
+                failureCount -= failedCalls[nextCall] ? 1 : 0;
+                slowCount -= slowCalls[nextCall] ? 1 : 0;
+            } else {
+                callCount++;
+            }
+            failedCalls[nextCall] = failed;
+            slowCalls[nextCall] = slow;
+            failureCount += failed ? 1 : 0;
+            slowCount += slow ? 1 : 0;
+            nextCall = (nextCall + 1) % windowSize;
+
+            if (callCount >= minimumCalls && (failureCount >= failureRateThreshold * callCount
+                    || slowCount >= slowCallRateThreshold * callCount)) {
+                LOG.warn("Circuit breaker opened for " + operation + " requests to S3 after " + failureCount
+                        + " failed and " + slowCount + " slow of the last " + callCount + " requests, Bucket name: "
+                        + s3BucketName + ".");
+                transitionTo(State.OPEN);
+            }
+        }
+
+        private void transitionTo(State newState) {
+            if (newState == State.OPEN) {
+                openedAtNanos = nanoClock.getAsLong();
+                openedCount.incrementAndGet();
+            } else {
+                LOG.info("Circuit breaker " + (newState == State.CLOSED ? "closed" : "half-open") + " for "
+                        + operation + " requests to S3, Bucket name: " + s3BucketName + ".");
+            }
+            state = newState;
+            generation++;
+            nextCall = 0;
+            callCount = 0;
+            failureCount = 0;
+            slowCount = 0;
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+    }
+}
@@ -7,23 +7,55 @@ import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.utils.IoUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
 
 /**
  * Dao layer to access S3.
  */
 public class S3Dao {
     private static final Logger LOG = LoggerFactory.getLogger(S3Dao.class);
+    static final String TEXT_CONTENT_TYPE = "text/plain; charset=UTF-8";
+    static final int MAX_KEYS_PER_DELETE = 1000;
+    static final long DEFAULT_MULTIPART_PART_SIZE = 8L * 1024 * 1024;
     private final S3Client s3Client;
     private final ServerSideEncryptionStrategy serverSideEncryptionStrategy;
     private final ObjectCannedACL objectCannedACL;
+    private DiskPayloadCache payloadCache;
+    private S3CircuitBreaker circuitBreaker;
+    private long multipartPartSize = DEFAULT_MULTIPART_PART_SIZE;
+    private S3Presigner presigner;
+    private int notFoundRetries;
+    private Duration notFoundRetryDelay = Duration.ZERO;
+    private final ReadReplicas<S3Client> readReplicas = new ReadReplicas<>(System::nanoTime);
 
     public S3Dao(S3Client s3Client) {
         this(s3Client, null, null);
@@ -35,41 +67,448 @@ public class S3Dao {
         this.objectCannedACL = objectCannedACL;
     }
 
+    /**
+     * Serves reads from the given local disk cache when possible, and adds payloads read from S3 to it.
+     *
+     * @param payloadCache cache to use, or null to disable caching.
+     * @return this S3Dao.
+     */
+    public S3Dao withPayloadCache(DiskPayloadCache payloadCache) {
+        this.payloadCache = payloadCache;
+        return this;
+    }
+
+    /**
+     * Fails requests fast while recent requests to their bucket failed or were slow, see {@link S3CircuitBreaker}.
+     * Payloads served from the cache are not affected.
+     *
+     * @param circuitBreaker circuit breaker to use, or null to always send requests.
+     * @return this S3Dao.
+     */
+    public S3Dao withCircuitBreaker(S3CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    /**
+     * Sets the part size of payloads of unknown length stored from a stream with a multipart upload, which is
+     * also the amount of memory such an upload takes. Streams up to this size are stored with a single PUT.
+     *
+     * @param multipartPartSize part size in bytes, between 5MB and 2GB. Default: 8MB.
+     * @return this S3Dao.
+     */
+    public S3Dao withMultipartPartSize(long multipartPartSize) {
+        Util.checkMultipartPartSize(multipartPartSize);
+        this.multipartPartSize = multipartPartSize;
+        return this;
+    }
+
+    /**
+     * Reads objects of a bucket from whichever of the bucket and its replicas, for example S3 Replication targets
+     * in the regions of consumers, had the lowest recent latency. Reads of objects not found in the replica, for
+     * example because of replication lag, and reads the replica fails with a server, throttling or client error
+     * fall back to the source bucket. Failures count against the latency of the bucket. Writes and deletes always
+     * go to the source bucket. May be called once per replica.
+     *
+     * @param s3BucketName      source bucket named by pointers.
+     * @param replicaBucketName bucket the objects of the source bucket are replicated to.
+     * @param replicaClient     client to read the replica bucket with, typically of the region of the replica.
+     * @return this S3Dao.
+     */
+    public S3Dao withReadReplica(String s3BucketName, String replicaBucketName, S3Client replicaClient) {
+        readReplicas.addReplica(s3BucketName, s3Client, replicaBucketName, replicaClient);
+        return this;
+    }
+
+    /**
+     * Gets the average time to the response of recent GET requests to a replicated bucket or one of its
+     * replicas, which reads are routed by.
+     *
+     * @return the exponentially weighted moving average of the latency, or null if the bucket has not been read
+     * or is not replicated.
+     */
+    public Duration getReadLatency(String s3BucketName) {
+        return readReplicas.getLatency(s3BucketName);
+    }
+
+    /**
+     * Retries reads of objects that are not found, for consumers of payloads stored with a
+     * {@link WriteBehindUploader} whose pointers may arrive before the upload finished. Retries stop once the
+     * timeout of the read would expire before the next one.
+     *
+     * @param maxRetries maximum number of retries of a read, or 0 to fail right away. Default: 0
+     * @param delay      time to wait before each retry.
+     * @return this S3Dao.
+     */
+    public S3Dao withNotFoundRetry(int maxRetries, Duration delay) {
+        Util.checkNotFoundRetry(maxRetries, delay);
+        this.notFoundRetries = maxRetries;
+        this.notFoundRetryDelay = delay;
+        return this;
+    }
+
+    /**
+     * Signs the URLs of {@link #presignGetObject(String, String, Duration)} with the given presigner, which
+     * signs locally without sending any request. The presigner must be of the region and credentials of the
+     * buckets, and is not closed by this S3Dao.
+     *
+     * @param presigner presigner to use, or null to disable presigned URLs.
+     * @return this S3Dao.
+     */
+    public S3Dao withPresigner(S3Presigner presigner) {
+        this.presigner = presigner;
+        return this;
+    }
+
+    /**
+     * Creates a URL that gets an S3 object over plain HTTP, without credentials, until it expires. URLs always
+     * name the given bucket, not one of its read replicas.
+     *
+     * @param expiration time the URL is valid for, at most 7 days.
+     * @return presigned URL of the object.
+     * @throws SdkClientException If no presigner is configured, or the URL cannot be signed.
+     */
+    public URL presignGetObject(String s3BucketName, String s3Key, Duration expiration) {
+        return Util.presignGetObject(presigner, s3BucketName, s3Key, expiration);
+    }
+
     public String getTextFromS3(String s3BucketName, String s3Key) {
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+        return getTextFromS3(s3BucketName, s3Key, -1, null);
+    }
+
+    /**
+     * Gets a payload whose size and checksum are known, for example from a compact pointer. The content is
+     * read into an exactly sized buffer and decoded once.
+     *
+     * @param payloadSize size of the payload in bytes, or -1 if unknown.
+     * @param checksum    checksum to verify the payload against, or null to skip verification.
+     */
+    public String getTextFromS3(String s3BucketName, String s3Key, long payloadSize, String checksum) {
+        return getTextFromS3(s3BucketName, s3Key, payloadSize, checksum, null);
+    }
+
+    /**
+     * Gets a payload within the given timeout, which covers the GET request, its retries and reading the content.
+     *
+     * @param timeout timeout of the operation, or null for none.
+     * @throws PayloadTimeoutException If the payload was not read within the timeout.
+     */
+    public String getTextFromS3(String s3BucketName, String s3Key, long payloadSize, String checksum,
+                                Duration timeout) {
+        return getTextFromS3(s3BucketName, s3Key, payloadSize, checksum, timeout, null);
+    }
+
+    /**
+     * Gets a payload like {@link #getTextFromS3(String, String, long, String, Duration)}, reserving the
+     * Content-Length of a payload of unknown size in the given budget while its content is buffered.
+     *
+     * @param memoryBudget budget to reserve payloads of unknown size in, or null to not reserve them.
+     */
+    String getTextFromS3(String s3BucketName, String s3Key, long payloadSize, String checksum, Duration timeout,
+                         PayloadMemoryBudget memoryBudget) {
+        if (payloadCache != null) {
+            String cachedText = payloadCache.get(s3BucketName, s3Key);
+            if (cachedText != null) {
+                return cachedText;
+            }
+        }
+        long cacheGeneration = payloadCache != null ? payloadCache.getGeneration(s3BucketName, s3Key) : -1;
+
+        String embeddedText = getObjectFromS3(s3BucketName, s3Key, timeout, content -> {
+            if (payloadSize >= 0) {
+                byte[] bytes = readFully(content, payloadSize);
+                Util.verifyChecksum(checksum, bytes, 0, bytes.length);
+                return Util.decodeUtf8(bytes, 0, bytes.length);
+            }
+            if (memoryBudget == null) {
+                return IoUtils.toUtf8String(content);
+            }
+            long contentLength = contentLength(content);
+            memoryBudget.acquire(contentLength);
+            try {
+                return IoUtils.toUtf8String(content);
+            } finally {
+                memoryBudget.release(contentLength);
+            }
+        });
+
+        if (payloadCache != null) {
+            payloadCache.put(s3BucketName, s3Key, embeddedText, cacheGeneration);
+        }
+        return embeddedText;
+    }
+
+    /**
+     * Gets the content of an S3 object as is, for example a chunk of a payload stored in chunks. The content is
+     * not cached.
+     *
+     * @param size     size of the object in bytes, or -1 if unknown.
+     * @param checksum checksum to verify the content against, or null to skip verification.
+     * @param timeout  timeout of the operation, or null for none.
+     * @throws PayloadTimeoutException If the object was not read within the timeout.
+     */
+    public byte[] getBytesFromS3(String s3BucketName, String s3Key, long size, String checksum, Duration timeout) {
+        return getObjectFromS3(s3BucketName, s3Key, timeout, content -> {
+            byte[] bytes = size >= 0 ? readFully(content, size) : IoUtils.toByteArray(content);
+            Util.verifyChecksum(checksum, bytes, 0, bytes.length);
+            return bytes;
+        });
+    }
+
+    /**
+     * Gets a payload deserialized straight from the response stream, without buffering or decoding it first. The
+     * size and checksum are verified once the deserializer returned. The payload is not cached.
+     *
+     * @param payloadSize  size of the payload in bytes, or -1 if unknown.
+     * @param checksum     checksum to verify the payload against, or null to skip verification.
+     * @param deserializer deserializer reading the payload from the content of the object.
+     * @param timeout      timeout of the operation, or null for none.
+     * @throws PayloadTimeoutException If the payload was not read within the timeout.
+     */
+    public <T> T getValueFromS3(String s3BucketName, String s3Key, long payloadSize, String checksum,
+                                PayloadDeserializer<T> deserializer, Duration timeout) {
+        return getObjectFromS3(s3BucketName, s3Key, timeout, content -> {
+            VerifyingInputStream verifiedContent = new VerifyingInputStream(content);
+            T value = deserializer.deserialize(verifiedContent);
+            verifiedContent.verify(payloadSize, checksum);
+            return value;
+        });
+    }
+
+    /**
+     * Writes the content of an S3 object to a file through a FileChannel, without buffering it in memory, and
+     * verifies the size and checksum of what was written. The content is not cached.
+     *
+     * @param size     size of the object in bytes, or -1 if unknown.
+     * @param checksum checksum to verify the content against, or null to skip verification.
+     * @param file     existing file whose content is replaced.
+     * @param timeout  timeout of the operation, or null for none.
+     * @throws PayloadTimeoutException If the object was not read within the timeout.
+     */
+    public void getFileFromS3(String s3BucketName, String s3Key, long size, String checksum, Path file,
+                              Duration timeout) {
+        getObjectFromS3(s3BucketName, s3Key, timeout, content -> {
+            VerifyingInputStream verifiedContent = new VerifyingInputStream(content);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                Util.transferTo(verifiedContent, channel);
+            }
+            verifiedContent.verify(size, checksum);
+            return null;
+        });
+    }
+
+    private <T> T getObjectFromS3(String s3BucketName, String s3Key, Duration timeout,
+                                  ContentReader<T> contentReader) {
+        if (notFoundRetries == 0) {
+            return getObjectFromReplicas(s3BucketName, s3Key, timeout, contentReader, false);
+        }
+
+        Deadline deadline = Deadline.after(timeout);
+        for (int retry = 0; ; retry++) {
+            boolean retryNotFound = retry < notFoundRetries;
+            try {
+                return getObjectFromReplicas(s3BucketName, s3Key, deadline.remaining(), contentReader,
+                        retryNotFound);
+            } catch (SdkException e) {
+                if (!retryNotFound || !Util.isNotFound(e)) {
+                    throw e;
+                }
+                if (!deadline.hasRemaining(notFoundRetryDelay)) {
+                    String errorMessage = "Failed to get the S3 object which contains the payload.";
+                    LOG.error(errorMessage, e);
+                    throw SdkException.create(errorMessage, e);
+                }
+            }
+            // Not uploaded yet.
+            LOG.debug("S3 object not found, retrying, Bucket name: " + s3BucketName + ", Object key: " + s3Key
+                    + ".");
+            try {
+                Thread.sleep(notFoundRetryDelay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                String errorMessage = "Interrupted while waiting to retry the read of a missing S3 object.";
+                LOG.error(errorMessage, e);
+                throw SdkClientException.create(errorMessage, e);
+            }
+        }
+    }
+
+    /**
+     * @param quietNotFound whether to throw the exception of a missing object as is, without logging it.
+     */
+    private <T> T getObjectFromReplicas(String s3BucketName, String s3Key, Duration timeout,
+                                        ContentReader<T> contentReader, boolean quietNotFound) {
+        ReadReplicas.Endpoint<S3Client> endpoint = readReplicas.select(s3BucketName);
+        if (endpoint == null || endpoint.isSource()) {
+            return throughCircuitBreaker(s3BucketName, S3CircuitBreaker.Operation.GET,
+                    () -> readObjectFromS3(s3Client, s3BucketName, s3Key, timeout, contentReader, endpoint,
+                            quietNotFound));
+        }
+
+        Deadline deadline = Deadline.after(timeout);
+        try {
+            return throughCircuitBreaker(endpoint.getS3BucketName(), S3CircuitBreaker.Operation.GET,
+                    () -> readObjectFromS3(endpoint.getClient(), endpoint.getS3BucketName(), s3Key,
+                            deadline.remaining(), contentReader, endpoint, true));
+        } catch (SdkException e) {
+            if (!ReadReplicas.shouldFallBack(e) || deadline.isExpired()) {
+                throw e;
+            }
+            // Not replicated yet, or the replica is failing.
+            LOG.debug("S3 object could not be read from the replica bucket, reading it from the source bucket, "
+                    + "Bucket name: " + endpoint.getS3BucketName() + ", Object key: " + s3Key + ".");
+        }
+        return throughCircuitBreaker(s3BucketName, S3CircuitBreaker.Operation.GET,
+                () -> readObjectFromS3(s3Client, s3BucketName, s3Key, deadline.remaining(), contentReader,
+                        readReplicas.getEndpoint(s3BucketName), quietNotFound));
+    }
+
+    /**
+     * @param endpoint      endpoint to record the latency of the request in, or null if the bucket is not
+     *                      replicated.
+     * @param quietNotFound whether to throw the exception of a missing object as is, without logging it.
+     */
+    private <T> T readObjectFromS3(S3Client client, String s3BucketName, String s3Key, Duration timeout,
+                                   ContentReader<T> contentReader, ReadReplicas.Endpoint<S3Client> endpoint,
+                                   boolean quietNotFound) {
+        Deadline deadline = Deadline.after(timeout);
+        GetObjectRequest getObjectRequest = deadline.apply(GetObjectRequest.builder()
                 .bucket(s3BucketName)
-                .key(s3Key)
+                .key(s3Key))
                 .build();
 
         ResponseInputStream<GetObjectResponse> object = null;
+        long startNanos = readReplicas.nanoTime();
         try {
-            object = s3Client.getObject(getObjectRequest);
+            object = client.getObject(getObjectRequest);
+            if (endpoint != null) {
+                endpoint.recordLatency(startNanos, readReplicas.nanoTime());
+            }
         } catch (SdkException e) {
+            if (Util.isNotFound(e)) {
+                if (endpoint != null) {
+                    endpoint.recordLatency(startNanos, readReplicas.nanoTime());
+                }
+                if (quietNotFound) {
+                    throw e;
+                }
+            } else if (endpoint != null) {
+                endpoint.recordFailure(startNanos, readReplicas.nanoTime());
+            }
+            if (deadline.isTimeout(e)) {
+                throw timeoutException(deadline, "Getting the payload from S3", e);
+            }
             String errorMessage = "Failed to get the S3 object which contains the payload.";
             LOG.error(errorMessage, e);
             throw SdkException.create(errorMessage, e);
         }
 
-        String embeddedText;
+        // The API call timeout does not cover reading the content, so the stream is aborted at the deadline.
+        ScheduledFuture<?> abortAtDeadline = deadline.onExpiry(object::abort);
         try {
-            embeddedText = IoUtils.toUtf8String(object);
+            return contentReader.read(object);
         } catch (IOException e) {
+            if (deadline.isExpired()) {
+                throw timeoutException(deadline, "Getting the payload from S3", e);
+            }
             String errorMessage = "Failure when handling the message which was read from S3 object.";
             LOG.error(errorMessage, e);
             throw SdkClientException.create(errorMessage, e);
 
         } finally {
+            if (abortAtDeadline != null) {
+                abortAtDeadline.cancel(false);
+            }
             IoUtils.closeQuietly(object, LOG);
         }
-
-        return embeddedText;
     }
 
     public void storeTextInS3(String s3BucketName, String s3Key, String payloadContentStr) {
+        storeTextInS3(s3BucketName, s3Key, payloadContentStr, null);
+    }
+
+    /**
+     * @param objectTagging URL encoded tagging to store the object with, or null for none.
+     */
+    public void storeTextInS3(String s3BucketName, String s3Key, String payloadContentStr, String objectTagging) {
+        storeTextInS3(s3BucketName, s3Key, payloadContentStr, objectTagging, null);
+    }
+
+    /**
+     * @param objectTagging URL encoded tagging to store the object with, or null for none.
+     * @param timeout       timeout of the PUT request including its retries, or null for none.
+     * @throws PayloadTimeoutException If the payload was not stored within the timeout.
+     */
+    public void storeTextInS3(String s3BucketName, String s3Key, String payloadContentStr, String objectTagging,
+                              Duration timeout) {
+        putObject(s3BucketName, s3Key, RequestBody.fromString(payloadContentStr), objectTagging,
+                Deadline.after(timeout));
+    }
+
+    /**
+     * Stores an already UTF-8 encoded payload. The array is uploaded without being copied, and must not be
+     * modified until this call returns.
+     */
+    public void storeBytesInS3(String s3BucketName, String s3Key, byte[] payloadBytes) {
+        storeBytesInS3(s3BucketName, s3Key, payloadBytes, null);
+    }
+
+    /**
+     * @param objectTagging URL encoded tagging to store the object with, or null for none.
+     */
+    public void storeBytesInS3(String s3BucketName, String s3Key, byte[] payloadBytes, String objectTagging) {
+        storeBytesInS3(s3BucketName, s3Key, payloadBytes, objectTagging, null);
+    }
+
+    /**
+     * @param objectTagging URL encoded tagging to store the object with, or null for none.
+     * @param timeout       timeout of the PUT request including its retries, or null for none.
+     * @throws PayloadTimeoutException If the payload was not stored within the timeout.
+     */
+    public void storeBytesInS3(String s3BucketName, String s3Key, byte[] payloadBytes, String objectTagging,
+                               Duration timeout) {
+        storeBytesInS3(s3BucketName, s3Key, payloadBytes, payloadBytes.length, objectTagging, timeout);
+    }
+
+    /**
+     * Stores the payload held in the first bytes of the array, for example a serialized payload in the buffer
+     * it was serialized into.
+     *
+     * @param length        size of the payload in bytes.
+     * @param objectTagging URL encoded tagging to store the object with, or null for none.
+     * @param timeout       timeout of the PUT request including its retries, or null for none.
+     * @throws PayloadTimeoutException If the payload was not stored within the timeout.
+     */
+    public void storeBytesInS3(String s3BucketName, String s3Key, byte[] payloadBytes, int length,
+                               String objectTagging, Duration timeout) {
+        putObject(s3BucketName, s3Key, RequestBody.fromContentProvider(
+                () -> new ByteArrayInputStream(payloadBytes, 0, length), length, TEXT_CONTENT_TYPE), objectTagging,
+                Deadline.after(timeout));
+    }
+
+    private void putObject(String s3BucketName, String s3Key, RequestBody requestBody, String objectTagging,
+                           Deadline deadline) {
+        try {
+            throughCircuitBreaker(s3BucketName, S3CircuitBreaker.Operation.PUT, () -> {
+                sendPutObject(s3BucketName, s3Key, requestBody, objectTagging, deadline);
+                return null;
+            });
+        } finally {
+            // Also after failures, which may have replaced the object anyway.
+            invalidateCachedPayload(s3BucketName, s3Key);
+        }
+    }
+
+    private PutObjectRequest.Builder putObjectRequest(String s3BucketName, String s3Key, String objectTagging) {
         PutObjectRequest.Builder putObjectRequestBuilder = PutObjectRequest.builder()
                 .bucket(s3BucketName)
                 .key(s3Key);
 
+        if (objectTagging != null) {
+            putObjectRequestBuilder.tagging(objectTagging);
+        }
+
         if (objectCannedACL != null) {
             putObjectRequestBuilder.acl(objectCannedACL);
         }
@@ -78,30 +517,306 @@ public class S3Dao {
         if (serverSideEncryptionStrategy != null) {
             serverSideEncryptionStrategy.decorate(putObjectRequestBuilder);
         }
+        return putObjectRequestBuilder;
+    }
 
+    private void sendPutObject(String s3BucketName, String s3Key, RequestBody requestBody, String objectTagging,
+                               Deadline deadline) {
         try {
-            s3Client.putObject(putObjectRequestBuilder.build(), RequestBody.fromString(payloadContentStr));
+            s3Client.putObject(deadline.apply(putObjectRequest(s3BucketName, s3Key, objectTagging)).build(),
+                    requestBody);
         } catch (SdkException e) {
+            if (deadline.isTimeout(e)) {
+                throw timeoutException(deadline, "Storing the payload in S3", e);
+            }
             String errorMessage = "Failed to store the message content in an S3 object.";
             LOG.error(errorMessage, e);
             throw SdkException.create(errorMessage, e);
         }
     }
 
-    public void deletePayloadFromS3(String s3BucketName, String s3Key) {
+    /**
+     * Stores a payload of unknown length read from a stream. Payloads up to the multipart part size are stored
+     * with a single PUT. Larger payloads are uploaded with a multipart upload while the stream is read, one part
+     * at a time, so that only one part is held in memory whatever the size of the payload. A failed multipart
+     * upload is aborted. The stream is not closed.
+     *
+     * @param objectTagging URL encoded tagging to store the object with, or null for none.
+     * @param timeout       timeout of the operation covering all requests, or null for none.
+     * @return a pointer to the stored payload, carrying its size and checksum.
+     * @throws PayloadTimeoutException If the payload was not stored within the timeout.
+     */
+    public PayloadS3Pointer storeStreamInS3(String s3BucketName, String s3Key, InputStream payload,
+                                            String objectTagging, Duration timeout) {
+        try {
+            return throughCircuitBreaker(s3BucketName, S3CircuitBreaker.Operation.PUT,
+                    () -> sendStream(s3BucketName, s3Key, payload, objectTagging, Deadline.after(timeout)));
+        } finally {
+            invalidateCachedPayload(s3BucketName, s3Key);
+        }
+    }
+
+    private PayloadS3Pointer sendStream(String s3BucketName, String s3Key, InputStream payload,
+                                       String objectTagging, Deadline deadline) {
+        CRC32 crc32 = new CRC32();
+        byte[] part = new byte[(int) multipartPartSize];
+        int length;
+        try {
+            length = readPart(payload, part, crc32, deadline);
+        } catch (IOException e) {
+            throw readFailure(e);
+        }
+        if (length < part.length) {
+            sendPutObject(s3BucketName, s3Key, RequestBody.fromContentProvider(
+                    () -> new ByteArrayInputStream(part, 0, length), length, TEXT_CONTENT_TYPE), objectTagging,
+                    deadline);
+            return new PayloadS3Pointer(s3BucketName, s3Key, length, null, Util.checksum(crc32));
+        }
+
+        String uploadId = null;
         try {
-            DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
+            PutObjectRequest putObjectRequest = putObjectRequest(s3BucketName, s3Key, objectTagging)
+                    .contentType(TEXT_CONTENT_TYPE)
+                    .build();
+            uploadId = s3Client.createMultipartUpload(
+                    deadline.apply(Util.createMultipartUploadRequest(putObjectRequest)).build()).uploadId();
+            List<CompletedPart> completedParts = new ArrayList<>();
+            long payloadSize = 0;
+            for (int partLength = length; partLength > 0; ) {
+                int partNumber = completedParts.size() + 1;
+                int uploadedLength = partLength;
+                UploadPartResponse response = s3Client.uploadPart(deadline.apply(UploadPartRequest.builder()
+                        .bucket(s3BucketName)
+                        .key(s3Key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber))
+                        .build(),
+                        RequestBody.fromContentProvider(() -> new ByteArrayInputStream(part, 0, uploadedLength),
+                                uploadedLength, TEXT_CONTENT_TYPE));
+                completedParts.add(CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+                payloadSize += partLength;
+                partLength = partLength == part.length ? readPart(payload, part, crc32, deadline) : 0;
+            }
+            s3Client.completeMultipartUpload(deadline.apply(CompleteMultipartUploadRequest.builder()
                     .bucket(s3BucketName)
                     .key(s3Key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build()))
+                    .build());
+            return new PayloadS3Pointer(s3BucketName, s3Key, payloadSize, null, Util.checksum(crc32));
+
+        } catch (IOException e) {
+            abortMultipartUploadQuietly(s3BucketName, s3Key, uploadId);
+            throw readFailure(e);
+        } catch (SdkException e) {
+            abortMultipartUploadQuietly(s3BucketName, s3Key, uploadId);
+            if (e instanceof PayloadTimeoutException) {
+                throw e;
+            }
+            if (deadline.isTimeout(e)) {
+                throw timeoutException(deadline, "Storing the payload in S3", e);
+            }
+            String errorMessage = "Failed to store the message content in an S3 object with a multipart upload.";
+            LOG.error(errorMessage, e);
+            throw SdkException.create(errorMessage, e);
+        } catch (RuntimeException e) {
+            abortMultipartUploadQuietly(s3BucketName, s3Key, uploadId);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of bytes read into the part, which is less than its size only at the end of the stream.
+     */
+    private static int readPart(InputStream in, byte[] part, CRC32 crc32, Deadline deadline) throws IOException {
+        int position = 0;
+        int read;
+        while (position < part.length && (read = in.read(part, position, part.length - position)) >= 0) {
+            position += read;
+        }
+        if (deadline.isExpired()) {
+            throw timeoutException(deadline, "Storing the payload in S3", null);
+        }
+        crc32.update(part, 0, position);
+        return position;
+    }
+
+    private static SdkClientException readFailure(IOException e) {
+        String errorMessage = "Failed to read the payload to store in S3.";
+        LOG.error(errorMessage, e);
+        return SdkClientException.create(errorMessage, e);
+    }
+
+    private void abortMultipartUploadQuietly(String s3BucketName, String s3Key, String uploadId) {
+        if (uploadId == null) {
+            return;
+        }
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(s3BucketName)
+                    .key(s3Key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (SdkException e) {
+            LOG.warn("Failed to abort the multipart upload of a payload that could not be stored, Bucket name: "
+                    + s3BucketName + ", Object key: " + s3Key + ".", e);
+        }
+    }
+
+    public void deletePayloadFromS3(String s3BucketName, String s3Key) {
+        deletePayloadFromS3(s3BucketName, s3Key, null);
+    }
+
+    /**
+     * @param timeout timeout of the DELETE request including its retries, or null for none.
+     * @throws PayloadTimeoutException If the payload was not deleted within the timeout.
+     */
+    public void deletePayloadFromS3(String s3BucketName, String s3Key, Duration timeout) {
+        throughCircuitBreaker(s3BucketName, S3CircuitBreaker.Operation.DELETE, () -> {
+            sendDeleteObject(s3BucketName, s3Key, timeout);
+            return null;
+        });
+    }
+
+    private void sendDeleteObject(String s3BucketName, String s3Key, Duration timeout) {
+        Deadline deadline = Deadline.after(timeout);
+        try {
+            DeleteObjectRequest deleteObjectRequest = deadline.apply(DeleteObjectRequest.builder()
+                    .bucket(s3BucketName)
+                    .key(s3Key))
                     .build();
             s3Client.deleteObject(deleteObjectRequest);
 
         } catch (SdkException e) {
+            if (deadline.isTimeout(e)) {
+                throw timeoutException(deadline, "Deleting the payload from S3", e);
+            }
             String errorMessage = "Failed to delete the S3 object which contains the payload";
             LOG.error(errorMessage, e);
             throw SdkException.create(errorMessage, e);
+        } finally {
+            if (payloadCache != null) {
+                payloadCache.invalidate(s3BucketName, s3Key);
+            }
         }
 
         LOG.info("S3 object deleted, Bucket name: " + s3BucketName + ", Object key: " + s3Key + ".");
     }
+
+    /**
+     * Deletes several S3 objects, for example all chunks of a payload stored in chunks, with DeleteObjects
+     * requests of up to 1000 keys each.
+     *
+     * @param timeout timeout of each DeleteObjects request including its retries, or null for none.
+     * @throws PayloadTimeoutException If a request did not finish within the timeout.
+     */
+    public void deletePayloadsFromS3(String s3BucketName, List<String> s3Keys, Duration timeout) {
+        throughCircuitBreaker(s3BucketName, S3CircuitBreaker.Operation.DELETE, () -> {
+            sendDeleteObjects(s3BucketName, s3Keys, timeout);
+            return null;
+        });
+    }
+
+    private void sendDeleteObjects(String s3BucketName, List<String> s3Keys, Duration timeout) {
+        for (int from = 0; from < s3Keys.size(); from += MAX_KEYS_PER_DELETE) {
+            List<String> batch = s3Keys.subList(from, Math.min(from + MAX_KEYS_PER_DELETE, s3Keys.size()));
+            Deadline deadline = Deadline.after(timeout);
+            DeleteObjectsResponse response;
+            try {
+                response = s3Client.deleteObjects(deadline.apply(DeleteObjectsRequest.builder()
+                        .bucket(s3BucketName)
+                        .delete(Util.deleteOf(batch)))
+                        .build());
+            } catch (SdkException e) {
+                if (deadline.isTimeout(e)) {
+                    throw timeoutException(deadline, "Deleting the payloads from S3", e);
+                }
+                String errorMessage = "Failed to delete the S3 objects which contain the payload";
+                LOG.error(errorMessage, e);
+                throw SdkException.create(errorMessage, e);
+            } finally {
+                for (String s3Key : batch) {
+                    invalidateCachedPayload(s3BucketName, s3Key);
+                }
+            }
+            if (response.hasErrors() && !response.errors().isEmpty()) {
+                String errorMessage = "Failed to delete " + response.errors().size() + " of the S3 objects which "
+                        + "contain the payload, first error: " + response.errors().get(0).message();
+                LOG.error(errorMessage);
+                throw SdkClientException.create(errorMessage);
+            }
+        }
+
+        LOG.info("S3 objects deleted, Bucket name: " + s3BucketName + ", Object count: " + s3Keys.size() + ".");
+    }
+
+    /**
+     * Sends a HeadBucket request to open a pooled connection to S3 ahead of the first payload. Failures, including
+     * access denied when the caller may not list the bucket, are logged and ignored since the connection is
+     * set up either way.
+     */
+    public void warmUpConnection(String s3BucketName) {
+        try {
+            s3Client.headBucket(HeadBucketRequest.builder().bucket(s3BucketName).build());
+        } catch (SdkException e) {
+            LOG.debug("Warm-up request to S3 failed, Bucket name: " + s3BucketName + ".", e);
+        }
+    }
+
+    /**
+     * Drops a payload from the local cache without deleting it from S3, for payloads that are expired by a
+     * lifecycle rule. Payloads stored or deleted through this DAO are dropped already.
+     */
+    public void invalidateCachedPayload(String s3BucketName, String s3Key) {
+        if (payloadCache != null) {
+            payloadCache.invalidate(s3BucketName, s3Key);
+        }
+    }
+
+    private <T> T throughCircuitBreaker(String s3BucketName, S3CircuitBreaker.Operation operation,
+                                        Supplier<T> request) {
+        return circuitBreaker != null ? circuitBreaker.call(s3BucketName, operation, request) : request.get();
+    }
+
+    private static PayloadTimeoutException timeoutException(Deadline deadline, String operation, Throwable cause) {
+        PayloadTimeoutException e = deadline.timeoutException(operation, cause);
+        LOG.error(e.getMessage(), cause);
+        return e;
+    }
+
+    private interface ContentReader<T> {
+        T read(InputStream content) throws IOException;
+    }
+
+    /**
+     * @return the Content-Length of the response the content is read from, or -1 if unknown.
+     */
+    private static long contentLength(InputStream content) {
+        if (content instanceof ResponseInputStream) {
+            Object response = ((ResponseInputStream<?>) content).response();
+            if (response instanceof GetObjectResponse && ((GetObjectResponse) response).contentLength() != null) {
+                return ((GetObjectResponse) response).contentLength();
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] readFully(InputStream in, long payloadSize) throws IOException {
+        if (payloadSize > Integer.MAX_VALUE - 8) {
+            throw new IOException("Payload of " + payloadSize + " bytes is too large to be read as text.");
+        }
+        byte[] content = new byte[(int) payloadSize];
+        int position = 0;
+        while (position < content.length) {
+            int read = in.read(content, position, content.length - position);
+            if (read < 0) {
+                throw new IOException("S3 object is shorter than the expected " + payloadSize + " bytes.");
+            }
+            position += read;
+        }
+        if (in.read() >= 0) {
+            throw new IOException("S3 object is longer than the expected " + payloadSize + " bytes.");
+        }
+        return content;
+    }
 }
@@ -0,0 +1,23 @@
+package software.amazon.payloadoffloading;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Collects an S3 object into a UTF-8 decoded String with a single copy of the content, decoding the pooled
+ * buffer the content was received into straight into the final String.
+ */
+class StringAsyncResponseTransformer extends PooledAsyncResponseTransformer<String> {
+    StringAsyncResponseTransformer() {
+        this(ByteArrayPool.shared(), null, null);
+    }
+
+    /**
+     * @param expectedChecksum checksum the content is verified against before decoding, or null to skip
+     *                         verification.
+     * @param decodeExecutor   executor to verify and decode the content on, or null to do it on the thread that
+     *                         received the last part of the content.
+     */
+    StringAsyncResponseTransformer(ByteArrayPool pool, String expectedChecksum, Executor decodeExecutor) {
+        super(pool, expectedChecksum, Util::decodeUtf8, decodeExecutor);
+    }
+}
@@ -0,0 +1,55 @@
+package software.amazon.payloadoffloading;
+
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Records the time from sending a GetObject request to receiving its response, or a response that the object
+ * does not exist, in the latency of the replicated bucket it was sent to, or a penalty if the request failed,
+ * and otherwise leaves the response to the wrapped transformer.
+ */
+class TimedAsyncResponseTransformer<T> implements AsyncResponseTransformer<GetObjectResponse, T> {
+    private final AsyncResponseTransformer<GetObjectResponse, T> transformer;
+    private final ReadReplicas<?> readReplicas;
+    private final ReadReplicas.Endpoint<?> endpoint;
+    private volatile long startNanos;
+
+    TimedAsyncResponseTransformer(AsyncResponseTransformer<GetObjectResponse, T> transformer,
+                                  ReadReplicas<?> readReplicas, ReadReplicas.Endpoint<?> endpoint) {
+        this.transformer = transformer;
+        this.readReplicas = readReplicas;
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public CompletableFuture<T> prepare() {
+        // Called again for every retry of the request.
+        startNanos = readReplicas.nanoTime();
+        return transformer.prepare();
+    }
+
+    @Override
+    public void onResponse(GetObjectResponse response) {
+        endpoint.recordLatency(startNanos, readReplicas.nanoTime());
+        transformer.onResponse(response);
+    }
+
+    @Override
+    public void onStream(SdkPublisher<ByteBuffer> publisher) {
+        transformer.onStream(publisher);
+    }
+
+    @Override
+    public void exceptionOccurred(Throwable error) {
+        if (Util.isNotFound(error)) {
+            endpoint.recordLatency(startNanos, readReplicas.nanoTime());
+        } else {
+            endpoint.recordFailure(startNanos, readReplicas.nanoTime());
+        }
+        transformer.exceptionOccurred(error);
+    }
+}
@@ -1,41 +1,468 @@
 package software.amazon.payloadoffloading;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
 import software.amazon.awssdk.core.util.VersionInfo;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
 
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.zip.CRC32;
 
 public class Util {
     private static final Logger LOG = LoggerFactory.getLogger(Util.class);
+    private static final long SPILL_TRANSFER_SIZE = 1024 * 1024;
+    private static final Duration MAX_PRESIGN_EXPIRATION = Duration.ofDays(7);
+    private static final int MAX_WARM_UP_CONNECTIONS = 50;
 
+    /**
+     * Computes the UTF-8 size of a string with a single scan of its chars, without encoding it. Unpaired
+     * surrogates count as the one byte they are replaced with when encoded.
+     */
     public static long getStringSizeInBytes(String str) {
-        CountingOutputStream counterOutputStream = new CountingOutputStream();
+        long size = 0;
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                size++;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                size++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Computes the checksum recorded in compact S3 object pointers.
+     *
+     * @return the checksum, as the algorithm name and the hex encoded value, for example "crc32:1c291ca3".
+     */
+    public static String checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, offset, length);
+        return checksum(crc32);
+    }
+
+    /**
+     * @return the checksum of content fed to the CRC32 incrementally, in the format of
+     * {@link #checksum(byte[], int, int)}.
+     */
+    static String checksum(CRC32 crc32) {
+        return String.format("crc32:%08x", crc32.getValue());
+    }
+
+    /**
+     * Verifies the checksum of a payload read from S3.
+     *
+     * @throws SdkClientException If the checksum does not match, or uses an unsupported algorithm.
+     */
+    public static void verifyChecksum(String expectedChecksum, byte[] bytes, int offset, int length) {
+        if (expectedChecksum == null) {
+            return;
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, offset, length);
+        verifyChecksum(expectedChecksum, crc32);
+    }
+
+    /**
+     * Verifies the checksum of a payload read from S3 and fed to the CRC32 incrementally.
+     *
+     * @throws SdkClientException If the checksum does not match, or uses an unsupported algorithm.
+     */
+    static void verifyChecksum(String expectedChecksum, CRC32 crc32) {
+        if (expectedChecksum == null) {
+            return;
+        }
+        if (!expectedChecksum.startsWith("crc32:")) {
+            String errorMessage = "Unsupported payload checksum algorithm: " + expectedChecksum + ".";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        String actualChecksum = checksum(crc32);
+        if (!expectedChecksum.equalsIgnoreCase(actualChecksum)) {
+            String errorMessage = "Checksum mismatch for the payload read from S3, expected " + expectedChecksum
+                    + " but was " + actualChecksum + ".";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+    }
+
+    /**
+     * @throws SdkClientException If the chunk size or parallelism of chunked payloads is invalid.
+     */
+    static void checkChunking(long chunkSize, int parallelism) {
+        if (chunkSize == 0 || chunkSize < -1 || chunkSize > Integer.MAX_VALUE - 8 || parallelism < 1) {
+            String errorMessage = "Chunk size must be -1 or between 1 byte and 2GB, and parallelism at least 1.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+    }
+
+    /**
+     * @throws SdkClientException If the threshold above which payloads are spilled to disk is invalid.
+     */
+    static void checkSpillThreshold(long spillThreshold) {
+        if (spillThreshold < -1) {
+            String errorMessage = "Spill threshold must be -1 or at least 0 bytes.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+    }
+
+    /**
+     * @throws SdkClientException If the multipart upload part size is outside of the limits of S3 and of arrays.
+     */
+    static void checkMultipartPartSize(long partSize) {
+        if (partSize < 5L * 1024 * 1024 || partSize > Integer.MAX_VALUE - 8) {
+            String errorMessage = "Multipart upload part size must be between 5MB and 2GB.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+    }
 
+    /**
+     * @throws SdkClientException If the part size or parallelism of ranged GETs is invalid.
+     */
+    static void checkRangedGets(long partSize, int parallelism) {
+        if (partSize < 1 || partSize > Integer.MAX_VALUE - 8 || parallelism < 1) {
+            String errorMessage = "Ranged GET part size must be between 1 byte and 2GB, and parallelism at least 1.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+    }
+
+    /**
+     * Signs a GET URL of an S3 object locally. Presigners cache the signing key of the day and sign with a
+     * few HMACs, so that signing a URL per message is cheap.
+     *
+     * @throws SdkClientException If no presigner is configured, the expiration is not between 1 second and the
+     *                            7 days allowed by Signature Version 4, or the URL cannot be signed.
+     */
+    static URL presignGetObject(S3Presigner presigner, String s3BucketName, String s3Key, Duration expiration) {
+        if (presigner == null) {
+            String errorMessage = "No presigner configured to presign the URLs of payloads.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        if (expiration == null || expiration.getSeconds() < 1 || expiration.compareTo(MAX_PRESIGN_EXPIRATION) > 0) {
+            String errorMessage = "Presigned URL expiration must be between 1 second and 7 days.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
         try {
-            Writer writer = new OutputStreamWriter(counterOutputStream, StandardCharsets.UTF_8);
-            writer.write(str);
-            writer.flush();
-            writer.close();
+            return presigner.presignGetObject(GetObjectPresignRequest.builder()
+                    .signatureDuration(expiration)
+                    .getObjectRequest(r -> r.bucket(s3BucketName).key(s3Key))
+                    .build())
+                    .url();
+        } catch (RuntimeException e) {
+            String errorMessage = "Failed to presign the URL of the S3 object which contains the payload.";
+            LOG.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        }
+    }
 
+    /**
+     * @throws SdkClientException If the number of retries is negative, or the delay null or negative.
+     */
+    static void checkNotFoundRetry(int maxRetries, Duration delay) {
+        if (maxRetries < 0 || delay == null || delay.isNegative()) {
+            String errorMessage = "Retries of reads of missing objects must not be negative, and their delay must "
+                    + "be at least 0.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+    }
+
+    /**
+     * Checks that a payload can be fetched with a single presigned URL.
+     *
+     * @throws SdkClientException If the payload is stored in chunks.
+     */
+    static void checkPresignable(PayloadS3Pointer s3Pointer) {
+        if (s3Pointer.isChunked()) {
+            String errorMessage = "Payloads stored in chunks cannot be fetched with a single presigned URL.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+    }
+
+    /**
+     * Checks that a payload referenced by a pointer is stored in a content encoding this library can read.
+     *
+     * @throws SdkClientException If the payload is stored with an unsupported content encoding.
+     */
+    static void checkContentEncoding(PayloadS3Pointer s3Pointer) {
+        String contentEncoding = s3Pointer.getContentEncoding();
+        if (contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding)) {
+            String errorMessage = "Unsupported content encoding of the S3 object which contains the payload: "
+                    + contentEncoding + ".";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+    }
+
+    /**
+     * Decodes UTF-8 bytes with a single copy. Pure ASCII content, the common case for JSON and XML payloads,
+     * is decoded as ISO-8859-1 which maps bytes to chars one to one and avoids the UTF-8 decoder.
+     */
+    static String decodeUtf8(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (bytes[i] < 0) {
+                return new String(bytes, offset, length, StandardCharsets.UTF_8);
+            }
+        }
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Creates an empty temporary file to spill a payload to, in the given directory or, if null, in the default
+     * temporary directory.
+     *
+     * @throws SdkClientException If the file cannot be created.
+     */
+    static Path createSpillFile(Path directory) {
+        try {
+            if (directory == null) {
+                return Files.createTempFile("payload-", ".spill");
+            }
+            Files.createDirectories(directory);
+            return Files.createTempFile(directory, "payload-", ".spill");
         } catch (IOException e) {
-            String errorMessage = "Failed to calculate the size of payload.";
+            String errorMessage = "Failed to create a file to write the payload to.";
             LOG.error(errorMessage, e);
             throw SdkClientException.create(errorMessage, e);
         }
+    }
+
+    /**
+     * Deletes a spill file, or schedules it for deletion on exit if it cannot be deleted yet, for example while
+     * it is still mapped on platforms that do not delete mapped files.
+     */
+    static void deleteSpillFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete the file a payload was written to, deleting it on exit: " + file + ".", e);
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * Copies a stream to the end of a file channel, without buffering more than the transfer size in memory.
+     *
+     * @return the number of bytes copied.
+     */
+    static long transferTo(InputStream in, FileChannel channel) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(in);
+        long start = channel.position();
+        long position = start;
+        long transferred;
+        // Transfers from a stream only return 0 at its end.
+        while ((transferred = channel.transferFrom(source, position, SPILL_TRANSFER_SIZE)) > 0) {
+            position += transferred;
+        }
+        channel.position(position);
+        return position - start;
+    }
 
-        return counterOutputStream.getTotalSize();
+    /**
+     * @return the number of connections to warm up, clamped to the default maximum of the SDK HTTP clients.
+     */
+    static int warmUpConnections(int connections) {
+        return Math.min(Math.max(connections, 0), MAX_WARM_UP_CONNECTIONS);
+    }
+
+    /**
+     * Runs a pointer through both pointer formats and the payload encoding, checksum and decoding paths, so that
+     * classes are loaded and Jackson introspection is done before the first payload is handled.
+     */
+    static void warmUpPayloadPath(String s3BucketName) {
+        byte[] content = "warm-up-päyload".getBytes(StandardCharsets.UTF_8);
+        String checksum = checksum(content, 0, content.length);
+        PayloadS3Pointer s3Pointer = new PayloadS3Pointer(s3BucketName, "warm-up", content.length, null, checksum);
+        PayloadS3Pointer.fromJson(s3Pointer.toJson());
+        checkContentEncoding(PayloadS3Pointer.fromJson(s3Pointer.toCompactJson()));
+        verifyChecksum(checksum, content, 0, content.length);
+        decodeUtf8(content, 0, content.length);
+        decodeUtf8(content, 0, 7);
     }
 
     public static String getUserAgentHeader(String clientName) {
         return clientName + "/" + VersionInfo.SDK_VERSION;
     }
 
+    /**
+     * Cancels the given source futures when the derived future completes exceptionally, for example because the
+     * caller cancelled it or it timed out, so that abandoned requests do not keep transferring. Dependent stages of
+     * a CompletableFuture do not propagate cancellation to the stages they depend on by themselves.
+     *
+     * @return the derived future.
+     */
+    static <T> CompletableFuture<T> propagateCancellation(CompletableFuture<T> derived,
+                                                         CompletableFuture<?>... sources) {
+        derived.whenComplete((v, t) -> {
+            if (t != null) {
+                for (CompletableFuture<?> source : sources) {
+                    source.cancel(true);
+                }
+            }
+        });
+        return derived;
+    }
+
+    /**
+     * Runs asynchronous tasks for the indexes 0 to count - 1, with at most the given number of tasks in flight.
+     * The first failure fails the returned future, after which no further tasks are started and the tasks in
+     * flight are cancelled.
+     *
+     * @return future that completes once all tasks completed.
+     */
+    static CompletableFuture<Void> forEachBounded(int count, int parallelism,
+                                                  IntFunction<CompletableFuture<?>> task) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (count == 0) {
+            result.complete(null);
+            return result;
+        }
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(count);
+        AtomicInteger startsRequested = new AtomicInteger();
+        Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+        Runnable startNext = new Runnable() {
+            // Starts one more task. Tasks that complete synchronously call back into this method, so calls are
+            // serialized and looped over instead of recursing once per task.
+            @Override
+            public void run() {
+                if (startsRequested.getAndIncrement() != 0) {
+                    return;
+                }
+                do {
+                    startTask();
+                } while (startsRequested.decrementAndGet() != 0);
+            }
+
+            private void startTask() {
+                int index = next.getAndIncrement();
+                if (index >= count || result.isDone()) {
+                    return;
+                }
+                CompletableFuture<?> started;
+                try {
+                    started = task.apply(index);
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                inFlight.add(started);
+                if (result.isCompletedExceptionally()) {
+                    // Failed while the task was being started.
+                    started.cancel(true);
+                }
+                started.whenComplete((v, t) -> {
+                    inFlight.remove(started);
+                    if (t != null) {
+                        result.completeExceptionally(unwrapFutureException(t));
+                    } else if (remaining.decrementAndGet() == 0) {
+                        result.complete(null);
+                    } else {
+                        run();
+                    }
+                });
+            }
+        };
+        for (int i = 0; i < Math.min(count, parallelism); i++) {
+            startNext.run();
+        }
+        result.whenComplete((v, t) -> {
+            if (t != null) {
+                for (CompletableFuture<?> started : inFlight) {
+                    started.cancel(true);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return whether the failure, or one of its causes, is a response of S3 that the object does not exist.
+     */
+    static boolean isNotFound(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause() != cause ? cause.getCause() : null) {
+            if (cause instanceof SdkServiceException) {
+                return ((SdkServiceException) cause).statusCode() == 404;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the Delete of a DeleteObjects request for the given keys, in quiet mode so that only errors are
+     * returned.
+     */
+    static Delete deleteOf(List<String> s3Keys) {
+        List<ObjectIdentifier> objects = new ArrayList<>(s3Keys.size());
+        for (String s3Key : s3Keys) {
+            objects.add(ObjectIdentifier.builder().key(s3Key).build());
+        }
+        return Delete.builder().objects(objects).quiet(true).build();
+    }
+
+    /**
+     * @return a CreateMultipartUpload request storing the object like the given PutObject request, with the same
+     * encryption, ACL, tagging, content type and metadata.
+     */
+    static CreateMultipartUploadRequest.Builder createMultipartUploadRequest(PutObjectRequest putObjectRequest) {
+        return CreateMultipartUploadRequest.builder()
+                .bucket(putObjectRequest.bucket())
+                .key(putObjectRequest.key())
+                .acl(putObjectRequest.acl())
+                .tagging(putObjectRequest.tagging())
+                .contentType(putObjectRequest.contentType())
+                .contentEncoding(putObjectRequest.contentEncoding())
+                .metadata(putObjectRequest.hasMetadata() ? putObjectRequest.metadata() : null)
+                .serverSideEncryption(putObjectRequest.serverSideEncryption())
+                .ssekmsKeyId(putObjectRequest.ssekmsKeyId())
+                .ssekmsEncryptionContext(putObjectRequest.ssekmsEncryptionContext())
+                .bucketKeyEnabled(putObjectRequest.bucketKeyEnabled())
+                .sseCustomerAlgorithm(putObjectRequest.sseCustomerAlgorithm())
+                .sseCustomerKey(putObjectRequest.sseCustomerKey())
+                .sseCustomerKeyMD5(putObjectRequest.sseCustomerKeyMD5());
+    }
+
     public static Throwable unwrapFutureException(Throwable t) {
         if ((t instanceof CompletionException) && t.getCause() != null) {
             t = t.getCause();
@@ -0,0 +1,71 @@
+package software.amazon.payloadoffloading;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Counts and checksums the content read through it, so that content consumed by a deserializer straight from
+ * the response stream can be verified against the size and checksum of its pointer without being buffered.
+ */
+class VerifyingInputStream extends FilterInputStream {
+    private final CRC32 crc32 = new CRC32();
+    private long size;
+
+    VerifyingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            crc32.update(b);
+            size++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            crc32.update(b, off, read);
+            size += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped content must still be checksummed.
+        byte[] skipped = new byte[(int) Math.min(n, 8192)];
+        int read = read(skipped, 0, skipped.length);
+        return Math.max(read, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Reads the content left after the deserializer, typically trailing whitespace, and verifies the content.
+     *
+     * @param expectedSize     size of the content in bytes, or -1 if unknown.
+     * @param expectedChecksum checksum of the content, or null to skip verification.
+     * @throws IOException If the content does not have the expected size.
+     */
+    void verify(long expectedSize, String expectedChecksum) throws IOException {
+        byte[] rest = new byte[256];
+        while (read(rest, 0, rest.length) >= 0) {
+            // Drained for its size and checksum only.
+        }
+        if (expectedSize >= 0 && size != expectedSize) {
+            throw new IOException("S3 object has " + size + " bytes instead of the expected " + expectedSize
+                    + " bytes.");
+        }
+        Util.verifyChecksum(expectedChecksum, crc32);
+    }
+}
@@ -0,0 +1,222 @@
+package software.amazon.payloadoffloading;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.annotations.ThreadSafe;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uploads payloads in the background after their pointers were returned, so that the latency of storing a
+ * payload does not include the PutObject request. Attach it to a store with
+ * {@link S3BackedPayloadStore#withWriteBehind(WriteBehindUploader)}.
+ *
+ * <p>Every worker thread has its own bounded buffer of uploads, which producers block on while it is full, and
+ * sends them one at a time in the order they were submitted. Uploads are assigned to workers by bucket and key,
+ * so that a later version of an object is never overwritten by an earlier one still waiting to be uploaded.
+ * A pointer can reach a consumer before its payload is uploaded: call
+ * {@link #flush()} before sending the message to wait for the uploads, or let consumers retry reads of missing
+ * payloads with {@link S3Dao#withNotFoundRetry(int, java.time.Duration)}.</p>
+ *
+ * <p>Failed uploads are not retried. They are logged, counted, and reported by the next {@link #flush()}.</p>
+ *
+ * <pre>
+ *     WriteBehindUploader uploader = new WriteBehindUploader(1024, 8);
+ *     PayloadStore payloadStore = new S3BackedPayloadStore(s3Dao, s3BucketName).withWriteBehind(uploader);
+ * </pre>
+ */
+@ThreadSafe
+public class WriteBehindUploader implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindUploader.class);
+
+    private final List<BlockingQueue<Upload>> buffers = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final Set<Upload> pending = ConcurrentHashMap.newKeySet();
+    private final Queue<Upload> unreportedFailures = new ConcurrentLinkedQueue<>();
+    private final AtomicLong uploadedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param capacity    maximum number of payloads waiting to be uploaded, split evenly between the workers.
+     * @param parallelism number of worker threads uploading payloads at the same time.
+     */
+    public WriteBehindUploader(int capacity, int parallelism) {
+        if (capacity < 1 || parallelism < 1) {
+            String errorMessage = "Write-behind capacity and parallelism must be at least 1.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        int workerCapacity = (capacity + parallelism - 1) / parallelism;
+        for (int i = 0; i < parallelism; i++) {
+            BlockingQueue<Upload> buffer = new ArrayBlockingQueue<>(workerCapacity);
+            buffers.add(buffer);
+            Thread worker = new Thread(() -> runWorker(buffer), "payload-offloading-write-behind-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * @return the number of payloads submitted and not uploaded yet, either waiting or being uploaded.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getUploadedCount() {
+        return uploadedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Queues the upload of a payload, waiting while the buffer is full.
+     *
+     * @return a future completed once the upload succeeded, failed or was dropped by {@link #close()}.
+     * @throws SdkClientException If the uploader is closed, or the calling thread is interrupted while waiting.
+     */
+    CompletableFuture<Void> submit(String s3BucketName, String s3Key, Runnable upload) {
+        if (closed) {
+            String errorMessage = "Write-behind uploader is closed.";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        Upload entry = new Upload(s3BucketName, s3Key, upload);
+        int worker = Math.floorMod((s3BucketName + "/" + s3Key).hashCode(), buffers.size());
+        pending.add(entry);
+        try {
+            buffers.get(worker).put(entry);
+        } catch (InterruptedException e) {
+            pending.remove(entry);
+            Thread.currentThread().interrupt();
+            String errorMessage = "Interrupted while waiting for the write-behind buffer.";
+            LOG.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        }
+        return entry.done;
+    }
+
+    /**
+     * Waits until all payloads submitted before the call are uploaded.
+     *
+     * @throws SdkClientException If any upload failed since the previous flush, or the calling thread is
+     *                            interrupted while waiting.
+     */
+    public void flush() {
+        for (Upload upload : new ArrayList<>(pending)) {
+            try {
+                upload.done.get();
+            } catch (ExecutionException e) {
+                // Reported below with the other failures.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                String errorMessage = "Interrupted while flushing the write-behind uploads.";
+                LOG.error(errorMessage, e);
+                throw SdkClientException.create(errorMessage, e);
+            }
+        }
+
+        List<Upload> failures = new ArrayList<>();
+        for (Upload failure = unreportedFailures.poll(); failure != null; failure = unreportedFailures.poll()) {
+            failures.add(failure);
+        }
+        if (!failures.isEmpty()) {
+            Upload first = failures.get(0);
+            String errorMessage = failures.size() + " write-behind uploads failed, first Bucket name: "
+                    + first.s3BucketName + ", Object key: " + first.s3Key + ".";
+            LOG.error(errorMessage);
+            throw SdkClientException.create(errorMessage, first.failure);
+        }
+    }
+
+    /**
+     * Stops accepting uploads, waits for the submitted ones and stops the worker threads.
+     *
+     * @throws SdkClientException If any upload failed since the previous flush.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            flush();
+        } finally {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            // Submitted while closing, after the flush.
+            for (BlockingQueue<Upload> buffer : buffers) {
+                for (Upload upload = buffer.poll(); upload != null; upload = buffer.poll()) {
+                    fail(upload, SdkClientException.create("Write-behind uploader is closed."));
+                }
+            }
+        }
+    }
+
+    private void runWorker(BlockingQueue<Upload> buffer) {
+        while (true) {
+            Upload upload;
+            try {
+                upload = buffer.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                upload.upload.run();
+                uploadedCount.incrementAndGet();
+                pending.remove(upload);
+                upload.done.complete(null);
+            } catch (Throwable t) {
+                // Also errors, or flush() would wait for the upload forever. SDK failures are logged by the DAO.
+                fail(upload, t);
+            }
+        }
+    }
+
+    private void fail(Upload upload, Throwable e) {
+        LOG.error("Write-behind upload failed, Bucket name: " + upload.s3BucketName + ", Object key: "
+                + upload.s3Key + ".");
+        upload.failure = e;
+        failedCount.incrementAndGet();
+        unreportedFailures.add(upload);
+        pending.remove(upload);
+        upload.done.completeExceptionally(e);
+    }
+
+    private static final class Upload {
+        final String s3BucketName;
+        final String s3Key;
+        final Runnable upload;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        volatile Throwable failure;
+
+        Upload(String s3BucketName, String s3Key, Runnable upload) {
+            this.s3BucketName = s3BucketName;
+            this.s3Key = s3Key;
+            this.upload = upload;
+        }
+    }
+}
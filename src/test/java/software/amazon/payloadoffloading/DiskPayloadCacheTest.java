@@ -0,0 +1,175 @@
+package software.amazon.payloadoffloading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+public class DiskPayloadCacheTest {
+    private static final String S3_BUCKET_NAME = "test-bucket-name";
+    private static final String ANY_PAYLOAD = "AnyPayload";
+    private static final String ANY_S3_KEY = "AnyS3key";
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Test
+    public void testPutThenGet() {
+        DiskPayloadCache cache = new DiskPayloadCache(cacheDirectory, 1024);
+        assertNull(cache.get(S3_BUCKET_NAME, ANY_S3_KEY));
+
+        cache.put(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD);
+
+        assertEquals(ANY_PAYLOAD, cache.get(S3_BUCKET_NAME, ANY_S3_KEY));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(ANY_PAYLOAD.length(), cache.getSizeInBytes());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        DiskPayloadCache cache = new DiskPayloadCache(cacheDirectory, 2 * ANY_PAYLOAD.length());
+        cache.put(S3_BUCKET_NAME, "key1", ANY_PAYLOAD);
+        cache.put(S3_BUCKET_NAME, "key2", ANY_PAYLOAD);
+        cache.get(S3_BUCKET_NAME, "key1");
+
+        cache.put(S3_BUCKET_NAME, "key3", ANY_PAYLOAD);
+
+        assertEquals(ANY_PAYLOAD, cache.get(S3_BUCKET_NAME, "key1"));
+        assertNull(cache.get(S3_BUCKET_NAME, "key2"));
+        assertEquals(ANY_PAYLOAD, cache.get(S3_BUCKET_NAME, "key3"));
+        assertEquals(2 * ANY_PAYLOAD.length(), cache.getSizeInBytes());
+    }
+
+    @Test
+    public void testPayloadLargerThanCacheIsNotCached() {
+        DiskPayloadCache cache = new DiskPayloadCache(cacheDirectory, ANY_PAYLOAD.length() - 1);
+        cache.put(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD);
+
+        assertNull(cache.get(S3_BUCKET_NAME, ANY_S3_KEY));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testIndexIsRebuiltOnRestart() throws Exception {
+        DiskPayloadCache cache = new DiskPayloadCache(cacheDirectory, 1024);
+        cache.put(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD);
+        Files.write(cacheDirectory.resolve("interrupted.tmp"), new byte[10]);
+
+        DiskPayloadCache restarted = new DiskPayloadCache(cacheDirectory, 1024);
+
+        assertEquals(1, restarted.getEntryCount());
+        assertEquals(ANY_PAYLOAD, restarted.get(S3_BUCKET_NAME, ANY_S3_KEY));
+        assertEquals(false, Files.exists(cacheDirectory.resolve("interrupted.tmp")));
+    }
+
+    @Test
+    public void testInvalidate() {
+        DiskPayloadCache cache = new DiskPayloadCache(cacheDirectory, 1024);
+        cache.put(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD);
+
+        cache.invalidate(S3_BUCKET_NAME, ANY_S3_KEY);
+
+        assertNull(cache.get(S3_BUCKET_NAME, ANY_S3_KEY));
+        assertEquals(0, cache.getSizeInBytes());
+    }
+
+    @Test
+    public void testReadsRacingWithAnInvalidationAreNotCached() throws Exception {
+        DiskPayloadCache cache = new DiskPayloadCache(cacheDirectory, 1024);
+        long generation = cache.getGeneration(S3_BUCKET_NAME, ANY_S3_KEY);
+
+        // A store or delete of the object completes while its previous content is being read.
+        cache.invalidate(S3_BUCKET_NAME, ANY_S3_KEY);
+        cache.put(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD, generation);
+
+        assertNull(cache.get(S3_BUCKET_NAME, ANY_S3_KEY));
+        assertEquals(0, cache.getEntryCount());
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            assertEquals(0, files.count());
+        }
+
+        cache.put(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD, cache.getGeneration(S3_BUCKET_NAME, ANY_S3_KEY));
+        assertEquals(ANY_PAYLOAD, cache.get(S3_BUCKET_NAME, ANY_S3_KEY));
+    }
+
+    @Test
+    public void testS3DaoReadsThroughCache() {
+        S3Client s3Client = mock(S3Client.class);
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> new ResponseInputStream<>(
+                GetObjectResponse.builder().build(),
+                AbortableInputStream.create(new ByteArrayInputStream(ANY_PAYLOAD.getBytes(StandardCharsets.UTF_8)))));
+        DiskPayloadCache cache = new DiskPayloadCache(cacheDirectory, 1024);
+        S3Dao dao = new S3Dao(s3Client).withPayloadCache(cache);
+
+        assertEquals(ANY_PAYLOAD, dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY));
+        assertEquals(ANY_PAYLOAD, dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY));
+        verify(s3Client, times(1)).getObject(any(GetObjectRequest.class));
+
+        dao.deletePayloadFromS3(S3_BUCKET_NAME, ANY_S3_KEY);
+        verify(s3Client, times(1)).deleteObject(any(DeleteObjectRequest.class));
+        assertNull(cache.get(S3_BUCKET_NAME, ANY_S3_KEY));
+    }
+
+    @Test
+    public void testConcurrentPutsAndInvalidationsKeepTheIndexInSyncWithTheFiles() throws Exception {
+        DiskPayloadCache cache = new DiskPayloadCache(cacheDirectory, 1024);
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            boolean putting = i % 2 == 0;
+            workers.add(CompletableFuture.runAsync(() -> {
+                for (int j = 0; j < 200; j++) {
+                    if (putting) {
+                        cache.put(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD);
+                    } else {
+                        cache.invalidate(S3_BUCKET_NAME, ANY_S3_KEY);
+                    }
+                }
+            }));
+        }
+        CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            assertEquals(cache.getEntryCount(), files.count());
+        }
+        assertEquals(cache.getEntryCount() * ANY_PAYLOAD.length(), cache.getSizeInBytes());
+    }
+
+    @Test
+    public void testStoringAPayloadInvalidatesItsCachedEntry() {
+        InMemoryS3 s3 = new InMemoryS3();
+        DiskPayloadCache cache = new DiskPayloadCache(cacheDirectory, 1024);
+        S3Dao dao = new S3Dao(new InMemoryS3Client(s3)).withPayloadCache(cache);
+        dao.storeTextInS3(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD);
+        assertEquals(ANY_PAYLOAD, dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY));
+
+        dao.storeBytesInS3(S3_BUCKET_NAME, ANY_S3_KEY, "UpdatedPayload".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("UpdatedPayload", dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY));
+
+        S3AsyncDao asyncDao = new S3AsyncDao(new InMemoryS3AsyncClient(s3)).withPayloadCache(cache);
+        asyncDao.storeTextInS3(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD).join();
+
+        assertEquals(ANY_PAYLOAD, asyncDao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY).join());
+    }
+}
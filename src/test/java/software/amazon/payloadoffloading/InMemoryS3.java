@@ -0,0 +1,363 @@
+package software.amazon.payloadoffloading;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * In-process stand-in for Amazon S3, shared by {@link InMemoryS3Client} and {@link InMemoryS3AsyncClient}.
+ *
+ * <p>Objects are kept on the heap. Every request can be delayed by a configurable {@link LatencyDistribution},
+ * rejected with a 503 SlowDown once a request rate limit is exceeded, or failed with an injected error, so that
+ * the stores can be load and stress tested without a network.</p>
+ */
+public class InMemoryS3 {
+    public static final String PUT_OBJECT = "PutObject";
+    public static final String GET_OBJECT = "GetObject";
+    public static final String HEAD_OBJECT = "HeadObject";
+    public static final String HEAD_BUCKET = "HeadBucket";
+    public static final String DELETE_OBJECT = "DeleteObject";
+    public static final String DELETE_OBJECTS = "DeleteObjects";
+    public static final String CREATE_MULTIPART_UPLOAD = "CreateMultipartUpload";
+    public static final String UPLOAD_PART = "UploadPart";
+    public static final String COMPLETE_MULTIPART_UPLOAD = "CompleteMultipartUpload";
+    public static final String ABORT_MULTIPART_UPLOAD = "AbortMultipartUpload";
+
+    /**
+     * Distribution of the latency added to each request.
+     */
+    public interface LatencyDistribution {
+        /**
+         * @param contentLength number of payload bytes transferred by the request, 0 if none.
+         * @return the latency to add to the request.
+         */
+        Duration sample(long contentLength);
+
+        static LatencyDistribution none() {
+            return contentLength -> Duration.ZERO;
+        }
+
+        static LatencyDistribution fixed(Duration latency) {
+            return contentLength -> latency;
+        }
+
+        static LatencyDistribution uniform(Duration min, Duration max) {
+            long minNanos = min.toNanos();
+            long maxNanos = max.toNanos();
+            return contentLength -> Duration.ofNanos(minNanos + (long) (ThreadLocalRandom.current().nextDouble()
+                    * (maxNanos - minNanos)));
+        }
+
+        /**
+         * A long-tailed distribution, with the given median and shape. A sigma of 0.5 puts p99 at about
+         * 3.2 times the median.
+         */
+        static LatencyDistribution logNormal(Duration median, double sigma) {
+            double mu = Math.log(median.toNanos());
+            return contentLength -> Duration.ofNanos((long) Math.exp(mu + sigma
+                    * ThreadLocalRandom.current().nextGaussian()));
+        }
+
+        /**
+         * Adds transfer time proportional to the request size to this distribution.
+         */
+        default LatencyDistribution plusTransferTime(long bytesPerSecond) {
+            return contentLength -> sample(contentLength)
+                    .plusNanos((long) (contentLength * 1_000_000_000.0 / bytesPerSecond));
+        }
+    }
+
+    static final class StoredObject {
+        final byte[] content;
+        final Map<String, String> metadata;
+        final String contentEncoding;
+        final String tagging;
+        final String eTag;
+
+        StoredObject(byte[] content, Map<String, String> metadata, String contentEncoding, String tagging) {
+            this.content = content;
+            this.metadata = metadata == null ? Collections.emptyMap() : metadata;
+            this.contentEncoding = contentEncoding;
+            this.tagging = tagging;
+            this.eTag = "\"" + Integer.toHexString(Arrays.hashCode(content)) + "\"";
+        }
+    }
+
+    static final class MultipartUpload {
+        final String bucket;
+        final String key;
+        final Map<String, String> metadata;
+        final String contentEncoding;
+        final String tagging;
+        final Map<Integer, byte[]> parts = new ConcurrentHashMap<>();
+
+        MultipartUpload(String bucket, String key, Map<String, String> metadata, String contentEncoding,
+                        String tagging) {
+            this.bucket = bucket;
+            this.key = key;
+            this.metadata = metadata;
+            this.contentEncoding = contentEncoding;
+            this.tagging = tagging;
+        }
+    }
+
+    private final Map<String, Map<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final Map<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private final Map<String, Queue<SdkException>> scheduledFailures = new ConcurrentHashMap<>();
+    private final Deque<Long> recentRequestNanos = new ArrayDeque<>();
+    private final Random errorRandom = new Random();
+
+    private volatile LatencyDistribution latency = LatencyDistribution.none();
+    private volatile double errorRate;
+    private volatile int maxRequestsPerSecond;
+
+    public InMemoryS3 withLatency(LatencyDistribution latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Fails the given fraction of requests with a 500 InternalError.
+     */
+    public InMemoryS3 withErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Rejects requests with a 503 SlowDown once more than the given number of requests were made
+     * in the last second. 0 disables throttling.
+     */
+    public InMemoryS3 withThrottling(int maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        return this;
+    }
+
+    /**
+     * Fails the next request of the given operation with the given exception.
+     */
+    public InMemoryS3 failNext(String operation, SdkException exception) {
+        scheduledFailures.computeIfAbsent(operation, k -> new ConcurrentLinkedQueue<>()).add(exception);
+        return this;
+    }
+
+    public long getRequestCount(String operation) {
+        AtomicLong count = requestCounts.get(operation);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return the number of admitted requests whose response is not complete yet, like connections in use.
+     */
+    public int getInFlightRequestCount() {
+        return inFlightRequests.get();
+    }
+
+    public int getObjectCount(String bucket) {
+        Map<String, StoredObject> objects = buckets.get(bucket);
+        return objects == null ? 0 : objects.size();
+    }
+
+    public int getMultipartUploadCount() {
+        return uploads.size();
+    }
+
+    public byte[] getObjectContent(String bucket, String key) {
+        StoredObject object = objects(bucket).get(key);
+        return object == null ? null : object.content;
+    }
+
+    public String getObjectTagging(String bucket, String key) {
+        StoredObject object = objects(bucket).get(key);
+        return object == null ? null : object.tagging;
+    }
+
+    /**
+     * Counts the request and applies throttling and error injection, in that order.
+     *
+     * @return the latency to apply to the request.
+     */
+    Duration beginRequest(String operation, long contentLength) {
+        requestCounts.computeIfAbsent(operation, k -> new AtomicLong()).incrementAndGet();
+
+        Queue<SdkException> failures = scheduledFailures.get(operation);
+        SdkException scheduled = failures == null ? null : failures.poll();
+        if (scheduled != null) {
+            throw scheduled;
+        }
+        if (maxRequestsPerSecond > 0 && !tryAcquireRequest()) {
+            throw s3Exception(503, "SlowDown", "Please reduce your request rate.");
+        }
+        if (errorRate > 0 && nextErrorSample() < errorRate) {
+            throw s3Exception(500, "InternalError", "We encountered an internal error. Please try again.");
+        }
+        return latency.sample(contentLength);
+    }
+
+    void requestStarted() {
+        inFlightRequests.incrementAndGet();
+    }
+
+    void requestFinished() {
+        inFlightRequests.decrementAndGet();
+    }
+
+    /**
+     * A GetObject request admitted by {@link #beginGet(String, String, String)}.
+     */
+    static final class GetRequest {
+        final long first;
+        final long last;
+        final Duration latency;
+        private final StoredObject object;
+
+        GetRequest(long first, long last, Duration latency, StoredObject object) {
+            this.first = first;
+            this.last = last;
+            this.latency = latency;
+            this.object = object;
+        }
+
+        int length() {
+            return (int) (last - first + 1);
+        }
+
+        /**
+         * @return the object as it was when the request began, which the range was computed from.
+         */
+        StoredObject object() {
+            if (object == null) {
+                throw noSuchKey();
+            }
+            return object;
+        }
+    }
+
+    /**
+     * Begins a GetObject request, sampling the latency from the size of the requested range. The object is read
+     * when the request begins, so that a concurrent PUT cannot change it under the computed range.
+     */
+    GetRequest beginGet(String bucket, String key, String range) {
+        StoredObject object = objects(bucket).get(key);
+        long[] positions = object == null ? new long[] {0, -1} : parseRange(range, object.content.length);
+        return new GetRequest(positions[0], positions[1],
+                beginRequest(GET_OBJECT, positions[1] - positions[0] + 1), object);
+    }
+
+    void put(String bucket, String key, StoredObject object) {
+        objects(bucket).put(key, object);
+    }
+
+    StoredObject get(String bucket, String key) {
+        StoredObject object = objects(bucket).get(key);
+        if (object == null) {
+            throw noSuchKey();
+        }
+        return object;
+    }
+
+    private static NoSuchKeyException noSuchKey() {
+        return NoSuchKeyException.builder()
+                .statusCode(404)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("NoSuchKey")
+                        .errorMessage("The specified key does not exist.").build())
+                .build();
+    }
+
+    boolean delete(String bucket, String key) {
+        return objects(bucket).remove(key) != null;
+    }
+
+    String createUpload(MultipartUpload upload) {
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, upload);
+        return uploadId;
+    }
+
+    MultipartUpload upload(String uploadId) {
+        MultipartUpload upload = uploads.get(uploadId);
+        if (upload == null) {
+            throw NoSuchUploadException.builder()
+                    .statusCode(404)
+                    .awsErrorDetails(AwsErrorDetails.builder().errorCode("NoSuchUpload")
+                            .errorMessage("The specified upload does not exist.").build())
+                    .build();
+        }
+        return upload;
+    }
+
+    MultipartUpload removeUpload(String uploadId) {
+        MultipartUpload upload = upload(uploadId);
+        uploads.remove(uploadId);
+        return upload;
+    }
+
+    /**
+     * Parses a "bytes=first-last" range header against an object of the given length.
+     *
+     * @return the inclusive first and last byte positions.
+     */
+    static long[] parseRange(String range, long length) {
+        if (range == null) {
+            return new long[] {0, length - 1};
+        }
+        String spec = range.substring("bytes=".length());
+        int dash = spec.indexOf('-');
+        if (dash == 0) {
+            long suffix = Long.parseLong(spec.substring(1));
+            return new long[] {Math.max(0, length - suffix), length - 1};
+        }
+        long first = Long.parseLong(spec.substring(0, dash));
+        long last = dash == spec.length() - 1 ? length - 1 : Math.min(length - 1, Long.parseLong(spec.substring(dash + 1)));
+        if (first >= length) {
+            throw s3Exception(416, "InvalidRange", "The requested range is not satisfiable");
+        }
+        return new long[] {first, last};
+    }
+
+    static S3Exception s3Exception(int statusCode, String errorCode, String message) {
+        return (S3Exception) S3Exception.builder()
+                .statusCode(statusCode)
+                .message(message)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode(errorCode).errorMessage(message).build())
+                .build();
+    }
+
+    private Map<String, StoredObject> objects(String bucket) {
+        return buckets.computeIfAbsent(bucket, k -> new ConcurrentHashMap<>());
+    }
+
+    private synchronized double nextErrorSample() {
+        return errorRandom.nextDouble();
+    }
+
+    private synchronized boolean tryAcquireRequest() {
+        long now = System.nanoTime();
+        while (!recentRequestNanos.isEmpty() && now - recentRequestNanos.peekFirst() > 1_000_000_000L) {
+            recentRequestNanos.pollFirst();
+        }
+        if (recentRequestNanos.size() >= maxRequestsPerSecond) {
+            return false;
+        }
+        recentRequestNanos.addLast(now);
+        return true;
+    }
+}
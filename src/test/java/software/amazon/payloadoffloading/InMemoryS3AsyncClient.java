@@ -0,0 +1,306 @@
+package software.amazon.payloadoffloading;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.utils.async.SimplePublisher;
+
+/**
+ * Asynchronous {@link S3AsyncClient} backed by an {@link InMemoryS3}. Latency is applied with a scheduler, so no
+ * thread is blocked while a request is in flight, and responses are streamed in chunks like a real HTTP client.
+ */
+public class InMemoryS3AsyncClient implements S3AsyncClient {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final InMemoryS3 s3;
+    private final ScheduledExecutorService scheduler;
+
+    public InMemoryS3AsyncClient(InMemoryS3 s3) {
+        this(s3, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param ioThreads number of threads that responses are delivered on, like the event loop threads of an HTTP
+     *                  client.
+     */
+    public InMemoryS3AsyncClient(InMemoryS3 s3, int ioThreads) {
+        this.s3 = s3;
+        this.scheduler = Executors.newScheduledThreadPool(ioThreads, r -> {
+            Thread thread = new Thread(r, "in-memory-s3-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest request, AsyncRequestBody requestBody) {
+        return execute(requestBody, InMemoryS3.PUT_OBJECT, content -> {
+            InMemoryS3.StoredObject object = new InMemoryS3.StoredObject(content, request.metadata(),
+                    request.contentEncoding(), request.tagging());
+            s3.put(request.bucket(), request.key(), object);
+            return PutObjectResponse.builder().eTag(object.eTag).build();
+        });
+    }
+
+    @Override
+    public <ReturnT> CompletableFuture<ReturnT> getObject(
+            GetObjectRequest request, AsyncResponseTransformer<GetObjectResponse, ReturnT> responseTransformer) {
+        CompletableFuture<ReturnT> result = responseTransformer.prepare();
+        InMemoryS3.GetRequest get;
+        try {
+            get = s3.beginGet(request.bucket(), request.key(), request.range());
+        } catch (RuntimeException e) {
+            responseTransformer.exceptionOccurred(e);
+            return result;
+        }
+        track(result);
+        schedule(get.latency, () -> {
+            if (result.isDone()) {
+                // Cancelled by the caller, like an aborted HTTP request.
+                return;
+            }
+            InMemoryS3.StoredObject object;
+            try {
+                object = get.object();
+            } catch (RuntimeException e) {
+                responseTransformer.exceptionOccurred(e);
+                return;
+            }
+            responseTransformer.onResponse(InMemoryS3Client.getObjectResponse(object, get, request.range() != null));
+            SimplePublisher<ByteBuffer> publisher = new SimplePublisher<>();
+            responseTransformer.onStream(SdkPublisher.adapt(publisher));
+            for (int offset = 0; offset < get.length(); offset += CHUNK_SIZE) {
+                if (result.isDone()) {
+                    publisher.error(SdkClientException.create("Request aborted."));
+                    return;
+                }
+                publisher.send(ByteBuffer.wrap(object.content, (int) get.first + offset,
+                        Math.min(CHUNK_SIZE, get.length() - offset)));
+            }
+            publisher.complete();
+        });
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<HeadObjectResponse> headObject(HeadObjectRequest request) {
+        return execute(InMemoryS3.HEAD_OBJECT, 0, () -> {
+            InMemoryS3.StoredObject object = s3.get(request.bucket(), request.key());
+            return HeadObjectResponse.builder()
+                    .contentLength((long) object.content.length)
+                    .contentEncoding(object.contentEncoding)
+                    .metadata(object.metadata)
+                    .eTag(object.eTag)
+                    .build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<HeadBucketResponse> headBucket(HeadBucketRequest request) {
+        return execute(InMemoryS3.HEAD_BUCKET, 0, () -> HeadBucketResponse.builder().build());
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectResponse> deleteObject(DeleteObjectRequest request) {
+        return execute(InMemoryS3.DELETE_OBJECT, 0, () -> {
+            s3.delete(request.bucket(), request.key());
+            return DeleteObjectResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectsResponse> deleteObjects(DeleteObjectsRequest request) {
+        return execute(InMemoryS3.DELETE_OBJECTS, 0, () -> {
+            List<DeletedObject> deleted = new ArrayList<>();
+            for (ObjectIdentifier id : request.delete().objects()) {
+                s3.delete(request.bucket(), id.key());
+                deleted.add(DeletedObject.builder().key(id.key()).build());
+            }
+            return DeleteObjectsResponse.builder().deleted(deleted).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<CreateMultipartUploadResponse> createMultipartUpload(
+            CreateMultipartUploadRequest request) {
+        return execute(InMemoryS3.CREATE_MULTIPART_UPLOAD, 0, () -> {
+            String uploadId = s3.createUpload(new InMemoryS3.MultipartUpload(request.bucket(), request.key(),
+                    request.metadata(), request.contentEncoding(), request.tagging()));
+            return CreateMultipartUploadResponse.builder()
+                    .bucket(request.bucket())
+                    .key(request.key())
+                    .uploadId(uploadId)
+                    .build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<UploadPartResponse> uploadPart(UploadPartRequest request, AsyncRequestBody requestBody) {
+        return execute(requestBody, InMemoryS3.UPLOAD_PART, content -> {
+            s3.upload(request.uploadId()).parts.put(request.partNumber(), content);
+            return UploadPartResponse.builder()
+                    .eTag("\"" + Integer.toHexString(Arrays.hashCode(content)) + "\"")
+                    .build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<CompleteMultipartUploadResponse> completeMultipartUpload(
+            CompleteMultipartUploadRequest request) {
+        return execute(InMemoryS3.COMPLETE_MULTIPART_UPLOAD, 0, () -> {
+            InMemoryS3.MultipartUpload upload = s3.removeUpload(request.uploadId());
+            InMemoryS3.StoredObject object = new InMemoryS3.StoredObject(InMemoryS3Client.assemble(upload, request),
+                    upload.metadata, upload.contentEncoding, upload.tagging);
+            s3.put(upload.bucket, upload.key, object);
+            return CompleteMultipartUploadResponse.builder()
+                    .bucket(upload.bucket)
+                    .key(upload.key)
+                    .eTag(object.eTag)
+                    .build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<AbortMultipartUploadResponse> abortMultipartUpload(AbortMultipartUploadRequest request) {
+        return execute(InMemoryS3.ABORT_MULTIPART_UPLOAD, 0, () -> {
+            s3.removeUpload(request.uploadId());
+            return AbortMultipartUploadResponse.builder().build();
+        });
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private <T> CompletableFuture<T> execute(String operation, long contentLength, Supplier<T> action) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        execute(result, operation, contentLength, action);
+        return result;
+    }
+
+    /**
+     * Executes a request once its body was read. Completing the returned future early, for example by cancelling
+     * it, aborts the request.
+     */
+    private <T> CompletableFuture<T> execute(AsyncRequestBody requestBody, String operation,
+                                             Function<byte[], T> action) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        readFully(requestBody).whenComplete((content, t) -> {
+            if (t != null) {
+                result.completeExceptionally(t);
+            } else if (!result.isDone()) {
+                execute(result, operation, content.length, () -> action.apply(content));
+            }
+        });
+        return result;
+    }
+
+    private <T> void execute(CompletableFuture<T> result, String operation, long contentLength,
+                             Supplier<T> action) {
+        Duration latency;
+        try {
+            latency = s3.beginRequest(operation, contentLength);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        track(result);
+        schedule(latency, () -> {
+            if (result.isDone()) {
+                // Cancelled by the caller, like an aborted HTTP request.
+                return;
+            }
+            try {
+                result.complete(action.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * Counts the request as in flight until its future completes, normally or by being cancelled.
+     */
+    private void track(CompletableFuture<?> result) {
+        s3.requestStarted();
+        result.whenComplete((v, t) -> s3.requestFinished());
+    }
+
+    private void schedule(Duration latency, Runnable task) {
+        scheduler.schedule(task, latency.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private static CompletableFuture<byte[]> readFully(AsyncRequestBody requestBody) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        requestBody.subscribe(new Subscriber<ByteBuffer>() {
+            private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer buffer) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                content.write(bytes, 0, bytes.length);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(content.toByteArray());
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,235 @@
+package software.amazon.payloadoffloading;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.utils.IoUtils;
+
+/**
+ * Synchronous {@link S3Client} backed by an {@link InMemoryS3}. Latency is applied by sleeping on the calling
+ * thread, and requests whose API call timeout is shorter than their latency fail with an
+ * {@link ApiCallTimeoutException}.
+ */
+public class InMemoryS3Client implements S3Client {
+    private final InMemoryS3 s3;
+
+    public InMemoryS3Client(InMemoryS3 s3) {
+        this.s3 = s3;
+    }
+
+    @Override
+    public PutObjectResponse putObject(PutObjectRequest request, RequestBody requestBody) {
+        byte[] content = readFully(requestBody);
+        await(request, s3.beginRequest(InMemoryS3.PUT_OBJECT, content.length));
+        InMemoryS3.StoredObject object = new InMemoryS3.StoredObject(content, request.metadata(),
+                request.contentEncoding(), request.tagging());
+        s3.put(request.bucket(), request.key(), object);
+        return PutObjectResponse.builder().eTag(object.eTag).build();
+    }
+
+    @Override
+    public <ReturnT> ReturnT getObject(GetObjectRequest request,
+                                       ResponseTransformer<GetObjectResponse, ReturnT> responseTransformer) {
+        InMemoryS3.GetRequest get = s3.beginGet(request.bucket(), request.key(), request.range());
+        await(request, get.latency);
+        InMemoryS3.StoredObject object = get.object();
+        GetObjectResponse response = getObjectResponse(object, get, request.range() != null);
+        InputStream content = new ByteArrayInputStream(object.content, (int) get.first, get.length());
+        try {
+            return responseTransformer.transform(response, AbortableInputStream.create(content));
+        } catch (Exception e) {
+            throw SdkClientException.create("Failed to transform the response.", e);
+        }
+    }
+
+    @Override
+    public HeadObjectResponse headObject(HeadObjectRequest request) {
+        await(request, s3.beginRequest(InMemoryS3.HEAD_OBJECT, 0));
+        InMemoryS3.StoredObject object = s3.get(request.bucket(), request.key());
+        return HeadObjectResponse.builder()
+                .contentLength((long) object.content.length)
+                .contentEncoding(object.contentEncoding)
+                .metadata(object.metadata)
+                .eTag(object.eTag)
+                .build();
+    }
+
+    @Override
+    public HeadBucketResponse headBucket(HeadBucketRequest request) {
+        await(request, s3.beginRequest(InMemoryS3.HEAD_BUCKET, 0));
+        return HeadBucketResponse.builder().build();
+    }
+
+    @Override
+    public DeleteObjectResponse deleteObject(DeleteObjectRequest request) {
+        await(request, s3.beginRequest(InMemoryS3.DELETE_OBJECT, 0));
+        s3.delete(request.bucket(), request.key());
+        return DeleteObjectResponse.builder().build();
+    }
+
+    @Override
+    public DeleteObjectsResponse deleteObjects(DeleteObjectsRequest request) {
+        await(request, s3.beginRequest(InMemoryS3.DELETE_OBJECTS, 0));
+        List<DeletedObject> deleted = new ArrayList<>();
+        for (ObjectIdentifier id : request.delete().objects()) {
+            s3.delete(request.bucket(), id.key());
+            deleted.add(DeletedObject.builder().key(id.key()).build());
+        }
+        return DeleteObjectsResponse.builder().deleted(deleted).build();
+    }
+
+    @Override
+    public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+        await(request, s3.beginRequest(InMemoryS3.CREATE_MULTIPART_UPLOAD, 0));
+        String uploadId = s3.createUpload(new InMemoryS3.MultipartUpload(request.bucket(), request.key(),
+                request.metadata(), request.contentEncoding(), request.tagging()));
+        return CreateMultipartUploadResponse.builder()
+                .bucket(request.bucket())
+                .key(request.key())
+                .uploadId(uploadId)
+                .build();
+    }
+
+    @Override
+    public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody requestBody) {
+        byte[] content = readFully(requestBody);
+        await(request, s3.beginRequest(InMemoryS3.UPLOAD_PART, content.length));
+        s3.upload(request.uploadId()).parts.put(request.partNumber(), content);
+        return UploadPartResponse.builder()
+                .eTag("\"" + Integer.toHexString(Arrays.hashCode(content)) + "\"")
+                .build();
+    }
+
+    @Override
+    public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        await(request, s3.beginRequest(InMemoryS3.COMPLETE_MULTIPART_UPLOAD, 0));
+        InMemoryS3.MultipartUpload upload = s3.removeUpload(request.uploadId());
+        InMemoryS3.StoredObject object = new InMemoryS3.StoredObject(assemble(upload, request),
+                upload.metadata, upload.contentEncoding, upload.tagging);
+        s3.put(upload.bucket, upload.key, object);
+        return CompleteMultipartUploadResponse.builder()
+                .bucket(upload.bucket)
+                .key(upload.key)
+                .eTag(object.eTag)
+                .build();
+    }
+
+    @Override
+    public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+        await(request, s3.beginRequest(InMemoryS3.ABORT_MULTIPART_UPLOAD, 0));
+        s3.removeUpload(request.uploadId());
+        return AbortMultipartUploadResponse.builder().build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    static GetObjectResponse getObjectResponse(InMemoryS3.StoredObject object, InMemoryS3.GetRequest get,
+                                               boolean ranged) {
+        GetObjectResponse.Builder builder = GetObjectResponse.builder()
+                .contentLength((long) get.length())
+                .contentEncoding(object.contentEncoding)
+                .metadata(object.metadata)
+                .eTag(object.eTag);
+        if (ranged) {
+            builder.contentRange("bytes " + get.first + "-" + get.last + "/" + object.content.length);
+        }
+        return builder.build();
+    }
+
+    static byte[] assemble(InMemoryS3.MultipartUpload upload, CompleteMultipartUploadRequest request) {
+        int size = 0;
+        List<byte[]> parts = new ArrayList<>();
+        for (CompletedPart part : request.multipartUpload().parts()) {
+            byte[] content = upload.parts.get(part.partNumber());
+            if (content == null) {
+                throw InMemoryS3.s3Exception(400, "InvalidPart", "Part " + part.partNumber() + " was not uploaded.");
+            }
+            parts.add(content);
+            size += content.length;
+        }
+        byte[] assembled = new byte[size];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, assembled, offset, part.length);
+            offset += part.length;
+        }
+        return assembled;
+    }
+
+    private static byte[] readFully(RequestBody requestBody) {
+        try (InputStream in = requestBody.contentStreamProvider().newStream()) {
+            return IoUtils.toByteArray(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sleeps for the latency of a request, or fails it like the SDK does once its API call timeout passed.
+     */
+    private void await(AwsRequest request, Duration latency) {
+        Duration apiCallTimeout = request.overrideConfiguration()
+                .flatMap(AwsRequestOverrideConfiguration::apiCallTimeout)
+                .orElse(null);
+        boolean timesOut = apiCallTimeout != null && apiCallTimeout.compareTo(latency) < 0;
+        Duration wait = timesOut ? apiCallTimeout : latency;
+        if (wait.isZero()) {
+            return;
+        }
+        s3.requestStarted();
+        try {
+            Thread.sleep(wait.toMillis(), (int) (wait.toNanos() % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw SdkClientException.create("Interrupted while waiting for the simulated S3 latency.", e);
+        } finally {
+            s3.requestFinished();
+        }
+        if (timesOut) {
+            throw ApiCallTimeoutException.create(apiCallTimeout.toMillis());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package software.amazon.payloadoffloading;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+/**
+ * Tests the in-memory S3 stand-in through the DAOs and stores that use it.
+ */
+public class InMemoryS3ClientTest {
+    private static final String S3_BUCKET_NAME = "test-bucket-name";
+    private static final String ANY_PAYLOAD = "AnyPayload";
+
+    @Test
+    public void testSyncStoreRoundTrip() {
+        InMemoryS3 s3 = new InMemoryS3();
+        PayloadStore payloadStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME);
+
+        String pointer = payloadStore.storeOriginalPayload(ANY_PAYLOAD);
+        assertEquals(ANY_PAYLOAD, payloadStore.getOriginalPayload(pointer));
+        payloadStore.deleteOriginalPayload(pointer);
+
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+        assertEquals(1, s3.getRequestCount(InMemoryS3.PUT_OBJECT));
+        assertEquals(1, s3.getRequestCount(InMemoryS3.GET_OBJECT));
+        assertEquals(1, s3.getRequestCount(InMemoryS3.DELETE_OBJECT));
+    }
+
+    @Test
+    public void testAsyncStoreRoundTrip() {
+        InMemoryS3 s3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(5)));
+        PayloadStoreAsync payloadStore = new S3BackedPayloadStoreAsync(
+                new S3AsyncDao(new InMemoryS3AsyncClient(s3)), S3_BUCKET_NAME);
+        StringBuilder largePayload = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            largePayload.append(i);
+        }
+
+        String pointer = payloadStore.storeOriginalPayload(largePayload.toString()).join();
+        assertEquals(largePayload.toString(), payloadStore.getOriginalPayload(pointer).join());
+        payloadStore.deleteOriginalPayload(pointer).join();
+
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testMissingObject() {
+        S3Dao dao = new S3Dao(new InMemoryS3Client(new InMemoryS3()));
+
+        assertThrows(SdkException.class, () -> dao.getTextFromS3(S3_BUCKET_NAME, "missing"));
+    }
+
+    @Test
+    public void testRangedGet() {
+        InMemoryS3 s3 = new InMemoryS3();
+        InMemoryS3Client client = new InMemoryS3Client(s3);
+        new S3Dao(client).storeTextInS3(S3_BUCKET_NAME, "key", ANY_PAYLOAD);
+
+        ResponseBytes<?> range = client.getObjectAsBytes(GetObjectRequest.builder()
+                .bucket(S3_BUCKET_NAME).key("key").range("bytes=3-6").build());
+
+        assertEquals("Payl", range.asUtf8String());
+    }
+
+    @Test
+    public void testMultipartUpload() {
+        InMemoryS3 s3 = new InMemoryS3();
+        InMemoryS3Client client = new InMemoryS3Client(s3);
+
+        String uploadId = client.createMultipartUpload(b -> b.bucket(S3_BUCKET_NAME).key("key")).uploadId();
+        String eTag1 = client.uploadPart(UploadPartRequest.builder().uploadId(uploadId).partNumber(1).build(),
+                RequestBody.fromString("Any")).eTag();
+        String eTag2 = client.uploadPart(UploadPartRequest.builder().uploadId(uploadId).partNumber(2).build(),
+                RequestBody.fromString("Payload")).eTag();
+        client.completeMultipartUpload(b -> b.bucket(S3_BUCKET_NAME).key("key").uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(
+                        CompletedPart.builder().partNumber(1).eTag(eTag1).build(),
+                        CompletedPart.builder().partNumber(2).eTag(eTag2).build()).build()));
+
+        assertArrayEquals(ANY_PAYLOAD.getBytes(StandardCharsets.UTF_8), s3.getObjectContent(S3_BUCKET_NAME, "key"));
+        assertEquals(0, s3.getMultipartUploadCount());
+    }
+
+    @Test
+    public void testInjectedFailure() {
+        InMemoryS3 s3 = new InMemoryS3()
+                .failNext(InMemoryS3.PUT_OBJECT, InMemoryS3.s3Exception(500, "InternalError", "Injected"));
+        PayloadStoreAsync payloadStore = new S3BackedPayloadStoreAsync(
+                new S3AsyncDao(new InMemoryS3AsyncClient(s3)), S3_BUCKET_NAME);
+
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> payloadStore.storeOriginalPayload(ANY_PAYLOAD).join());
+        assertTrue(exception.getCause().getCause() instanceof S3Exception);
+
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD).join();
+        assertEquals(1, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testThrottling() {
+        InMemoryS3 s3 = new InMemoryS3().withThrottling(2);
+        S3Dao dao = new S3Dao(new InMemoryS3Client(s3));
+
+        dao.storeTextInS3(S3_BUCKET_NAME, "key1", ANY_PAYLOAD);
+        dao.storeTextInS3(S3_BUCKET_NAME, "key2", ANY_PAYLOAD);
+        SdkException exception = assertThrows(SdkException.class,
+                () -> dao.storeTextInS3(S3_BUCKET_NAME, "key3", ANY_PAYLOAD));
+
+        assertEquals(503, ((S3Exception) exception.getCause()).statusCode());
+    }
+
+    @Test
+    public void testLatencyDistributions() {
+        InMemoryS3.LatencyDistribution uniform = InMemoryS3.LatencyDistribution
+                .uniform(Duration.ofMillis(10), Duration.ofMillis(20));
+        InMemoryS3.LatencyDistribution withTransfer = InMemoryS3.LatencyDistribution
+                .fixed(Duration.ofMillis(10)).plusTransferTime(1000);
+        for (int i = 0; i < 100; i++) {
+            Duration sample = uniform.sample(0);
+            assertTrue(sample.compareTo(Duration.ofMillis(10)) >= 0 && sample.compareTo(Duration.ofMillis(20)) <= 0);
+        }
+        assertEquals(Duration.ofMillis(1010), withTransfer.sample(1000));
+    }
+}
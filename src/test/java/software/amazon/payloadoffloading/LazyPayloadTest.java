@@ -0,0 +1,162 @@
+package software.amazon.payloadoffloading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkException;
+
+public class LazyPayloadTest {
+    private static final String S3_BUCKET_NAME = "test-bucket-name";
+    private static final String ANY_PAYLOAD = "AnyPayload";
+    private static final String ANY_S3_KEY = "AnyS3key";
+    private static final String ANY_POINTER = new PayloadS3Pointer(S3_BUCKET_NAME, ANY_S3_KEY).toJson();
+    private S3Dao s3Dao;
+    private PayloadStore payloadStore;
+
+    @BeforeEach
+    public void setup() {
+        s3Dao = mock(S3Dao.class);
+        payloadStore = new S3BackedPayloadStore(s3Dao, S3_BUCKET_NAME);
+    }
+
+    @Test
+    public void testUnreadPayloadIsNeverFetched() {
+        LazyPayload payload = payloadStore.getLazyPayload(ANY_POINTER);
+
+        assertEquals(ANY_POINTER, payload.getPayloadPointer());
+        assertFalse(payload.isFetched());
+        verifyNoInteractions(s3Dao);
+    }
+
+    @Test
+    public void testPayloadIsFetchedOnce() {
+        when(s3Dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY)).thenReturn(ANY_PAYLOAD);
+        LazyPayload payload = payloadStore.getLazyPayload(ANY_POINTER);
+
+        assertEquals(ANY_PAYLOAD, payload.get());
+        assertEquals(ANY_PAYLOAD, payload.getAsync().join());
+        assertTrue(payload.isFetched());
+        verify(s3Dao, times(1)).getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY);
+    }
+
+    @Test
+    public void testConcurrentAccessSharesOneFetch() throws Exception {
+        when(s3Dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY)).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            return ANY_PAYLOAD;
+        });
+        LazyPayload payload = payloadStore.getLazyPayload(ANY_POINTER);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CompletableFuture<?>[] readers = new CompletableFuture<?>[8];
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = CompletableFuture.supplyAsync(payload::get, executor);
+            }
+            CompletableFuture.allOf(readers).join();
+            for (CompletableFuture<?> reader : readers) {
+                assertEquals(ANY_PAYLOAD, reader.join());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(s3Dao, times(1)).getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY);
+    }
+
+    @Test
+    public void testCancellingOneAccessDoesNotCancelTheFetch() {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        LazyPayload payload = new LazyPayload(ANY_POINTER, pointer -> source);
+        CompletableFuture<String> timedOut = payload.getAsync();
+        CompletableFuture<String> waiting = payload.getAsync();
+
+        timedOut.cancel(true);
+        source.complete(ANY_PAYLOAD);
+
+        assertThrows(CancellationException.class, timedOut::join);
+        assertEquals(ANY_PAYLOAD, waiting.join());
+        assertEquals(ANY_PAYLOAD, payload.get());
+        assertTrue(payload.isFetched());
+    }
+
+    @Test
+    public void testCancelledFetchIsRetried() {
+        CompletableFuture<String> cancelled = new CompletableFuture<>();
+        AtomicInteger fetches = new AtomicInteger();
+        LazyPayload payload = new LazyPayload(ANY_POINTER, pointer -> fetches.getAndIncrement() == 0
+                ? cancelled : CompletableFuture.completedFuture(ANY_PAYLOAD));
+        CompletableFuture<String> first = payload.getAsync();
+
+        cancelled.cancel(true);
+
+        assertThrows(CancellationException.class, first::join);
+        assertEquals(ANY_PAYLOAD, payload.get());
+        assertTrue(payload.isFetched());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void testPrefetch() {
+        when(s3Dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY)).thenReturn(ANY_PAYLOAD);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            LazyPayload payload = payloadStore.getLazyPayload(ANY_POINTER).prefetch(executor);
+
+            assertEquals(ANY_PAYLOAD, payload.getAsync().join());
+            verify(s3Dao, times(1)).getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPrefetchRejectedByTheExecutorIsFetchedOnAccess() {
+        when(s3Dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY)).thenReturn(ANY_PAYLOAD);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+
+        LazyPayload payload = payloadStore.getLazyPayload(ANY_POINTER).prefetch(executor);
+
+        assertFalse(payload.isFetched());
+        verifyNoInteractions(s3Dao);
+        assertEquals(ANY_PAYLOAD, payload.get());
+        verify(s3Dao, times(1)).getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY);
+    }
+
+    @Test
+    public void testFailedFetchIsRetried() {
+        when(s3Dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY))
+                .thenThrow(SdkException.create("S3 Exception", new Throwable()))
+                .thenReturn(ANY_PAYLOAD);
+        LazyPayload payload = payloadStore.getLazyPayload(ANY_POINTER);
+
+        assertThrows(SdkException.class, payload::get);
+        assertFalse(payload.isFetched());
+        assertEquals(ANY_PAYLOAD, payload.get());
+    }
+
+    @Test
+    public void testAsyncStore() {
+        S3AsyncDao s3AsyncDao = mock(S3AsyncDao.class);
+        when(s3AsyncDao.getTextFromS3(any(String.class), any(String.class)))
+                .thenReturn(CompletableFuture.completedFuture(ANY_PAYLOAD));
+        LazyPayload payload = new S3BackedPayloadStoreAsync(s3AsyncDao, S3_BUCKET_NAME).getLazyPayload(ANY_POINTER);
+        verifyNoInteractions(s3AsyncDao);
+
+        assertEquals(ANY_PAYLOAD, payload.get());
+    }
+}
@@ -0,0 +1,55 @@
+package software.amazon.payloadoffloading;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.ExpirationStatus;
+import software.amazon.awssdk.services.s3.model.LifecycleRule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LifecycleExpiryTest {
+    private static final Instant NOW = Instant.parse("2024-01-31T23:59:59Z");
+
+    @Test
+    public void testByTag() {
+        LifecycleExpiry expiry = LifecycleExpiry.byTag("expiry tag", 7);
+
+        assertEquals("expiry%20tag=7d", expiry.getObjectTagging());
+        assertEquals("key", expiry.getObjectKey("key", NOW));
+
+        LifecycleRule rule = expiry.toLifecycleRule();
+        assertEquals(ExpirationStatus.ENABLED, rule.status());
+        assertEquals("expiry tag", rule.filter().tag().key());
+        assertEquals("7d", rule.filter().tag().value());
+        assertEquals(7, rule.expiration().days().intValue());
+        // S3 rejects rules filtering by tag that abort incomplete multipart uploads.
+        assertNull(rule.abortIncompleteMultipartUpload());
+        assertTrue(expiry.expires("key"));
+    }
+
+    @Test
+    public void testByPrefix() {
+        LifecycleExpiry expiry = LifecycleExpiry.byPrefix(2);
+
+        assertNull(expiry.getObjectTagging());
+        assertEquals(LifecycleExpiry.DEFAULT_PREFIX + "2024/01/31/key", expiry.getObjectKey("key", NOW));
+
+        LifecycleRule rule = expiry.toLifecycleConfiguration().rules().get(0);
+        assertEquals(LifecycleExpiry.DEFAULT_PREFIX, rule.filter().prefix());
+        assertEquals(2, rule.expiration().days().intValue());
+        assertEquals(1, rule.abortIncompleteMultipartUpload().daysAfterInitiation().intValue());
+        assertTrue(expiry.expires(LifecycleExpiry.DEFAULT_PREFIX + "2024/01/31/key"));
+        assertFalse(expiry.expires("key"));
+    }
+
+    @Test
+    public void testInvalidExpirationDays() {
+        assertThrows(SdkClientException.class, () -> LifecycleExpiry.byTag(0));
+    }
+}
@@ -0,0 +1,308 @@
+package software.amazon.payloadoffloading;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a {@link LoadWorkload} against a {@link PayloadStore} or {@link PayloadStoreAsync} and reports
+ * throughput, latency percentiles, heap and GC statistics.
+ *
+ * <p>Run against the in-memory S3 stand-in from the command line with, for example:</p>
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=software.amazon.payloadoffloading.LoadHarness \
+ *     -Dexec.args="--store=async --concurrency=256 --operations=50000 --sizes=300000:8,2000000:2 \
+ *                  --mix=1:2:1 --latencyMs=20 --report=target/load/async.json --baseline=target/load/previous.json"
+ * </pre>
+ *
+ * <p>For the async store, {@code --ioThreads} sets the number of threads responses are delivered on, like the
+ * event loop of an HTTP client, and {@code --completionThreads} the size of the completion executor of the DAO,
+ * by default none.</p>
+ */
+public class LoadHarness {
+    private static final String S3_BUCKET_NAME = "load-test-bucket";
+
+    private final LoadWorkload workload;
+    private final Map<Integer, String> payloads = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedDeque<String> pointers = new ConcurrentLinkedDeque<>();
+
+    public LoadHarness(LoadWorkload workload) {
+        this.workload = workload;
+    }
+
+    public LoadReport run(PayloadStore payloadStore) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(workload.getConcurrency());
+        try {
+            runSync(payloadStore, executor, new Recording(workload.getWarmUpOperations()));
+            return measure(payloadStore.getClass().getSimpleName(),
+                    (recording) -> runSync(payloadStore, executor, recording));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public LoadReport run(PayloadStoreAsync payloadStore) throws InterruptedException {
+        runAsync(payloadStore, new Recording(workload.getWarmUpOperations()));
+        return measure(payloadStore.getClass().getSimpleName(), (recording) -> runAsync(payloadStore, recording));
+    }
+
+    private interface Runner {
+        void run(Recording recording) throws InterruptedException;
+    }
+
+    /**
+     * Latencies of one run, indexed by operation sequence number.
+     */
+    private static final class Recording {
+        final AtomicInteger next = new AtomicInteger();
+        final long[] latencyNanos;
+        final LoadWorkload.Operation[] operations;
+        final AtomicLong errors = new AtomicLong();
+
+        Recording(int operations) {
+            this.latencyNanos = new long[operations];
+            this.operations = new LoadWorkload.Operation[operations];
+        }
+
+        int claim() {
+            int index = next.getAndIncrement();
+            return index < latencyNanos.length ? index : -1;
+        }
+
+        void record(int index, LoadWorkload.Operation operation, long startNanos, Throwable error) {
+            latencyNanos[index] = System.nanoTime() - startNanos;
+            operations[index] = operation;
+            if (error != null) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    private LoadReport measure(String storeType, Runner runner) throws InterruptedException {
+        System.gc();
+        long heapUsedBefore = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        long[] gcBefore = gcTotals();
+
+        Recording recording = new Recording(workload.getOperations());
+        long start = System.nanoTime();
+        runner.run(recording);
+        long elapsedNanos = System.nanoTime() - start;
+
+        long[] gcAfter = gcTotals();
+        long heapUsedAfter = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long heapPeak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                heapPeak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        EnumMap<LoadWorkload.Operation, long[]> latencies = new EnumMap<>(LoadWorkload.Operation.class);
+        for (LoadWorkload.Operation operation : LoadWorkload.Operation.values()) {
+            long[] samples = new long[recording.latencyNanos.length];
+            int count = 0;
+            for (int i = 0; i < samples.length; i++) {
+                if (recording.operations[i] == operation) {
+                    samples[count++] = recording.latencyNanos[i];
+                }
+            }
+            latencies.put(operation, Arrays.copyOf(samples, count));
+        }
+        return LoadReport.create(workload, storeType, elapsedNanos, recording.errors.get(), latencies,
+                heapUsedBefore, heapUsedAfter, heapPeak, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+    }
+
+    private void runSync(PayloadStore payloadStore, ExecutorService executor, Recording recording)
+            throws InterruptedException {
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[workload.getConcurrency()];
+        for (int w = 0; w < workers.length; w++) {
+            workers[w] = CompletableFuture.runAsync(() -> {
+                int index;
+                while ((index = recording.claim()) >= 0) {
+                    LoadWorkload.Operation operation = workload.nextOperation();
+                    String pointer = pointerFor(operation);
+                    if (pointer == null) {
+                        operation = LoadWorkload.Operation.STORE;
+                    }
+                    long start = System.nanoTime();
+                    Throwable error = null;
+                    try {
+                        switch (operation) {
+                            case STORE:
+                                pointers.addLast(payloadStore.storeOriginalPayload(payload()));
+                                break;
+                            case GET:
+                                try {
+                                    payloadStore.getOriginalPayload(pointer);
+                                } finally {
+                                    pointers.addLast(pointer);
+                                }
+                                break;
+                            default:
+                                payloadStore.deleteOriginalPayload(pointer);
+                        }
+                    } catch (RuntimeException e) {
+                        error = e;
+                    }
+                    recording.record(index, operation, start, error);
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(workers).join();
+    }
+
+    private void runAsync(PayloadStoreAsync payloadStore, Recording recording) throws InterruptedException {
+        Semaphore outstanding = new Semaphore(workload.getConcurrency());
+        int index;
+        while ((index = recording.claim()) >= 0) {
+            outstanding.acquire();
+            LoadWorkload.Operation requested = workload.nextOperation();
+            String pointer = pointerFor(requested);
+            LoadWorkload.Operation operation = pointer == null ? LoadWorkload.Operation.STORE : requested;
+            long start = System.nanoTime();
+            CompletableFuture<?> future;
+            try {
+                switch (operation) {
+                    case STORE:
+                        future = payloadStore.storeOriginalPayload(payload()).thenAccept(pointers::addLast);
+                        break;
+                    case GET:
+                        future = payloadStore.getOriginalPayload(pointer)
+                                .whenComplete((v, t) -> pointers.addLast(pointer));
+                        break;
+                    default:
+                        future = payloadStore.deleteOriginalPayload(pointer);
+                }
+            } catch (RuntimeException e) {
+                if (operation == LoadWorkload.Operation.GET) {
+                    pointers.addLast(pointer);
+                }
+                CompletableFuture<Void> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                future = failed;
+            }
+            int slot = index;
+            future.whenComplete((v, t) -> {
+                recording.record(slot, operation, start, t);
+                outstanding.release();
+            });
+        }
+        outstanding.acquire(workload.getConcurrency());
+    }
+
+    /**
+     * Takes the pointer to get or delete out of the pool, so no payload is deleted while it is read. Gets put
+     * their pointer back once they complete.
+     *
+     * @return the pointer to get or delete, or null if no payload is stored yet. Stores need no pointer.
+     */
+    private String pointerFor(LoadWorkload.Operation operation) {
+        switch (operation) {
+            case GET:
+                return pointers.pollLast();
+            case DELETE:
+                return pointers.pollFirst();
+            default:
+                return "";
+        }
+    }
+
+    private String payload() {
+        return payloads.computeIfAbsent(workload.nextPayloadSize(), size -> {
+            char[] chars = new char[size];
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < size; i++) {
+                chars[i] = (char) ('a' + random.nextInt(26));
+            }
+            return new String(chars);
+        });
+    }
+
+    private static long[] gcTotals() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] {count, time};
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
+        }
+
+        LoadWorkload workload = new LoadWorkload()
+                .withName(options.getOrDefault("name", "default"))
+                .withConcurrency(Integer.parseInt(options.getOrDefault("concurrency", "64")))
+                .withWarmUpOperations(Integer.parseInt(options.getOrDefault("warmUp", "1000")))
+                .withOperations(Integer.parseInt(options.getOrDefault("operations", "10000")));
+        for (String size : options.getOrDefault("sizes", "307200:1").split(",")) {
+            String[] sizeAndWeight = size.split(":");
+            workload.withPayloadSize(Integer.parseInt(sizeAndWeight[0]),
+                    sizeAndWeight.length > 1 ? Integer.parseInt(sizeAndWeight[1]) : 1);
+        }
+        String[] mix = options.getOrDefault("mix", "1:2:1").split(":");
+        workload.withMix(Integer.parseInt(mix[0]), Integer.parseInt(mix[1]), Integer.parseInt(mix[2]));
+
+        InMemoryS3 s3 = new InMemoryS3()
+                .withLatency(InMemoryS3.LatencyDistribution
+                        .logNormal(Duration.ofMillis(Long.parseLong(options.getOrDefault("latencyMs", "20"))),
+                                Double.parseDouble(options.getOrDefault("sigma", "0.5")))
+                        .plusTransferTime(Long.parseLong(options.getOrDefault("bytesPerSecond", "100000000"))))
+                .withErrorRate(Double.parseDouble(options.getOrDefault("errorRate", "0")));
+
+        LoadHarness harness = new LoadHarness(workload);
+        LoadReport report;
+        if ("sync".equals(options.getOrDefault("store", "async"))) {
+            report = harness.run(new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME));
+        } else {
+            InMemoryS3AsyncClient client = new InMemoryS3AsyncClient(s3, Integer.parseInt(
+                    options.getOrDefault("ioThreads", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+            int completionThreads = Integer.parseInt(options.getOrDefault("completionThreads", "0"));
+            ExecutorService completionExecutor = completionThreads > 0
+                    ? Executors.newFixedThreadPool(completionThreads) : null;
+            report = harness.run(new S3BackedPayloadStoreAsync(
+                    new S3AsyncDao(client).withCompletionExecutor(completionExecutor), S3_BUCKET_NAME));
+            client.close();
+            if (completionExecutor != null) {
+                completionExecutor.shutdown();
+            }
+        }
+
+        System.out.println(workload);
+        System.out.println(report);
+        if (options.containsKey("report")) {
+            report.write(Paths.get(options.get("report")));
+        }
+        if (options.containsKey("baseline")) {
+            Path baseline = Paths.get(options.get("baseline"));
+            System.out.println(report.compareTo(LoadReport.read(baseline)));
+        }
+    }
+}
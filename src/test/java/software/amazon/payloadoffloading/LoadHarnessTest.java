@@ -0,0 +1,53 @@
+package software.amazon.payloadoffloading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs a small workload through the load harness, so that it keeps working as the stores evolve.
+ */
+public class LoadHarnessTest {
+    private static final String S3_BUCKET_NAME = "test-bucket-name";
+
+    @TempDir
+    Path reportDirectory;
+
+    private final LoadWorkload workload = new LoadWorkload()
+            .withConcurrency(8)
+            .withWarmUpOperations(20)
+            .withOperations(200)
+            .withPayloadSize(1024, 3)
+            .withPayloadSize(300 * 1024, 1)
+            .withMix(2, 2, 1);
+
+    @Test
+    public void testSyncStore() throws Exception {
+        InMemoryS3 s3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(1)));
+        LoadReport report = new LoadHarness(workload)
+                .run(new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME));
+
+        assertEquals(200L, ((Number) report.get("operations")).longValue());
+        assertEquals(0, report.getErrors());
+        assertTrue(report.getThroughput() > 0);
+    }
+
+    @Test
+    public void testAsyncStoreReportRoundTrip() throws Exception {
+        InMemoryS3 s3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(1)));
+        LoadReport report = new LoadHarness(workload)
+                .run(new S3BackedPayloadStoreAsync(new S3AsyncDao(new InMemoryS3AsyncClient(s3)), S3_BUCKET_NAME));
+        Path path = reportDirectory.resolve("report.json");
+
+        report.write(path);
+        LoadReport baseline = LoadReport.read(path);
+
+        assertEquals(200L, ((Number) baseline.get("operations")).longValue());
+        assertEquals(0, baseline.getErrors());
+        assertTrue(report.compareTo(baseline).contains("throughputOpsPerSecond"));
+    }
+}
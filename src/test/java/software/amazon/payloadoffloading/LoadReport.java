@@ -0,0 +1,121 @@
+package software.amazon.payloadoffloading;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Results of a {@link LoadHarness} run. Reports are written as flat JSON so that runs can be archived and
+ * compared with {@link #compareTo(LoadReport)}.
+ */
+public class LoadReport {
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final Map<String, Object> values;
+
+    LoadReport(Map<String, Object> values) {
+        this.values = values;
+    }
+
+    static LoadReport create(LoadWorkload workload, String storeType, long elapsedNanos, long errors,
+                             EnumMap<LoadWorkload.Operation, long[]> latencies, long heapUsedBefore,
+                             long heapUsedAfter, long heapPeak, long gcCount, long gcTimeMillis) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("workload", workload.toString());
+        values.put("store", storeType);
+        values.put("javaVersion", System.getProperty("java.version"));
+        values.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+
+        long operations = 0;
+        for (long[] samples : latencies.values()) {
+            operations += samples.length;
+        }
+        values.put("operations", operations);
+        values.put("errors", errors);
+        values.put("elapsedMillis", elapsedNanos / 1_000_000);
+        values.put("throughputOpsPerSecond", operations * 1_000_000_000.0 / elapsedNanos);
+
+        for (Map.Entry<LoadWorkload.Operation, long[]> entry : latencies.entrySet()) {
+            long[] samples = entry.getValue();
+            Arrays.sort(samples);
+            String prefix = entry.getKey().name().toLowerCase() + ".";
+            values.put(prefix + "count", samples.length);
+            values.put(prefix + "p50Micros", percentile(samples, 0.50));
+            values.put(prefix + "p99Micros", percentile(samples, 0.99));
+            values.put(prefix + "p999Micros", percentile(samples, 0.999));
+            values.put(prefix + "maxMicros", samples.length == 0 ? 0 : samples[samples.length - 1] / 1000);
+        }
+
+        values.put("heapUsedBeforeBytes", heapUsedBefore);
+        values.put("heapUsedAfterBytes", heapUsedAfter);
+        values.put("heapPeakBytes", heapPeak);
+        values.put("gcCount", gcCount);
+        values.put("gcTimeMillis", gcTimeMillis);
+        return new LoadReport(values);
+    }
+
+    public static LoadReport read(Path path) throws IOException {
+        return new LoadReport(MAPPER.readValue(Files.readAllBytes(path), new TypeReference<LinkedHashMap<String, Object>>() { }));
+    }
+
+    public void write(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Files.write(path, MAPPER.writeValueAsBytes(values));
+    }
+
+    public Object get(String name) {
+        return values.get(name);
+    }
+
+    public double getThroughput() {
+        return ((Number) values.get("throughputOpsPerSecond")).doubleValue();
+    }
+
+    public long getErrors() {
+        return ((Number) values.get("errors")).longValue();
+    }
+
+    /**
+     * Formats every numeric metric side by side with the baseline, with the relative change.
+     */
+    public String compareTo(LoadReport baseline) {
+        StringBuilder sb = new StringBuilder(String.format("%-28s %16s %16s %9s%n", "metric", "baseline", "current", "change"));
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Object previous = baseline.values.get(entry.getKey());
+            if (!(entry.getValue() instanceof Number) || !(previous instanceof Number)) {
+                continue;
+            }
+            double current = ((Number) entry.getValue()).doubleValue();
+            double before = ((Number) previous).doubleValue();
+            String change = before == 0 ? "n/a" : String.format("%+.1f%%", (current - before) * 100 / before);
+            sb.append(String.format("%-28s %16.1f %16.1f %9s%n", entry.getKey(), before, current, change));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Object value = entry.getValue();
+            sb.append(String.format("%-28s %s%n", entry.getKey(),
+                    value instanceof Double ? String.format("%.1f", value) : value));
+        }
+        return sb.toString();
+    }
+
+    private static long percentile(long[] sortedSamples, double percentile) {
+        if (sortedSamples.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedSamples.length) - 1;
+        return sortedSamples[Math.max(0, Math.min(index, sortedSamples.length - 1))] / 1000;
+    }
+}
@@ -0,0 +1,120 @@
+package software.amazon.payloadoffloading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Describes the workload driven by {@link LoadHarness}: concurrency, number of operations, payload size mix
+ * and the ratio of store, get and delete operations.
+ */
+public class LoadWorkload {
+    public enum Operation { STORE, GET, DELETE }
+
+    private String name = "default";
+    private int concurrency = 64;
+    private int warmUpOperations = 1_000;
+    private int operations = 10_000;
+    private final List<int[]> payloadSizes = new ArrayList<>();
+    private int storeWeight = 1;
+    private int getWeight = 2;
+    private int deleteWeight = 1;
+
+    public LoadWorkload withName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * @param concurrency number of threads for synchronous stores, or of outstanding operations for asynchronous stores.
+     */
+    public LoadWorkload withConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * @param warmUpOperations operations run before measuring, excluded from the report.
+     */
+    public LoadWorkload withWarmUpOperations(int warmUpOperations) {
+        this.warmUpOperations = warmUpOperations;
+        return this;
+    }
+
+    public LoadWorkload withOperations(int operations) {
+        this.operations = operations;
+        return this;
+    }
+
+    /**
+     * Adds a payload size to the mix. Sizes are picked with a probability proportional to their weight.
+     */
+    public LoadWorkload withPayloadSize(int sizeInBytes, int weight) {
+        payloadSizes.add(new int[] {sizeInBytes, weight});
+        return this;
+    }
+
+    /**
+     * Sets the relative frequency of each operation. Gets and deletes pick from previously stored payloads,
+     * and fall back to a store when none are available.
+     */
+    public LoadWorkload withMix(int storeWeight, int getWeight, int deleteWeight) {
+        this.storeWeight = storeWeight;
+        this.getWeight = getWeight;
+        this.deleteWeight = deleteWeight;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getWarmUpOperations() {
+        return warmUpOperations;
+    }
+
+    public int getOperations() {
+        return operations;
+    }
+
+    Operation nextOperation() {
+        int r = ThreadLocalRandom.current().nextInt(storeWeight + getWeight + deleteWeight);
+        if (r < storeWeight) {
+            return Operation.STORE;
+        }
+        return r < storeWeight + getWeight ? Operation.GET : Operation.DELETE;
+    }
+
+    int nextPayloadSize() {
+        if (payloadSizes.isEmpty()) {
+            return 300 * 1024;
+        }
+        int totalWeight = 0;
+        for (int[] size : payloadSizes) {
+            totalWeight += size[1];
+        }
+        int r = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (int[] size : payloadSizes) {
+            r -= size[1];
+            if (r < 0) {
+                return size[0];
+            }
+        }
+        return payloadSizes.get(payloadSizes.size() - 1)[0];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sizes = new StringBuilder();
+        for (int[] size : payloadSizes) {
+            sizes.append(sizes.length() == 0 ? "" : ",").append(size[0]).append(':').append(size[1]);
+        }
+        return "name=" + name + " concurrency=" + concurrency + " operations=" + operations
+                + " sizes=" + (sizes.length() == 0 ? "307200:1" : sizes)
+                + " mix=" + storeWeight + ":" + getWeight + ":" + deleteWeight;
+    }
+}
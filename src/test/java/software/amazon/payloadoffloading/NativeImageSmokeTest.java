@@ -0,0 +1,49 @@
+package software.amazon.payloadoffloading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs store, get and delete end to end against the in-memory S3 stand-in without mocks. This is the test run
+ * as a GraalVM native image by the {@code native} profile: {@code mvn -Pnative test}.
+ */
+public class NativeImageSmokeTest {
+    private static final String S3_BUCKET_NAME = "native-test-bucket";
+    private static final String ANY_PAYLOAD = "{\"päyload\":\"AnyPayload\"}";
+
+    @Test
+    public void testPayloadStore() {
+        InMemoryS3 s3 = new InMemoryS3();
+        for (boolean compactPointers : new boolean[] {false, true}) {
+            S3BackedPayloadStore payloadStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)),
+                    S3_BUCKET_NAME).withCompactPointers(compactPointers);
+            payloadStore.warmUp(1);
+
+            String pointer = payloadStore.storeOriginalPayload(ANY_PAYLOAD);
+            assertEquals(ANY_PAYLOAD, payloadStore.getOriginalPayload(pointer));
+            payloadStore.deleteOriginalPayload(pointer);
+        }
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testPayloadStoreAsync() {
+        InMemoryS3 s3 = new InMemoryS3();
+        InMemoryS3AsyncClient client = new InMemoryS3AsyncClient(s3);
+        try {
+            for (boolean compactPointers : new boolean[] {false, true}) {
+                S3BackedPayloadStoreAsync payloadStore = new S3BackedPayloadStoreAsync(new S3AsyncDao(client),
+                        S3_BUCKET_NAME).withCompactPointers(compactPointers);
+                payloadStore.warmUp(1).join();
+
+                String pointer = payloadStore.storeOriginalPayload(ANY_PAYLOAD).join();
+                assertEquals(ANY_PAYLOAD, payloadStore.getOriginalPayload(pointer).join());
+                payloadStore.deleteOriginalPayload(pointer).join();
+            }
+        } finally {
+            client.close();
+        }
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+}
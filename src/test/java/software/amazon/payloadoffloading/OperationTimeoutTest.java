@@ -0,0 +1,42 @@
+package software.amazon.payloadoffloading;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OperationTimeoutTest {
+
+    @Test
+    public void testFixed() {
+        OperationTimeout timeout = OperationTimeout.fixed(Duration.ofSeconds(3));
+
+        assertEquals(Duration.ofSeconds(3), timeout.forPayloadSize(0));
+        assertEquals(Duration.ofSeconds(3), timeout.forPayloadSize(Long.MAX_VALUE));
+        assertEquals(Duration.ofSeconds(3), timeout.forPayloadSize(-1));
+    }
+
+    @Test
+    public void testSizeBased() {
+        OperationTimeout timeout = OperationTimeout.sizeBased(Duration.ofSeconds(1), 1000, Duration.ofMinutes(1));
+
+        assertEquals(Duration.ofSeconds(1), timeout.forPayloadSize(0));
+        assertEquals(Duration.ofMillis(1001), timeout.forPayloadSize(1));
+        assertEquals(Duration.ofMillis(3500), timeout.forPayloadSize(2500));
+        assertEquals(Duration.ofMinutes(1), timeout.forPayloadSize(1_000_000));
+        assertEquals(Duration.ofMinutes(1), timeout.forPayloadSize(Long.MAX_VALUE));
+        assertEquals(Duration.ofMinutes(1), timeout.forPayloadSize(-1));
+    }
+
+    @Test
+    public void testInvalidTimeouts() {
+        assertThrows(SdkClientException.class, () -> OperationTimeout.fixed(Duration.ZERO));
+        assertThrows(SdkClientException.class,
+                () -> OperationTimeout.sizeBased(Duration.ofSeconds(1), 0, Duration.ofMinutes(1)));
+        assertThrows(SdkClientException.class,
+                () -> OperationTimeout.sizeBased(Duration.ofSeconds(2), 1000, Duration.ofSeconds(1)));
+    }
+}
@@ -0,0 +1,134 @@
+package software.amazon.payloadoffloading;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PayloadMemoryBudgetTest {
+
+    @Test
+    public void testReservationsWaitInOrderUntilReleased() {
+        PayloadMemoryBudget memoryBudget = new PayloadMemoryBudget(100);
+        CompletableFuture<String> firstOperation = new CompletableFuture<>();
+        CompletableFuture<String> secondOperation = new CompletableFuture<>();
+        AtomicInteger startedCount = new AtomicInteger();
+
+        CompletableFuture<String> first = memoryBudget.callAsync(60, () -> {
+            startedCount.incrementAndGet();
+            return firstOperation;
+        });
+        CompletableFuture<String> second = memoryBudget.callAsync(60, () -> {
+            startedCount.incrementAndGet();
+            return secondOperation;
+        });
+        // Fits, but waits behind the second reservation.
+        CompletableFuture<String> third = memoryBudget.callAsync(10, () -> CompletableFuture.completedFuture("c"));
+
+        assertEquals(1, startedCount.get());
+        assertEquals(60, memoryBudget.getUsedBytes());
+        assertEquals(2, memoryBudget.getWaitingCount());
+        assertFalse(third.isDone());
+
+        firstOperation.complete("a");
+        assertEquals("a", first.join());
+        assertEquals(2, startedCount.get());
+        assertEquals("c", third.join());
+        assertEquals(60, memoryBudget.getUsedBytes());
+
+        secondOperation.completeExceptionally(new IllegalStateException("Failed"));
+        CompletionException e = assertThrows(CompletionException.class, second::join);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals(0, memoryBudget.getUsedBytes());
+        assertEquals(0, memoryBudget.getWaitingCount());
+    }
+
+    @Test
+    public void testRejectsWhenExhaustedOrWaitingTooLong() {
+        PayloadMemoryBudget memoryBudget = new PayloadMemoryBudget(100).withMaxWait(Duration.ZERO);
+        CompletableFuture<String> operation = new CompletableFuture<>();
+        memoryBudget.callAsync(60, () -> operation);
+
+        MemoryBudgetExceededException e = assertThrows(MemoryBudgetExceededException.class,
+                () -> memoryBudget.call(60, () -> "b"));
+        assertEquals(60, e.getRequestedBytes());
+        assertThrows(MemoryBudgetExceededException.class, () -> memoryBudget.call(101, () -> "c"));
+        assertEquals("d", memoryBudget.call(40, () -> "d"));
+
+        memoryBudget.withMaxWait(Duration.ofMillis(50));
+        CompletionException timedOut = assertThrows(CompletionException.class,
+                () -> memoryBudget.callAsync(60, () -> CompletableFuture.completedFuture("e")).join());
+        assertInstanceOf(MemoryBudgetExceededException.class, timedOut.getCause());
+        assertEquals(3, memoryBudget.getRejectedCount());
+        assertEquals(0, memoryBudget.getWaitingCount());
+
+        operation.complete("a");
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
+    @Test
+    public void testCancelledReservationIsWithdrawn() {
+        PayloadMemoryBudget memoryBudget = new PayloadMemoryBudget(100);
+        CompletableFuture<String> operation = new CompletableFuture<>();
+        memoryBudget.callAsync(100, () -> operation);
+        AtomicInteger startedCount = new AtomicInteger();
+
+        CompletableFuture<String> waiting = memoryBudget.callAsync(100, () -> {
+            startedCount.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        waiting.cancel(true);
+        assertEquals(0, memoryBudget.getWaitingCount());
+
+        // A running operation is cancelled along with its future, which releases its bytes.
+        memoryBudget.callAsync(1, () -> CompletableFuture.completedFuture("b"));
+        operation.complete("a");
+        assertEquals(0, startedCount.get());
+        assertEquals(0, memoryBudget.getUsedBytes());
+        CompletableFuture<String> running = new CompletableFuture<>();
+        memoryBudget.callAsync(50, () -> running).cancel(true);
+        assertTrue(running.isCancelled());
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
+    @Test
+    public void testBlockingCallWaitsForRelease() throws Exception {
+        PayloadMemoryBudget memoryBudget = new PayloadMemoryBudget(100);
+        CompletableFuture<String> operation = new CompletableFuture<>();
+        memoryBudget.callAsync(80, () -> operation);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> blocked = executor.submit(() -> memoryBudget.call(80, () -> "b"));
+            for (int i = 0; i < 100 && memoryBudget.getWaitingCount() == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, memoryBudget.getWaitingCount());
+            assertFalse(blocked.isDone());
+
+            operation.complete("a");
+            assertEquals("b", blocked.get(5, TimeUnit.SECONDS));
+            assertEquals(0, memoryBudget.getUsedBytes());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInvalidSettings() {
+        assertThrows(SdkClientException.class, () -> new PayloadMemoryBudget(0));
+        assertThrows(SdkClientException.class, () -> new PayloadMemoryBudget(1).withMaxWait(Duration.ofMillis(-1)));
+    }
+}
@@ -0,0 +1,61 @@
+package software.amazon.payloadoffloading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+public class PayloadS3PointerCacheTest {
+    private static final String S3_BUCKET_NAME = "test-bucket-name";
+
+    @Test
+    public void testRepeatedLookupsAreServedFromTheCache() {
+        PayloadS3PointerCache cache = new PayloadS3PointerCache(100);
+        String pointer = new PayloadS3Pointer(S3_BUCKET_NAME, "key", 10, null, "crc32:00000000").toCompactJson();
+
+        PayloadS3Pointer parsed = cache.get(pointer);
+        assertEquals("key", parsed.getS3Key());
+        assertSame(parsed, cache.get(pointer));
+        assertSame(parsed, cache.get(pointer));
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2.0 / 3, cache.getHitRate(), 1e-9);
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        PayloadS3PointerCache cache = new PayloadS3PointerCache(40);
+        for (int i = 0; i < 1000; i++) {
+            cache.get(new PayloadS3Pointer(S3_BUCKET_NAME, "key-" + i).toJson());
+        }
+        assertTrue(cache.getSize() <= 40, "Size " + cache.getSize());
+        assertTrue(cache.getSize() > 0);
+    }
+
+    @Test
+    public void testFullCacheHoldsItsMaximumSize() {
+        for (int maxSize : new int[] {5, 20, 100}) {
+            PayloadS3PointerCache cache = new PayloadS3PointerCache(maxSize);
+            for (int i = 0; i < 2000; i++) {
+                cache.get(new PayloadS3Pointer(S3_BUCKET_NAME, "key-" + i).toJson());
+            }
+            assertEquals(maxSize, cache.getSize());
+        }
+    }
+
+    @Test
+    public void testInvalidPointersAreNotCached() {
+        PayloadS3PointerCache cache = new PayloadS3PointerCache(10);
+        assertThrows(SdkClientException.class, () -> cache.get("not a pointer"));
+        assertThrows(SdkClientException.class, () -> cache.get("not a pointer"));
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getHitRate());
+
+        assertThrows(SdkClientException.class, () -> new PayloadS3PointerCache(0));
+    }
+}
@@ -0,0 +1,225 @@
+package software.amazon.payloadoffloading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+public class PayloadS3PointerTest {
+    private static final String S3_BUCKET_NAME = "test-bucket-name";
+    private static final String ANY_S3_KEY = "AnyS3key";
+    private static final String V1_POINTER = "[\"software.amazon.payloadoffloading.PayloadS3Pointer\","
+            + "{\"s3BucketName\":\"test-bucket-name\",\"s3Key\":\"AnyS3key\"}]";
+    private static final Method THREAD_ALLOCATED_BYTES = threadAllocatedBytesMethod();
+
+    @Test
+    public void testV1FormatIsUnchanged() {
+        assertEquals(V1_POINTER, new PayloadS3Pointer(S3_BUCKET_NAME, ANY_S3_KEY).toJson());
+        assertEquals(V1_POINTER,
+                new PayloadS3Pointer(S3_BUCKET_NAME, ANY_S3_KEY, 10, null, "crc32:00000000").toJson());
+    }
+
+    @Test
+    public void testV1RoundTrip() {
+        PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(V1_POINTER);
+
+        assertEquals(S3_BUCKET_NAME, pointer.getS3BucketName());
+        assertEquals(ANY_S3_KEY, pointer.getS3Key());
+        assertEquals(-1, pointer.getPayloadSize());
+        assertNull(pointer.getContentEncoding());
+        assertNull(pointer.getChecksum());
+    }
+
+    @Test
+    public void testV1FormatMatchesJacksonDefaultTyping() throws Exception {
+        // Pointers used to be written by Jackson databind, whose string escaping must be kept.
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("s3BucketName", "bucket.with-dots");
+        fields.put("s3Key", "dir/ke\"y\\ü\u0001 \u2028");
+        String expected = "[\"" + PayloadS3Pointer.class.getName() + "\","
+                + objectMapper.writeValueAsString(fields) + "]";
+
+        assertEquals(expected, new PayloadS3Pointer("bucket.with-dots", "dir/ke\"y\\ü\u0001 \u2028").toJson());
+
+        PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(
+                expected.replace("{", "{\"other\":{\"x\":[1]},"));
+        assertEquals("bucket.with-dots", pointer.getS3BucketName());
+        assertEquals("dir/ke\"y\\ü\u0001 \u2028", pointer.getS3Key());
+    }
+
+    @Test
+    public void testV1RequiresTypeId() {
+        assertThrows(SdkClientException.class, () -> PayloadS3Pointer.fromJson(
+                "[\"java.lang.Object\",{\"s3BucketName\":\"b\",\"s3Key\":\"k\"}]"));
+        assertThrows(SdkClientException.class, () -> PayloadS3Pointer.fromJson(
+                "[\"" + PayloadS3Pointer.class.getName() + "\",{\"s3BucketName\":\"b\""));
+        assertThrows(SdkClientException.class, () -> PayloadS3Pointer.fromJson("IncorrectPointer"));
+    }
+
+    @Test
+    public void testCompactRoundTrip() {
+        String json = new PayloadS3Pointer(S3_BUCKET_NAME, ANY_S3_KEY, 1024, "gzip", "crc32:1c291ca3").toCompactJson();
+
+        assertEquals("{\"v\":2,\"b\":\"test-bucket-name\",\"k\":\"AnyS3key\",\"l\":1024,\"e\":\"gzip\","
+                + "\"c\":\"crc32:1c291ca3\"}", json);
+        assertTrue(json.length() < V1_POINTER.length());
+
+        PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(json);
+        assertEquals(S3_BUCKET_NAME, pointer.getS3BucketName());
+        assertEquals(ANY_S3_KEY, pointer.getS3Key());
+        assertEquals(1024, pointer.getPayloadSize());
+        assertEquals("gzip", pointer.getContentEncoding());
+        assertEquals("crc32:1c291ca3", pointer.getChecksum());
+    }
+
+    @Test
+    public void testCompactOmitsUnknownFieldsAndIgnoresNewerOnes() {
+        assertEquals("{\"v\":2,\"b\":\"test-bucket-name\",\"k\":\"AnyS3key\"}",
+                new PayloadS3Pointer(S3_BUCKET_NAME, ANY_S3_KEY).toCompactJson());
+
+        PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(
+                " {\"v\":3,\"b\":\"test-bucket-name\",\"k\":\"AnyS3key\",\"x\":{\"y\":[1,2]}}");
+        assertEquals(ANY_S3_KEY, pointer.getS3Key());
+        assertEquals(-1, pointer.getPayloadSize());
+    }
+
+    @Test
+    public void testCompactRequiresVersionBucketAndKey() {
+        assertThrows(SdkClientException.class, () -> PayloadS3Pointer.fromJson("{\"b\":\"bucket\",\"k\":\"key\"}"));
+        assertThrows(SdkClientException.class, () -> PayloadS3Pointer.fromJson("{\"v\":2,\"k\":\"key\"}"));
+        assertThrows(SdkClientException.class, () -> PayloadS3Pointer.fromJson("{\"v\":2,"));
+    }
+
+    @Test
+    public void testRoutedPointerRoundTrip() {
+        PayloadS3Pointer routed = new PayloadS3Pointer(S3_BUCKET_NAME, ANY_S3_KEY, 1024, null, "crc32:1c291ca3")
+                .withRoute("hot");
+        String json = routed.toCompactJson();
+
+        assertEquals("{\"v\":2,\"r\":\"hot\",\"b\":\"test-bucket-name\",\"k\":\"AnyS3key\",\"l\":1024,"
+                + "\"c\":\"crc32:1c291ca3\"}", json);
+        PayloadS3Pointer parsed = PayloadS3Pointer.fromJson(json);
+        assertEquals("hot", parsed.getRoute());
+        assertEquals(1024, parsed.getPayloadSize());
+        assertTrue(PayloadS3Pointer.isPointer(json));
+        assertThrows(SdkClientException.class, routed::toJson);
+    }
+
+    @Test
+    public void testChunkManifestRoundTrip() {
+        PayloadS3Pointer manifest = new PayloadS3Pointer(S3_BUCKET_NAME, ANY_S3_KEY, 2500, 1000,
+                Arrays.asList("crc32:00000001", "crc32:00000002", "crc32:00000003"));
+        String json = manifest.toCompactJson();
+
+        assertEquals("{\"v\":2,\"b\":\"test-bucket-name\",\"k\":\"AnyS3key\",\"l\":2500,\"n\":1000,"
+                + "\"p\":[\"crc32:00000001\",\"crc32:00000002\",\"crc32:00000003\"]}", json);
+        PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(json);
+        assertTrue(pointer.isChunked());
+        assertEquals(3, pointer.getChunkCount());
+        assertEquals(Arrays.asList(ANY_S3_KEY + "/0", ANY_S3_KEY + "/1", ANY_S3_KEY + "/2"), pointer.getChunkKeys());
+        assertEquals(1000, pointer.getChunkLength(1));
+        assertEquals(500, pointer.getChunkLength(2));
+        assertEquals("crc32:00000003", pointer.getChunkChecksums().get(2));
+        assertThrows(SdkClientException.class, manifest::toJson);
+    }
+
+    @Test
+    public void testChunkManifestMustMatchPayloadSize() {
+        assertThrows(SdkClientException.class, () -> PayloadS3Pointer.fromJson(
+                "{\"v\":2,\"b\":\"b\",\"k\":\"k\",\"l\":2500,\"n\":1000,\"p\":[\"crc32:00000001\"]}"));
+        assertThrows(SdkClientException.class, () -> PayloadS3Pointer.fromJson(
+                "{\"v\":2,\"b\":\"b\",\"k\":\"k\",\"p\":[\"crc32:00000001\"]}"));
+        assertFalse(PayloadS3Pointer.fromJson("{\"v\":2,\"b\":\"b\",\"k\":\"k\",\"l\":0,\"n\":1000,"
+                + "\"p\":[\"crc32:00000000\"]}").getChunkKeys().isEmpty());
+    }
+
+    @Test
+    public void testIsPointerAndTryParse() {
+        String compact = new PayloadS3Pointer(S3_BUCKET_NAME, ANY_S3_KEY, 10, null, null).toCompactJson();
+        assertTrue(PayloadS3Pointer.isPointer(V1_POINTER));
+        assertTrue(PayloadS3Pointer.isPointer(compact));
+        assertTrue(PayloadS3Pointer.isPointer(new StringBuilder(" { \"v\" : 2, \"b\":\"b\", \"k\":\"k\"}")));
+        assertEquals(ANY_S3_KEY, PayloadS3Pointer.tryParse(V1_POINTER).getS3Key());
+        assertEquals(10, PayloadS3Pointer.tryParse(compact).getPayloadSize());
+
+        for (String text : Arrays.asList(null, "", "   ", "plain text", "{\"v\":\"x\"}", "{\"value\":2}",
+                "[\"software.amazon.payloadoffloading.PayloadS3Pointer\"]", "[\"other.Type\",{}]",
+                "{\"v\":2,\"b\":\"b\"}", "{\"v\":2,\"b\":\"b\",\"k\":")) {
+            assertFalse(PayloadS3Pointer.isPointer(text), String.valueOf(text));
+            assertNull(PayloadS3Pointer.tryParse(text), String.valueOf(text));
+        }
+    }
+
+    @Test
+    public void testRejectingInlinePayloadsDoesNotAllocate() {
+        // Stands in for a JMH comparison with catching the exception of fromJson, which allocates an exception
+        // with its stack trace, a parser and its buffers for every inline payload.
+        long threadId = Thread.currentThread().getId();
+        assumeTrue(threadAllocatedBytes(threadId) >= 0, "Allocations per thread are not measured by this JVM.");
+        String[] inlinePayloads = {"plain text payload", "{\"orderId\":42,\"items\":[1,2,3]}", "[1,2,3]", ""};
+
+        int rejected = 0;
+        for (int i = 0; i < 20_000; i++) {
+            rejected += PayloadS3Pointer.isPointer(inlinePayloads[i % inlinePayloads.length]) ? 0 : 1;
+        }
+        long before = threadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            rejected += PayloadS3Pointer.tryParse(inlinePayloads[i % inlinePayloads.length]) == null ? 1 : 0;
+        }
+        long allocated = threadAllocatedBytes(threadId) - before;
+
+        assertEquals(120_000, rejected);
+        // Allows for the measurement itself, which is far below one byte per rejected payload.
+        assertTrue(allocated < 10_000, "Allocated " + allocated + " bytes.");
+    }
+
+    /**
+     * @return the bytes allocated by the given thread, or -1 if the JVM does not measure them.
+     */
+    private static long threadAllocatedBytes(long threadId) {
+        if (THREAD_ALLOCATED_BYTES == null) {
+            return -1;
+        }
+        try {
+            return (long) THREAD_ALLOCATED_BYTES.invoke(ManagementFactory.getThreadMXBean(), threadId);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Looks up the allocation counter reflectively, as com.sun.management is not part of every JDK.
+     */
+    private static Method threadAllocatedBytesMethod() {
+        try {
+            Method method = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", long.class);
+            return method.getDeclaringClass().isInstance(ManagementFactory.getThreadMXBean()) ? method : null;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Test
+    public void testChecksum() {
+        byte[] bytes = "AnyPayload".getBytes();
+        String checksum = Util.checksum(bytes, 0, bytes.length);
+
+        Util.verifyChecksum(checksum, bytes, 0, bytes.length);
+        Util.verifyChecksum(null, bytes, 0, bytes.length);
+        assertThrows(SdkClientException.class, () -> Util.verifyChecksum(checksum, bytes, 1, bytes.length - 1));
+        assertThrows(SdkClientException.class, () -> Util.verifyChecksum("md5:00", bytes, 0, bytes.length));
+    }
+}
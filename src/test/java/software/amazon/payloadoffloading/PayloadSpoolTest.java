@@ -0,0 +1,221 @@
+package software.amazon.payloadoffloading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+public class PayloadSpoolTest {
+    private static final String S3_BUCKET_NAME = "test-bucket-name";
+    private static final String ANY_PAYLOAD = "AnyPayload";
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path directory;
+
+    private InMemoryS3 s3;
+    private S3Dao s3Dao;
+
+    @BeforeEach
+    public void setup() {
+        s3 = new InMemoryS3();
+        s3Dao = new S3Dao(new InMemoryS3Client(s3));
+    }
+
+    @Test
+    public void testPayloadsAreSpooledDuringAnOutageAndDrainedInOrder() throws IOException {
+        PayloadSpool spool = newSpool(1024 * 1024);
+        PayloadStore payloadStore = new S3BackedPayloadStore(s3Dao, S3_BUCKET_NAME)
+                .withCompactPointers(true)
+                .withSpool(spool);
+        s3.withErrorRate(1);
+
+        List<String> pointers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            pointers.add(payloadStore.storeOriginalPayload(ANY_PAYLOAD + i));
+        }
+        assertEquals(5, spool.getSpooledCount());
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+
+        s3.withErrorRate(0);
+        assertTrue(spool.awaitDrained(DRAIN_TIMEOUT));
+        assertFalse(spool.isBackedUp());
+        assertEquals(5, spool.getDrainedCount());
+        assertEquals(0, spool.getSpooledBytes());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(ANY_PAYLOAD + i, payloadStore.getOriginalPayload(pointers.get(i)));
+        }
+        assertEquals(0, listFiles().size());
+        spool.close();
+    }
+
+    @Test
+    public void testFailuresSpoolingDoesNotHelpWithAreThrown() {
+        PayloadSpool spool = newSpool(1024 * 1024);
+        PayloadStore payloadStore = new S3BackedPayloadStore(s3Dao, S3_BUCKET_NAME).withSpool(spool);
+        s3.failNext(InMemoryS3.PUT_OBJECT, S3Exception.builder().statusCode(403).message("Access Denied").build());
+
+        assertThrows(SdkException.class, () -> payloadStore.storeOriginalPayload(ANY_PAYLOAD));
+        assertEquals(0, spool.getSpooledCount());
+        spool.close();
+    }
+
+    @Test
+    public void testSpooledPayloadsSurviveARestart() throws IOException {
+        PayloadSpool spool = newSpool(1024 * 1024).withSegmentSize(100);
+        PayloadStore payloadStore = new S3BackedPayloadStore(s3Dao, S3_BUCKET_NAME).withSpool(spool);
+        s3.withErrorRate(1);
+        for (int i = 0; i < 4; i++) {
+            payloadStore.storeOriginalPayload(ANY_PAYLOAD + i, "key-" + i);
+        }
+        // Crash in the middle of appending a record.
+        spool.close();
+        List<Path> segments = listFiles();
+        assertTrue(segments.size() > 1);
+        Files.write(segments.get(segments.size() - 1), new byte[] {0, 0, 1, 0, 42},
+                StandardOpenOption.APPEND);
+        s3.withErrorRate(0);
+
+        PayloadSpool recovered = newSpool(1024 * 1024);
+
+        assertTrue(recovered.awaitDrained(DRAIN_TIMEOUT));
+        assertEquals(4, recovered.getDrainedCount());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(ANY_PAYLOAD + i, s3Dao.getTextFromS3(S3_BUCKET_NAME, "key-" + i));
+        }
+        assertEquals(0, listFiles().size());
+        recovered.close();
+    }
+
+    @Test
+    public void testUploadedPayloadsAreNotUploadedAgainAfterARestart() throws IOException {
+        PayloadSpool spool = newSpool(1024 * 1024);
+        PayloadStore payloadStore = new S3BackedPayloadStore(s3Dao, S3_BUCKET_NAME).withSpool(spool);
+        s3.withErrorRate(1);
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key-0");
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key-1");
+        s3.withErrorRate(0);
+        assertTrue(spool.awaitDrained(DRAIN_TIMEOUT));
+        s3.withErrorRate(1);
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key-2");
+        spool.close();
+
+        PayloadSpool recovered = newSpool(1024 * 1024);
+
+        // S3 keeps failing until the count is checked, the drainer starts with the spool.
+        assertEquals(1, recovered.getSpooledCount());
+        s3.withErrorRate(0);
+        assertTrue(recovered.awaitDrained(DRAIN_TIMEOUT));
+        assertEquals(1, recovered.getDrainedCount());
+        assertEquals(3, s3.getObjectCount(S3_BUCKET_NAME));
+        recovered.close();
+    }
+
+    @Test
+    public void testSpoolingWaitsOnceTheSpoolIsFull() {
+        PayloadSpool spool = newSpool(150);
+        PayloadStore payloadStore = new S3BackedPayloadStore(s3Dao, S3_BUCKET_NAME).withSpool(spool);
+        s3.withErrorRate(1);
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key-0");
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key-1");
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key-2");
+
+        CompletableFuture<String> blocked = CompletableFuture.supplyAsync(
+                () -> payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key-3"));
+        assertThrows(Exception.class, () -> blocked.get(200, TimeUnit.MILLISECONDS));
+        assertTrue(spool.getSpooledBytes() <= spool.getMaxBytes());
+
+        s3.withErrorRate(0);
+        blocked.join();
+        assertTrue(spool.awaitDrained(DRAIN_TIMEOUT));
+        assertEquals(4, s3.getObjectCount(S3_BUCKET_NAME));
+        spool.close();
+    }
+
+    @Test
+    public void testSpoolingFailsOnceTheSpoolStaysFullForTheMaximumWait() {
+        PayloadSpool spool = newSpool(150).withMaxWait(Duration.ofMillis(100));
+        PayloadStore payloadStore = new S3BackedPayloadStore(s3Dao, S3_BUCKET_NAME).withSpool(spool);
+        s3.withErrorRate(1);
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key-0");
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key-1");
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key-2");
+
+        assertThrows(SdkClientException.class, () -> payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key-3"));
+        assertEquals(3, spool.getSpooledCount());
+        spool.close();
+    }
+
+    @Test
+    public void testPayloadsS3RejectsAreDeadLetteredAndDrainingGoesOn() throws IOException {
+        PayloadSpool spool = newSpool(1024 * 1024);
+        PayloadStore payloadStore = new S3BackedPayloadStore(s3Dao, S3_BUCKET_NAME).withSpool(spool);
+        s3.withErrorRate(1);
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD + 0, "key-0");
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD + 1, "key-1");
+
+        s3.failNext(InMemoryS3.PUT_OBJECT, S3Exception.builder().statusCode(403).message("Access Denied").build());
+        s3.withErrorRate(0);
+
+        assertTrue(spool.awaitDrained(DRAIN_TIMEOUT));
+        assertFalse(spool.isBackedUp());
+        assertEquals(1, spool.getDeadLetteredCount());
+        assertEquals(1, spool.getDrainedCount());
+        assertEquals(ANY_PAYLOAD + 1, s3Dao.getTextFromS3(S3_BUCKET_NAME, "key-1"));
+        assertEquals(1, s3.getObjectCount(S3_BUCKET_NAME));
+        assertTrue(Files.size(spool.getDeadLetterFile()) > ANY_PAYLOAD.length());
+        assertEquals(0, listFiles().size());
+        spool.close();
+    }
+
+    @Test
+    public void testPayloadsStoredAfterARestartQueueBehindTheRecoveredOnes() {
+        PayloadSpool spool = newSpool(1024 * 1024);
+        PayloadStore payloadStore = new S3BackedPayloadStore(s3Dao, S3_BUCKET_NAME).withSpool(spool);
+        s3.withErrorRate(1);
+        payloadStore.storeOriginalPayload("old", "key-0");
+        spool.close();
+        s3.withErrorRate(0);
+        s3.withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofSeconds(1)));
+
+        PayloadSpool recovered = newSpool(1024 * 1024);
+        PayloadStore recoveredStore = new S3BackedPayloadStore(s3Dao, S3_BUCKET_NAME).withSpool(recovered);
+        recoveredStore.storeOriginalPayload("new", "key-0");
+
+        assertEquals(2, recovered.getSpooledCount());
+        s3.withLatency(InMemoryS3.LatencyDistribution.none());
+        assertTrue(recovered.awaitDrained(DRAIN_TIMEOUT));
+        assertEquals("new", s3Dao.getTextFromS3(S3_BUCKET_NAME, "key-0"));
+        recovered.close();
+    }
+
+    private PayloadSpool newSpool(long maxBytes) {
+        return new PayloadSpool(directory, s3Dao, maxBytes).withRetryDelay(Duration.ofMillis(10));
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("segment-"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -8,6 +8,9 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
 import org.junit.jupiter.api.Test;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
@@ -24,6 +27,8 @@ public class PayloadStorageAsyncConfigurationTest {
     @Test
     public void testCopyConstructor() {
         S3AsyncClient s3Async = mock(S3AsyncClient.class);
+        Executor completionExecutor = Runnable::run;
+        OperationTimeout operationTimeout = OperationTimeout.sizeBased(Duration.ofSeconds(1), 1024, Duration.ofMinutes(1));
 
         boolean alwaysThroughS3 = true;
         int payloadSizeThreshold = 500;
@@ -34,7 +39,9 @@ public class PayloadStorageAsyncConfigurationTest {
             .withAlwaysThroughS3(alwaysThroughS3)
             .withPayloadSizeThreshold(payloadSizeThreshold)
             .withServerSideEncryption(SERVER_SIDE_ENCRYPTION_STRATEGY)
-            .withObjectCannedACL(objectCannelACL);
+            .withObjectCannedACL(objectCannelACL)
+            .withCompletionExecutor(completionExecutor)
+            .withOperationTimeout(operationTimeout);
 
         PayloadStorageAsyncConfiguration newPayloadStorageConfiguration = new PayloadStorageAsyncConfiguration(payloadStorageConfiguration);
 
@@ -43,6 +50,8 @@ public class PayloadStorageAsyncConfigurationTest {
         assertEquals(SERVER_SIDE_ENCRYPTION_STRATEGY, newPayloadStorageConfiguration.getServerSideEncryptionStrategy());
         assertTrue(newPayloadStorageConfiguration.isPayloadSupportEnabled());
         assertEquals(objectCannelACL, newPayloadStorageConfiguration.getObjectCannedACL());
+        assertEquals(completionExecutor, newPayloadStorageConfiguration.getCompletionExecutor());
+        assertEquals(operationTimeout, newPayloadStorageConfiguration.getOperationTimeout());
         assertEquals(alwaysThroughS3, newPayloadStorageConfiguration.isAlwaysThroughS3());
         assertEquals(payloadSizeThreshold, newPayloadStorageConfiguration.getPayloadSizeThreshold());
         assertNotSame(newPayloadStorageConfiguration, payloadStorageConfiguration);
@@ -1,5 +1,7 @@
 package software.amazon.payloadoffloading;
 
+import java.time.Duration;
+
 import org.junit.jupiter.api.Test;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
@@ -19,6 +21,8 @@ public class PayloadStorageConfigurationTest {
 
     private static final String s3BucketName = "test-bucket-name";
     private static final ServerSideEncryptionStrategy SERVER_SIDE_ENCRYPTION_STRATEGY = ServerSideEncryptionFactory.awsManagedCmk();
+    private static final LifecycleExpiry LIFECYCLE_EXPIRY = LifecycleExpiry.byTag(1);
+    private static final OperationTimeout OPERATION_TIMEOUT = OperationTimeout.fixed(Duration.ofSeconds(5));
     private final ObjectCannedACL objectCannelACL = ObjectCannedACL.BUCKET_OWNER_FULL_CONTROL;
 
     @Test
@@ -34,7 +38,9 @@ public class PayloadStorageConfigurationTest {
                 .withAlwaysThroughS3(alwaysThroughS3)
                 .withPayloadSizeThreshold(payloadSizeThreshold)
                 .withServerSideEncryption(SERVER_SIDE_ENCRYPTION_STRATEGY)
-                .withObjectCannedACL(objectCannelACL);
+                .withObjectCannedACL(objectCannelACL)
+                .withLifecycleExpiry(LIFECYCLE_EXPIRY)
+                .withOperationTimeout(OPERATION_TIMEOUT);
 
         PayloadStorageConfiguration newPayloadStorageConfiguration = new PayloadStorageConfiguration(payloadStorageConfiguration);
 
@@ -43,6 +49,9 @@ public class PayloadStorageConfigurationTest {
         assertEquals(SERVER_SIDE_ENCRYPTION_STRATEGY, newPayloadStorageConfiguration.getServerSideEncryptionStrategy());
         assertTrue(newPayloadStorageConfiguration.isPayloadSupportEnabled());
         assertEquals(objectCannelACL, newPayloadStorageConfiguration.getObjectCannedACL());
+        assertEquals(LIFECYCLE_EXPIRY, newPayloadStorageConfiguration.getLifecycleExpiry());
+        assertTrue(newPayloadStorageConfiguration.isLifecycleExpiryEnabled());
+        assertEquals(OPERATION_TIMEOUT, newPayloadStorageConfiguration.getOperationTimeout());
         assertEquals(alwaysThroughS3, newPayloadStorageConfiguration.isAlwaysThroughS3());
         assertEquals(payloadSizeThreshold, newPayloadStorageConfiguration.getPayloadSizeThreshold());
         assertNotSame(newPayloadStorageConfiguration, payloadStorageConfiguration);
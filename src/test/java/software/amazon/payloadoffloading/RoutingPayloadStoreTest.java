@@ -0,0 +1,114 @@
+package software.amazon.payloadoffloading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+public class RoutingPayloadStoreTest {
+    private static final String HOT_BUCKET_NAME = "hot-bucket-name";
+    private static final String STANDARD_BUCKET_NAME = "standard-bucket-name";
+    private static final String SMALL_PAYLOAD = "smäll-payload";
+    private static final String LARGE_PAYLOAD = String.join("", Collections.nCopies(200, "large-payload-"));
+
+    private InMemoryS3 s3;
+    private S3Dao s3Dao;
+    private RoutingPayloadStore routingStore;
+
+    @BeforeEach
+    public void setup() {
+        s3 = new InMemoryS3();
+        s3Dao = new S3Dao(new InMemoryS3Client(s3));
+        routingStore = new RoutingPayloadStore()
+                .withRoute("standard", Long.MAX_VALUE, new S3BackedPayloadStore(s3Dao, STANDARD_BUCKET_NAME))
+                .withRoute("hot", 1024, new S3BackedPayloadStore(s3Dao, HOT_BUCKET_NAME));
+    }
+
+    @Test
+    public void testPayloadsAreRoutedBySize() {
+        String smallPointer = routingStore.storeOriginalPayload(SMALL_PAYLOAD);
+        String largePointer = routingStore.storeOriginalPayload(LARGE_PAYLOAD);
+
+        assertEquals("hot", PayloadS3Pointer.fromJson(smallPointer).getRoute());
+        assertEquals(HOT_BUCKET_NAME, PayloadS3Pointer.fromJson(smallPointer).getS3BucketName());
+        assertEquals("standard", PayloadS3Pointer.fromJson(largePointer).getRoute());
+        assertEquals(1, s3.getObjectCount(HOT_BUCKET_NAME));
+        assertEquals(1, s3.getObjectCount(STANDARD_BUCKET_NAME));
+
+        assertEquals(SMALL_PAYLOAD, routingStore.getOriginalPayload(smallPointer));
+        assertEquals(LARGE_PAYLOAD, routingStore.getOriginalPayload(largePointer));
+        routingStore.deleteOriginalPayload(smallPointer);
+        assertEquals(0, s3.getObjectCount(HOT_BUCKET_NAME));
+
+        PayloadRoute hotRoute = routingStore.getRoute("hot");
+        assertEquals(1, hotRoute.getStoredCount());
+        assertEquals(SMALL_PAYLOAD.getBytes(StandardCharsets.UTF_8).length, hotRoute.getStoredBytes());
+        assertEquals(1, hotRoute.getReadCount());
+        assertEquals(1, hotRoute.getDeletedCount());
+        assertEquals("hot", routingStore.getRoutes().get(0).getName());
+
+        // The deleted payload fails to read through its route.
+        assertThrows(RuntimeException.class, () -> routingStore.getOriginalPayload(smallPointer));
+        assertEquals(1, hotRoute.getFailedCount());
+    }
+
+    @Test
+    public void testUnroutedPointersAreReadFromTheLargestRoute() {
+        String pointer = new S3BackedPayloadStore(s3Dao, STANDARD_BUCKET_NAME).storeOriginalPayload(SMALL_PAYLOAD);
+
+        assertEquals(SMALL_PAYLOAD, routingStore.getOriginalPayload(pointer));
+        assertEquals(1, routingStore.getRoute("standard").getReadCount());
+
+        String unknownRoute = new PayloadS3Pointer(HOT_BUCKET_NAME, "key").withRoute("cold").toCompactJson();
+        assertThrows(SdkClientException.class, () -> routingStore.getOriginalPayload(unknownRoute));
+    }
+
+    @Test
+    public void testPayloadsLargerThanAllRoutesAreRejected() {
+        RoutingPayloadStore boundedStore = new RoutingPayloadStore()
+                .withRoute("hot", 1024, new S3BackedPayloadStore(s3Dao, HOT_BUCKET_NAME));
+
+        assertThrows(SdkClientException.class, () -> boundedStore.storeOriginalPayload(LARGE_PAYLOAD));
+        assertThrows(SdkClientException.class,
+                () -> boundedStore.withRoute("hot", 2048, new S3BackedPayloadStore(s3Dao, HOT_BUCKET_NAME)));
+        assertEquals(0, s3.getObjectCount(HOT_BUCKET_NAME));
+    }
+
+    @Test
+    public void testAsyncPayloadsAreRoutedBySize() {
+        S3AsyncDao s3AsyncDao = new S3AsyncDao(new InMemoryS3AsyncClient(s3));
+        RoutingPayloadStoreAsync asyncStore = new RoutingPayloadStoreAsync()
+                .withRoute("hot", 1024, new S3BackedPayloadStoreAsync(s3AsyncDao, HOT_BUCKET_NAME))
+                .withRoute("standard", Long.MAX_VALUE, new S3BackedPayloadStoreAsync(s3AsyncDao,
+                        STANDARD_BUCKET_NAME));
+
+        String smallPointer = asyncStore.storeOriginalPayload(SMALL_PAYLOAD).join();
+        String largePointer = asyncStore.storeOriginalPayload(LARGE_PAYLOAD).join();
+
+        assertEquals(HOT_BUCKET_NAME, PayloadS3Pointer.fromJson(smallPointer).getS3BucketName());
+        assertEquals(STANDARD_BUCKET_NAME, PayloadS3Pointer.fromJson(largePointer).getS3BucketName());
+        assertEquals(SMALL_PAYLOAD, asyncStore.getOriginalPayload(smallPointer).join());
+        assertEquals(LARGE_PAYLOAD, asyncStore.getOriginalPayload(largePointer).join());
+        asyncStore.deleteOriginalPayload(largePointer).join();
+        assertEquals(0, s3.getObjectCount(STANDARD_BUCKET_NAME));
+
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> asyncStore.getOriginalPayload("not a pointer").join());
+        assertTrue(exception.getCause() instanceof SdkClientException);
+        assertEquals(1, asyncStore.getRoute("standard").getDeletedCount());
+    }
+
+    @Test
+    public void testStringSizeInBytesMatchesUtf8Encoding() {
+        for (String text : new String[] {"", "ascii", "päyload", "€uro", "emoji 😀", "lone \ud800 surrogate",
+                "\udc00"}) {
+            assertEquals(text.getBytes(StandardCharsets.UTF_8).length, Util.getStringSizeInBytes(text), text);
+        }
+    }
+}
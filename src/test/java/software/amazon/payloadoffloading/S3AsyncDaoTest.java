@@ -2,6 +2,8 @@ package software.amazon.payloadoffloading;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -9,16 +11,19 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
-import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.ServerSideEncryption;
@@ -90,9 +95,15 @@ public class S3AsyncDaoTest {
     @Test
     public void getTextTest() {
         dao = new S3AsyncDao(s3AsyncClient);
-        when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class))).thenReturn(
-            CompletableFuture.completedFuture(ResponseBytes.fromByteArray(
-                GetObjectRequest.builder().build(), ANY_PAYLOAD.getBytes(StandardCharsets.UTF_8))));
+        when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class))).thenAnswer(
+            invocation -> {
+                byte[] content = ANY_PAYLOAD.getBytes(StandardCharsets.UTF_8);
+                AsyncResponseTransformer<GetObjectResponse, ?> transformer = invocation.getArgument(1);
+                CompletableFuture<?> result = transformer.prepare();
+                transformer.onResponse(GetObjectResponse.builder().contentLength((long) content.length).build());
+                transformer.onStream(AsyncRequestBody.fromBytes(content));
+                return result;
+            });
 
         String payload = dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY).join();
 
@@ -111,4 +122,69 @@ public class S3AsyncDaoTest {
 
         verify(s3AsyncClient, times(1)).deleteObject(any(DeleteObjectRequest.class));
     }
+
+    @Test
+    public void testReadsGoToTheFastestReplicaAndFallBackToTheSource() {
+        InMemoryS3 sourceS3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(20)));
+        InMemoryS3 replicaS3 = new InMemoryS3();
+        S3AsyncDao replicaDao = new S3AsyncDao(new InMemoryS3AsyncClient(replicaS3));
+        dao = new S3AsyncDao(new InMemoryS3AsyncClient(sourceS3))
+                .withReadReplica(S3_BUCKET_NAME, "replica-bucket-name", new InMemoryS3AsyncClient(replicaS3));
+        dao.storeTextInS3(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD).join();
+        replicaDao.storeTextInS3("replica-bucket-name", ANY_S3_KEY, ANY_PAYLOAD).join();
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(ANY_PAYLOAD, dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY).join());
+        }
+        // Both buckets are measured once, then the replica is the fastest.
+        assertEquals(1, sourceS3.getRequestCount(InMemoryS3.GET_OBJECT));
+        assertEquals(9, replicaS3.getRequestCount(InMemoryS3.GET_OBJECT));
+        assertTrue(dao.getReadLatency(S3_BUCKET_NAME).compareTo(dao.getReadLatency("replica-bucket-name")) > 0);
+
+        // Not replicated yet.
+        dao.storeTextInS3(S3_BUCKET_NAME, "new-key", ANY_PAYLOAD).join();
+        assertEquals(ANY_PAYLOAD, dao.getTextFromS3(S3_BUCKET_NAME, "new-key").join());
+        assertEquals(2, sourceS3.getRequestCount(InMemoryS3.GET_OBJECT));
+        assertEquals(10, replicaS3.getRequestCount(InMemoryS3.GET_OBJECT));
+
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> dao.getTextFromS3(S3_BUCKET_NAME, "missing-key").join());
+        assertTrue(Util.isNotFound(exception));
+    }
+
+    @Test
+    public void testReadsOfAFailingReplicaFallBackToTheSourceAndStopGoingToIt() {
+        InMemoryS3 sourceS3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(20)));
+        InMemoryS3 replicaS3 = new InMemoryS3().withErrorRate(1);
+        dao = new S3AsyncDao(new InMemoryS3AsyncClient(sourceS3))
+                .withReadReplica(S3_BUCKET_NAME, "replica-bucket-name", new InMemoryS3AsyncClient(replicaS3));
+        dao.storeTextInS3(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD).join();
+
+        for (int i = 0; i < ReadReplicas.PROBE_INTERVAL - 1; i++) {
+            assertEquals(ANY_PAYLOAD, dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY).join());
+        }
+        // The replica never succeeded, it is tried once and then penalized.
+        assertEquals(1, replicaS3.getRequestCount(InMemoryS3.GET_OBJECT));
+        assertEquals(ReadReplicas.PROBE_INTERVAL - 1, sourceS3.getRequestCount(InMemoryS3.GET_OBJECT));
+        assertTrue(dao.getReadLatency("replica-bucket-name").compareTo(dao.getReadLatency(S3_BUCKET_NAME)) > 0);
+
+        // The probe goes to the replica, fails again and falls back.
+        assertEquals(ANY_PAYLOAD, dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY).join());
+        assertEquals(2, replicaS3.getRequestCount(InMemoryS3.GET_OBJECT));
+        assertEquals(ANY_PAYLOAD, dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY).join());
+        assertEquals(2, replicaS3.getRequestCount(InMemoryS3.GET_OBJECT));
+    }
+
+    @Test
+    public void testBoundedTasksCompletingSynchronouslyDoNotRecurse() throws Exception {
+        int count = 100_000;
+        int[] started = new int[1];
+
+        Util.forEachBounded(count, 4, i -> {
+            started[0]++;
+            return CompletableFuture.completedFuture(null);
+        }).get(10, TimeUnit.SECONDS);
+
+        assertEquals(count, started[0]);
+    }
 }
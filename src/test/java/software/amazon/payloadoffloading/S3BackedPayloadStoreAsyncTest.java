@@ -1,6 +1,7 @@
 package software.amazon.payloadoffloading;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -12,13 +13,47 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 public class S3BackedPayloadStoreAsyncTest {
     private static final String S3_BUCKET_NAME = "test-bucket-name";
@@ -175,4 +210,623 @@ public class S3BackedPayloadStoreAsyncTest {
         verifyNoInteractions(s3AsyncDao);
     }
 
+    @Test
+    public void testStoreOriginalPayloadWithCompactPointer() {
+        when(s3AsyncDao.storeBytesInS3(any(String.class), any(String.class), any(byte[].class))).thenReturn(
+            CompletableFuture.completedFuture(null));
+        payloadStore = new S3BackedPayloadStoreAsync(s3AsyncDao, S3_BUCKET_NAME).withCompactPointers(true);
+        String actualPayloadPointer = payloadStore.storeOriginalPayload(ANY_PAYLOAD, ANY_S3_KEY).join();
+
+        PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(actualPayloadPointer);
+        assertEquals(ANY_S3_KEY, pointer.getS3Key());
+        assertEquals(ANY_PAYLOAD.length(), pointer.getPayloadSize());
+    }
+
+    @Test
+    public void testCompactPointerRoundTripWithRangedGets() {
+        InMemoryS3 s3 = new InMemoryS3();
+        PayloadStoreAsync compactStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)).withRangedGetPartSize(1000), S3_BUCKET_NAME)
+            .withCompactPointers(true);
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            payload.append("päylöäd-").append(i);
+        }
+
+        String pointer = compactStore.storeOriginalPayload(payload.toString()).join();
+
+        assertEquals(payload.toString(), compactStore.getOriginalPayload(pointer).join());
+        assertTrue(s3.getRequestCount(InMemoryS3.GET_OBJECT) > 10);
+    }
+
+    @Test
+    public void testLifecycleExpiryByTagSkipsDelete() {
+        InMemoryS3 s3 = new InMemoryS3();
+        PayloadStoreAsync expiringStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)), S3_BUCKET_NAME)
+            .withCompactPointers(true)
+            .withLifecycleExpiry(LifecycleExpiry.byTag("expiry", 7));
+        String pointer = expiringStore.storeOriginalPayload(ANY_PAYLOAD, ANY_S3_KEY).join();
+
+        assertEquals("expiry=7d", s3.getObjectTagging(S3_BUCKET_NAME, ANY_S3_KEY));
+
+        expiringStore.deleteOriginalPayload(pointer).join();
+        assertEquals(0, s3.getRequestCount(InMemoryS3.DELETE_OBJECT));
+        assertEquals(ANY_PAYLOAD, expiringStore.getOriginalPayload(pointer).join());
+    }
+
+    @Test
+    public void testLifecycleExpiryByPrefixDeletesPayloadsStoredOutsideThePrefix() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3AsyncDao dao = new S3AsyncDao(new InMemoryS3AsyncClient(s3));
+        String pointer = new S3BackedPayloadStoreAsync(dao, S3_BUCKET_NAME)
+            .storeOriginalPayload(ANY_PAYLOAD, ANY_S3_KEY).join();
+        PayloadStoreAsync expiringStore = new S3BackedPayloadStoreAsync(dao, S3_BUCKET_NAME)
+            .withLifecycleExpiry(LifecycleExpiry.byPrefix("expiring/", 1));
+
+        expiringStore.deleteOriginalPayload(pointer).join();
+
+        assertEquals(1, s3.getRequestCount(InMemoryS3.DELETE_OBJECT));
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testWarmUpOpensConnections() {
+        InMemoryS3 s3 = new InMemoryS3()
+            .failNext(InMemoryS3.HEAD_BUCKET, InMemoryS3.s3Exception(403, "AccessDenied", "Injected"));
+        S3BackedPayloadStoreAsync warmStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)), S3_BUCKET_NAME);
+
+        Duration duration = warmStore.warmUp(3).join();
+
+        assertFalse(duration.isNegative());
+        assertEquals(3, s3.getRequestCount(InMemoryS3.HEAD_BUCKET));
+    }
+
+    @Test
+    public void testWarmUpOpensAtMostTheDefaultMaximumOfConnections() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStoreAsync warmStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)), S3_BUCKET_NAME);
+
+        warmStore.warmUp(10_000).join();
+
+        assertEquals(50, s3.getRequestCount(InMemoryS3.HEAD_BUCKET));
+    }
+
+    @Test
+    public void testContinuationsRunOnCompletionExecutor() {
+        ExecutorService executor = Executors.newFixedThreadPool(2, r -> new Thread(r, "payload-completion"));
+        // Latency keeps the futures pending until the continuations are chained.
+        InMemoryS3 s3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(50)));
+        try {
+            PayloadStoreAsync completingStore = new S3BackedPayloadStoreAsync(
+                new S3AsyncDao(new InMemoryS3AsyncClient(s3)).withCompletionExecutor(executor)
+                    .withRangedGetPartSize(1000),
+                S3_BUCKET_NAME).withCompactPointers(true);
+            StringBuilder payload = new StringBuilder();
+            for (int i = 0; i < 500; i++) {
+                payload.append("päylöäd-").append(i);
+            }
+
+            for (String originalPayload : new String[] {ANY_PAYLOAD, payload.toString()}) {
+                String pointer = completingStore.storeOriginalPayload(originalPayload)
+                    .thenApply(p -> assertCompletionThread(p)).join();
+                assertEquals(originalPayload, completingStore.getOriginalPayload(pointer)
+                    .thenApply(p -> assertCompletionThread(p)).join());
+                completingStore.deleteOriginalPayload(pointer).thenApply(v -> assertCompletionThread(v)).join();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCancellingStoreAbortsPut() throws Exception {
+        InMemoryS3 s3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(200)));
+        PayloadStoreAsync slowStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)), S3_BUCKET_NAME);
+
+        CompletableFuture<String> pointer = slowStore.storeOriginalPayload(ANY_PAYLOAD, ANY_S3_KEY);
+        assertEquals(1, s3.getInFlightRequestCount());
+        pointer.cancel(true);
+
+        assertEquals(0, s3.getInFlightRequestCount());
+        Thread.sleep(400);
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testCancellingGetAbortsAllRangedGets() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3AsyncDao dao = new S3AsyncDao(new InMemoryS3AsyncClient(s3)).withRangedGetPartSize(1000);
+        PayloadStoreAsync compactStore = new S3BackedPayloadStoreAsync(dao, S3_BUCKET_NAME).withCompactPointers(true);
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            payload.append("päylöäd-").append(i);
+        }
+        String pointer = compactStore.storeOriginalPayload(payload.toString()).join();
+        s3.withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(200)));
+
+        CompletableFuture<String> originalPayload = compactStore.getOriginalPayload(pointer);
+        assertEquals(8, s3.getInFlightRequestCount());
+        originalPayload.cancel(true);
+
+        assertEquals(0, s3.getInFlightRequestCount());
+        assertThrows(CancellationException.class, originalPayload::join);
+    }
+
+    @Test
+    public void testRangedGetsInFlightAreBounded() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3AsyncDao dao = new S3AsyncDao(new InMemoryS3AsyncClient(s3)).withRangedGetPartSize(1000, 3);
+        PayloadStoreAsync compactStore = new S3BackedPayloadStoreAsync(dao, S3_BUCKET_NAME).withCompactPointers(true);
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            payload.append("päylöäd-").append(i);
+        }
+        String pointer = compactStore.storeOriginalPayload(payload.toString()).join();
+        s3.withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(50)));
+
+        CompletableFuture<String> originalPayload = compactStore.getOriginalPayload(pointer);
+
+        assertEquals(3, s3.getInFlightRequestCount());
+        assertEquals(payload.toString(), originalPayload.join());
+        assertTrue(s3.getRequestCount(InMemoryS3.GET_OBJECT) > 10);
+    }
+
+    @Test
+    public void testRangedGetPartSizeAndParallelismAreValidated() {
+        S3AsyncDao dao = new S3AsyncDao(new InMemoryS3AsyncClient(new InMemoryS3()));
+
+        assertThrows(SdkClientException.class, () -> dao.withRangedGetPartSize(0));
+        assertThrows(SdkClientException.class, () -> dao.withRangedGetPartSize(-1000));
+        assertThrows(SdkClientException.class, () -> dao.withRangedGetPartSize(1000, 0));
+    }
+
+    @Test
+    public void testFailedRangedGetCancelsTheOtherRangedGets() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3AsyncDao dao = new S3AsyncDao(new InMemoryS3AsyncClient(s3)).withRangedGetPartSize(1000);
+        PayloadStoreAsync compactStore = new S3BackedPayloadStoreAsync(dao, S3_BUCKET_NAME).withCompactPointers(true);
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            payload.append("päylöäd-").append(i);
+        }
+        String pointer = compactStore.storeOriginalPayload(payload.toString()).join();
+        s3.withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofSeconds(5)));
+        s3.failNext(InMemoryS3.GET_OBJECT, S3Exception.builder().statusCode(500).message("InternalError").build());
+
+        CompletableFuture<String> originalPayload = compactStore.getOriginalPayload(pointer);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> originalPayload.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof SdkException);
+        assertEquals(0, s3.getInFlightRequestCount());
+    }
+
+    @Test
+    public void testOperationTimeoutCoversRangedGets() throws InterruptedException {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStoreAsync slowStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)).withRangedGetPartSize(1000), S3_BUCKET_NAME)
+            .withCompactPointers(true)
+            .withOperationTimeout(OperationTimeout.fixed(Duration.ofMillis(100)));
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            payload.append("päylöäd-").append(i);
+        }
+        String pointer = slowStore.storeOriginalPayload(payload.toString(), ANY_S3_KEY, Duration.ofSeconds(5))
+            .join();
+        s3.withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofSeconds(5)));
+
+        long start = System.nanoTime();
+        CompletionException exception = assertThrows(CompletionException.class,
+            () -> slowStore.getOriginalPayload(pointer).join());
+
+        assertTrue(exception.getCause() instanceof PayloadTimeoutException);
+        // The requests are cancelled by the timer thread, possibly just after the caller saw the timeout.
+        for (int i = 0; i < 100 && s3.getInFlightRequestCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+        assertEquals(0, s3.getInFlightRequestCount());
+    }
+
+    @Test
+    public void testChunkedPayloadRoundTrip() {
+        InMemoryS3 s3 = new InMemoryS3();
+        PayloadStoreAsync chunkedStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)), S3_BUCKET_NAME)
+            .withChunkedPayloads(1000, 3);
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            payload.append("päylöäd-").append(i);
+        }
+
+        String pointer = chunkedStore.storeOriginalPayload(payload.toString()).join();
+
+        PayloadS3Pointer manifest = PayloadS3Pointer.fromJson(pointer);
+        assertTrue(manifest.getChunkCount() > 10);
+        assertEquals(manifest.getChunkCount(), s3.getObjectCount(S3_BUCKET_NAME));
+        assertEquals(payload.toString(), chunkedStore.getOriginalPayload(pointer).join());
+
+        chunkedStore.deleteOriginalPayload(pointer).join();
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testFailedChunkedStoreDeletesStoredChunks() {
+        InMemoryS3 s3 = new InMemoryS3()
+            .failNext(InMemoryS3.PUT_OBJECT, InMemoryS3.s3Exception(500, "InternalError", "Injected"));
+        PayloadStoreAsync chunkedStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)), S3_BUCKET_NAME)
+            .withChunkedPayloads(100, 2);
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            payload.append("AnyPayload");
+        }
+
+        CompletionException exception = assertThrows(CompletionException.class,
+            () -> chunkedStore.storeOriginalPayload(payload.toString()).join());
+
+        assertTrue(exception.getCause() instanceof SdkException);
+        assertEquals(1, s3.getRequestCount(InMemoryS3.DELETE_OBJECTS));
+    }
+
+    @Test
+    public void testFailedChunkedStoreDeletesChunksOnceTheUploadsInFlightSettled() throws InterruptedException {
+        // Chunk uploads are slow, the deletion of the chunks is not.
+        InMemoryS3 s3 = new InMemoryS3()
+            .withLatency(contentLength -> Duration.ofMillis(contentLength >= 100 ? 200 : 0));
+        String failingChunkKey = PayloadS3Pointer.chunkKey(ANY_S3_KEY, 2);
+        InMemoryS3AsyncClient s3Client = new InMemoryS3AsyncClient(s3) {
+            @Override
+            public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest request,
+                                                                  AsyncRequestBody requestBody) {
+                if (request.key().equals(failingChunkKey)) {
+                    CompletableFuture<PutObjectResponse> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(InMemoryS3.s3Exception(500, "InternalError", "Injected"));
+                    return failed;
+                }
+                // Like a PUT already sent, which cancelling its future does not withdraw.
+                return super.putObject(request, requestBody).thenApply(response -> response);
+            }
+        };
+        PayloadStoreAsync chunkedStore = new S3BackedPayloadStoreAsync(new S3AsyncDao(s3Client), S3_BUCKET_NAME)
+            .withChunkedPayloads(100, 3);
+
+        assertThrows(CompletionException.class,
+            () -> chunkedStore.storeOriginalPayload(String.join("", Collections.nCopies(100, ANY_PAYLOAD)),
+                ANY_S3_KEY).join());
+        for (int i = 0; i < 100 && s3.getInFlightRequestCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(2, s3.getRequestCount(InMemoryS3.PUT_OBJECT));
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testStoreOriginalPayloadFromPublisher() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStoreAsync streamingStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)).withMultipartUpload(5 * 1024 * 1024, 2), S3_BUCKET_NAME);
+        BufferPublisher publisher = new BufferPublisher(200, -1);
+
+        String pointer = streamingStore.storeOriginalPayload(publisher).join();
+
+        assertEquals(3, s3.getRequestCount(InMemoryS3.UPLOAD_PART));
+        assertEquals(0, s3.getMultipartUploadCount());
+        assertEquals(publisher.content(), streamingStore.getOriginalPayload(pointer).join());
+
+        BufferPublisher smallPublisher = new BufferPublisher(2, -1);
+        String smallPointer = streamingStore.storeOriginalPayload(smallPublisher).join();
+        assertEquals(1, s3.getRequestCount(InMemoryS3.CREATE_MULTIPART_UPLOAD));
+        assertEquals(smallPublisher.content(), streamingStore.getOriginalPayload(smallPointer).join());
+    }
+
+    @Test
+    public void testBufferOfSeveralPartsIsUploadedWithBoundedPartsInFlight() {
+        InMemoryS3 s3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(50)));
+        AtomicInteger partsInFlight = new AtomicInteger();
+        AtomicInteger maxPartsInFlight = new AtomicInteger();
+        InMemoryS3AsyncClient s3Client = new InMemoryS3AsyncClient(s3) {
+            @Override
+            public CompletableFuture<UploadPartResponse> uploadPart(UploadPartRequest request,
+                                                                    AsyncRequestBody requestBody) {
+                maxPartsInFlight.accumulateAndGet(partsInFlight.incrementAndGet(), Math::max);
+                return super.uploadPart(request, requestBody).whenComplete((v, t) -> partsInFlight.decrementAndGet());
+            }
+        };
+        int partSize = 5 * 1024 * 1024;
+        S3BackedPayloadStoreAsync streamingStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(s3Client).withMultipartUpload(partSize, 2), S3_BUCKET_NAME);
+        byte[] content = new byte[5 * partSize + 1000];
+        Arrays.fill(content, (byte) 'a');
+
+        String pointer = streamingStore.storeOriginalPayload(
+            AsyncRequestBody.fromByteBuffer(ByteBuffer.wrap(content))).join();
+
+        assertEquals(2, maxPartsInFlight.get());
+        assertEquals(6, s3.getRequestCount(InMemoryS3.UPLOAD_PART));
+        assertEquals(new String(content, StandardCharsets.UTF_8), streamingStore.getOriginalPayload(pointer).join());
+    }
+
+    @Test
+    public void testFailedPublisherAbortsMultipartUpload() throws InterruptedException {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStoreAsync streamingStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)).withMultipartUpload(5 * 1024 * 1024, 2), S3_BUCKET_NAME);
+
+        CompletionException exception = assertThrows(CompletionException.class,
+            () -> streamingStore.storeOriginalPayload(new BufferPublisher(200, 120)).join());
+
+        assertTrue(exception.getCause() instanceof SdkClientException);
+        awaitAbortedMultipartUpload(s3);
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testCancelledStoreCancelsPublisherAndAbortsMultipartUpload() throws InterruptedException {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStoreAsync streamingStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)).withMultipartUpload(5 * 1024 * 1024, 1), S3_BUCKET_NAME);
+        s3.withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(300)));
+        BufferPublisher publisher = new BufferPublisher(200, -1);
+
+        CompletableFuture<String> pointer = streamingStore.storeOriginalPayload(publisher);
+        // With one part in flight, the publisher is not asked for more than the next part meanwhile.
+        assertTrue(publisher.emitted.get() <= 161);
+        pointer.cancel(true);
+
+        assertTrue(publisher.cancelled);
+        awaitAbortedMultipartUpload(s3);
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testSerializedPayloadRoundTrip() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStoreAsync typedStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)).withRangedGetPartSize(1000), S3_BUCKET_NAME)
+            .withCompactPointers(true);
+        S3BackedPayloadStoreAsync chunkedStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)), S3_BUCKET_NAME)
+            .withChunkedPayloads(1000, 2);
+        JacksonPayloadSerializer<List<String>> serializer = new JacksonPayloadSerializer<>(
+            new ObjectMapper(), new TypeReference<List<String>>() { });
+        List<String> smallPayload = Arrays.asList("a", "ü");
+        List<String> largePayload = Collections.nCopies(500, "item");
+
+        String smallPointer = typedStore.storeOriginalPayload(smallPayload, serializer).join();
+        String rangedPointer = typedStore.storeOriginalPayload(largePayload, serializer).join();
+        String chunkedPointer = chunkedStore.storeOriginalPayload(largePayload, serializer).join();
+
+        assertEquals(smallPayload, typedStore.getOriginalPayload(smallPointer, serializer).join());
+        assertEquals(largePayload, typedStore.getOriginalPayload(rangedPointer, serializer).join());
+        assertTrue(s3.getRequestCount(InMemoryS3.GET_OBJECT) > 2);
+        assertTrue(PayloadS3Pointer.fromJson(chunkedPointer).isChunked());
+        assertEquals(largePayload, chunkedStore.getOriginalPayload(chunkedPointer, serializer).join());
+
+        CompletionException exception = assertThrows(CompletionException.class,
+            () -> typedStore.getOriginalPayload(smallPointer, in -> {
+                throw new IOException("Not deserializable");
+            }).join());
+        assertTrue(exception.getCause() instanceof SdkException);
+    }
+
+    @Test
+    public void testPayloadHandleSpillsLargePayloadsToDisk(@TempDir Path spillDirectory) throws Exception {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3AsyncDao dao = new S3AsyncDao(new InMemoryS3AsyncClient(s3));
+        S3BackedPayloadStoreAsync spillingStore = new S3BackedPayloadStoreAsync(dao, S3_BUCKET_NAME)
+            .withCompactPointers(true)
+            .withSpillToDisk(1000, spillDirectory);
+        S3BackedPayloadStoreAsync chunkedStore = new S3BackedPayloadStoreAsync(dao, S3_BUCKET_NAME)
+            .withChunkedPayloads(1000, 3)
+            .withSpillToDisk(1000, spillDirectory);
+        String payload = String.join("", Collections.nCopies(500, "spilled-päyload-"));
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+
+        try (PayloadHandle handle = spillingStore.getOriginalPayloadHandle(
+                spillingStore.storeOriginalPayload(ANY_PAYLOAD).join()).join()) {
+            assertFalse(handle.isSpilled());
+            assertEquals(ANY_PAYLOAD, StandardCharsets.UTF_8.decode(handle.getContent()).toString());
+        }
+        for (S3BackedPayloadStoreAsync store : Arrays.asList(spillingStore, chunkedStore)) {
+            PayloadHandle handle = store.getOriginalPayloadHandle(store.storeOriginalPayload(payload).join()).join();
+            assertTrue(handle.isSpilled());
+            assertEquals(payload, StandardCharsets.UTF_8.decode(handle.getContent()).toString());
+            ByteBuffer region = handle.getContent(payloadBytes.length - 100, 100);
+            assertEquals(ByteBuffer.wrap(payloadBytes, payloadBytes.length - 100, 100), region);
+
+            handle.close();
+            assertFalse(Files.exists(handle.getFile()));
+        }
+
+        // A corrupt chunk fails the handle and deletes the file.
+        String pointer = chunkedStore.storeOriginalPayload(payload).join();
+        new S3AsyncDao(new InMemoryS3AsyncClient(s3)).storeTextInS3(S3_BUCKET_NAME,
+            PayloadS3Pointer.fromJson(pointer).getChunkKey(2), String.join("", Collections.nCopies(100, "Corrupted!")))
+            .join();
+        CompletionException exception = assertThrows(CompletionException.class,
+            () -> chunkedStore.getOriginalPayloadHandle(pointer).join());
+        assertTrue(exception.getCause() instanceof SdkException);
+        for (int i = 0; i < 100 && !isEmpty(spillDirectory); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(isEmpty(spillDirectory));
+    }
+
+    private static boolean isEmpty(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return !files.findAny().isPresent();
+        }
+    }
+
+    @Test
+    public void testMemoryBudgetBoundsPayloadsInFlight() {
+        InMemoryS3 s3 = new InMemoryS3();
+        PayloadMemoryBudget memoryBudget = new PayloadMemoryBudget(ANY_PAYLOAD.length())
+            .withMaxWait(Duration.ZERO);
+        S3BackedPayloadStoreAsync budgetedStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(s3)), S3_BUCKET_NAME)
+            .withCompactPointers(true)
+            .withMemoryBudget(memoryBudget);
+        s3.withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(200)));
+
+        CompletableFuture<String> stored = budgetedStore.storeOriginalPayload(ANY_PAYLOAD);
+        CompletionException exception = assertThrows(CompletionException.class,
+            () -> budgetedStore.storeOriginalPayload(ANY_PAYLOAD).join());
+        assertTrue(exception.getCause() instanceof MemoryBudgetExceededException);
+        assertEquals(ANY_PAYLOAD.length(), memoryBudget.getUsedBytes());
+
+        String pointer = stored.join();
+        assertEquals(0, memoryBudget.getUsedBytes());
+        assertEquals(ANY_PAYLOAD, budgetedStore.getOriginalPayload(pointer).join());
+        assertEquals(0, memoryBudget.getUsedBytes());
+        assertEquals(1, s3.getRequestCount(InMemoryS3.PUT_OBJECT));
+    }
+
+    @Test
+    public void testMemoryBudgetReservesReadsOfPointersWithoutSizeByTheirContentLength() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3AsyncDao dao = new S3AsyncDao(new InMemoryS3AsyncClient(s3));
+        String pointer = new S3BackedPayloadStoreAsync(dao, S3_BUCKET_NAME).storeOriginalPayload(ANY_PAYLOAD).join();
+        PayloadMemoryBudget smallBudget = new PayloadMemoryBudget(ANY_PAYLOAD.length() - 1);
+        PayloadMemoryBudget memoryBudget = new PayloadMemoryBudget(ANY_PAYLOAD.length());
+
+        CompletionException exception = assertThrows(CompletionException.class, () ->
+            new S3BackedPayloadStoreAsync(dao, S3_BUCKET_NAME).withMemoryBudget(smallBudget)
+                .getOriginalPayload(pointer).join());
+        assertTrue(exception.getCause() instanceof MemoryBudgetExceededException);
+        assertEquals(1, smallBudget.getRejectedCount());
+
+        assertEquals(ANY_PAYLOAD, new S3BackedPayloadStoreAsync(dao, S3_BUCKET_NAME).withMemoryBudget(memoryBudget)
+            .getOriginalPayload(pointer).join());
+        assertEquals(0, memoryBudget.getUsedBytes());
+        assertEquals(0, memoryBudget.getRejectedCount());
+    }
+
+    @Test
+    public void testMemoryBudgetReservesTheEncodedSizeOfTextPayloads() {
+        PayloadMemoryBudget memoryBudget = new PayloadMemoryBudget("päylöäd".length() + 1)
+            .withMaxWait(Duration.ZERO);
+        PayloadStoreAsync budgetedStore = new S3BackedPayloadStoreAsync(
+            new S3AsyncDao(new InMemoryS3AsyncClient(new InMemoryS3())), S3_BUCKET_NAME)
+            .withMemoryBudget(memoryBudget);
+
+        CompletionException exception = assertThrows(CompletionException.class,
+            () -> budgetedStore.storeOriginalPayload("päylöäd").join());
+        assertTrue(exception.getCause() instanceof MemoryBudgetExceededException);
+        assertEquals("päylöäd".getBytes(StandardCharsets.UTF_8).length,
+            ((MemoryBudgetExceededException) exception.getCause()).getRequestedBytes());
+    }
+
+    private static void awaitAbortedMultipartUpload(InMemoryS3 s3) throws InterruptedException {
+        // The upload is aborted in the background once it was created and its parts in flight finished.
+        for (int i = 0; i < 200 && (s3.getMultipartUploadCount() > 0
+                || s3.getRequestCount(InMemoryS3.ABORT_MULTIPART_UPLOAD) == 0); i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, s3.getRequestCount(InMemoryS3.ABORT_MULTIPART_UPLOAD));
+        assertEquals(0, s3.getMultipartUploadCount());
+    }
+
+    /**
+     * Publishes the given number of 64KB buffers on demand, synchronously, optionally failing at one of them.
+     */
+    private static final class BufferPublisher implements Publisher<ByteBuffer> {
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final int bufferCount;
+        private final int failAt;
+        private final AtomicInteger emitted = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        BufferPublisher(int bufferCount, int failAt) {
+            this.bufferCount = bufferCount;
+            this.failAt = failAt;
+        }
+
+        String content() {
+            StringBuilder sb = new StringBuilder(bufferCount * BUFFER_SIZE);
+            for (int i = 0; i < bufferCount; i++) {
+                sb.append(new String(buffer(i).array(), StandardCharsets.UTF_8));
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    for (long i = 0; i < n && !cancelled; i++) {
+                        int index = emitted.getAndIncrement();
+                        if (index == failAt) {
+                            subscriber.onError(new IOException("Producer failed"));
+                            return;
+                        }
+                        if (index >= bufferCount) {
+                            subscriber.onComplete();
+                            return;
+                        }
+                        subscriber.onNext(buffer(index));
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+
+        private static ByteBuffer buffer(int index) {
+            byte[] content = new byte[BUFFER_SIZE];
+            Arrays.fill(content, (byte) ('a' + index % 26));
+            return ByteBuffer.wrap(content);
+        }
+    }
+
+    private static <T> T assertCompletionThread(T value) {
+        assertEquals("payload-completion", Thread.currentThread().getName());
+        return value;
+    }
+
+    @Test
+    public void testPresignedUrlsOfRoutedPayloads() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3Presigner presigner = S3Presigner.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("akid", "secret")))
+                .build();
+        RoutingPayloadStoreAsync store = new RoutingPayloadStoreAsync().withRoute("standard", Long.MAX_VALUE,
+                new S3BackedPayloadStoreAsync(new S3AsyncDao(new InMemoryS3AsyncClient(s3)).withPresigner(presigner),
+                        S3_BUCKET_NAME));
+        String pointer = store.storeOriginalPayload(ANY_PAYLOAD, ANY_S3_KEY).join();
+
+        List<URL> urls = store.presignGet(Collections.singletonList(pointer), Duration.ofHours(1));
+
+        assertEquals(1, urls.size());
+        assertTrue(urls.get(0).getHost().startsWith(S3_BUCKET_NAME), urls.get(0).toString());
+        assertEquals("/" + ANY_S3_KEY, urls.get(0).getPath());
+        assertExpiresIn(Duration.ofHours(1), urls.get(0));
+        assertThrows(SdkClientException.class, () -> store.presignGet(pointer, Duration.ZERO));
+        presigner.close();
+    }
+
+    /**
+     * The SDK computes the expiry from the signing time, so it can be a second short of the requested duration.
+     */
+    private static void assertExpiresIn(Duration expected, URL url) {
+        long expires = -1;
+        for (String parameter : url.getQuery().split("&")) {
+            if (parameter.startsWith("X-Amz-Expires=")) {
+                expires = Long.parseLong(parameter.substring("X-Amz-Expires=".length()));
+            }
+        }
+        assertTrue(expires >= expected.getSeconds() - 1 && expires <= expected.getSeconds(), url.toString());
+    }
 }
@@ -1,15 +1,45 @@
 package software.amazon.payloadoffloading;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.utils.IoUtils;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
@@ -153,4 +183,468 @@ public class S3BackedPayloadStoreTest {
                 INCORRECT_POINTER_EXCEPTION_MSG);
         verifyNoInteractions(s3Dao);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStoreOriginalPayloadWithCompactPointer() {
+        payloadStore = new S3BackedPayloadStore(s3Dao, S3_BUCKET_NAME).withCompactPointers(true);
+        String actualPayloadPointer = payloadStore.storeOriginalPayload(ANY_PAYLOAD, ANY_S3_KEY);
+
+        verify(s3Dao, times(1)).storeBytesInS3(eq(S3_BUCKET_NAME), eq(ANY_S3_KEY),
+                eq(ANY_PAYLOAD.getBytes(StandardCharsets.UTF_8)));
+
+        PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(actualPayloadPointer);
+        assertEquals(ANY_S3_KEY, pointer.getS3Key());
+        assertEquals(ANY_PAYLOAD.length(), pointer.getPayloadSize());
+        assertEquals(Util.checksum(ANY_PAYLOAD.getBytes(StandardCharsets.UTF_8), 0, ANY_PAYLOAD.length()),
+                pointer.getChecksum());
+    }
+
+    @Test
+    public void testGetOriginalPayloadWithCompactPointer() {
+        PayloadS3Pointer anyPointer = new PayloadS3Pointer(S3_BUCKET_NAME, ANY_S3_KEY, 10, null, "crc32:00000000");
+        when(s3Dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY, 10, "crc32:00000000")).thenReturn(ANY_PAYLOAD);
+
+        assertEquals(ANY_PAYLOAD, payloadStore.getOriginalPayload(anyPointer.toCompactJson()));
+    }
+
+    @Test
+    public void testGetOriginalPayloadWithUnsupportedContentEncoding() {
+        PayloadS3Pointer anyPointer = new PayloadS3Pointer(S3_BUCKET_NAME, ANY_S3_KEY, 10, "br", null);
+
+        assertThrows(SdkClientException.class, () -> payloadStore.getOriginalPayload(anyPointer.toCompactJson()));
+        verifyNoInteractions(s3Dao);
+    }
+
+    @Test
+    public void testCompactPointerRoundTripWithChecksumVerification() {
+        InMemoryS3 s3 = new InMemoryS3();
+        PayloadStore compactStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME)
+                .withCompactPointers(true);
+        String pointer = compactStore.storeOriginalPayload("päylöäd", ANY_S3_KEY);
+
+        assertEquals("päylöäd", compactStore.getOriginalPayload(pointer));
+
+        new S3Dao(new InMemoryS3Client(s3)).storeTextInS3(S3_BUCKET_NAME, ANY_S3_KEY, "pöylöäd");
+        assertThrows(SdkClientException.class, () -> compactStore.getOriginalPayload(pointer));
+    }
+
+    @Test
+    public void testLifecycleExpiryByTagSkipsDelete() {
+        InMemoryS3 s3 = new InMemoryS3();
+        PayloadStore expiringStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME)
+                .withLifecycleExpiry(LifecycleExpiry.byTag(3));
+        String pointer = expiringStore.storeOriginalPayload(ANY_PAYLOAD, ANY_S3_KEY);
+
+        assertEquals(LifecycleExpiry.DEFAULT_TAG_KEY + "=3d", s3.getObjectTagging(S3_BUCKET_NAME, ANY_S3_KEY));
+
+        expiringStore.deleteOriginalPayload(pointer);
+        assertEquals(0, s3.getRequestCount(InMemoryS3.DELETE_OBJECT));
+        assertEquals(ANY_PAYLOAD, expiringStore.getOriginalPayload(pointer));
+    }
+
+    @Test
+    public void testLifecycleExpiryByPrefix() {
+        InMemoryS3 s3 = new InMemoryS3();
+        PayloadStore expiringStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME)
+                .withLifecycleExpiry(LifecycleExpiry.byPrefix("expiring/", 1));
+        String pointer = expiringStore.storeOriginalPayload(ANY_PAYLOAD, ANY_S3_KEY);
+
+        String s3Key = PayloadS3Pointer.fromJson(pointer).getS3Key();
+        assertTrue(s3Key.matches("expiring/\\d{4}/\\d{2}/\\d{2}/" + ANY_S3_KEY));
+        assertEquals(ANY_PAYLOAD, expiringStore.getOriginalPayload(pointer));
+        expiringStore.deleteOriginalPayload(pointer);
+        assertEquals(0, s3.getRequestCount(InMemoryS3.DELETE_OBJECT));
+    }
+
+    @Test
+    public void testLifecycleExpiryByPrefixDeletesPayloadsStoredOutsideThePrefix() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3Dao dao = new S3Dao(new InMemoryS3Client(s3));
+        String pointer = new S3BackedPayloadStore(dao, S3_BUCKET_NAME).storeOriginalPayload(ANY_PAYLOAD, ANY_S3_KEY);
+        PayloadStore expiringStore = new S3BackedPayloadStore(dao, S3_BUCKET_NAME)
+                .withLifecycleExpiry(LifecycleExpiry.byPrefix("expiring/", 1));
+
+        expiringStore.deleteOriginalPayload(pointer);
+
+        assertEquals(1, s3.getRequestCount(InMemoryS3.DELETE_OBJECT));
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testOperationTimeout() {
+        InMemoryS3 s3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(300)));
+        S3BackedPayloadStore slowStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME)
+                .withOperationTimeout(OperationTimeout.fixed(Duration.ofMillis(50)));
+
+        PayloadTimeoutException exception = assertThrows(PayloadTimeoutException.class,
+                () -> slowStore.storeOriginalPayload(ANY_PAYLOAD, ANY_S3_KEY));
+        assertEquals(Duration.ofMillis(50), exception.getTimeout());
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+
+        String pointer = slowStore.storeOriginalPayload(ANY_PAYLOAD, ANY_S3_KEY, Duration.ofSeconds(5));
+        assertThrows(PayloadTimeoutException.class, () -> slowStore.getOriginalPayload(pointer));
+        assertEquals(ANY_PAYLOAD, slowStore.getOriginalPayload(pointer, Duration.ofSeconds(5)));
+    }
+
+    @Test
+    public void testChunkedPayloadRoundTrip() throws Exception {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStore chunkedStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME)
+                .withChunkedPayloads(1000, 3);
+        String payload = repeat("päylöäd-", 1000);
+
+        String pointer = chunkedStore.storeOriginalPayload(payload);
+
+        PayloadS3Pointer manifest = PayloadS3Pointer.fromJson(pointer);
+        assertTrue(manifest.isChunked());
+        assertEquals(manifest.getChunkCount(), s3.getObjectCount(S3_BUCKET_NAME));
+        assertEquals(payload, chunkedStore.getOriginalPayload(pointer));
+        try (InputStream stream = chunkedStore.getOriginalPayloadStream(pointer)) {
+            assertEquals(payload, IoUtils.toUtf8String(stream));
+        }
+
+        chunkedStore.deleteOriginalPayload(pointer);
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+        assertEquals(1, s3.getRequestCount(InMemoryS3.DELETE_OBJECTS));
+    }
+
+    @Test
+    public void testChunkedPayloadStreamsShareTheRequestThreads() throws Exception {
+        S3BackedPayloadStore chunkedStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(new InMemoryS3())),
+                S3_BUCKET_NAME).withChunkedPayloads(1000, 3);
+        String payload = repeat("päylöäd-", 1000);
+        String pointer = chunkedStore.storeOriginalPayload(payload);
+        int threadCount = Thread.activeCount();
+
+        // Read to the end without being closed.
+        for (int i = 0; i < 20; i++) {
+            assertEquals(payload, IoUtils.toUtf8String(chunkedStore.getOriginalPayloadStream(pointer)));
+        }
+
+        assertTrue(Thread.activeCount() - threadCount < 20);
+    }
+
+    @Test
+    public void testSerializedPayloadRoundTrip() throws IOException {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStore typedStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)),
+                S3_BUCKET_NAME).withCompactPointers(true).withChunkedPayloads(1000, 2);
+        ObjectMapper objectMapper = new ObjectMapper();
+        JacksonPayloadSerializer<Map<String, List<String>>> serializer = new JacksonPayloadSerializer<>(
+                objectMapper, new TypeReference<Map<String, List<String>>>() { });
+        Map<String, List<String>> smallPayload = Collections.singletonMap("items", Arrays.asList("a", "ü"));
+        Map<String, List<String>> largePayload = Collections.singletonMap("items",
+                Collections.nCopies(500, "item"));
+
+        String smallPointer = typedStore.storeOriginalPayload(smallPayload, serializer);
+        String largePointer = typedStore.storeOriginalPayload(largePayload, serializer);
+
+        assertFalse(PayloadS3Pointer.fromJson(smallPointer).isChunked());
+        assertTrue(PayloadS3Pointer.fromJson(largePointer).isChunked());
+        assertEquals(smallPayload, typedStore.getOriginalPayload(smallPointer, serializer));
+        assertEquals(largePayload, typedStore.getOriginalPayload(largePointer, serializer));
+        assertEquals(objectMapper.writeValueAsString(smallPayload), typedStore.getOriginalPayload(smallPointer));
+    }
+
+    @Test
+    public void testSerializedPayloadIsVerifiedAgainstPointer() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStore typedStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)),
+                S3_BUCKET_NAME).withCompactPointers(true);
+        String pointer = typedStore.storeOriginalPayload(ANY_PAYLOAD,
+                (payload, out) -> out.write(payload.getBytes(StandardCharsets.UTF_8)));
+        PayloadS3Pointer s3Pointer = PayloadS3Pointer.fromJson(pointer);
+        new InMemoryS3Client(s3).putObject(PutObjectRequest.builder().bucket(S3_BUCKET_NAME)
+                .key(s3Pointer.getS3Key()).build(), RequestBody.fromString("AnyPayloaD"));
+
+        // The deserializer reads only a prefix, but the whole object is verified.
+        assertThrows(SdkClientException.class, () -> typedStore.getOriginalPayload(pointer, in -> in.read()));
+        assertThrows(SdkClientException.class, () -> typedStore.storeOriginalPayload(ANY_PAYLOAD, (payload, out) -> {
+            throw new IOException("Not serializable");
+        }));
+        assertEquals(1, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testStoreOriginalPayloadFromStream() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStore streamingStore = new S3BackedPayloadStore(
+                new S3Dao(new InMemoryS3Client(s3)).withMultipartPartSize(5 * 1024 * 1024), S3_BUCKET_NAME)
+                .withCompactPointers(true);
+        String largePayload = repeat("streamed-payload-", 700_000);
+
+        String pointer = streamingStore.storeOriginalPayload(
+                new ByteArrayInputStream(largePayload.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(3, s3.getRequestCount(InMemoryS3.UPLOAD_PART));
+        assertEquals(0, s3.getMultipartUploadCount());
+        assertEquals(largePayload.length(), PayloadS3Pointer.fromJson(pointer).getPayloadSize());
+        assertEquals(largePayload, streamingStore.getOriginalPayload(pointer));
+
+        String smallPointer = streamingStore.storeOriginalPayload(
+                new ByteArrayInputStream(ANY_PAYLOAD.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, s3.getRequestCount(InMemoryS3.CREATE_MULTIPART_UPLOAD));
+        assertEquals(ANY_PAYLOAD, streamingStore.getOriginalPayload(smallPointer));
+    }
+
+    @Test
+    public void testFailedStreamAbortsMultipartUpload() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStore streamingStore = new S3BackedPayloadStore(
+                new S3Dao(new InMemoryS3Client(s3)).withMultipartPartSize(5 * 1024 * 1024), S3_BUCKET_NAME);
+        InputStream failingStream = new InputStream() {
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                if (position++ >= 7 * 1024 * 1024) {
+                    throw new IOException("Producer failed");
+                }
+                return 'x';
+            }
+        };
+
+        assertThrows(SdkClientException.class, () -> streamingStore.storeOriginalPayload(failingStream));
+
+        assertEquals(1, s3.getRequestCount(InMemoryS3.UPLOAD_PART));
+        assertEquals(1, s3.getRequestCount(InMemoryS3.ABORT_MULTIPART_UPLOAD));
+        assertEquals(0, s3.getMultipartUploadCount());
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testStoreChunkedPayloadFromStream() throws Exception {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStore chunkedStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME)
+                .withChunkedPayloads(1000, 2);
+
+        for (int size : new int[] {0, 999, 1000, 3000, 3001}) {
+            byte[] payload = new byte[size];
+            new Random(size).nextBytes(payload);
+
+            String pointer = chunkedStore.storeChunkedPayload(new ByteArrayInputStream(payload));
+
+            PayloadS3Pointer manifest = PayloadS3Pointer.fromJson(pointer);
+            assertEquals(size, manifest.getPayloadSize());
+            assertEquals(Math.max(1, (size + 999) / 1000), manifest.getChunkCount());
+            try (InputStream stream = chunkedStore.getOriginalPayloadStream(pointer)) {
+                assertArrayEquals(payload, IoUtils.toByteArray(stream));
+            }
+            chunkedStore.deleteOriginalPayload(pointer);
+        }
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testFailedChunkedStoreDeletesChunksStillUploading() {
+        InMemoryS3 s3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(50)));
+        S3BackedPayloadStore chunkedStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME)
+                .withChunkedPayloads(1000, 3);
+        // Fails without latency while the other two chunks of the first round are uploading.
+        s3.failNext(InMemoryS3.PUT_OBJECT, SdkClientException.create("Connection reset"));
+
+        assertThrows(SdkException.class, () -> chunkedStore.storeOriginalPayload(repeat("AnyPayload", 500)));
+
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testChunkedPayloadFailsOnCorruptChunk() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStore chunkedStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME)
+                .withChunkedPayloads(1000, 2);
+        String pointer = chunkedStore.storeOriginalPayload(repeat("AnyPayload", 500));
+        new S3Dao(new InMemoryS3Client(s3)).storeTextInS3(S3_BUCKET_NAME,
+                PayloadS3Pointer.fromJson(pointer).getChunkKey(3), repeat("Corrupted!", 100));
+
+        assertThrows(SdkClientException.class, () -> chunkedStore.getOriginalPayload(pointer));
+    }
+
+    @Test
+    public void testPayloadHandleSpillsLargePayloadsToDisk(@TempDir Path spillDirectory) throws Exception {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3Dao dao = new S3Dao(new InMemoryS3Client(s3));
+        S3BackedPayloadStore spillingStore = new S3BackedPayloadStore(dao, S3_BUCKET_NAME)
+                .withCompactPointers(true).withSpillToDisk(1000, spillDirectory);
+        S3BackedPayloadStore chunkedStore = new S3BackedPayloadStore(dao, S3_BUCKET_NAME)
+                .withChunkedPayloads(1000, 2).withSpillToDisk(1000, spillDirectory);
+        byte[] payload = repeat("spilled-päyload-", 500).getBytes(StandardCharsets.UTF_8);
+
+        try (PayloadHandle handle = spillingStore.getOriginalPayloadHandle(
+                spillingStore.storeOriginalPayload(ANY_PAYLOAD))) {
+            assertFalse(handle.isSpilled());
+            assertEquals(ANY_PAYLOAD, StandardCharsets.UTF_8.decode(handle.getContent()).toString());
+        }
+
+        String pointer = spillingStore.storeOriginalPayload(new String(payload, StandardCharsets.UTF_8));
+        PayloadHandle handle = spillingStore.getOriginalPayloadHandle(pointer);
+        assertTrue(handle.isSpilled());
+        assertEquals(payload.length, handle.getSize());
+        assertArrayEquals(payload, toArray(handle.getContent()));
+        assertArrayEquals(Arrays.copyOfRange(payload, 1000, 1100), toArray(handle.getContent(1000, 100)));
+        try (InputStream stream = handle.openStream()) {
+            assertArrayEquals(payload, IoUtils.toByteArray(stream));
+        }
+        assertTrue(Files.exists(handle.getFile()));
+
+        handle.close();
+        assertFalse(Files.exists(handle.getFile()));
+        assertThrows(IllegalStateException.class, handle::getContent);
+
+        // Chunks are streamed into the file, and payloads of unknown size are always spilled.
+        for (S3BackedPayloadStore store : Arrays.asList(chunkedStore, new S3BackedPayloadStore(dao, S3_BUCKET_NAME)
+                .withSpillToDisk(1000, spillDirectory))) {
+            try (PayloadHandle spilled = store.getOriginalPayloadHandle(
+                    store.storeOriginalPayload(new String(payload, StandardCharsets.UTF_8)))) {
+                assertTrue(spilled.isSpilled());
+                assertArrayEquals(payload, toArray(spilled.getContent()));
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory)) {
+            assertFalse(files.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void testFailedSpillDeletesItsFile(@TempDir Path spillDirectory) throws IOException {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStore spillingStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)),
+                S3_BUCKET_NAME).withCompactPointers(true).withSpillToDisk(0, spillDirectory);
+        String pointer = spillingStore.storeOriginalPayload(ANY_PAYLOAD);
+        new InMemoryS3Client(s3).putObject(PutObjectRequest.builder().bucket(S3_BUCKET_NAME)
+                .key(PayloadS3Pointer.fromJson(pointer).getS3Key()).build(), RequestBody.fromString("AnyPayloaD"));
+
+        assertThrows(SdkClientException.class, () -> spillingStore.getOriginalPayloadHandle(pointer));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory)) {
+            assertFalse(files.iterator().hasNext());
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder sb = new StringBuilder(s.length() * count);
+        for (int i = 0; i < count; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testPointerCacheParsesPointerOnce() {
+        PayloadS3PointerCache pointerCache = new PayloadS3PointerCache(100);
+        payloadStore = new S3BackedPayloadStore(s3Dao, S3_BUCKET_NAME).withPointerCache(pointerCache);
+        String pointer = new PayloadS3Pointer(S3_BUCKET_NAME, ANY_S3_KEY).toJson();
+        when(s3Dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY)).thenReturn(ANY_PAYLOAD);
+
+        assertEquals(ANY_PAYLOAD, payloadStore.getOriginalPayload(pointer));
+        assertEquals(ANY_PAYLOAD, payloadStore.getOriginalPayload(pointer));
+        payloadStore.deleteOriginalPayload(pointer);
+
+        verify(s3Dao, times(1)).deletePayloadFromS3(S3_BUCKET_NAME, ANY_S3_KEY);
+        assertEquals(1, pointerCache.getMissCount());
+        assertEquals(2, pointerCache.getHitCount());
+    }
+
+    @Test
+    public void testWarmUpOpensConnections() {
+        InMemoryS3 s3 = new InMemoryS3()
+                .failNext(InMemoryS3.HEAD_BUCKET, InMemoryS3.s3Exception(403, "AccessDenied", "Injected"));
+        S3BackedPayloadStore warmStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME);
+
+        Duration duration = warmStore.warmUpInBackground(4, ForkJoinPool.commonPool()).join();
+
+        assertFalse(duration.isNegative());
+        assertEquals(4, s3.getRequestCount(InMemoryS3.HEAD_BUCKET));
+        assertEquals(0, s3.getObjectCount(S3_BUCKET_NAME));
+    }
+
+    @Test
+    public void testWarmUpOpensAtMostTheDefaultMaximumOfConnections() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3BackedPayloadStore warmStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME);
+
+        warmStore.warmUp(10_000);
+
+        assertEquals(50, s3.getRequestCount(InMemoryS3.HEAD_BUCKET));
+    }
+
+    @Test
+    public void testMemoryBudgetReservesReadsOfPointersWithoutSizeByTheirContentLength() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3Dao dao = new S3Dao(new InMemoryS3Client(s3));
+        String pointer = new S3BackedPayloadStore(dao, S3_BUCKET_NAME).storeOriginalPayload(ANY_PAYLOAD);
+        PayloadMemoryBudget smallBudget = new PayloadMemoryBudget(ANY_PAYLOAD.length() - 1);
+        PayloadMemoryBudget memoryBudget = new PayloadMemoryBudget(ANY_PAYLOAD.length());
+
+        assertThrows(MemoryBudgetExceededException.class, () -> new S3BackedPayloadStore(dao, S3_BUCKET_NAME)
+                .withMemoryBudget(smallBudget).getOriginalPayload(pointer));
+        assertEquals(1, smallBudget.getRejectedCount());
+
+        assertEquals(ANY_PAYLOAD, new S3BackedPayloadStore(dao, S3_BUCKET_NAME).withMemoryBudget(memoryBudget)
+                .getOriginalPayload(pointer));
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
+    @Test
+    public void testMemoryBudgetReservesTheEncodedSizeOfTextPayloads() {
+        PayloadMemoryBudget memoryBudget = new PayloadMemoryBudget("päylöäd".length() + 1)
+                .withMaxWait(Duration.ZERO);
+        PayloadStore budgetedStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(new InMemoryS3())),
+                S3_BUCKET_NAME).withMemoryBudget(memoryBudget);
+
+        MemoryBudgetExceededException exception = assertThrows(MemoryBudgetExceededException.class,
+                () -> budgetedStore.storeOriginalPayload("päylöäd"));
+        assertEquals("päylöäd".getBytes(StandardCharsets.UTF_8).length, exception.getRequestedBytes());
+    }
+
+    @Test
+    public void testPresignedUrlsAreSignedLocally() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3Presigner presigner = S3Presigner.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("akid", "secret")))
+                .build();
+        S3BackedPayloadStore store = new S3BackedPayloadStore(
+                new S3Dao(new InMemoryS3Client(s3)).withPresigner(presigner), S3_BUCKET_NAME);
+        String pointer = store.storeOriginalPayload(ANY_PAYLOAD, ANY_S3_KEY);
+        long requestCount = s3.getRequestCount(InMemoryS3.GET_OBJECT);
+
+        URL url = store.presignGet(pointer, Duration.ofMinutes(10));
+
+        assertTrue(url.getHost().startsWith(S3_BUCKET_NAME), url.toString());
+        assertEquals("/" + ANY_S3_KEY, url.getPath());
+        assertExpiresIn(Duration.ofMinutes(10), url);
+        assertTrue(url.getQuery().contains("X-Amz-Signature="), url.toString());
+        assertEquals(requestCount, s3.getRequestCount(InMemoryS3.GET_OBJECT));
+
+        List<URL> urls = store.presignGet(Arrays.asList(pointer, pointer), Duration.ofMinutes(10));
+        assertEquals(Arrays.asList(url.getPath(), url.getPath()), Arrays.asList(urls.get(0).getPath(),
+                urls.get(1).getPath()));
+
+        assertThrows(SdkClientException.class, () -> store.presignGet(pointer, Duration.ofDays(8)));
+        assertThrows(SdkClientException.class, () -> new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)),
+                S3_BUCKET_NAME).presignGet(pointer, Duration.ofMinutes(10)));
+        String manifest = new PayloadS3Pointer(S3_BUCKET_NAME, ANY_S3_KEY, 10, 5,
+                Arrays.asList("crc32:00000001", "crc32:00000002")).toCompactJson();
+        assertThrows(SdkClientException.class, () -> store.presignGet(manifest, Duration.ofMinutes(10)));
+        presigner.close();
+    }
+
+    /**
+     * The SDK computes the expiry from the signing time, so it can be a second short of the requested duration.
+     */
+    private static void assertExpiresIn(Duration expected, URL url) {
+        long expires = -1;
+        for (String parameter : url.getQuery().split("&")) {
+            if (parameter.startsWith("X-Amz-Expires=")) {
+                expires = Long.parseLong(parameter.substring("X-Amz-Expires=".length()));
+            }
+        }
+        assertTrue(expires >= expected.getSeconds() - 1 && expires <= expected.getSeconds(), url.toString());
+    }
+}
@@ -0,0 +1,153 @@
+package software.amazon.payloadoffloading;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class S3CircuitBreakerTest {
+    private static final String S3_BUCKET_NAME = "test-bucket-name";
+    private static final S3CircuitBreaker.Operation GET = S3CircuitBreaker.Operation.GET;
+
+    private final AtomicLong nanoClock = new AtomicLong();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private S3CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    public void setup() {
+        circuitBreaker = new S3CircuitBreaker(nanoClock::get)
+                .withFailureRateThreshold(0.5)
+                .withWindow(4, 4)
+                .withOpenDuration(Duration.ofSeconds(10))
+                .withHalfOpenCalls(2);
+    }
+
+    @Test
+    public void testOpensOnFailureRateAndFailsFast() {
+        succeed();
+        fail(serverError());
+        succeed();
+        assertEquals(S3CircuitBreaker.State.CLOSED, circuitBreaker.getState(S3_BUCKET_NAME, GET));
+        fail(serverError());
+        assertEquals(S3CircuitBreaker.State.OPEN, circuitBreaker.getState(S3_BUCKET_NAME, GET));
+
+        CircuitBreakerOpenException e = assertThrows(CircuitBreakerOpenException.class, this::succeed);
+        assertEquals(S3_BUCKET_NAME, e.getS3BucketName());
+        assertEquals(GET, e.getOperation());
+        assertEquals(4, requestCount.get());
+        assertEquals(1, circuitBreaker.getOpenedCount());
+        assertEquals(1, circuitBreaker.getRejectedCallCount());
+
+        // Other operations and buckets have circuits of their own.
+        assertEquals(S3CircuitBreaker.State.CLOSED,
+                circuitBreaker.getState(S3_BUCKET_NAME, S3CircuitBreaker.Operation.PUT));
+        circuitBreaker.call("other-bucket", GET, () -> null);
+    }
+
+    @Test
+    public void testRejectedRequestsDoNotCountAsFailures() {
+        for (int i = 0; i < 8; i++) {
+            fail(NoSuchKeyException.builder().statusCode(404).message("Not found").build());
+        }
+        assertEquals(S3CircuitBreaker.State.CLOSED, circuitBreaker.getState(S3_BUCKET_NAME, GET));
+
+        assertTrue(S3CircuitBreaker.isFailure(SdkClientException.create("Failed", serverError())));
+        assertTrue(S3CircuitBreaker.isFailure(S3Exception.builder().statusCode(503).message("Slow Down").build()));
+        assertTrue(S3CircuitBreaker.isFailure(SdkClientException.create("Unable to execute HTTP request")));
+        assertFalse(S3CircuitBreaker.isFailure(S3Exception.builder().statusCode(403).message("Denied").build()));
+    }
+
+    @Test
+    public void testHalfOpenProbesCloseOrReopenTheCircuit() {
+        open();
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        // Only the configured number of probes are let through, and one failed probe opens the circuit again.
+        CompletableFuture<Object> probe = new CompletableFuture<>();
+        circuitBreaker.callAsync(S3_BUCKET_NAME, GET, () -> probe);
+        assertEquals(S3CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState(S3_BUCKET_NAME, GET));
+        succeed();
+        assertThrows(CircuitBreakerOpenException.class, this::succeed);
+        probe.completeExceptionally(serverError());
+        assertEquals(S3CircuitBreaker.State.OPEN, circuitBreaker.getState(S3_BUCKET_NAME, GET));
+        assertEquals(2, circuitBreaker.getOpenedCount());
+
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        succeed();
+        succeed();
+        assertEquals(S3CircuitBreaker.State.CLOSED, circuitBreaker.getState(S3_BUCKET_NAME, GET));
+    }
+
+    @Test
+    public void testCancelledProbeReleasesItsPermit() {
+        open();
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        CompletableFuture<Object> first = new CompletableFuture<>();
+        CompletableFuture<Object> second = new CompletableFuture<>();
+        circuitBreaker.callAsync(S3_BUCKET_NAME, GET, () -> first);
+        circuitBreaker.callAsync(S3_BUCKET_NAME, GET, () -> second);
+        CompletableFuture<Object> rejected = circuitBreaker.callAsync(S3_BUCKET_NAME, GET, CompletableFuture::new);
+        CompletionException e = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(CircuitBreakerOpenException.class, e.getCause());
+
+        first.cancel(true);
+        second.complete(null);
+        succeed();
+        assertEquals(S3CircuitBreaker.State.CLOSED, circuitBreaker.getState(S3_BUCKET_NAME, GET));
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() {
+        circuitBreaker.withSlowCallThreshold(Duration.ofSeconds(2), 0.75);
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.call(S3_BUCKET_NAME, GET, () -> nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(3)));
+        }
+        succeed();
+        assertEquals(S3CircuitBreaker.State.OPEN, circuitBreaker.getState(S3_BUCKET_NAME, GET));
+    }
+
+    @Test
+    public void testInvalidSettings() {
+        assertThrows(SdkClientException.class, () -> circuitBreaker.withFailureRateThreshold(0));
+        assertThrows(SdkClientException.class, () -> circuitBreaker.withWindow(4, 5));
+        assertThrows(SdkClientException.class, () -> circuitBreaker.withOpenDuration(Duration.ZERO));
+        assertThrows(SdkClientException.class, () -> circuitBreaker.withHalfOpenCalls(0));
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            fail(serverError());
+        }
+        assertEquals(S3CircuitBreaker.State.OPEN, circuitBreaker.getState(S3_BUCKET_NAME, GET));
+    }
+
+    private void succeed() {
+        circuitBreaker.call(S3_BUCKET_NAME, GET, requestCount::incrementAndGet);
+    }
+
+    private void fail(RuntimeException failure) {
+        assertThrows(failure.getClass(), () -> circuitBreaker.call(S3_BUCKET_NAME, GET, () -> {
+            requestCount.incrementAndGet();
+            throw failure;
+        }));
+    }
+
+    private static S3Exception serverError() {
+        return (S3Exception) S3Exception.builder().statusCode(500).message("Internal Error").build();
+    }
+}
@@ -1,5 +1,6 @@
 package software.amazon.payloadoffloading;
 
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
@@ -7,16 +8,22 @@ import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+
 import org.mockito.ArgumentCaptor;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.ServerSideEncryption;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class S3DaoTest {
 
@@ -75,4 +82,73 @@ public class S3DaoTest {
         assertEquals(objectCannedACL, argument.getValue().acl());
         assertEquals(S3_BUCKET_NAME, argument.getValue().bucket());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void storeTextInS3FailsFastWhileCircuitIsOpen() {
+        S3CircuitBreaker circuitBreaker = new S3CircuitBreaker().withWindow(2, 2);
+        dao = new S3Dao(s3Client).withCircuitBreaker(circuitBreaker);
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().statusCode(503).message("Slow Down").build());
+
+        assertThrows(SdkException.class, () -> dao.storeTextInS3(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD));
+        assertThrows(SdkException.class, () -> dao.storeTextInS3(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD));
+        assertThrows(CircuitBreakerOpenException.class,
+                () -> dao.storeTextInS3(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD));
+
+        verify(s3Client, times(2)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        assertEquals(S3CircuitBreaker.State.OPEN,
+                circuitBreaker.getState(S3_BUCKET_NAME, S3CircuitBreaker.Operation.PUT));
+    }
+
+    @Test
+    public void testReadsGoToTheFastestReplicaAndFallBackToTheSource() {
+        InMemoryS3 sourceS3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(20)));
+        InMemoryS3 replicaS3 = new InMemoryS3();
+        S3Dao replicaDao = new S3Dao(new InMemoryS3Client(replicaS3));
+        dao = new S3Dao(new InMemoryS3Client(sourceS3))
+                .withReadReplica(S3_BUCKET_NAME, "replica-bucket-name", new InMemoryS3Client(replicaS3));
+        dao.storeTextInS3(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD);
+        replicaDao.storeTextInS3("replica-bucket-name", ANY_S3_KEY, ANY_PAYLOAD);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(ANY_PAYLOAD, dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY));
+        }
+        // Both buckets are measured once, then the replica is the fastest.
+        assertEquals(1, sourceS3.getRequestCount(InMemoryS3.GET_OBJECT));
+        assertEquals(9, replicaS3.getRequestCount(InMemoryS3.GET_OBJECT));
+        assertTrue(dao.getReadLatency(S3_BUCKET_NAME).compareTo(dao.getReadLatency("replica-bucket-name")) > 0);
+
+        // Not replicated yet.
+        dao.storeTextInS3(S3_BUCKET_NAME, "new-key", ANY_PAYLOAD);
+        assertEquals(ANY_PAYLOAD, dao.getTextFromS3(S3_BUCKET_NAME, "new-key"));
+        assertEquals(2, sourceS3.getRequestCount(InMemoryS3.GET_OBJECT));
+        assertEquals(10, replicaS3.getRequestCount(InMemoryS3.GET_OBJECT));
+
+        assertThrows(SdkException.class, () -> dao.getTextFromS3(S3_BUCKET_NAME, "missing-key"));
+        assertThrows(SdkException.class,
+                () -> dao.withReadReplica(S3_BUCKET_NAME, S3_BUCKET_NAME, new InMemoryS3Client(replicaS3)));
+    }
+
+    @Test
+    public void testReadsOfAFailingReplicaFallBackToTheSourceAndStopGoingToIt() {
+        InMemoryS3 sourceS3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(20)));
+        InMemoryS3 replicaS3 = new InMemoryS3().withErrorRate(1);
+        dao = new S3Dao(new InMemoryS3Client(sourceS3))
+                .withReadReplica(S3_BUCKET_NAME, "replica-bucket-name", new InMemoryS3Client(replicaS3));
+        dao.storeTextInS3(S3_BUCKET_NAME, ANY_S3_KEY, ANY_PAYLOAD);
+
+        for (int i = 0; i < ReadReplicas.PROBE_INTERVAL - 1; i++) {
+            assertEquals(ANY_PAYLOAD, dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY));
+        }
+        // The replica never succeeded, it is tried once and then penalized.
+        assertEquals(1, replicaS3.getRequestCount(InMemoryS3.GET_OBJECT));
+        assertEquals(ReadReplicas.PROBE_INTERVAL - 1, sourceS3.getRequestCount(InMemoryS3.GET_OBJECT));
+        assertTrue(dao.getReadLatency("replica-bucket-name").compareTo(dao.getReadLatency(S3_BUCKET_NAME)) > 0);
+
+        // The probe goes to the replica, fails again and falls back.
+        assertEquals(ANY_PAYLOAD, dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY));
+        assertEquals(2, replicaS3.getRequestCount(InMemoryS3.GET_OBJECT));
+        assertEquals(ANY_PAYLOAD, dao.getTextFromS3(S3_BUCKET_NAME, ANY_S3_KEY));
+        assertEquals(2, replicaS3.getRequestCount(InMemoryS3.GET_OBJECT));
+    }
+}
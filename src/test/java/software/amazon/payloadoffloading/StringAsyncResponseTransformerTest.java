@@ -0,0 +1,146 @@
+package software.amazon.payloadoffloading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.utils.async.SimplePublisher;
+
+public class StringAsyncResponseTransformerTest {
+    private ByteArrayPool pool;
+    private StringAsyncResponseTransformer transformer;
+
+    @BeforeEach
+    public void setup() {
+        pool = new ByteArrayPool(16 * 1024 * 1024);
+        transformer = new StringAsyncResponseTransformer(pool, null, null);
+    }
+
+    @Test
+    public void testAsciiPayloadInChunks() {
+        String payload = repeat("AnyPayload", 20_000);
+
+        assertEquals(payload, transform(payload.getBytes(StandardCharsets.UTF_8), true, 7_000));
+        assertEquals(262144, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testMultiByteCharactersSplitAcrossChunks() {
+        String payload = repeat("päylöäd-€-😀", 10_000);
+
+        assertEquals(payload, transform(payload.getBytes(StandardCharsets.UTF_8), true, 4_099));
+    }
+
+    @Test
+    public void testUnknownContentLengthGrowsBuffer() {
+        String payload = repeat("AnyPayload", 50_000);
+
+        assertEquals(payload, transform(payload.getBytes(StandardCharsets.UTF_8), false, 10_000));
+    }
+
+    @Test
+    public void testEmptyPayload() {
+        assertEquals("", transform(new byte[0], true, 1));
+    }
+
+    @Test
+    public void testStreamErrorReleasesBuffer() {
+        CompletableFuture<String> result = transformer.prepare();
+        transformer.onResponse(GetObjectResponse.builder().contentLength(100_000L).build());
+        SimplePublisher<ByteBuffer> publisher = new SimplePublisher<>();
+        transformer.onStream(SdkPublisher.adapt(publisher));
+        publisher.send(ByteBuffer.wrap(new byte[1000]));
+        publisher.error(SdkClientException.create("Connection reset"));
+
+        assertThrows(CompletionException.class, result::join);
+        assertEquals(131072, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testCancelReleasesBufferAndIgnoresLaterChunks() {
+        CompletableFuture<String> result = transformer.prepare();
+        transformer.onResponse(GetObjectResponse.builder().contentLength(100_000L).build());
+        SimplePublisher<ByteBuffer> publisher = new SimplePublisher<>();
+        transformer.onStream(SdkPublisher.adapt(publisher));
+        publisher.send(ByteBuffer.wrap(new byte[1000]));
+
+        result.cancel(true);
+        assertEquals(131072, pool.getPooledBytes());
+
+        publisher.send(ByteBuffer.wrap(new byte[1000]));
+        publisher.complete();
+        assertThrows(CancellationException.class, result::join);
+        assertEquals(131072, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testBuffersAreReused() {
+        byte[] payload = repeat("AnyPayload", 10_000).getBytes(StandardCharsets.UTF_8);
+        transform(payload, true, payload.length);
+        long pooled = pool.getPooledBytes();
+
+        transform(payload, true, payload.length);
+
+        assertEquals(pooled, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testDecodesOnExecutor() {
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "decoder"));
+        try {
+            transformer = new StringAsyncResponseTransformer(pool, null, executor);
+            AtomicReference<String> decodingThread = new AtomicReference<>();
+            CompletableFuture<String> result = transformer.prepare()
+                    .thenApply(text -> {
+                        decodingThread.set(Thread.currentThread().getName());
+                        return text;
+                    });
+            transformer.onResponse(GetObjectResponse.builder().contentLength(10L).build());
+            SimplePublisher<ByteBuffer> publisher = new SimplePublisher<>();
+            transformer.onStream(SdkPublisher.adapt(publisher));
+            publisher.send(ByteBuffer.wrap("AnyPayload".getBytes(StandardCharsets.UTF_8)));
+            publisher.complete();
+
+            assertEquals("AnyPayload", result.join());
+            assertEquals("decoder", decodingThread.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String transform(byte[] content, boolean withContentLength, int chunkSize) {
+        CompletableFuture<String> result = transformer.prepare();
+        GetObjectResponse.Builder response = GetObjectResponse.builder();
+        if (withContentLength) {
+            response.contentLength((long) content.length);
+        }
+        transformer.onResponse(response.build());
+        SimplePublisher<ByteBuffer> publisher = new SimplePublisher<>();
+        transformer.onStream(SdkPublisher.adapt(publisher));
+        for (int offset = 0; offset < content.length; offset += chunkSize) {
+            publisher.send(ByteBuffer.wrap(content, offset, Math.min(chunkSize, content.length - offset)));
+        }
+        publisher.complete();
+        return result.join();
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder sb = new StringBuilder(s.length() * count);
+        for (int i = 0; i < count; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
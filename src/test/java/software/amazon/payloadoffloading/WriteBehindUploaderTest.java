@@ -0,0 +1,170 @@
+package software.amazon.payloadoffloading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+public class WriteBehindUploaderTest {
+    private static final String S3_BUCKET_NAME = "test-bucket-name";
+    private static final String ANY_PAYLOAD = "AnyPayload";
+
+    private InMemoryS3 s3;
+    private WriteBehindUploader uploader;
+
+    @BeforeEach
+    public void setup() {
+        s3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(20)));
+        uploader = new WriteBehindUploader(4, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        uploader.close();
+    }
+
+    @Test
+    public void testPointersAreReturnedBeforeTheUploads() {
+        PayloadStore payloadStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME)
+                .withCompactPointers(true)
+                .withWriteBehind(uploader);
+
+        List<String> pointers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            pointers.add(payloadStore.storeOriginalPayload(ANY_PAYLOAD + i));
+        }
+        uploader.flush();
+
+        assertEquals(0, uploader.getPendingCount());
+        assertEquals(20, uploader.getUploadedCount());
+        assertEquals(20, s3.getObjectCount(S3_BUCKET_NAME));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(ANY_PAYLOAD + i, payloadStore.getOriginalPayload(pointers.get(i)));
+        }
+    }
+
+    @Test
+    public void testFailedUploadsAreReportedByTheNextFlush() {
+        PayloadStore payloadStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME)
+                .withWriteBehind(uploader);
+        s3.failNext(InMemoryS3.PUT_OBJECT, S3Exception.builder().statusCode(500).message("Internal error").build());
+
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD);
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD);
+
+        assertThrows(SdkClientException.class, () -> uploader.flush());
+        assertEquals(1, uploader.getFailedCount());
+        assertEquals(1, s3.getObjectCount(S3_BUCKET_NAME));
+        // Reported once.
+        uploader.flush();
+
+        uploader.close();
+        assertThrows(SdkClientException.class, () -> payloadStore.storeOriginalPayload(ANY_PAYLOAD));
+    }
+
+    @Test
+    public void testUploadsOfTheSameKeyKeepTheirOrder() {
+        PayloadStore payloadStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(s3)), S3_BUCKET_NAME)
+                .withWriteBehind(uploader);
+
+        for (int i = 0; i < 10; i++) {
+            payloadStore.storeOriginalPayload(ANY_PAYLOAD + i, "key");
+        }
+        uploader.flush();
+
+        assertEquals(ANY_PAYLOAD + 9, payloadStore.getOriginalPayload(
+                new PayloadS3Pointer(S3_BUCKET_NAME, "key").toJson()));
+    }
+
+    @Test
+    public void testUploadsFailingWithAnErrorAreReported() {
+        uploader.submit(S3_BUCKET_NAME, "key", () -> {
+            throw new AssertionError("Upload failed");
+        });
+
+        assertThrows(SdkClientException.class, () -> uploader.flush());
+        assertEquals(1, uploader.getFailedCount());
+        assertEquals(0, uploader.getPendingCount());
+    }
+
+    @Test
+    public void testMemoryBudgetIsHeldUntilTheUploadsComplete() {
+        InMemoryS3 slowS3 = new InMemoryS3().withLatency(InMemoryS3.LatencyDistribution.fixed(Duration.ofMillis(200)));
+        PayloadMemoryBudget memoryBudget = new PayloadMemoryBudget(ANY_PAYLOAD.length() * 2);
+        PayloadStore payloadStore = new S3BackedPayloadStore(new S3Dao(new InMemoryS3Client(slowS3)),
+                S3_BUCKET_NAME).withMemoryBudget(memoryBudget).withWriteBehind(uploader);
+
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key1");
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key2");
+
+        assertEquals(ANY_PAYLOAD.length() * 2, memoryBudget.getUsedBytes());
+        uploader.flush();
+        assertEquals(0, memoryBudget.getUsedBytes());
+
+        // Also released by failed uploads.
+        slowS3.failNext(InMemoryS3.PUT_OBJECT, S3Exception.builder().statusCode(500).message("Internal error").build());
+        payloadStore.storeOriginalPayload(ANY_PAYLOAD, "key1");
+        assertThrows(SdkClientException.class, () -> uploader.flush());
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
+    @Test
+    public void testReadsOfPayloadsNotUploadedYetAreRetried() {
+        S3Dao writer = new S3Dao(new InMemoryS3Client(s3));
+        S3Dao reader = new S3Dao(new InMemoryS3Client(s3)).withNotFoundRetry(50, Duration.ofMillis(10));
+        CompletableFuture<Void> upload = CompletableFuture.runAsync(() -> {
+            sleep(100);
+            writer.storeTextInS3(S3_BUCKET_NAME, "key", ANY_PAYLOAD);
+        });
+
+        assertEquals(ANY_PAYLOAD, reader.getTextFromS3(S3_BUCKET_NAME, "key"));
+        upload.join();
+        assertTrue(s3.getRequestCount(InMemoryS3.GET_OBJECT) > 1);
+
+        S3Dao boundedReader = new S3Dao(new InMemoryS3Client(s3)).withNotFoundRetry(2, Duration.ofMillis(10));
+        assertThrows(SdkException.class, () -> boundedReader.getTextFromS3(S3_BUCKET_NAME, "missing"));
+        assertThrows(SdkClientException.class, () -> boundedReader.withNotFoundRetry(-1, Duration.ZERO));
+    }
+
+    @Test
+    public void testAsyncReadsOfPayloadsNotUploadedYetAreRetried() {
+        S3AsyncDao writer = new S3AsyncDao(new InMemoryS3AsyncClient(s3));
+        S3AsyncDao reader = new S3AsyncDao(new InMemoryS3AsyncClient(s3))
+                .withNotFoundRetry(50, Duration.ofMillis(10));
+
+        CompletableFuture<String> read = reader.getTextFromS3(S3_BUCKET_NAME, "key");
+        sleep(100);
+        writer.storeTextInS3(S3_BUCKET_NAME, "key", ANY_PAYLOAD).join();
+
+        assertEquals(ANY_PAYLOAD, read.join());
+        long requestCount = s3.getRequestCount(InMemoryS3.GET_OBJECT);
+        assertTrue(requestCount > 1);
+
+        S3AsyncDao boundedReader = new S3AsyncDao(new InMemoryS3AsyncClient(s3))
+                .withNotFoundRetry(2, Duration.ofMillis(10));
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> boundedReader.getTextFromS3(S3_BUCKET_NAME, "missing").join());
+        assertTrue(exception.getCause() instanceof SdkException);
+        assertEquals(requestCount + 3, s3.getRequestCount(InMemoryS3.GET_OBJECT));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}